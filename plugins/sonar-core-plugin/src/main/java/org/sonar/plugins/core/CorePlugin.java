@@ -43,6 +43,7 @@ import org.sonar.plugins.core.issue.InitialOpenIssuesStack;
 import org.sonar.plugins.core.issue.IssueHandlers;
 import org.sonar.plugins.core.issue.IssueTracking;
 import org.sonar.plugins.core.issue.IssueTrackingDecorator;
+import org.sonar.plugins.core.issue.IssueTrackingPrePass;
 import org.sonar.plugins.core.issue.notification.ChangesOnMyIssueNotificationDispatcher;
 import org.sonar.plugins.core.issue.notification.IssueChangesEmailTemplate;
 import org.sonar.plugins.core.issue.notification.NewFalsePositiveNotificationDispatcher;
@@ -338,6 +339,7 @@ public final class CorePlugin extends SonarPlugin {
       // issues
       IssueTrackingDecorator.class,
       IssueTracking.class,
+      IssueTrackingPrePass.class,
       IssueHandlers.class,
       CountUnresolvedIssuesDecorator.class,
       CountFalsePositivesDecorator.class,
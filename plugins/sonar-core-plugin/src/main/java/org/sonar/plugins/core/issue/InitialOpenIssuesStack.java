@@ -50,12 +50,19 @@ public class InitialOpenIssuesStack implements BatchExtension {
   }
 
   public List<IssueDto> selectAndRemoveIssues(String componentKey) {
-    Iterable<IssueDto> issues = issuesCache.values(componentKey);
+    List<IssueDto> result = selectIssues(componentKey);
+    issuesCache.clear(componentKey);
+    return result;
+  }
+
+  /**
+   * @since 5.0
+   */
+  public List<IssueDto> selectIssues(String componentKey) {
     List<IssueDto> result = newArrayList();
-    for (IssueDto issue : issues) {
+    for (IssueDto issue : issuesCache.values(componentKey)) {
       result.add(issue);
     }
-    issuesCache.clear(componentKey);
     return result;
   }
 
@@ -61,7 +61,7 @@ public class IssueTracking implements BatchExtension {
   }
 
   private void setChecksumOnNewIssues(Collection<DefaultIssue> issues, SourceHashHolder sourceHashHolder) {
-    List<String> checksums = SourceChecksum.lineChecksumsOfFile(sourceHashHolder.getSource());
+    List<String> checksums = sourceHashHolder.getLineChecksums();
     for (DefaultIssue issue : issues) {
       issue.setChecksum(SourceChecksum.getChecksumForLine(checksums, issue.line()));
     }
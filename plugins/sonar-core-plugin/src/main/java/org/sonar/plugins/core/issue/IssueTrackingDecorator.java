@@ -48,6 +48,7 @@ import org.sonar.core.issue.db.IssueDto;
 import org.sonar.core.issue.workflow.IssueWorkflow;
 
 import java.util.Collection;
+import java.util.List;
 
 @DependsUpon(DecoratorBarriers.ISSUES_ADDED)
 @DependedUpon(DecoratorBarriers.ISSUES_TRACKED)
@@ -58,6 +59,7 @@ public class IssueTrackingDecorator implements Decorator {
   private final IssueCache issueCache;
   private final InitialOpenIssuesStack initialOpenIssues;
   private final IssueTracking tracking;
+  private final IssueTrackingPrePass prePass;
   private final LastSnapshots lastSnapshots;
   private final SonarIndex index;
   private final IssueHandlers handlers;
@@ -67,9 +69,11 @@ public class IssueTrackingDecorator implements Decorator {
   private final ResourcePerspectives perspectives;
   private final RulesProfile rulesProfile;
   private final RuleFinder ruleFinder;
+  private final Project project;
+  private boolean prePassStarted = false;
 
   public IssueTrackingDecorator(IssueCache issueCache, InitialOpenIssuesStack initialOpenIssues, IssueTracking tracking,
-                                LastSnapshots lastSnapshots, SonarIndex index,
+                                IssueTrackingPrePass prePass, LastSnapshots lastSnapshots, SonarIndex index,
                                 IssueHandlers handlers, IssueWorkflow workflow,
                                 IssueUpdater updater,
                                 Project project,
@@ -79,6 +83,7 @@ public class IssueTrackingDecorator implements Decorator {
     this.issueCache = issueCache;
     this.initialOpenIssues = initialOpenIssues;
     this.tracking = tracking;
+    this.prePass = prePass;
     this.lastSnapshots = lastSnapshots;
     this.index = index;
     this.handlers = handlers;
@@ -88,6 +93,7 @@ public class IssueTrackingDecorator implements Decorator {
     this.perspectives = perspectives;
     this.rulesProfile = rulesProfile;
     this.ruleFinder = ruleFinder;
+    this.project = project;
   }
 
   @Override
@@ -97,12 +103,31 @@ public class IssueTrackingDecorator implements Decorator {
 
   @Override
   public void decorate(Resource resource, DecoratorContext context) {
+    if (!prePassStarted) {
+      // the first decorated resource is a leaf of the module tree
+      prePassStarted = true;
+      prePass.start(issuableFiles(project, Lists.<Resource>newArrayList()));
+    }
     Issuable issuable = perspectives.as(Issuable.class, resource);
     if (issuable != null) {
       doDecorate(resource);
     }
   }
 
+  private List<Resource> issuableFiles(Resource parent, List<Resource> files) {
+    for (Resource child : index.getChildren(parent)) {
+      if (ResourceUtils.isFile(child)) {
+        if (perspectives.as(Issuable.class, child) != null) {
+          files.add(child);
+        }
+      } else if (!(child instanceof Project)) {
+        // sub-modules are decorated in their own container
+        issuableFiles(child, files);
+      }
+    }
+    return files;
+  }
+
   @VisibleForTesting
   void doDecorate(Resource resource) {
     Collection<DefaultIssue> issues = Lists.newArrayList();
@@ -115,9 +140,18 @@ public class IssueTrackingDecorator implements Decorator {
     // all the issues that are not closed in db before starting this module scan, including manual issues
     Collection<IssueDto> dbOpenIssues = initialOpenIssues.selectAndRemoveIssues(resource.getEffectiveKey());
 
-    SourceHashHolder sourceHashHolder = new SourceHashHolder(index, lastSnapshots, resource);
-
-    IssueTrackingResult trackingResult = tracking.track(sourceHashHolder, dbOpenIssues, issues);
+    SourceHashHolder sourceHashHolder;
+    IssueTrackingResult trackingResult;
+    IssueTrackingPrePass.TrackedFile trackedFile = prePass.remove(resource.getEffectiveKey());
+    IssueTrackingResult prePassResult = trackedFile != null ? trackedFile.resultFor(issues) : null;
+    if (prePassResult != null) {
+      sourceHashHolder = trackedFile.sourceHashHolder();
+      trackingResult = prePassResult;
+    } else {
+      // file not tracked by the pre-pass, or issues changed since then
+      sourceHashHolder = trackedFile != null ? trackedFile.sourceHashHolder() : new SourceHashHolder(index, lastSnapshots, resource);
+      trackingResult = tracking.track(sourceHashHolder, dbOpenIssues, issues);
+    }
 
     // unmatched = issues that have been resolved + issues on disabled/removed rules + manual issues
     addUnmatched(trackingResult.unmatched(), sourceHashHolder, issues);
@@ -0,0 +1,269 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.core.issue;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.config.Settings;
+import org.sonar.api.issue.internal.DefaultIssue;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.utils.TimeProfiler;
+import org.sonar.batch.issue.IssueCache;
+import org.sonar.batch.scan.LastSnapshots;
+import org.sonar.core.issue.db.IssueDto;
+
+import javax.annotation.CheckForNull;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks the issues of the files of a module on a pool of threads, while the decorators walk the tree
+ * of the module. Files are tracked by windows of {@link #WINDOW_SIZE} files, in the order they were registered,
+ * when the first file of a window is requested. Previous sources of a window are loaded in bulk. Only the
+ * results of the current window are kept in memory.
+ * <p/>
+ * Results are consumed by {@link IssueTrackingDecorator}. As decorators can still add or change issues
+ * after the window is tracked, a result is reused only if the file still has the same issues, as far as
+ * tracking is concerned. Otherwise the file is tracked again.
+ * <p/>
+ * Not thread-safe: it's used by the thread executing the decorators only.
+ *
+ * @since 5.0
+ */
+public class IssueTrackingPrePass implements BatchExtension {
+
+  public static final String THREADS_PROPERTY = "sonar.issuesTracking.threads";
+  static final int WINDOW_SIZE = 500;
+
+  private static final Logger LOG = LoggerFactory.getLogger(IssueTrackingPrePass.class);
+
+  private final IssueCache issueCache;
+  private final InitialOpenIssuesStack initialOpenIssues;
+  private final IssueTracking tracking;
+  private final LastSnapshots lastSnapshots;
+  private final SonarIndex index;
+  private final Settings settings;
+  private int windowSize = WINDOW_SIZE;
+
+  // files not tracked yet, by component key
+  private final Map<String, Resource> pendingFiles = Maps.newLinkedHashMap();
+  // tracked files of the current window not consumed yet, by component key
+  private final Map<String, TrackedFile> trackedFiles = Maps.newHashMap();
+
+  public IssueTrackingPrePass(IssueCache issueCache, InitialOpenIssuesStack initialOpenIssues, IssueTracking tracking,
+                              LastSnapshots lastSnapshots, SonarIndex index, Settings settings) {
+    this.issueCache = issueCache;
+    this.initialOpenIssues = initialOpenIssues;
+    this.tracking = tracking;
+    this.lastSnapshots = lastSnapshots;
+    this.index = index;
+    this.settings = settings;
+  }
+
+  /**
+   * Registers the files to be tracked. Nothing is loaded until the first of them is requested by {@link #remove(String)}.
+   */
+  public void start(Collection<Resource> files) {
+    for (Resource file : files) {
+      pendingFiles.put(file.getEffectiveKey(), file);
+    }
+  }
+
+  @VisibleForTesting
+  IssueTrackingPrePass setWindowSize(int windowSize) {
+    this.windowSize = windowSize;
+    return this;
+  }
+
+  @VisibleForTesting
+  int threads() {
+    int threads = settings.getInt(THREADS_PROPERTY);
+    return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Returns the result of the pre-pass for the given file and releases it. If the file is pending, then
+   * the window starting with this file is tracked and the results of the previous window are dropped.
+   */
+  @CheckForNull
+  TrackedFile remove(String componentKey) {
+    TrackedFile trackedFile = trackedFiles.remove(componentKey);
+    if (trackedFile == null && pendingFiles.containsKey(componentKey)) {
+      trackWindow(componentKey);
+      trackedFile = trackedFiles.remove(componentKey);
+    }
+    return trackedFile;
+  }
+
+  private void trackWindow(String firstKey) {
+    // results not consumed yet are tracked again by the decorator if ever requested
+    trackedFiles.clear();
+    List<Resource> window = Lists.newArrayList(pendingFiles.remove(firstKey));
+    Iterator<Resource> pending = pendingFiles.values().iterator();
+    while (window.size() < windowSize && pending.hasNext()) {
+      window.add(pending.next());
+      pending.remove();
+    }
+
+    TimeProfiler profiler = new TimeProfiler(LOG).start("Track issues of " + window.size() + " files").setLevelToDebug();
+    lastSnapshots.prefetchSources(window);
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads(), window.size()), new TrackingThreadFactory());
+    try {
+      Map<String, Future<TrackedFile>> futures = Maps.newLinkedHashMap();
+      for (Resource file : window) {
+        // caches are read by the calling thread only
+        String componentKey = file.getEffectiveKey();
+        List<DefaultIssue> issues = Lists.newArrayList(issueCache.byComponent(componentKey));
+        List<IssueDto> dbIssues = initialOpenIssues.selectIssues(componentKey);
+        futures.put(componentKey, pool.submit(new TrackingTask(file, issues, dbIssues)));
+      }
+      for (Map.Entry<String, Future<TrackedFile>> entry : futures.entrySet()) {
+        trackedFiles.put(entry.getKey(), get(entry.getValue()));
+      }
+    } finally {
+      pool.shutdownNow();
+      profiler.stop();
+    }
+  }
+
+  private static TrackedFile get(Future<TrackedFile> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while tracking issues", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("Fail to track issues", cause);
+    }
+  }
+
+  private class TrackingTask implements Callable<TrackedFile> {
+    private final Resource file;
+    private final List<DefaultIssue> issues;
+    private final List<IssueDto> dbIssues;
+
+    TrackingTask(Resource file, List<DefaultIssue> issues, List<IssueDto> dbIssues) {
+      this.file = file;
+      this.issues = issues;
+      this.dbIssues = dbIssues;
+    }
+
+    @Override
+    public TrackedFile call() {
+      SourceHashHolder sourceHashHolder = new SourceHashHolder(index, lastSnapshots, file).prepare();
+      IssueTrackingResult result = tracking.track(sourceHashHolder, dbIssues, issues);
+      return new TrackedFile(issues, sourceHashHolder, result);
+    }
+  }
+
+  static class TrackedFile {
+    private final List<DefaultIssue> issues;
+    private final SourceHashHolder sourceHashHolder;
+    private final IssueTrackingResult result;
+
+    TrackedFile(List<DefaultIssue> issues, SourceHashHolder sourceHashHolder, IssueTrackingResult result) {
+      this.issues = issues;
+      this.sourceHashHolder = sourceHashHolder;
+      this.result = result;
+    }
+
+    SourceHashHolder sourceHashHolder() {
+      return sourceHashHolder;
+    }
+
+    /**
+     * The result references the issues that have been tracked, not the ones loaded later from cache.
+     */
+    IssueTrackingResult result() {
+      return result;
+    }
+
+    /**
+     * Result of the tracking applied to the current instances of the issues, so that the changes made to them since the
+     * tracking are kept. Returns null if issues have been added or removed, or if fields used by tracking have changed.
+     */
+    @CheckForNull
+    IssueTrackingResult resultFor(Collection<DefaultIssue> currentIssues) {
+      if (currentIssues.size() != issues.size()) {
+        return null;
+      }
+      Map<String, DefaultIssue> trackedByKey = Maps.newHashMap();
+      for (DefaultIssue issue : issues) {
+        trackedByKey.put(issue.key(), issue);
+      }
+      IssueTrackingResult currentResult = new IssueTrackingResult();
+      for (IssueDto unmatched : result.unmatched()) {
+        currentResult.addUnmatched(unmatched);
+      }
+      for (DefaultIssue current : currentIssues) {
+        DefaultIssue tracked = trackedByKey.get(current.key());
+        if (tracked == null || !hasSameTrackingFields(tracked, current)) {
+          return null;
+        }
+        current.setChecksum(tracked.checksum());
+        IssueDto matching = result.matching(tracked);
+        if (matching != null) {
+          currentResult.setMatch(current, matching);
+        }
+      }
+      return currentResult;
+    }
+
+    private static boolean hasSameTrackingFields(DefaultIssue tracked, DefaultIssue current) {
+      return Objects.equal(tracked.ruleKey(), current.ruleKey())
+        && Objects.equal(tracked.line(), current.line())
+        && Objects.equal(tracked.message(), current.message());
+    }
+  }
+
+  private static class TrackingThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "issue-tracking-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
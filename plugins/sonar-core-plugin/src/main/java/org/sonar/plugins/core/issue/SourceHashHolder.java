@@ -24,10 +24,12 @@ import org.sonar.api.batch.SonarIndex;
 import org.sonar.api.resources.Resource;
 import org.sonar.batch.scan.LastSnapshots;
 import org.sonar.plugins.core.issue.tracking.HashedSequence;
+import org.sonar.plugins.core.issue.tracking.SourceChecksum;
 import org.sonar.plugins.core.issue.tracking.StringText;
 import org.sonar.plugins.core.issue.tracking.StringTextComparator;
 
 import java.util.Collection;
+import java.util.List;
 
 public class SourceHashHolder {
 
@@ -42,6 +44,7 @@ public class SourceHashHolder {
 
   private HashedSequence<StringText> hashedReference;
   private HashedSequence<StringText> hashedSource;
+  private List<String> lineChecksums;
 
   public SourceHashHolder(SonarIndex index, LastSnapshots lastSnapshots, Resource resource) {
     this.index = index;
@@ -49,6 +52,17 @@ public class SourceHashHolder {
     this.resource = resource;
   }
 
+  /**
+   * Loads both sources and computes hashes and checksums, so that the holder can be prepared
+   * by a thread and then be used by another one.
+   * @since 5.0
+   */
+  public SourceHashHolder prepare() {
+    getHashedSource();
+    getLineChecksums();
+    return this;
+  }
+
   private void initHashes() {
     hashedReference = HashedSequence.wrap(new StringText(getReferenceSource()), StringTextComparator.IGNORE_WHITESPACE);
     hashedSource = HashedSequence.wrap(new StringText(getSource()), StringTextComparator.IGNORE_WHITESPACE);
@@ -64,6 +78,16 @@ public class SourceHashHolder {
     return hashedSource;
   }
 
+  /**
+   * @since 5.0
+   */
+  public List<String> getLineChecksums() {
+    if (lineChecksums == null) {
+      lineChecksums = SourceChecksum.lineChecksumsOfFile(getSource());
+    }
+    return lineChecksums;
+  }
+
   public String getSource() {
     if (!sourceInitialized) {
       source = StringUtils.defaultString(index.getSource(resource), "");
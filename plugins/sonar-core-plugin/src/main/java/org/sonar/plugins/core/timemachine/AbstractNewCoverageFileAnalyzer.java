@@ -20,8 +20,6 @@
 package org.sonar.plugins.core.timemachine;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
-import org.apache.commons.lang.ObjectUtils;
 import org.sonar.api.batch.*;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
@@ -30,6 +28,7 @@ import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.resources.Scopes;
+import org.sonar.api.utils.IntKeyValues;
 import org.sonar.api.utils.KeyValueFormat;
 import org.sonar.batch.components.Period;
 import org.sonar.batch.components.TimeMachineConfiguration;
@@ -40,7 +39,6 @@ import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
-import java.util.Map;
 
 /**
  * @since 2.7
@@ -115,21 +113,24 @@ public abstract class AbstractNewCoverageFileAnalyzer implements Decorator {
     Measure hitsByLineMeasure = context.getMeasure(getCoverageLineHitsDataMetric());
 
     if (lastCommits != null && lastCommits.hasData() && hitsByLineMeasure != null && hitsByLineMeasure.hasData()) {
-      Map<Integer, Date> datesByLine = KeyValueFormat.parseIntDateTime(lastCommits.getData());
-      Map<Integer, Integer> hitsByLine = parseCountByLine(hitsByLineMeasure);
-      Map<Integer, Integer> conditionsByLine = parseCountByLine(context.getMeasure(getConditionsByLineMetric()));
-      Map<Integer, Integer> coveredConditionsByLine = parseCountByLine(context.getMeasure(getCoveredConditionsByLineMetric()));
+      IntKeyValues datesByLine = KeyValueFormat.parseIntDateTimeValues(lastCommits.getData());
+      IntKeyValues hitsByLine = parseCountByLine(hitsByLineMeasure);
+      IntKeyValues conditionsByLine = parseCountByLine(context.getMeasure(getConditionsByLineMetric()));
+      IntKeyValues coveredConditionsByLine = parseCountByLine(context.getMeasure(getCoveredConditionsByLineMetric()));
 
       reset();
 
-      for (Map.Entry<Integer, Integer> entry : hitsByLine.entrySet()) {
-        int lineId = entry.getKey();
-        int hits = entry.getValue();
-        int conditions = (Integer) ObjectUtils.defaultIfNull(conditionsByLine.get(lineId), 0);
-        int coveredConditions = (Integer) ObjectUtils.defaultIfNull(coveredConditionsByLine.get(lineId), 0);
-        Date date = datesByLine.get(lineId);
-        for (PeriodStruct struct : structs) {
-          struct.analyze(date, hits, conditions, coveredConditions);
+      for (int index = 0; index < hitsByLine.size(); index++) {
+        int lineId = hitsByLine.keyAt(index);
+        int dateIndex = datesByLine.indexOf(lineId);
+        if (dateIndex >= 0) {
+          int hits = hitsByLine.intValueAt(index);
+          int conditions = conditionsByLine.getInt(lineId, 0);
+          int coveredConditions = coveredConditionsByLine.getInt(lineId, 0);
+          long date = datesByLine.valueAt(dateIndex);
+          for (PeriodStruct struct : structs) {
+            struct.analyze(date, hits, conditions, coveredConditions);
+          }
         }
       }
 
@@ -165,11 +166,11 @@ public abstract class AbstractNewCoverageFileAnalyzer implements Decorator {
     context.saveMeasure(newUncoveredConditions);
   }
 
-  private Map<Integer, Integer> parseCountByLine(@Nullable Measure measure) {
+  private IntKeyValues parseCountByLine(@Nullable Measure measure) {
     if (measure != null && measure.hasData()) {
-      return KeyValueFormat.parseIntInt(measure.getData());
+      return KeyValueFormat.parseIntIntValues(measure.getData());
     }
-    return Maps.newHashMap();
+    return new IntKeyValues();
   }
 
   public static final class PeriodStruct {
@@ -192,12 +193,8 @@ public abstract class AbstractNewCoverageFileAnalyzer implements Decorator {
       newCoveredConditions = null;
     }
 
-    void analyze(@Nullable Date lineDate, int hits, int conditions, int coveredConditions) {
-      if (lineDate == null) {
-        // TODO warning
-
-      } else if (date == null || lineDate.after(date)) {
-        // TODO test if string comparison is faster or not
+    void analyze(long lineTime, int hits, int conditions, int coveredConditions) {
+      if (date == null || lineTime > date.getTime()) {
         addLine(hits > 0);
         addConditions(conditions, coveredConditions);
       }
@@ -52,6 +52,8 @@ public class TendencyDecorator implements Decorator {
   private TimeMachineQuery query;
   private TendencyAnalyser analyser;
   private List<Metric> metrics;
+  private Project pastFieldsModule;
+  private ListMultimap<Integer, Object[]> pastFieldsByResourceId;
 
   public TendencyDecorator(TimeMachine timeMachine, MetricFinder metricFinder) {
     this.timeMachine = timeMachine;
@@ -102,12 +104,7 @@ public class TendencyDecorator implements Decorator {
   @Override
   public void decorate(Resource resource, DecoratorContext context) {
     if (shouldDecorateResource(resource)) {
-      resetQuery(context.getProject(), resource);
-      List<Object[]> fields = timeMachine.getMeasuresFields(query);
-      ListMultimap<Metric, Double> valuesPerMetric = ArrayListMultimap.create();
-      for (Object[] field : fields) {
-        valuesPerMetric.put((Metric) field[1], (Double) field[2]);
-      }
+      ListMultimap<Metric, Double> valuesPerMetric = loadPastValues(context.getProject(), resource);
 
       for (Metric metric : query.getMetrics()) {
         Measure measure = context.getMeasure(metric);
@@ -122,6 +119,38 @@ public class TendencyDecorator implements Decorator {
     }
   }
 
+  private ListMultimap<Metric, Double> loadPastValues(Project module, Resource resource) {
+    ListMultimap<Metric, Double> valuesPerMetric = ArrayListMultimap.create();
+    Integer resourceId = resource.getId();
+    if (resourceId == null) {
+      resetQuery(module, resource);
+      for (Object[] field : timeMachine.getMeasuresFields(query)) {
+        valuesPerMetric.put((Metric) field[1], (Double) field[2]);
+      }
+    } else {
+      for (Object[] field : getModulePastFields(module).get(resourceId)) {
+        valuesPerMetric.put((Metric) field[2], (Double) field[3]);
+      }
+    }
+    return valuesPerMetric;
+  }
+
+  /**
+   * Past measures of all the projects and directories of the module are loaded with a single request
+   * the first time a resource of the module is decorated.
+   */
+  private ListMultimap<Integer, Object[]> getModulePastFields(Project module) {
+    if (!module.equals(pastFieldsModule)) {
+      resetQuery(module, module);
+      pastFieldsByResourceId = ArrayListMultimap.create();
+      for (Object[] field : timeMachine.getModuleMeasuresFields(query, Scopes.PROJECT, Scopes.DIRECTORY)) {
+        pastFieldsByResourceId.put((Integer) field[0], field);
+      }
+      pastFieldsModule = module;
+    }
+    return pastFieldsByResourceId;
+  }
+
   private boolean shouldDecorateResource(Resource resource) {
     return StringUtils.equals(Scopes.PROJECT, resource.getScope()) || StringUtils.equals(Scopes.DIRECTORY, resource.getScope());
   }
@@ -91,6 +91,17 @@ public class InitialOpenIssuesStackTest {
     assertThat(stack.selectAllIssues()).isEmpty();
   }
 
+  @Test
+  public void get_issues_without_removing_them() {
+    stack.addIssue(new IssueDto().setComponentKey("org.struts.Action").setKee("ISSUE-1"));
+
+    List<IssueDto> issueDtos = stack.selectIssues("org.struts.Action");
+    assertThat(issueDtos).hasSize(1);
+    assertThat(issueDtos.get(0).getKee()).isEqualTo("ISSUE-1");
+
+    assertThat(stack.selectAllIssues()).hasSize(1);
+  }
+
   @Test
   public void get_and_remove_do_nothing_if_resource_not_found() {
     stack.addIssue(new IssueDto().setComponentKey("org.struts.Action").setKee("ISSUE-1"));
@@ -26,10 +26,12 @@ import org.mockito.ArgumentMatcher;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.SonarIndex;
 import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.issue.Issuable;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.issue.internal.DefaultIssue;
 import org.sonar.api.issue.internal.IssueChangeContext;
 import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.resources.Directory;
 import org.sonar.api.resources.File;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
@@ -67,6 +69,7 @@ public class IssueTrackingDecoratorTest extends AbstractDaoTestCase {
   IssueCache issueCache = mock(IssueCache.class, RETURNS_MOCKS);
   InitialOpenIssuesStack initialOpenIssues = mock(InitialOpenIssuesStack.class);
   IssueTracking tracking = mock(IssueTracking.class, RETURNS_MOCKS);
+  IssueTrackingPrePass prePass = mock(IssueTrackingPrePass.class);
   LastSnapshots lastSnapshots = mock(LastSnapshots.class);
   SonarIndex index = mock(SonarIndex.class);
   IssueHandlers handlers = mock(IssueHandlers.class);
@@ -82,6 +85,7 @@ public class IssueTrackingDecoratorTest extends AbstractDaoTestCase {
       issueCache,
       initialOpenIssues,
       tracking,
+      prePass,
       lastSnapshots,
       index,
       handlers,
@@ -131,6 +135,64 @@ public class IssueTrackingDecoratorTest extends AbstractDaoTestCase {
     verify(issueCache).put(issue);
   }
 
+  @Test
+  public void should_execute_pre_pass_on_issuable_files_of_module() throws Exception {
+    Project module = mock(Project.class);
+    Project subModule = new Project("sub");
+    Resource dir = new Directory("src");
+    Resource file = new File("src/Action.java").setEffectiveKey("struts:src/Action.java");
+    Resource notIssuable = new File("src/Foo.java").setEffectiveKey("struts:src/Foo.java");
+    when(index.getChildren(module)).thenReturn(Arrays.<Resource>asList(dir, subModule));
+    when(index.getChildren(dir)).thenReturn(Arrays.asList(file, notIssuable));
+    when(perspectives.as(Issuable.class, file)).thenReturn(mock(Issuable.class));
+    decorator = new IssueTrackingDecorator(issueCache, initialOpenIssues, tracking, prePass, lastSnapshots, index, handlers, workflow, updater,
+      module, perspectives, profile, ruleFinder);
+
+    decorator.decorate(file, mock(DecoratorContext.class));
+    decorator.decorate(dir, mock(DecoratorContext.class));
+
+    verify(prePass, times(1)).start(Arrays.asList(file));
+    verify(index, never()).getChildren(subModule);
+  }
+
+  @Test
+  public void should_reuse_result_of_pre_pass() throws Exception {
+    Resource file = new File("Action.java").setEffectiveKey("struts:Action.java").setId(123);
+    // changed by a decorator after the pre-pass
+    DefaultIssue issue = new DefaultIssue().setKey("ABCDE").setSeverity("BLOCKER");
+    DefaultIssue trackedIssue = new DefaultIssue().setKey("ABCDE");
+    when(issueCache.byComponent("struts:Action.java")).thenReturn(Arrays.asList(issue));
+    IssueTrackingResult trackingResult = new IssueTrackingResult();
+    SourceHashHolder sourceHashHolder = mock(SourceHashHolder.class);
+    when(prePass.remove("struts:Action.java")).thenReturn(new IssueTrackingPrePass.TrackedFile(newArrayList(trackedIssue), sourceHashHolder, trackingResult));
+
+    decorator.doDecorate(file);
+
+    verifyZeroInteractions(tracking);
+    ArgumentCaptor<DefaultIssue> argument = ArgumentCaptor.forClass(DefaultIssue.class);
+    verify(issueCache).put(argument.capture());
+    assertThat(argument.getValue()).isSameAs(issue);
+    assertThat(argument.getValue().severity()).isEqualTo("BLOCKER");
+  }
+
+  @Test
+  public void should_track_again_if_issues_added_after_pre_pass() throws Exception {
+    Resource file = new File("Action.java").setEffectiveKey("struts:Action.java").setId(123);
+    DefaultIssue issue = new DefaultIssue().setKey("ABCDE");
+    DefaultIssue addedIssue = new DefaultIssue().setKey("FGHIJ");
+    when(issueCache.byComponent("struts:Action.java")).thenReturn(Arrays.asList(issue, addedIssue));
+    SourceHashHolder sourceHashHolder = mock(SourceHashHolder.class);
+    when(prePass.remove("struts:Action.java")).thenReturn(
+      new IssueTrackingPrePass.TrackedFile(newArrayList(new DefaultIssue().setKey("ABCDE")), sourceHashHolder, new IssueTrackingResult()));
+
+    decorator.doDecorate(file);
+
+    // sources and hashes of the pre-pass are kept
+    verify(tracking).track(eq(sourceHashHolder), anyCollection(), anyCollection());
+    verify(issueCache).put(issue);
+    verify(issueCache).put(addedIssue);
+  }
+
   @Test
   public void should_register_unmatched_issues_as_end_of_life() throws Exception {
     // "Unmatched" issues existed in previous scan but not in current one -> they have to be closed
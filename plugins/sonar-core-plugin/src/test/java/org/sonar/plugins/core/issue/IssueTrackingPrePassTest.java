@@ -0,0 +1,180 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.core.issue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.config.Settings;
+import org.sonar.api.issue.internal.DefaultIssue;
+import org.sonar.api.resources.File;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.batch.issue.IssueCache;
+import org.sonar.batch.scan.LastSnapshots;
+import org.sonar.core.issue.db.IssueDto;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class IssueTrackingPrePassTest {
+
+  IssueCache issueCache = mock(IssueCache.class);
+  InitialOpenIssuesStack initialOpenIssues = mock(InitialOpenIssuesStack.class);
+  IssueTracking tracking = mock(IssueTracking.class);
+  LastSnapshots lastSnapshots = mock(LastSnapshots.class);
+  SonarIndex index = mock(SonarIndex.class);
+  Settings settings = new Settings();
+  IssueTrackingPrePass prePass;
+
+  Resource file1 = new File("Action.java").setEffectiveKey("struts:Action.java");
+  Resource file2 = new File("Form.java").setEffectiveKey("struts:Form.java");
+
+  @Before
+  public void before() {
+    settings.setProperty(IssueTrackingPrePass.THREADS_PROPERTY, 2);
+    when(lastSnapshots.getSource(any(Resource.class))).thenReturn("");
+    prePass = new IssueTrackingPrePass(issueCache, initialOpenIssues, tracking, lastSnapshots, index, settings);
+  }
+
+  @Test
+  public void track_issues_of_files() {
+    DefaultIssue issue = new DefaultIssue().setKey("ABCDE");
+    List<IssueDto> dbIssues = Arrays.asList(new IssueDto().setKee("ABCDE"));
+    when(issueCache.byComponent("struts:Action.java")).thenReturn(Arrays.asList(issue));
+    when(initialOpenIssues.selectIssues("struts:Action.java")).thenReturn(dbIssues);
+    when(issueCache.byComponent("struts:Form.java")).thenReturn(Collections.<DefaultIssue>emptyList());
+    IssueTrackingResult result = new IssueTrackingResult();
+    when(tracking.track(any(SourceHashHolder.class), eq(dbIssues), anyCollection())).thenReturn(result);
+    when(index.getSource(file1)).thenReturn("class Action {}");
+
+    prePass.start(Arrays.asList(file1, file2));
+    // nothing is loaded until a file is requested
+    verifyZeroInteractions(lastSnapshots, tracking);
+
+    IssueTrackingPrePass.TrackedFile trackedFile = prePass.remove("struts:Action.java");
+    verify(lastSnapshots).prefetchSources(Arrays.asList(file1, file2));
+    assertThat(trackedFile.result()).isSameAs(result);
+    // sources are loaded by the pre-pass
+    assertThat(trackedFile.sourceHashHolder().getLineChecksums()).hasSize(1);
+    verify(index).getSource(file1);
+
+    assertThat(prePass.remove("struts:Form.java")).isNotNull();
+    // results are released once consumed
+    assertThat(prePass.remove("struts:Action.java")).isNull();
+  }
+
+  @Test
+  public void track_files_by_windows() {
+    Resource file3 = new File("Bean.java").setEffectiveKey("struts:Bean.java");
+    when(issueCache.byComponent(anyString())).thenReturn(Collections.<DefaultIssue>emptyList());
+    when(tracking.track(any(SourceHashHolder.class), anyCollection(), anyCollection())).thenReturn(new IssueTrackingResult());
+    prePass.setWindowSize(2).start(Arrays.asList(file1, file2, file3));
+
+    assertThat(prePass.remove("struts:Form.java")).isNotNull();
+    verify(lastSnapshots).prefetchSources(Arrays.asList(file2, file3));
+
+    // results of the previous window are dropped
+    assertThat(prePass.remove("struts:Action.java")).isNotNull();
+    verify(lastSnapshots).prefetchSources(Arrays.asList(file1));
+    assertThat(prePass.remove("struts:Bean.java")).isNull();
+    verify(tracking, times(3)).track(any(SourceHashHolder.class), anyCollection(), anyCollection());
+  }
+
+  @Test
+  public void apply_result_to_current_issues() {
+    DefaultIssue trackedIssue = new DefaultIssue().setKey("ABCDE").setRuleKey(RuleKey.of("squid", "S1")).setLine(3).setMessage("Fix").setChecksum("xyz");
+    IssueDto dbIssue = new IssueDto().setKee("ABCDE").setRuleKey("squid", "S1");
+    IssueDto unmatchedDbIssue = new IssueDto().setKee("FGHIJ").setRuleKey("squid", "S2");
+    IssueTrackingResult result = new IssueTrackingResult();
+    result.addUnmatched(dbIssue);
+    result.addUnmatched(unmatchedDbIssue);
+    result.setMatch(trackedIssue, dbIssue);
+    IssueTrackingPrePass.TrackedFile trackedFile = new IssueTrackingPrePass.TrackedFile(Arrays.asList(trackedIssue), mock(SourceHashHolder.class), result);
+
+    // severity changed after tracking
+    DefaultIssue current = new DefaultIssue().setKey("ABCDE").setRuleKey(RuleKey.of("squid", "S1")).setLine(3).setMessage("Fix").setSeverity("BLOCKER");
+    IssueTrackingResult currentResult = trackedFile.resultFor(Arrays.asList(current));
+
+    assertThat(currentResult.matching(current)).isSameAs(dbIssue);
+    assertThat(currentResult.isMatched(trackedIssue)).isFalse();
+    assertThat(currentResult.unmatched()).containsOnly(unmatchedDbIssue);
+    assertThat(current.checksum()).isEqualTo("xyz");
+    assertThat(current.severity()).isEqualTo("BLOCKER");
+  }
+
+  @Test
+  public void do_not_apply_result_if_issues_changed() {
+    DefaultIssue trackedIssue = new DefaultIssue().setKey("ABCDE").setRuleKey(RuleKey.of("squid", "S1")).setLine(3).setMessage("Fix");
+    IssueTrackingPrePass.TrackedFile trackedFile = new IssueTrackingPrePass.TrackedFile(
+      Arrays.asList(trackedIssue), mock(SourceHashHolder.class), new IssueTrackingResult());
+
+    assertThat(trackedFile.resultFor(Arrays.asList(new DefaultIssue().setKey("ABCDE").setRuleKey(RuleKey.of("squid", "S1")).setLine(3).setMessage("Fix")))).isNotNull();
+    assertThat(trackedFile.resultFor(Arrays.asList(new DefaultIssue().setKey("FGHIJ").setRuleKey(RuleKey.of("squid", "S1")).setLine(3).setMessage("Fix")))).isNull();
+    assertThat(trackedFile.resultFor(Arrays.asList(new DefaultIssue().setKey("ABCDE").setRuleKey(RuleKey.of("squid", "S1")).setLine(4).setMessage("Fix")))).isNull();
+    assertThat(trackedFile.resultFor(Arrays.asList(new DefaultIssue().setKey("ABCDE").setRuleKey(RuleKey.of("squid", "S1")).setLine(3).setMessage("Other")))).isNull();
+    assertThat(trackedFile.resultFor(Arrays.asList(trackedIssue, new DefaultIssue().setKey("FGHIJ")))).isNull();
+    assertThat(trackedFile.resultFor(Collections.<DefaultIssue>emptyList())).isNull();
+  }
+
+  @Test
+  public void fail_if_tracking_fails() {
+    when(issueCache.byComponent("struts:Action.java")).thenReturn(Collections.<DefaultIssue>emptyList());
+    when(tracking.track(any(SourceHashHolder.class), any(Collection.class), any(Collection.class))).thenThrow(new IllegalStateException("Fail"));
+    prePass.start(Arrays.asList(file1));
+
+    try {
+      prePass.remove("struts:Action.java");
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail");
+    }
+  }
+
+  @Test
+  public void do_nothing_if_file_not_registered() {
+    prePass.start(Collections.<Resource>emptyList());
+
+    assertThat(prePass.remove("struts:Action.java")).isNull();
+    verifyZeroInteractions(lastSnapshots, tracking);
+  }
+
+  @Test
+  public void number_of_threads() {
+    assertThat(prePass.threads()).isEqualTo(2);
+
+    settings.removeProperty(IssueTrackingPrePass.THREADS_PROPERTY);
+    assertThat(prePass.threads()).isEqualTo(Runtime.getRuntime().availableProcessors());
+  }
+}
@@ -30,6 +30,7 @@ import org.sonar.api.measures.Metric;
 import org.sonar.api.measures.MetricFinder;
 import org.sonar.api.resources.Directory;
 import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Scopes;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -41,6 +42,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Matchers.anyList;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -106,6 +108,35 @@ public class TendencyDecoratorTest {
     verify(analyser, never()).analyseLevel(anyList());
   }
 
+  @Test
+  public void loadPastMeasuresOfModuleOnce() throws ParseException {
+    TendencyAnalyser analyser = mock(TendencyAnalyser.class);
+    TimeMachineQuery query = new TimeMachineQuery(null).setMetrics(CoreMetrics.LINES);
+    TimeMachine timeMachine = mock(TimeMachine.class);
+    when(timeMachine.getModuleMeasuresFields(query, Scopes.PROJECT, Scopes.DIRECTORY)).thenReturn(Arrays.<Object[]>asList(
+      new Object[] {10, date("2009-12-01"), CoreMetrics.LINES, 1200.0},
+      new Object[] {11, date("2009-12-01"), CoreMetrics.LINES, 100.0},
+      new Object[] {10, date("2009-12-02"), CoreMetrics.LINES, 1300.0}
+    ));
+
+    Project module = new Project("module");
+    DecoratorContext context = mock(DecoratorContext.class);
+    when(context.getProject()).thenReturn(module);
+    when(context.getMeasure(CoreMetrics.LINES)).thenReturn(new Measure(CoreMetrics.LINES, 1400.0));
+
+    TendencyDecorator decorator = new TendencyDecorator(timeMachine, query, analyser);
+    Directory dir = new Directory("org/foo");
+    dir.setId(10);
+    decorator.decorate(dir, context);
+    module.setId(11);
+    decorator.decorate(module, context);
+
+    verify(analyser).analyseLevel(Arrays.asList(1200.0, 1300.0, 1400.0));
+    verify(analyser).analyseLevel(Arrays.asList(100.0, 1400.0));
+    verify(timeMachine, times(1)).getModuleMeasuresFields(query, Scopes.PROJECT, Scopes.DIRECTORY);
+    verify(timeMachine, never()).getMeasuresFields(query);
+  }
+
   private Date date(String date) throws ParseException {
     return new SimpleDateFormat("yyyy-MM-dd").parse(date);
   }
@@ -0,0 +1,110 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.app;
+
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.core.StandardThreadExecutor;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread pool of a connector. It counts the connections rejected when the pool and its queue are
+ * full, and exposes its usage over JMX as "SonarQube:type=Connector,name=&lt;name&gt;".
+ *
+ * @since 5.0
+ */
+class ConnectorExecutor extends StandardThreadExecutor implements ConnectorExecutorMBean {
+
+  static final String OBJECT_NAME_PREFIX = "SonarQube:type=Connector,name=";
+
+  private final AtomicLong rejectedConnections = new AtomicLong();
+  private final MBeanServer mbeanServer;
+  private ObjectName objectName;
+
+  ConnectorExecutor(String name) {
+    this(name, ManagementFactory.getPlatformMBeanServer());
+  }
+
+  ConnectorExecutor(String name, MBeanServer mbeanServer) {
+    this.mbeanServer = mbeanServer;
+    setName(name);
+    setNamePrefix("web-" + name + "-");
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    try {
+      super.execute(command);
+    } catch (RejectedExecutionException e) {
+      rejectedConnections.incrementAndGet();
+      throw e;
+    }
+  }
+
+  @Override
+  public int getActiveThreads() {
+    return getActiveCount();
+  }
+
+  @Override
+  public int getQueueLength() {
+    return getQueueSize();
+  }
+
+  @Override
+  public long getRejectedConnections() {
+    return rejectedConnections.get();
+  }
+
+  @Override
+  protected void startInternal() throws LifecycleException {
+    super.startInternal();
+    try {
+      ObjectName name = new ObjectName(OBJECT_NAME_PREFIX + getName());
+      if (!mbeanServer.isRegistered(name)) {
+        mbeanServer.registerMBean(new StandardMBean(this, ConnectorExecutorMBean.class), name);
+        objectName = name;
+      }
+    } catch (JMException e) {
+      LoggerFactory.getLogger(ConnectorExecutor.class).warn("Fail to register connector in JMX", e);
+    }
+  }
+
+  @Override
+  protected void stopInternal() throws LifecycleException {
+    if (objectName != null) {
+      try {
+        mbeanServer.unregisterMBean(objectName);
+      } catch (JMException e) {
+        LoggerFactory.getLogger(ConnectorExecutor.class).warn("Fail to unregister connector from JMX", e);
+      }
+      objectName = null;
+    }
+    super.stopInternal();
+  }
+}
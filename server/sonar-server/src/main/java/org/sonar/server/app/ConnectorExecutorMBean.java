@@ -0,0 +1,47 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.app;
+
+/**
+ * JMX view of the thread pool of a connector.
+ *
+ * @since 5.0
+ */
+public interface ConnectorExecutorMBean {
+
+  int getMaxThreads();
+
+  int getPoolSize();
+
+  /**
+   * Number of threads processing a request
+   */
+  int getActiveThreads();
+
+  /**
+   * Number of connections waiting for a thread
+   */
+  int getQueueLength();
+
+  /**
+   * Number of connections refused because the threads and the queue are all busy
+   */
+  long getRejectedConnections();
+}
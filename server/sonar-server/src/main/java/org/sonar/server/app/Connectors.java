@@ -21,6 +21,7 @@ package org.sonar.server.app;
 
 import org.apache.catalina.connector.Connector;
 import org.apache.catalina.startup.Tomcat;
+import org.apache.coyote.AbstractProtocol;
 import org.slf4j.LoggerFactory;
 import org.sonar.process.Props;
 
@@ -38,13 +39,14 @@ class Connectors {
   private static final int DISABLED_PORT = -1;
   static final String HTTP_PROTOCOL = "HTTP/1.1";
   static final String AJP_PROTOCOL = "AJP/1.3";
+  static final String NIO_PROTOCOL = "org.apache.coyote.http11.Http11NioProtocol";
 
   private Connectors() {
   }
 
   static void configure(Tomcat tomcat, Props props) {
     List<Connector> connectors = new ArrayList<Connector>();
-    connectors.addAll(Arrays.asList(newHttpConnector(props), newAjpConnector(props), newHttpsConnector(props)));
+    connectors.addAll(Arrays.asList(newHttpConnector(tomcat, props), newAjpConnector(tomcat, props), newHttpsConnector(tomcat, props)));
     connectors.removeAll(Collections.singleton(null));
 
     verify(connectors);
@@ -70,12 +72,12 @@ class Connectors {
   }
 
   @Nullable
-  private static Connector newHttpConnector(Props props) {
+  private static Connector newHttpConnector(Tomcat tomcat, Props props) {
     Connector connector = null;
     // Not named "sonar.web.http.port" to keep backward-compatibility
     int port = props.valueAsInt("sonar.web.port", 9000);
     if (port > DISABLED_PORT) {
-      connector = newConnector(props, HTTP_PROTOCOL, "http");
+      connector = newConnector(tomcat, props, httpProtocol(props, "http"), "http", "http");
       connector.setPort(port);
       info("HTTP connector is enabled on port " + port);
     }
@@ -83,11 +85,11 @@ class Connectors {
   }
 
   @Nullable
-  private static Connector newAjpConnector(Props props) {
+  private static Connector newAjpConnector(Tomcat tomcat, Props props) {
     Connector connector = null;
     int port = props.valueAsInt("sonar.ajp.port", DISABLED_PORT);
     if (port > DISABLED_PORT) {
-      connector = newConnector(props, AJP_PROTOCOL, "http");
+      connector = newConnector(tomcat, props, AJP_PROTOCOL, "http", "ajp");
       connector.setPort(port);
       info("AJP connector is enabled on port " + port);
     }
@@ -95,11 +97,11 @@ class Connectors {
   }
 
   @Nullable
-  private static Connector newHttpsConnector(Props props) {
+  private static Connector newHttpsConnector(Tomcat tomcat, Props props) {
     Connector connector = null;
     int port = props.valueAsInt("sonar.web.https.port", DISABLED_PORT);
     if (port > DISABLED_PORT) {
-      connector = newConnector(props, HTTP_PROTOCOL, "https");
+      connector = newConnector(tomcat, props, httpProtocol(props, "https"), "https", "https");
       connector.setPort(port);
       connector.setSecure(true);
       connector.setScheme("https");
@@ -122,20 +124,48 @@ class Connectors {
     return connector;
   }
 
-  private static Connector newConnector(Props props, String protocol, String scheme) {
+  /**
+   * The blocking connector ("bio") dedicates a thread to each connection, including idle keep-alive
+   * connections. The non-blocking connector ("nio") releases the thread between requests and
+   * sends static files with sendfile.
+   */
+  private static String httpProtocol(Props props, String scheme) {
+    String protocol = props.value("sonar.web." + scheme + ".protocol", "bio");
+    if ("bio".equals(protocol)) {
+      return HTTP_PROTOCOL;
+    }
+    if ("nio".equals(protocol)) {
+      return NIO_PROTOCOL;
+    }
+    throw new IllegalStateException(String.format("Unsupported protocol '%s' for %s connector. Valid values are 'bio' and 'nio'", protocol, scheme));
+  }
+
+  private static Connector newConnector(Tomcat tomcat, Props props, String protocol, String scheme, String name) {
     Connector connector = new Connector(protocol);
     connector.setURIEncoding("UTF-8");
     connector.setProperty("address", props.value("sonar.web.host", "0.0.0.0"));
-    configurePool(props, connector, scheme);
+    configurePool(tomcat, props, connector, scheme, name);
     configureCompression(connector);
+    if (NIO_PROTOCOL.equals(protocol)) {
+      connector.setProperty("useSendfile", "true");
+    }
     return connector;
   }
 
-  private static void configurePool(Props props, Connector connector, String scheme) {
-    connector.setProperty("acceptorThreadCount", String.valueOf(2));
-    connector.setProperty("minSpareThreads", String.valueOf(props.valueAsInt("sonar.web." + scheme + ".minThreads", 5)));
-    connector.setProperty("maxThreads", String.valueOf(props.valueAsInt("sonar.web." + scheme + ".maxThreads", 50)));
+  private static void configurePool(Tomcat tomcat, Props props, Connector connector, String scheme, String name) {
+    int minThreads = props.valueAsInt("sonar.web." + scheme + ".minThreads", 5);
+    int maxThreads = props.valueAsInt("sonar.web." + scheme + ".maxThreads", 50);
+    connector.setProperty("acceptorThreadCount", String.valueOf(props.valueAsInt("sonar.web." + scheme + ".acceptorThreads", 2)));
+    connector.setProperty("minSpareThreads", String.valueOf(minThreads));
+    connector.setProperty("maxThreads", String.valueOf(maxThreads));
     connector.setProperty("acceptCount", String.valueOf(props.valueAsInt("sonar.web." + scheme + ".acceptCount", 25)));
+
+    ConnectorExecutor executor = new ConnectorExecutor(name);
+    executor.setMinSpareThreads(minThreads);
+    executor.setMaxThreads(maxThreads);
+    executor.setMaxQueueSize(props.valueAsInt("sonar.web." + scheme + ".maxQueueSize", Integer.MAX_VALUE));
+    tomcat.getService().addExecutor(executor);
+    ((AbstractProtocol<?>) connector.getProtocolHandler()).setExecutor(executor);
   }
 
   private static void configureCompression(Connector connector) {
@@ -20,13 +20,16 @@
 
 package org.sonar.server.batch;
 
-import com.google.common.collect.Maps;
-import org.apache.commons.io.IOUtils;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.sonar.api.resources.Language;
 import org.sonar.api.resources.Languages;
 import org.sonar.api.server.ws.Request;
 import org.sonar.api.server.ws.RequestHandler;
 import org.sonar.api.server.ws.Response;
+import org.sonar.api.server.ws.ResponseWithHeaders;
 import org.sonar.api.server.ws.WebService;
 import org.sonar.batch.protocol.input.ProjectReferentials;
 import org.sonar.core.UtcDateUtils;
@@ -46,16 +49,24 @@ import org.sonar.server.qualityprofile.QProfileFactory;
 import org.sonar.server.qualityprofile.QProfileLoader;
 import org.sonar.server.rule.Rule;
 import org.sonar.server.rule.RuleService;
+import org.sonar.server.rule.index.RuleIndex;
 import org.sonar.server.user.UserSession;
 
 import javax.annotation.Nullable;
 
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.collect.Sets.newHashSet;
 
 public class ProjectReferentialsAction implements RequestHandler {
 
@@ -63,26 +74,43 @@ public class ProjectReferentialsAction implements RequestHandler {
   private static final String PARAM_PROFILE = "profile";
   private static final String PARAM_PREVIEW = "preview";
 
+  private static final int MAX_CACHED_ENTRIES = 1000;
+
   private final DbClient dbClient;
   private final PropertiesDao propertiesDao;
   private final QProfileFactory qProfileFactory;
   private final QProfileLoader qProfileLoader;
   private final RuleService ruleService;
+  private final RuleIndex ruleIndex;
   private final Languages languages;
 
+  /**
+   * Active rules of quality profiles, by key of profile and dates of last change of
+   * profile and of rules. Their loading requires one request to Elasticsearch per rule.
+   */
+  private final Map<String, List<org.sonar.batch.protocol.input.ActiveRule>> activeRulesByStamp = lruMap();
+
+  /**
+   * ETags of the last responses, by stamp of the settings, profiles and rules they are built from. The batch
+   * sends the ETag of its local copy, so that unchanged referentials are not built nor serialized again.
+   */
+  private final Map<String, String> etagsByStamp = lruMap();
+
   public ProjectReferentialsAction(DbClient dbClient, PropertiesDao propertiesDao, QProfileFactory qProfileFactory, QProfileLoader qProfileLoader,
-    RuleService ruleService, Languages languages) {
+    RuleService ruleService, RuleIndex ruleIndex, Languages languages) {
     this.dbClient = dbClient;
     this.propertiesDao = propertiesDao;
     this.qProfileFactory = qProfileFactory;
     this.qProfileLoader = qProfileLoader;
     this.ruleService = ruleService;
+    this.ruleIndex = ruleIndex;
     this.languages = languages;
   }
 
   void define(WebService.NewController controller) {
     WebService.NewAction action = controller.createAction("project")
-      .setDescription("Return project referentials")
+      .setDescription("Return project referentials. The ETag of the response is the MD5 hash of its body. The response is empty " +
+        "with the HTTP status 304 when the request header If-None-Match contains the ETag of the current referentials.")
       .setSince("4.5")
       .setInternal(true)
       .setHandler(this);
@@ -113,53 +141,98 @@ public class ProjectReferentialsAction implements RequestHandler {
 
     DbSession session = dbClient.openSession(false);
     try {
-      ProjectReferentials ref = new ProjectReferentials();
-
       String projectOrModuleKey = request.mandatoryParam(PARAM_KEY);
       String profileName = request.param(PARAM_PROFILE);
 
-      String projectKey = null;
-      AuthorizedComponentDto module = dbClient.componentDao().getNullableAuthorizedComponentByKey(projectOrModuleKey, session);
-      // Current project can be null when analysing a new project
-      if (module != null) {
-        ComponentDto project = dbClient.componentDao().getNullableRootProjectByKey(projectOrModuleKey, session);
-        // Can be null if the given project is a provisioned one
-        if (project != null) {
-          if (!project.key().equals(module.key())) {
-            addSettings(ref, module.getKey(), getSettingsFromParents(module.key(), hasScanPerm, session));
-          }
-          projectKey = project.key();
-          addSettingsToChildrenModules(ref, projectOrModuleKey, Maps.<String, String>newHashMap(), hasScanPerm, session);
-        } else {
-          // Add settings of the provisioned project
-          addSettings(ref, projectOrModuleKey, getPropertiesMap(propertiesDao.selectProjectProperties(projectOrModuleKey, session), hasScanPerm));
-          projectKey = projectOrModuleKey;
-        }
+      Inputs inputs = new Inputs(projectOrModuleKey, hasScanPerm);
+      loadModules(inputs, session);
+      loadProfiles(inputs, profileName, session);
+      Date rulesUpdatedAt = ruleIndex.getLastSynchronization();
+
+      // unchanged referentials are neither built nor serialized
+      String stamp = inputs.stamp(rulesUpdatedAt);
+      String ifNoneMatch = request.header("If-None-Match");
+      String etag = etagsByStamp.get(stamp);
+      if (etag != null && etag.equals(ifNoneMatch)) {
+        writeNotModified(response, etag);
+        return;
       }
 
-      addProfiles(ref, projectKey, profileName, session);
-      addActiveRules(ref);
-
-      response.stream().setMediaType(MimeTypes.JSON);
-      IOUtils.write(ref.toJson(), response.stream().output());
+      ProjectReferentials ref = new ProjectReferentials();
+      addSettings(ref, inputs);
+      addProfiles(ref, inputs);
+      addActiveRules(ref, rulesUpdatedAt);
+      byte[] json = ref.toJson().getBytes(Charsets.UTF_8);
+      etag = etag(json);
+      etagsByStamp.put(stamp, etag);
+      if (etag.equals(ifNoneMatch)) {
+        writeNotModified(response, etag);
+      } else {
+        setHeader(response, "ETag", etag);
+        response.stream().setMediaType(MimeTypes.JSON);
+        response.stream().output().write(json);
+      }
     } finally {
       MyBatis.closeQuietly(session);
     }
   }
 
-  private Map<String, String> getSettingsFromParents(String moduleKey, boolean hasScanPerm, DbSession session) {
-    List<ComponentDto> parents = newArrayList();
-    aggregateParentModules(moduleKey, parents, session);
-    Collections.reverse(parents);
+  /**
+   * Loads the module, its parents and sub-modules, and the properties of all these modules with a single request.
+   */
+  private void loadModules(Inputs inputs, DbSession session) {
+    AuthorizedComponentDto module = dbClient.componentDao().getNullableAuthorizedComponentByKey(inputs.projectOrModuleKey, session);
+    // Current project can be null when analysing a new project
+    if (module == null) {
+      return;
+    }
+    ComponentDto project = dbClient.componentDao().getNullableRootProjectByKey(inputs.projectOrModuleKey, session);
+    // Can be null if the given project is a provisioned one
+    if (project == null) {
+      inputs.projectKey = inputs.projectOrModuleKey;
+      inputs.provisionedProperties.addAll(propertiesDao.selectProjectProperties(inputs.projectOrModuleKey, session));
+      return;
+    }
+    inputs.projectKey = project.key();
+    inputs.module = module;
+    if (!project.key().equals(module.key())) {
+      aggregateParentModules(module.key(), inputs.parents, session);
+      Collections.reverse(inputs.parents);
+    }
+    aggregateSubModules(module.key(), inputs.subModulesByModuleKey, session);
+
+    Set<Long> moduleIds = newHashSet();
+    moduleIds.add(module.getId());
+    for (ComponentDto parent : inputs.parents) {
+      moduleIds.add(parent.getId());
+    }
+    for (ComponentDto subModule : inputs.subModulesByModuleKey.values()) {
+      moduleIds.add(subModule.getId());
+    }
+    inputs.propertiesByModuleId.putAll(propertiesDao.selectProjectPropertiesByResourceIds(moduleIds, session));
+  }
 
+  /**
+   * Settings of the module, inherited from its parents, and of its sub-modules
+   */
+  private void addSettings(ProjectReferentials ref, Inputs inputs) {
+    AuthorizedComponentDto module = inputs.module;
+    if (module == null) {
+      if (inputs.projectKey != null) {
+        // Add settings of the provisioned project
+        addSettings(ref, inputs.projectKey, getPropertiesMap(inputs.provisionedProperties, inputs.hasScanPerm));
+      }
+      return;
+    }
     Map<String, String> parentProperties = newHashMap();
-    for (ComponentDto parent : parents) {
-      parentProperties.putAll(getPropertiesMap(propertiesDao.selectProjectProperties(parent.key(), session), hasScanPerm));
+    for (ComponentDto parent : inputs.parents) {
+      parentProperties.putAll(getPropertiesMap(inputs.propertiesByModuleId.get(parent.getId()), inputs.hasScanPerm));
     }
-    return parentProperties;
+    addSettingsToChildrenModules(ref, module.getKey(), module.getId(), parentProperties, inputs.subModulesByModuleKey, inputs.propertiesByModuleId,
+      inputs.hasScanPerm);
   }
 
-  private void aggregateParentModules(String component, List<ComponentDto> parents, DbSession session){
+  private void aggregateParentModules(String component, List<ComponentDto> parents, DbSession session) {
     ComponentDto parent = dbClient.componentDao().getParentModuleByKey(component, session);
     if (parent != null) {
       parents.add(parent);
@@ -167,15 +240,22 @@ public class ProjectReferentialsAction implements RequestHandler {
     }
   }
 
-  private void addSettingsToChildrenModules(ProjectReferentials ref, String projectKey, Map<String, String> parentProperties, boolean hasScanPerm, DbSession session) {
+  private void aggregateSubModules(String moduleKey, Multimap<String, ComponentDto> subModulesByModuleKey, DbSession session) {
+    for (ComponentDto subModule : dbClient.componentDao().findModulesByProject(moduleKey, session)) {
+      subModulesByModuleKey.put(moduleKey, subModule);
+      aggregateSubModules(subModule.key(), subModulesByModuleKey, session);
+    }
+  }
+
+  private void addSettingsToChildrenModules(ProjectReferentials ref, String moduleKey, Long moduleId, Map<String, String> parentProperties,
+    Multimap<String, ComponentDto> subModulesByModuleKey, Multimap<Long, PropertyDto> propertiesByModuleId, boolean hasScanPerm) {
     Map<String, String> currentParentProperties = newHashMap();
     currentParentProperties.putAll(parentProperties);
-    currentParentProperties.putAll(getPropertiesMap(propertiesDao.selectProjectProperties(projectKey, session), hasScanPerm));
-    addSettings(ref, projectKey, currentParentProperties);
+    currentParentProperties.putAll(getPropertiesMap(propertiesByModuleId.get(moduleId), hasScanPerm));
+    addSettings(ref, moduleKey, currentParentProperties);
 
-    for (ComponentDto module : dbClient.componentDao().findModulesByProject(projectKey, session)) {
-      addSettings(ref, module.key(), currentParentProperties);
-      addSettingsToChildrenModules(ref, module.key(), currentParentProperties, hasScanPerm, session);
+    for (ComponentDto subModule : subModulesByModuleKey.get(moduleKey)) {
+      addSettingsToChildrenModules(ref, subModule.key(), subModule.getId(), currentParentProperties, subModulesByModuleKey, propertiesByModuleId, hasScanPerm);
     }
   }
 
@@ -185,7 +265,7 @@ public class ProjectReferentialsAction implements RequestHandler {
     }
   }
 
-  private Map<String, String> getPropertiesMap(List<PropertyDto> propertyDtos, boolean hasScanPerm) {
+  private Map<String, String> getPropertiesMap(Collection<PropertyDto> propertyDtos, boolean hasScanPerm) {
     Map<String, String> properties = newHashMap();
     for (PropertyDto propertyDto : propertyDtos) {
       String key = propertyDto.getKey();
@@ -201,10 +281,14 @@ public class ProjectReferentialsAction implements RequestHandler {
     return !key.contains(".secured") || hasScanPerm;
   }
 
-  private void addProfiles(ProjectReferentials ref, @Nullable String projectKey, @Nullable String profileName, DbSession session) {
+  private void loadProfiles(Inputs inputs, @Nullable String profileName, DbSession session) {
     for (Language language : languages.all()) {
-      String languageKey = language.getKey();
-      QualityProfileDto qualityProfileDto = getProfile(languageKey, projectKey, profileName, session);
+      inputs.profiles.add(getProfile(language.getKey(), inputs.projectKey, profileName, session));
+    }
+  }
+
+  private void addProfiles(ProjectReferentials ref, Inputs inputs) {
+    for (QualityProfileDto qualityProfileDto : inputs.profiles) {
       ref.addQProfile(new org.sonar.batch.protocol.input.QProfile(
         qualityProfileDto.getKey(),
         qualityProfileDto.getName(),
@@ -233,25 +317,70 @@ public class ProjectReferentialsAction implements RequestHandler {
     }
   }
 
-  private void addActiveRules(ProjectReferentials ref) {
+  /**
+   * ETag of the response body, as computed by the batch on its local copy
+   */
+  static String etag(byte[] json) {
+    return "\"" + DigestUtils.md5Hex(json) + "\"";
+  }
+
+  private static void writeNotModified(Response response, String etag) throws IOException {
+    setHeader(response, "ETag", etag);
+    response.stream().setStatus(HttpURLConnection.HTTP_NOT_MODIFIED).output().close();
+  }
+
+  private static void setHeader(Response response, String name, String value) {
+    if (response instanceof ResponseWithHeaders) {
+      ((ResponseWithHeaders) response).setHeader(name, value);
+    }
+  }
+
+  private static long timestamp(@Nullable Date date) {
+    return date != null ? date.getTime() : 0L;
+  }
+
+  private static <V> Map<String, V> lruMap() {
+    return Collections.synchronizedMap(new LinkedHashMap<String, V>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+        return size() > MAX_CACHED_ENTRIES;
+      }
+    });
+  }
+
+  private void addActiveRules(ProjectReferentials ref, @Nullable Date rulesUpdatedAt) {
     for (org.sonar.batch.protocol.input.QProfile qProfile : ref.qProfiles()) {
-      for (ActiveRule activeRule : qProfileLoader.findActiveRulesByProfile(qProfile.key())) {
-        Rule rule = ruleService.getNonNullByKey(activeRule.key().ruleKey());
-        org.sonar.batch.protocol.input.ActiveRule inputActiveRule = new org.sonar.batch.protocol.input.ActiveRule(
-          activeRule.key().ruleKey().repository(),
-          activeRule.key().ruleKey().rule(),
-          rule.name(),
-          activeRule.severity(),
-          rule.internalKey(),
-          qProfile.language());
-        for (Map.Entry<String, String> entry : activeRule.params().entrySet()) {
-          inputActiveRule.addParam(entry.getKey(), entry.getValue());
-        }
-        ref.addActiveRule(inputActiveRule);
+      String stamp = qProfile.key() + "|" + timestamp(qProfile.rulesUpdatedAt()) + "|" + timestamp(rulesUpdatedAt);
+      List<org.sonar.batch.protocol.input.ActiveRule> activeRules = activeRulesByStamp.get(stamp);
+      if (activeRules == null) {
+        activeRules = loadActiveRules(qProfile);
+        activeRulesByStamp.put(stamp, activeRules);
+      }
+      for (org.sonar.batch.protocol.input.ActiveRule activeRule : activeRules) {
+        ref.addActiveRule(activeRule);
       }
     }
   }
 
+  private List<org.sonar.batch.protocol.input.ActiveRule> loadActiveRules(org.sonar.batch.protocol.input.QProfile qProfile) {
+    List<org.sonar.batch.protocol.input.ActiveRule> activeRules = newArrayList();
+    for (ActiveRule activeRule : qProfileLoader.findActiveRulesByProfile(qProfile.key())) {
+      Rule rule = ruleService.getNonNullByKey(activeRule.key().ruleKey());
+      org.sonar.batch.protocol.input.ActiveRule inputActiveRule = new org.sonar.batch.protocol.input.ActiveRule(
+        activeRule.key().ruleKey().repository(),
+        activeRule.key().ruleKey().rule(),
+        rule.name(),
+        activeRule.severity(),
+        rule.internalKey(),
+        qProfile.language());
+      for (Map.Entry<String, String> entry : activeRule.params().entrySet()) {
+        inputActiveRule.addParam(entry.getKey(), entry.getValue());
+      }
+      activeRules.add(inputActiveRule);
+    }
+    return activeRules;
+  }
+
   private void checkPermission(boolean preview){
     UserSession userSession = UserSession.get();
     boolean hasScanPerm = userSession.hasGlobalPermission(GlobalPermissions.SCAN_EXECUTION);
@@ -265,4 +394,77 @@ public class ProjectReferentialsAction implements RequestHandler {
     }
   }
 
+  /**
+   * Data loaded from database which the referentials are built from. Its stamp identifies the version of
+   * the referentials without building nor serializing them.
+   */
+  private static class Inputs {
+    private final String projectOrModuleKey;
+    private final boolean hasScanPerm;
+    @Nullable
+    private String projectKey;
+    @Nullable
+    private AuthorizedComponentDto module;
+    private final List<ComponentDto> parents = newArrayList();
+    private final Multimap<String, ComponentDto> subModulesByModuleKey = ArrayListMultimap.create();
+    private final Multimap<Long, PropertyDto> propertiesByModuleId = ArrayListMultimap.create();
+    private final List<PropertyDto> provisionedProperties = newArrayList();
+    private final List<QualityProfileDto> profiles = newArrayList();
+
+    private Inputs(String projectOrModuleKey, boolean hasScanPerm) {
+      this.projectOrModuleKey = projectOrModuleKey;
+      this.hasScanPerm = hasScanPerm;
+    }
+
+    /**
+     * MD5 of all the inputs. Values are prefixed by their length, so that different inputs can't
+     * be concatenated to the same text.
+     */
+    String stamp(@Nullable Date rulesUpdatedAt) {
+      StringBuilder sb = new StringBuilder();
+      append(sb, projectOrModuleKey).append(hasScanPerm);
+      append(sb, projectKey);
+      if (module != null) {
+        appendModule(sb, module.getKey(), module.getId());
+      }
+      for (ComponentDto parent : parents) {
+        appendModule(sb, parent.key(), parent.getId());
+      }
+      for (Map.Entry<String, ComponentDto> subModule : subModulesByModuleKey.entries()) {
+        append(sb, subModule.getKey());
+        appendModule(sb, subModule.getValue().key(), subModule.getValue().getId());
+      }
+      for (Map.Entry<Long, PropertyDto> property : propertiesByModuleId.entries()) {
+        appendProperty(sb.append(property.getKey()), property.getValue());
+      }
+      for (PropertyDto property : provisionedProperties) {
+        appendProperty(sb, property);
+      }
+      for (QualityProfileDto profile : profiles) {
+        append(sb, profile.getKey());
+        append(sb, profile.getName());
+        append(sb, profile.getLanguage());
+        append(sb, profile.getRulesUpdatedAt());
+      }
+      sb.append(timestamp(rulesUpdatedAt));
+      return DigestUtils.md5Hex(sb.toString().getBytes(Charsets.UTF_8));
+    }
+
+    private static void appendModule(StringBuilder sb, String key, @Nullable Long id) {
+      append(sb, key).append(id).append('|');
+    }
+
+    private static void appendProperty(StringBuilder sb, PropertyDto property) {
+      append(sb, property.getKey());
+      append(sb, property.getValue());
+    }
+
+    private static StringBuilder append(StringBuilder sb, @Nullable String value) {
+      if (value == null) {
+        return sb.append("-|");
+      }
+      return sb.append(value.length()).append(':').append(value);
+    }
+  }
+
 }
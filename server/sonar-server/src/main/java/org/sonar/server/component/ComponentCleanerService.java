@@ -26,15 +26,18 @@ import org.sonar.core.component.AuthorizedComponentDto;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.purge.PurgeDao;
 import org.sonar.server.db.DbClient;
+import org.sonar.server.measure.MeasureFilterStore;
 
 public class ComponentCleanerService implements ServerComponent {
 
   private final DbClient dbClient;
   private final PurgeDao purgeDao;
+  private final MeasureFilterStore measureFilterStore;
 
-  public ComponentCleanerService(DbClient dbClient, PurgeDao purgeDao) {
+  public ComponentCleanerService(DbClient dbClient, PurgeDao purgeDao, MeasureFilterStore measureFilterStore) {
     this.dbClient = dbClient;
     this.purgeDao = purgeDao;
+    this.measureFilterStore = measureFilterStore;
   }
 
   public void delete(String projectKey) {
@@ -47,6 +50,7 @@ public class ComponentCleanerService implements ServerComponent {
       purgeDao.deleteResourceTree(project.getId());
       deletePermissionIndexes(session, projectKey);
       session.commit();
+      measureFilterStore.remove(project.getId());
     } finally {
       session.close();
     }
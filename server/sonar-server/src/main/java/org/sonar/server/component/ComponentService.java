@@ -30,6 +30,7 @@ import org.sonar.core.resource.ResourceDto;
 import org.sonar.core.resource.ResourceKeyUpdaterDao;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.exceptions.NotFoundException;
+import org.sonar.server.measure.MeasureFilterStore;
 import org.sonar.server.permission.InternalPermissionService;
 import org.sonar.server.user.UserSession;
 
@@ -45,12 +46,15 @@ public class ComponentService implements ServerComponent {
   private final ResourceKeyUpdaterDao resourceKeyUpdaterDao;
   private final InternalPermissionService permissionService;
   private final PreviewCache previewCache;
+  private final MeasureFilterStore measureFilterStore;
 
-  public ComponentService(DbClient dbClient, ResourceKeyUpdaterDao resourceKeyUpdaterDao, InternalPermissionService permissionService, PreviewCache previewCache) {
+  public ComponentService(DbClient dbClient, ResourceKeyUpdaterDao resourceKeyUpdaterDao, InternalPermissionService permissionService, PreviewCache previewCache,
+    MeasureFilterStore measureFilterStore) {
     this.dbClient = dbClient;
     this.resourceKeyUpdaterDao = resourceKeyUpdaterDao;
     this.permissionService = permissionService;
     this.previewCache = previewCache;
+    this.measureFilterStore = measureFilterStore;
   }
 
   public AuthorizedComponentDto getByKey(String key) {
@@ -89,6 +93,7 @@ public class ComponentService implements ServerComponent {
       previewCache.reportResourceModification(newRootProjectKey);
 
       session.commit();
+      measureFilterStore.refresh(newRootProjectKey);
     } finally {
       session.close();
     }
@@ -121,6 +126,7 @@ public class ComponentService implements ServerComponent {
       previewCache.reportResourceModification(newProject.key());
 
       session.commit();
+      measureFilterStore.refresh(newProject.key());
     } finally {
       session.close();
     }
@@ -20,12 +20,12 @@
 
 package org.sonar.server.component.ws;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Multiset;
 import com.google.common.io.Resources;
 import org.apache.commons.lang.StringUtils;
-import org.sonar.api.component.Component;
 import org.sonar.api.i18n.I18n;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Metric;
@@ -35,6 +35,7 @@ import org.sonar.api.server.ws.Response;
 import org.sonar.api.server.ws.WebService;
 import org.sonar.api.utils.DateUtils;
 import org.sonar.api.utils.Durations;
+import org.sonar.api.utils.System2;
 import org.sonar.api.utils.text.JsonWriter;
 import org.sonar.api.web.NavigationSection;
 import org.sonar.api.web.Page;
@@ -64,18 +65,29 @@ import org.sonar.server.user.UserSession;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.collect.Sets.newHashSet;
 
 public class ComponentAppAction implements RequestHandler {
 
   private static final String PARAM_KEY = "key";
   private static final String PARAM_PERIOD = "period";
 
+  /**
+   * Periods, manual rules and extension pages are shared by all the files and are
+   * not expected to change often, so they are kept in memory for a short time.
+   */
+  static final long CACHE_TTL_MS = 30000L;
+  private static final int CACHE_MAX_SIZE = 1000;
+  private static final String MANUAL_RULES_CACHE_KEY = "manual";
+
   private final DbClient dbClient;
 
   private final IssueService issueService;
@@ -84,8 +96,17 @@ public class ComponentAppAction implements RequestHandler {
   private final Periods periods;
   private final Durations durations;
   private final I18n i18n;
+  private final TtlCache<Long, List<Period>> periodsByProjectId;
+  private final TtlCache<String, List<Rule>> manualRules;
+  private final TtlCache<String, List<ViewProxy<Page>>> extensionPages;
 
   public ComponentAppAction(DbClient dbClient, IssueService issueService, Views views, RuleService ruleService, Periods periods, Durations durations, I18n i18n) {
+    this(dbClient, issueService, views, ruleService, periods, durations, i18n, System2.INSTANCE);
+  }
+
+  @VisibleForTesting
+  ComponentAppAction(DbClient dbClient, IssueService issueService, Views views, RuleService ruleService, Periods periods, Durations durations, I18n i18n,
+    System2 system) {
     this.dbClient = dbClient;
     this.issueService = issueService;
     this.views = views;
@@ -93,6 +114,9 @@ public class ComponentAppAction implements RequestHandler {
     this.periods = periods;
     this.durations = durations;
     this.i18n = i18n;
+    this.periodsByProjectId = new TtlCache<Long, List<Period>>(system, CACHE_TTL_MS, CACHE_MAX_SIZE);
+    this.manualRules = new TtlCache<String, List<Rule>>(system, CACHE_TTL_MS, 1);
+    this.extensionPages = new TtlCache<String, List<ViewProxy<Page>>>(system, CACHE_TTL_MS, CACHE_MAX_SIZE);
   }
 
   void define(WebService.NewController controller) {
@@ -156,14 +180,17 @@ public class ComponentAppAction implements RequestHandler {
   }
 
   private void appendComponent(JsonWriter json, ComponentDto component, UserSession userSession, DbSession session) {
-    List<PropertyDto> propertyDtos = dbClient.propertiesDao().selectByQuery(PropertyQuery.builder()
-      .setKey("favourite")
-      .setComponentId(component.getId())
-      .setUserId(userSession.userId())
-      .build(),
-      session
-      );
-    boolean isFavourite = propertyDtos.size() == 1;
+    boolean isFavourite = false;
+    if (userSession.isLoggedIn()) {
+      List<PropertyDto> propertyDtos = dbClient.propertiesDao().selectByQuery(PropertyQuery.builder()
+        .setKey("favourite")
+        .setComponentId(component.getId())
+        .setUserId(userSession.userId())
+        .build(),
+        session
+        );
+      isFavourite = propertyDtos.size() == 1;
+    }
 
     json.prop("key", component.key());
     json.prop("path", component.path());
@@ -171,8 +198,12 @@ public class ComponentAppAction implements RequestHandler {
     json.prop("longName", component.longName());
     json.prop("q", component.qualifier());
 
-    ComponentDto subProject = (ComponentDto) nullableComponentById(component.subProjectId(), session);
-    ComponentDto project = (ComponentDto) componentById(component.projectId(), session);
+    Map<Long, ComponentDto> parentsById = parentsById(component, session);
+    ComponentDto subProject = component.subProjectId() != null ? parentsById.get(component.subProjectId()) : null;
+    ComponentDto project = parentsById.get(component.projectId());
+    if (project == null) {
+      throw new NotFoundException(String.format("Project with id '%s' not found", component.projectId()));
+    }
 
     // Do not display sub project if sub project and project are the same
     boolean displaySubProject = subProject != null && !subProject.getId().equals(project.getId());
@@ -281,11 +312,15 @@ public class ComponentAppAction implements RequestHandler {
   }
 
   private void appendManualRules(JsonWriter json) {
-    Result<Rule> result = ruleService.search(new RuleQuery().setRepositories(newArrayList(RuleDoc.MANUAL_REPOSITORY)), new QueryContext().setMaxLimit());
-    if (result != null && !result.getHits().isEmpty()) {
-      List<Rule> manualRules = result.getHits();
+    List<Rule> rules = manualRules.get(MANUAL_RULES_CACHE_KEY);
+    if (rules == null) {
+      Result<Rule> result = ruleService.search(new RuleQuery().setRepositories(newArrayList(RuleDoc.MANUAL_REPOSITORY)), new QueryContext().setMaxLimit());
+      rules = result != null ? result.getHits() : Collections.<Rule>emptyList();
+      manualRules.put(MANUAL_RULES_CACHE_KEY, rules);
+    }
+    if (!rules.isEmpty()) {
       json.name("manual_rules").beginArray();
-      for (Rule manualRule : manualRules) {
+      for (Rule manualRule : rules) {
         json.beginObject()
           .prop("key", manualRule.key().toString())
           .prop("name", manualRule.name())
@@ -296,8 +331,13 @@ public class ComponentAppAction implements RequestHandler {
   }
 
   private void appendExtensions(JsonWriter json, ComponentDto component, UserSession userSession) {
-    List<ViewProxy<Page>> extensionPages = views.getPages(NavigationSection.RESOURCE_TAB, component.scope(), component.qualifier(), component.language(), null);
-    Map<String, String> extensions = extensions(extensionPages, component, userSession);
+    String cacheKey = component.scope() + "|" + component.qualifier() + "|" + component.language();
+    List<ViewProxy<Page>> pages = extensionPages.get(cacheKey);
+    if (pages == null) {
+      pages = views.getPages(NavigationSection.RESOURCE_TAB, component.scope(), component.qualifier(), component.language(), null);
+      extensionPages.put(cacheKey, pages);
+    }
+    Map<String, String> extensions = extensions(pages, component, userSession);
     if (!extensions.isEmpty()) {
       json.name("extensions").beginArray();
       for (Map.Entry<String, String> entry : extensions.entrySet()) {
@@ -331,6 +371,15 @@ public class ComponentAppAction implements RequestHandler {
   }
 
   private List<Period> periods(Long projectId, DbSession session) {
+    List<Period> periodList = periodsByProjectId.get(projectId);
+    if (periodList == null) {
+      periodList = loadPeriods(projectId, session);
+      periodsByProjectId.put(projectId, periodList);
+    }
+    return periodList;
+  }
+
+  private List<Period> loadPeriods(Long projectId, DbSession session) {
     List<Period> periodList = newArrayList();
     SnapshotDto snapshotDto = dbClient.resourceDao().getLastSnapshotByResourceId(projectId, session);
     if (snapshotDto != null) {
@@ -375,16 +424,21 @@ public class ComponentAppAction implements RequestHandler {
     return null;
   }
 
-  @CheckForNull
-  private Component nullableComponentById(@Nullable Long componentId, DbSession session) {
-    if (componentId != null) {
-      return componentById(componentId, session);
+  /**
+   * Project and sub-project of the component, loaded in a single request
+   */
+  private Map<Long, ComponentDto> parentsById(ComponentDto component, DbSession session) {
+    Map<Long, ComponentDto> parentsById = newHashMap();
+    parentsById.put(component.getId(), component);
+    Set<Long> ids = newHashSet(component.projectId());
+    if (component.subProjectId() != null) {
+      ids.add(component.subProjectId());
     }
-    return null;
-  }
-
-  private Component componentById(Long componentId, DbSession session) {
-    return dbClient.componentDao().getById(componentId, session);
+    ids.remove(component.getId());
+    for (ComponentDto parent : dbClient.componentDao().getByIds(session, ids)) {
+      parentsById.put(parent.getId(), parent);
+    }
+    return parentsById;
   }
 
   @CheckForNull
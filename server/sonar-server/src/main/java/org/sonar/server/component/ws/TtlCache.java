@@ -0,0 +1,80 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.component.ws;
+
+import org.sonar.api.utils.System2;
+
+import javax.annotation.CheckForNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Small thread-safe cache whose entries expire after a fixed delay. Least recently used entries are
+ * evicted when the maximum size is reached.
+ */
+class TtlCache<K, V> {
+
+  private final System2 system;
+  private final long ttlMs;
+  private final Map<K, Entry<V>> entries;
+
+  TtlCache(System2 system, long ttlMs, final int maxSize) {
+    this.system = system;
+    this.ttlMs = ttlMs;
+    this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  @CheckForNull
+  synchronized V get(K key) {
+    Entry<V> entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (system.now() >= entry.expiresAt) {
+      entries.remove(key);
+      return null;
+    }
+    return entry.value;
+  }
+
+  synchronized void put(K key, V value) {
+    entries.put(key, new Entry<V>(value, system.now() + ttlMs));
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  private static class Entry<V> {
+    private final V value;
+    private final long expiresAt;
+
+    Entry(V value, long expiresAt) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -23,26 +23,38 @@ package org.sonar.server.computation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.core.computation.db.AnalysisReportDto;
+import org.sonar.core.profiling.MetricsRegistry;
 
 public class AnalysisReportTask implements Runnable {
   private static final Logger LOG = LoggerFactory.getLogger(AnalysisReportTask.class);
 
+  static final String METRIC = "computation";
+
   private final AnalysisReportQueue queue;
   private final ComputationService service;
+  private final MetricsRegistry metrics;
 
   public AnalysisReportTask(AnalysisReportQueue queue, ComputationService service) {
+    this(queue, service, MetricsRegistry.get());
+  }
+
+  AnalysisReportTask(AnalysisReportQueue queue, ComputationService service, MetricsRegistry metrics) {
     this.queue = queue;
     this.service = service;
+    this.metrics = metrics;
   }
 
   @Override
   public void run() {
     AnalysisReportDto report = queue.bookNextAvailable();
     if (report != null) {
+      long timer = metrics.startTimer();
       try {
         service.analyzeReport(report);
         queue.remove(report);
+        metrics.stopTimer(METRIC, timer);
       } catch (Exception exception) {
+        metrics.increment(METRIC + ".failures");
         LOG.error(String.format("Analysis of report %s failed", report), exception);
       }
     }
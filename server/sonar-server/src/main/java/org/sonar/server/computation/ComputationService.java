@@ -31,6 +31,7 @@ import org.sonar.server.db.DbClient;
 import org.sonar.server.issue.index.IssueAuthorizationIndex;
 import org.sonar.server.issue.index.IssueIndex;
 import org.sonar.server.permission.InternalPermissionService;
+import org.sonar.server.measure.MeasureFilterStore;
 import org.sonar.server.search.IndexClient;
 
 import java.util.List;
@@ -44,11 +45,13 @@ public class ComputationService implements ServerComponent {
   private final DbClient dbClient;
   private final IndexClient index;
   private final InternalPermissionService permissionService;
+  private final MeasureFilterStore measureFilterStore;
 
-  public ComputationService(DbClient dbClient, IndexClient index, InternalPermissionService permissionService) {
+  public ComputationService(DbClient dbClient, IndexClient index, InternalPermissionService permissionService, MeasureFilterStore measureFilterStore) {
     this.dbClient = dbClient;
     this.index = index;
     this.permissionService = permissionService;
+    this.measureFilterStore = measureFilterStore;
   }
 
   public void analyzeReport(AnalysisReportDto report) {
@@ -62,6 +65,7 @@ public class ComputationService implements ServerComponent {
     } finally {
       MyBatis.closeQuietly(session);
     }
+    measureFilterStore.refresh(projectKey);
 
     LOG.info(String.format("Analysis of %s successfully finished.", report));
   }
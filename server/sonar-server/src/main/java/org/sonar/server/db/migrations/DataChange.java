@@ -47,6 +47,14 @@ public interface DataChange {
     public MassUpdate prepareMassUpdate() throws SQLException {
       return new MassUpdate(db, readConnection, writeConnection);
     }
+
+    /**
+     * @param name unique name of the migration, used to save its checkpoint
+     * @since 5.0
+     */
+    public PartitionedMassUpdate preparePartitionedMassUpdate(String name) {
+      return new PartitionedMassUpdate(db, name);
+    }
   }
 
   void execute(Context context) throws SQLException;
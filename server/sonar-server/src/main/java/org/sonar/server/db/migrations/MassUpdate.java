@@ -101,7 +101,7 @@ public class MassUpdate {
 
   static class ProgressTask extends TimerTask {
     private static final Logger LOGGER = LoggerFactory.getLogger("DbMigration");
-    private static final long PERIOD_MS = 60000L;
+    static final long PERIOD_MS = 60000L;
     private final AtomicLong counter;
     private String rowName = "rows";
 
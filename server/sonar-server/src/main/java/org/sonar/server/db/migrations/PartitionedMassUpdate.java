@@ -0,0 +1,383 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.db.migrations;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.dbutils.DbUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.core.persistence.Database;
+
+import javax.annotation.CheckForNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Timer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Variant of {@link MassUpdate} for big tables. The rows to be processed are split into chunks of primary keys, which
+ * are processed by a configurable number of threads, each of them having its own connections. Each chunk is committed,
+ * then the checkpoint is saved in the table PROPERTIES, so that an interrupted migration restarts from the first chunk
+ * that was not completed.
+ * <p/>
+ * Requirements :
+ * <ul>
+ *   <li>the SELECT request has exactly two parameters : the lower bound (inclusive) and the upper bound (exclusive)
+ *   of the primary key, for example "select id, data from measure_data where id&gt;=? and id&lt;?"</li>
+ *   <li>the update must be idempotent, as the chunks after the checkpoint can be processed twice when
+ *   the migration is resumed</li>
+ *   <li>the {@link MassUpdate.Handler} must be thread-safe if more than one thread is used</li>
+ * </ul>
+ *
+ * @since 5.0
+ */
+public class PartitionedMassUpdate {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger("DbMigration");
+  static final String CHECKPOINT_PROPERTY_PREFIX = "sonar.dbMigration.checkpoint.";
+  static final int DEFAULT_CHUNK_SIZE = 10000;
+
+  /**
+   * JVM property that overrides the default number of threads
+   */
+  public static final String THREADS_PROPERTY = "sonar.dbMigration.threads";
+
+  private final Database db;
+  private final String checkpointKey;
+  private final AtomicLong counter = new AtomicLong(0L);
+  private final MassUpdate.ProgressTask progressTask = new MassUpdate.ProgressTask(counter);
+
+  private String rangeSql;
+  private String selectSql;
+  private String updateSql;
+  private int chunkSize = DEFAULT_CHUNK_SIZE;
+  private int threads = Math.max(1, Integer.getInteger(THREADS_PROPERTY, 1));
+
+  PartitionedMassUpdate(Database db, String name) {
+    this.db = db;
+    this.checkpointKey = CHECKPOINT_PROPERTY_PREFIX + name;
+  }
+
+  /**
+   * Request returning the min and max values of the primary key, for example "select min(id), max(id) from measure_data"
+   */
+  public PartitionedMassUpdate range(String sql) {
+    this.rangeSql = sql;
+    return this;
+  }
+
+  public PartitionedMassUpdate select(String sql) {
+    this.selectSql = sql;
+    return this;
+  }
+
+  public PartitionedMassUpdate update(String sql) {
+    this.updateSql = sql;
+    return this;
+  }
+
+  /**
+   * Number of primary key values per chunk. Default value is {@link #DEFAULT_CHUNK_SIZE}.
+   */
+  public PartitionedMassUpdate chunkSize(int i) {
+    if (i <= 0) {
+      throw new IllegalArgumentException("Chunk size must be strictly positive: " + i);
+    }
+    this.chunkSize = i;
+    return this;
+  }
+
+  /**
+   * Number of threads, each of them using a read and a write connection. Default value is 1, or the value of
+   * the JVM property {@link #THREADS_PROPERTY}.
+   */
+  public PartitionedMassUpdate threads(int i) {
+    if (i <= 0) {
+      throw new IllegalArgumentException("Number of threads must be strictly positive: " + i);
+    }
+    this.threads = i;
+    return this;
+  }
+
+  public PartitionedMassUpdate rowPluralName(String s) {
+    this.progressTask.setRowPluralName(s);
+    return this;
+  }
+
+  public void execute(MassUpdate.Handler handler) throws SQLException {
+    if (rangeSql == null || selectSql == null || updateSql == null) {
+      throw new IllegalStateException("RANGE, SELECT or UPDATE requests are not defined");
+    }
+
+    Connection connection = openConnection();
+    try {
+      Long[] range = selectRange(connection);
+      if (range != null) {
+        Long checkpoint = loadCheckpoint(connection);
+        long from = checkpoint != null ? Math.max(range[0], checkpoint) : range[0];
+        if (checkpoint != null) {
+          LOGGER.info(String.format("Resume migration from checkpoint %d", checkpoint));
+        }
+        Chunks chunks = new Chunks(from, range[1] + 1, chunkSize, connection);
+        process(chunks, handler);
+      }
+      deleteCheckpoint(connection);
+      connection.commit();
+
+      // log the total number of process rows
+      progressTask.log();
+    } finally {
+      DbUtils.closeQuietly(connection);
+    }
+  }
+
+  private void process(Chunks chunks, MassUpdate.Handler handler) throws SQLException {
+    Timer timer = new Timer("Db Migration Progress");
+    timer.schedule(progressTask, MassUpdate.ProgressTask.PERIOD_MS, MassUpdate.ProgressTask.PERIOD_MS);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Void>> futures = Lists.newArrayList();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(new Worker(chunks, handler)));
+      }
+      for (Future<Void> future : futures) {
+        waitFor(future);
+      }
+    } finally {
+      executor.shutdownNow();
+      timer.cancel();
+      timer.purge();
+    }
+  }
+
+  private void waitFor(Future<Void> future) throws SQLException {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Migration has been interrupted", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof SQLException) {
+        throw (SQLException) cause;
+      }
+      throw new IllegalStateException("Fail to execute migration", cause);
+    }
+  }
+
+  @CheckForNull
+  private Long[] selectRange(Connection connection) throws SQLException {
+    PreparedStatement stmt = connection.prepareStatement(rangeSql);
+    ResultSet rs = null;
+    try {
+      rs = stmt.executeQuery();
+      if (rs.next()) {
+        Select.Row row = new Select.Row(rs);
+        Long min = row.getLong(1);
+        Long max = row.getLong(2);
+        if (min != null && max != null) {
+          return new Long[] {min, max};
+        }
+      }
+      return null;
+    } finally {
+      DbUtils.closeQuietly(rs);
+      DbUtils.closeQuietly(stmt);
+    }
+  }
+
+  @CheckForNull
+  private Long loadCheckpoint(Connection connection) throws SQLException {
+    PreparedStatement stmt = connection.prepareStatement("select text_value from properties where prop_key=? and resource_id is null and user_id is null");
+    ResultSet rs = null;
+    try {
+      stmt.setString(1, checkpointKey);
+      rs = stmt.executeQuery();
+      if (rs.next()) {
+        String value = rs.getString(1);
+        return value != null ? Long.valueOf(value) : null;
+      }
+      return null;
+    } finally {
+      DbUtils.closeQuietly(rs);
+      DbUtils.closeQuietly(stmt);
+    }
+  }
+
+  private void saveCheckpoint(Connection connection, long checkpoint) throws SQLException {
+    deleteCheckpoint(connection);
+    PreparedStatement stmt = connection.prepareStatement("insert into properties (prop_key, text_value) values (?, ?)");
+    try {
+      stmt.setString(1, checkpointKey);
+      stmt.setString(2, String.valueOf(checkpoint));
+      stmt.executeUpdate();
+    } finally {
+      DbUtils.closeQuietly(stmt);
+    }
+    connection.commit();
+  }
+
+  private void deleteCheckpoint(Connection connection) throws SQLException {
+    PreparedStatement stmt = connection.prepareStatement("delete from properties where prop_key=? and resource_id is null and user_id is null");
+    try {
+      stmt.setString(1, checkpointKey);
+      stmt.executeUpdate();
+    } finally {
+      DbUtils.closeQuietly(stmt);
+    }
+  }
+
+  private Connection openConnection() throws SQLException {
+    Connection connection = db.getDataSource().getConnection();
+    connection.setAutoCommit(false);
+    return connection;
+  }
+
+  /**
+   * Distributes the chunks to workers and saves the checkpoint, which is the start of the first chunk
+   * that is not completed yet.
+   */
+  private class Chunks {
+    private final long from;
+    private final long to;
+    private final int size;
+    private final int count;
+    private final Connection checkpointConnection;
+    private final AtomicInteger next = new AtomicInteger(0);
+    private final AtomicBoolean failed = new AtomicBoolean(false);
+    private final BitSet completed = new BitSet();
+    private int firstNotCompleted = 0;
+
+    Chunks(long from, long to, int size, Connection checkpointConnection) {
+      this.from = from;
+      this.to = to;
+      this.size = size;
+      this.count = to > from ? (int) ((to - from + size - 1) / size) : 0;
+      this.checkpointConnection = checkpointConnection;
+    }
+
+    /**
+     * @return index of the next chunk to process, or -1 if all chunks are distributed or if a worker failed
+     */
+    int next() {
+      if (failed.get()) {
+        return -1;
+      }
+      int index = next.getAndIncrement();
+      return index < count ? index : -1;
+    }
+
+    long start(int index) {
+      return from + (long) index * size;
+    }
+
+    long end(int index) {
+      return Math.min(start(index) + size, to);
+    }
+
+    synchronized void complete(int index) throws SQLException {
+      completed.set(index);
+      int first = completed.nextClearBit(firstNotCompleted);
+      if (first > firstNotCompleted) {
+        firstNotCompleted = first;
+        saveCheckpoint(checkpointConnection, start(first));
+      }
+    }
+
+    void fail() {
+      failed.set(true);
+    }
+  }
+
+  private class Worker implements Callable<Void> {
+    private final Chunks chunks;
+    private final MassUpdate.Handler handler;
+
+    Worker(Chunks chunks, MassUpdate.Handler handler) {
+      this.chunks = chunks;
+      this.handler = handler;
+    }
+
+    @Override
+    public Void call() throws SQLException {
+      Connection readConnection = null, writeConnection = null;
+      try {
+        readConnection = openConnection();
+        if (readConnection.getMetaData().supportsTransactionIsolationLevel(Connection.TRANSACTION_READ_UNCOMMITTED)) {
+          readConnection.setTransactionIsolation(Connection.TRANSACTION_READ_UNCOMMITTED);
+        }
+        writeConnection = openConnection();
+        final UpsertImpl update = UpsertImpl.create(writeConnection, updateSql);
+        try {
+          int index = chunks.next();
+          while (index >= 0) {
+            process(readConnection, update, index);
+            index = chunks.next();
+          }
+        } finally {
+          update.close();
+        }
+        return null;
+
+      } catch (SQLException e) {
+        chunks.fail();
+        throw e;
+      } catch (RuntimeException e) {
+        chunks.fail();
+        throw e;
+      } finally {
+        DbUtils.closeQuietly(readConnection);
+        DbUtils.closeQuietly(writeConnection);
+      }
+    }
+
+    private void process(Connection readConnection, final UpsertImpl update, int index) throws SQLException {
+      SelectImpl.create(db, readConnection, selectSql)
+        .setLong(1, chunks.start(index))
+        .setLong(2, chunks.end(index))
+        .scroll(new Select.RowHandler() {
+          @Override
+          public void handle(Select.Row row) throws SQLException {
+            if (handler.handle(row, update)) {
+              update.addBatch();
+            }
+            counter.getAndIncrement();
+          }
+        });
+      if (update.getBatchCount() > 0L) {
+        update.execute();
+      }
+      update.commit();
+      chunks.complete(index);
+    }
+  }
+}
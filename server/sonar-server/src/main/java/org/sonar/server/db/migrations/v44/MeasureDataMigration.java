@@ -23,6 +23,7 @@ package org.sonar.server.db.migrations.v44;
 import org.sonar.core.persistence.Database;
 import org.sonar.server.db.migrations.BaseDataChange;
 import org.sonar.server.db.migrations.MassUpdate;
+import org.sonar.server.db.migrations.PartitionedMassUpdate;
 import org.sonar.server.db.migrations.Select;
 import org.sonar.server.db.migrations.SqlStatement;
 
@@ -43,10 +44,12 @@ public class MeasureDataMigration extends BaseDataChange {
 
   @Override
   public void execute(Context context) throws SQLException {
-    MassUpdate massUpdate = context.prepareMassUpdate();
+    PartitionedMassUpdate massUpdate = context.preparePartitionedMassUpdate("v44.MeasureDataMigration");
     massUpdate.rowPluralName("measures");
+    massUpdate.range("select min(md.id), max(md.id) from measure_data md");
     massUpdate.select("select md.id, md.measure_id FROM measure_data md " +
-      "inner join project_measures m on m.id=md.measure_id and m.measure_data is null");
+      "inner join project_measures m on m.id=md.measure_id and m.measure_data is null " +
+      "where md.id>=? and md.id<?");
     massUpdate.update("update project_measures SET measure_data = (SELECT md.data FROM measure_data md WHERE md.id = ?) WHERE id=?");
     massUpdate.execute(new MassUpdate.Handler() {
       @Override
@@ -0,0 +1,179 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.design;
+
+import com.google.common.collect.Maps;
+import org.sonar.api.ServerComponent;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.utils.text.JsonWriter;
+import org.sonar.core.component.SnapshotDto;
+import org.sonar.core.dependency.DependencyDto;
+import org.sonar.core.dependency.DependencyMapper;
+import org.sonar.core.measure.db.MeasureDto;
+import org.sonar.core.persistence.DbSession;
+import org.sonar.core.persistence.MyBatis;
+import org.sonar.core.resource.ResourceDto;
+import org.sonar.graph.DirectedGraph;
+import org.sonar.graph.Dsm;
+import org.sonar.graph.DsmCell;
+import org.sonar.graph.DsmTopologicalSorter;
+import org.sonar.graph.Edge;
+import org.sonar.graph.IncrementalCyclesAndFESSolver;
+import org.sonar.graph.MinimumFeedbackEdgeSetSolver;
+import org.sonar.server.db.DbClient;
+
+import javax.annotation.CheckForNull;
+
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dependency Structure Matrix of a component, in the JSON format of the measure {@link CoreMetrics#DEPENDENCY_MATRIX}.
+ * When the measure has not been stored by the analysis (see {@link org.sonar.api.CoreProperties#DESIGN_LAZY_DSM_KEY}),
+ * the matrix is computed from the dependencies between the children of the component. Snapshots never change, so
+ * the matrices of the last requested snapshots are kept in memory.
+ *
+ * @since 5.0
+ */
+public class DsmService implements ServerComponent {
+
+  static final int MAX_CACHED_DSMS = 100;
+
+  private final DbClient dbClient;
+  private final Map<Long, String> dsmBySnapshotId = Collections.synchronizedMap(new LinkedHashMap<Long, String>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+      return size() > MAX_CACHED_DSMS;
+    }
+  });
+
+  public DsmService(DbClient dbClient) {
+    this.dbClient = dbClient;
+  }
+
+  @CheckForNull
+  public String getDsm(String componentKey) {
+    DbSession session = dbClient.openSession(false);
+    try {
+      MeasureDto measure = dbClient.measureDao().findByComponentKeyAndMetricKey(componentKey, CoreMetrics.DEPENDENCY_MATRIX_KEY, session);
+      if (measure != null && measure.getData() != null) {
+        return measure.getData();
+      }
+      SnapshotDto snapshot = dbClient.resourceDao().getLastSnapshot(componentKey, session);
+      if (snapshot == null) {
+        return null;
+      }
+      String dsm = dsmBySnapshotId.get(snapshot.getId());
+      if (dsm == null) {
+        dsm = computeDsm(snapshot.getId(), session);
+        if (dsm != null) {
+          dsmBySnapshotId.put(snapshot.getId(), dsm);
+        }
+      }
+      return dsm;
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  @CheckForNull
+  private static String computeDsm(long snapshotId, DbSession session) {
+    DependencyMapper mapper = session.getMapper(DependencyMapper.class);
+    List<ResourceDto> children = mapper.selectChildrenComponents(snapshotId);
+    if (children.isEmpty()) {
+      return null;
+    }
+    Map<Long, ResourceDto> childrenById = Maps.newLinkedHashMap();
+    DirectedGraph<Long, DependencyEdge> graph = new DirectedGraph<Long, DependencyEdge>();
+    for (ResourceDto child : children) {
+      childrenById.put(child.getId(), child);
+      graph.addVertex(child.getId());
+    }
+    for (DependencyDto dependency : mapper.selectBetweenChildren(snapshotId)) {
+      if (!graph.hasEdge(dependency.getFromResourceId(), dependency.getToResourceId())) {
+        graph.addEdge(new DependencyEdge(dependency));
+      }
+    }
+
+    // same steps as the analysis of directories and modules
+    IncrementalCyclesAndFESSolver<Long> cycleDetector = new IncrementalCyclesAndFESSolver<Long>(graph, childrenById.keySet());
+    Set<Edge> feedbackEdges = new MinimumFeedbackEdgeSetSolver(cycleDetector.getCycles()).getEdges();
+    Dsm<Long> dsm = new Dsm<Long>(graph, childrenById.keySet(), feedbackEdges);
+    DsmTopologicalSorter.sort(dsm);
+    return toJson(dsm, childrenById);
+  }
+
+  private static String toJson(Dsm<Long> dsm, Map<Long, ResourceDto> componentsById) {
+    StringWriter output = new StringWriter();
+    JsonWriter json = JsonWriter.of(output).beginArray();
+    for (int y = 0; y < dsm.getDimension(); y++) {
+      ResourceDto component = componentsById.get(dsm.getVertex(y));
+      json.beginObject()
+        .prop("i", component.getId())
+        .prop("n", component.getName())
+        .prop("q", component.getQualifier())
+        .name("v").beginArray();
+      for (int x = 0; x < dsm.getDimension(); x++) {
+        DsmCell cell = dsm.getCell(x, y);
+        json.beginObject();
+        if (cell.getEdge() != null && cell.getWeight() > 0) {
+          json.prop("i", ((DependencyEdge) cell.getEdge()).id).prop("w", cell.getWeight());
+        }
+        json.endObject();
+      }
+      json.endArray().endObject();
+    }
+    json.endArray().close();
+    return output.toString();
+  }
+
+  private static class DependencyEdge implements Edge<Long> {
+    private final long id;
+    private final Long from;
+    private final Long to;
+    private final int weight;
+
+    DependencyEdge(DependencyDto dto) {
+      this.id = dto.getId();
+      this.from = dto.getFromResourceId();
+      this.to = dto.getToResourceId();
+      this.weight = dto.getWeight() != null ? dto.getWeight() : 1;
+    }
+
+    @Override
+    public int getWeight() {
+      return weight;
+    }
+
+    @Override
+    public Long getFrom() {
+      return from;
+    }
+
+    @Override
+    public Long getTo() {
+      return to;
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.design.ws;
+
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.RequestHandler;
+import org.sonar.api.server.ws.Response;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.api.web.UserRole;
+import org.sonar.server.design.DsmService;
+import org.sonar.server.exceptions.NotFoundException;
+import org.sonar.server.plugins.MimeTypes;
+import org.sonar.server.user.UserSession;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+public class DsmAction implements RequestHandler {
+
+  private final DsmService dsmService;
+
+  public DsmAction(DsmService dsmService) {
+    this.dsmService = dsmService;
+  }
+
+  void define(WebService.NewController controller) {
+    WebService.NewAction action = controller.createAction("dsm")
+      .setDescription("Get the Dependency Structure Matrix of a directory or a module. Require Browse permission on the project")
+      .setSince("5.0")
+      .setInternal(true)
+      .setHandler(this);
+
+    action
+      .createParam("key")
+      .setRequired(true)
+      .setDescription("Component key")
+      .setExampleValue("org.codehaus.sonar:sonar-plugin-api:src/main/java/org/sonar/api/server/ws");
+  }
+
+  @Override
+  public void handle(Request request, Response response) throws IOException {
+    String componentKey = request.mandatoryParam("key");
+    UserSession.get().checkComponentPermission(UserRole.USER, componentKey);
+
+    String dsm = dsmService.getDsm(componentKey);
+    if (dsm == null) {
+      throw new NotFoundException(String.format("No dependency matrix for component '%s'", componentKey));
+    }
+    response.stream().setMediaType(MimeTypes.JSON);
+    Writer writer = new OutputStreamWriter(response.stream().output(), "UTF-8");
+    try {
+      writer.write(dsm);
+    } finally {
+      writer.close();
+    }
+  }
+}
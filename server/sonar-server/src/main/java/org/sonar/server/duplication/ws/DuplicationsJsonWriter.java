@@ -29,10 +29,14 @@ import org.sonar.server.component.db.ComponentDao;
 
 import javax.annotation.Nullable;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.collect.Maps.newLinkedHashMap;
+import static com.google.common.collect.Sets.newHashSet;
 
 public class DuplicationsJsonWriter implements ServerComponent {
 
@@ -45,26 +49,29 @@ public class DuplicationsJsonWriter implements ServerComponent {
   @VisibleForTesting
   void write(List<DuplicationsParser.Block> blocks, JsonWriter json, DbSession session) {
     Map<String, String> refByComponentKey = newHashMap();
+    Map<String, ComponentDto> filesByRef = newLinkedHashMap();
     json.name("duplications").beginArray();
-    writeDuplications(blocks, refByComponentKey, json);
+    writeDuplications(blocks, refByComponentKey, filesByRef, json);
     json.endArray();
 
     json.name("files").beginObject();
-    writeFiles(refByComponentKey, json, session);
+    writeFiles(filesByRef, json, session);
     json.endObject();
   }
 
-  private void writeDuplications(List<DuplicationsParser.Block> blocks, Map<String, String> refByComponentKey, JsonWriter json) {
+  private void writeDuplications(List<DuplicationsParser.Block> blocks, Map<String, String> refByComponentKey, Map<String, ComponentDto> filesByRef,
+    JsonWriter json) {
     for (DuplicationsParser.Block block : blocks) {
       json.beginObject().name("blocks").beginArray();
       for (DuplicationsParser.Duplication duplication : block.duplications()) {
-        writeDuplication(refByComponentKey, duplication, json);
+        writeDuplication(refByComponentKey, filesByRef, duplication, json);
       }
       json.endArray().endObject();
     }
   }
 
-  private void writeDuplication(Map<String, String> refByComponentKey, DuplicationsParser.Duplication duplication, JsonWriter json) {
+  private void writeDuplication(Map<String, String> refByComponentKey, Map<String, ComponentDto> filesByRef, DuplicationsParser.Duplication duplication,
+    JsonWriter json) {
     String ref = null;
     ComponentDto componentDto = duplication.file();
     if (componentDto != null) {
@@ -73,6 +80,7 @@ public class DuplicationsJsonWriter implements ServerComponent {
       if (ref == null) {
         ref = Integer.toString(refByComponentKey.size() + 1);
         refByComponentKey.put(componentKey, ref);
+        filesByRef.put(ref, componentDto);
       }
     }
 
@@ -83,24 +91,37 @@ public class DuplicationsJsonWriter implements ServerComponent {
     json.endObject();
   }
 
-  private void writeFiles(Map<String, String> refByComponentKey, JsonWriter json, DbSession session) {
-    Map<Long, ComponentDto> projectsById = newHashMap();
-    Map<Long, ComponentDto> subProjectsById = newHashMap();
-    for (Map.Entry<String, String> entry : refByComponentKey.entrySet()) {
-      String componentKey = entry.getKey();
-      String ref = entry.getValue();
-      ComponentDto file = componentDao.getNullableByKey(session, componentKey);
-      if (file != null) {
-        json.name(ref).beginObject();
-
-        addFile(json, file);
-        ComponentDto project = getProject(file.projectId(), projectsById, session);
-        ComponentDto subProject = getProject(file.subProjectId(), subProjectsById, session);
-        addProject(json, project, subProject);
-
-        json.endObject();
+  private void writeFiles(Map<String, ComponentDto> filesByRef, JsonWriter json, DbSession session) {
+    Map<Long, ComponentDto> projectsById = projectsById(filesByRef.values(), session);
+    for (Map.Entry<String, ComponentDto> entry : filesByRef.entrySet()) {
+      ComponentDto file = entry.getValue();
+      json.name(entry.getKey()).beginObject();
+
+      addFile(json, file);
+      ComponentDto project = projectsById.get(file.projectId());
+      ComponentDto subProject = projectsById.get(file.subProjectId());
+      addProject(json, project, subProject);
+
+      json.endObject();
+    }
+  }
+
+  /**
+   * Projects and sub-projects of the files, loaded in a single request
+   */
+  private Map<Long, ComponentDto> projectsById(Collection<ComponentDto> files, DbSession session) {
+    Set<Long> ids = newHashSet();
+    for (ComponentDto file : files) {
+      ids.add(file.projectId());
+      if (file.subProjectId() != null) {
+        ids.add(file.subProjectId());
       }
     }
+    Map<Long, ComponentDto> projectsById = newHashMap();
+    for (ComponentDto project : componentDao.getByIds(session, ids)) {
+      projectsById.put(project.getId(), project);
+    }
+    return projectsById;
   }
 
   private void addFile(JsonWriter json, ComponentDto file) {
@@ -122,15 +143,4 @@ public class DuplicationsJsonWriter implements ServerComponent {
     }
   }
 
-  private ComponentDto getProject(@Nullable Long projectId, Map<Long, ComponentDto> projectsById, DbSession session) {
-    ComponentDto project = projectsById.get(projectId);
-    if (project == null && projectId != null) {
-      project = componentDao.getNullableById(projectId, session);
-      if (project != null) {
-        projectsById.put(project.getId(), project);
-      }
-    }
-    return project;
-  }
-
 }
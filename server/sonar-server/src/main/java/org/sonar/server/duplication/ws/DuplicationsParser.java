@@ -40,12 +40,19 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.collect.Sets.newHashSet;
 
 public class DuplicationsParser implements ServerComponent {
 
+  /**
+   * Factories are thread-safe once configured, so a single instance is shared by all the requests
+   */
+  private static final SMInputFactory INPUT_FACTORY = initStax();
+
   private final ComponentDao componentDao;
 
   public DuplicationsParser(ComponentDao componentDao) {
@@ -53,43 +60,67 @@ public class DuplicationsParser implements ServerComponent {
   }
 
   public List<Block> parse(ComponentDto component, @Nullable String duplicationsData, DbSession session) {
-    Map<String, ComponentDto> componentsByKey = newHashMap();
     List<Block> blocks = newArrayList();
     if (duplicationsData != null) {
-      try {
-        SMInputFactory inputFactory = initStax();
-        SMHierarchicCursor root = inputFactory.rootElementCursor(new StringReader(duplicationsData));
-        root.advance(); // <duplications>
-        SMInputCursor cursor = root.childElementCursor("g");
-        while (cursor.getNext() != null) {
-          List<Duplication> duplications = newArrayList();
-          SMInputCursor bCursor = cursor.childElementCursor("b");
-          while (bCursor.getNext() != null) {
-            String from = bCursor.getAttrValue("s");
-            String size = bCursor.getAttrValue("l");
-            String componentKey = bCursor.getAttrValue("r");
-            if (from != null && size != null && componentKey != null) {
-              duplications.add(createDuplication(componentsByKey, from, size, componentKey, session));
-            }
-          }
-          Collections.sort(duplications, new DuplicationComparator(component));
-          blocks.add(new Block(duplications));
+      List<List<Part>> groups = parseGroups(duplicationsData);
+      Map<String, ComponentDto> componentsByKey = componentsByKey(groups, session);
+      for (List<Part> group : groups) {
+        List<Duplication> duplications = newArrayList();
+        for (Part part : group) {
+          duplications.add(new Duplication(componentsByKey.get(part.componentKey()), part.from(), part.size()));
         }
-        Collections.sort(blocks, new BlockComparator());
-      } catch (XMLStreamException e) {
-        throw new IllegalStateException("XML is not valid", e);
+        Collections.sort(duplications, new DuplicationComparator(component));
+        blocks.add(new Block(duplications));
       }
+      Collections.sort(blocks, new BlockComparator());
     }
     return blocks;
   }
 
-  private Duplication createDuplication(Map<String, ComponentDto> componentsByKey, String from, String size, String componentKey, DbSession session) {
-    ComponentDto component = componentsByKey.get(componentKey);
-    if (component == null) {
-      component = componentDao.getNullableByKey(session, componentKey);
-      componentsByKey.put(componentKey, component);
+  /**
+   * @return for each group, the parts of its blocks
+   */
+  private static List<List<Part>> parseGroups(String duplicationsData) {
+    List<List<Part>> groups = newArrayList();
+    try {
+      SMHierarchicCursor root = INPUT_FACTORY.rootElementCursor(new StringReader(duplicationsData));
+      root.advance(); // <duplications>
+      SMInputCursor cursor = root.childElementCursor("g");
+      while (cursor.getNext() != null) {
+        List<Part> group = newArrayList();
+        SMInputCursor bCursor = cursor.childElementCursor("b");
+        while (bCursor.getNext() != null) {
+          String from = bCursor.getAttrValue("s");
+          String size = bCursor.getAttrValue("l");
+          String componentKey = bCursor.getAttrValue("r");
+          if (from != null && size != null && componentKey != null) {
+            group.add(new Part(componentKey, Integer.valueOf(from), Integer.valueOf(size)));
+          }
+        }
+        groups.add(group);
+      }
+      root.getStreamReader().closeCompletely();
+    } catch (XMLStreamException e) {
+      throw new IllegalStateException("XML is not valid", e);
     }
-    return new Duplication(component, Integer.valueOf(from), Integer.valueOf(size));
+    return groups;
+  }
+
+  /**
+   * Components referenced by the duplications, loaded in a single request
+   */
+  private Map<String, ComponentDto> componentsByKey(List<List<Part>> groups, DbSession session) {
+    Set<String> keys = newHashSet();
+    for (List<Part> group : groups) {
+      for (Part part : group) {
+        keys.add(part.componentKey());
+      }
+    }
+    Map<String, ComponentDto> componentsByKey = newHashMap();
+    for (ComponentDto dto : componentDao.getByKeys(session, keys)) {
+      componentsByKey.put(dto.key(), dto);
+    }
+    return componentsByKey;
   }
 
   private static SMInputFactory initStax() {
@@ -188,6 +219,32 @@ public class DuplicationsParser implements ServerComponent {
     }
   }
 
+  /**
+   * Block of a duplication group as stored in the measure, before its component is loaded
+   */
+  private static class Part {
+    private final String componentKey;
+    private final Integer from, size;
+
+    Part(String componentKey, Integer from, Integer size) {
+      this.componentKey = componentKey;
+      this.from = from;
+      this.size = size;
+    }
+
+    String componentKey() {
+      return componentKey;
+    }
+
+    Integer from() {
+      return from;
+    }
+
+    Integer size() {
+      return size;
+    }
+  }
+
   public static class Block {
     List<Duplication> duplications;
 
@@ -20,18 +20,45 @@
 
 package org.sonar.server.issue.index;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Sets;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.FilterBuilders;
+import org.elasticsearch.index.query.OrFilterBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
 import org.sonar.core.issue.db.IssueAuthorizationDto;
 import org.sonar.server.search.BaseIndex;
 import org.sonar.server.search.IndexDefinition;
 import org.sonar.server.search.IndexField;
 import org.sonar.server.search.SearchClient;
 
+import javax.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class IssueAuthorizationIndex extends BaseIndex<IssueAuthorizationDoc, IssueAuthorizationDto, String> {
 
+  private static final int MAX_CACHED_AUTHORIZATIONS = 10000;
+  private static final int SCROLL_SIZE = 500;
+
+  private final ConcurrentMap<List<Object>, Set<String>> authorizedProjectsCache = new ConcurrentHashMap<List<Object>, Set<String>>();
+  private final AtomicLong cacheGeneration = new AtomicLong();
+
   public IssueAuthorizationIndex(IssueAuthorizationNormalizer normalizer, SearchClient client) {
     super(IndexDefinition.ISSUES_AUTHORIZATION, normalizer, client);
   }
@@ -62,4 +89,89 @@ public class IssueAuthorizationIndex extends BaseIndex<IssueAuthorizationDoc, Is
     Preconditions.checkNotNull(fields, "Cannot construct IssueAuthorization with null response");
     return new IssueAuthorizationDoc(fields);
   }
+
+  /**
+   * Keys of the projects on which the permission is granted to the user or to one of the groups.
+   * Result is cached until the next update of the index.
+   */
+  public Set<String> findAuthorizedProjectKeys(@Nullable String login, Set<String> groups, String permission) {
+    List<Object> cacheKey = cacheKey(login, groups, permission);
+    Set<String> projectKeys = authorizedProjectsCache.get(cacheKey);
+    if (projectKeys == null) {
+      long generation = cacheGeneration.get();
+      projectKeys = loadAuthorizedProjectKeys(login, groups, permission);
+      if (authorizedProjectsCache.size() >= MAX_CACHED_AUTHORIZATIONS) {
+        authorizedProjectsCache.clear();
+      }
+      // do not cache a result that may have been loaded before an update of the index
+      if (generation == cacheGeneration.get()) {
+        authorizedProjectsCache.put(cacheKey, projectKeys);
+      }
+    }
+    return projectKeys;
+  }
+
+  public void clearAuthorizedProjectsCache() {
+    cacheGeneration.incrementAndGet();
+    authorizedProjectsCache.clear();
+  }
+
+  @VisibleForTesting
+  int cachedAuthorizations() {
+    return authorizedProjectsCache.size();
+  }
+
+  /**
+   * Called only for the bulks that write authorization documents. The index is refreshed so that authorizations
+   * are searchable before the cache is rebuilt.
+   */
+  @Override
+  public void onUpdate(boolean refreshed) {
+    if (!refreshed) {
+      refresh();
+    }
+    clearAuthorizedProjectsCache();
+  }
+
+  private Set<String> loadAuthorizedProjectKeys(@Nullable String login, Set<String> groups, String permission) {
+    OrFilterBuilder groupsAndUser = FilterBuilders.orFilter();
+    if (login != null) {
+      groupsAndUser.add(FilterBuilders.termFilter(IssueAuthorizationNormalizer.IssueAuthorizationField.USERS.field(), login));
+    }
+    for (String group : groups) {
+      groupsAndUser.add(FilterBuilders.termFilter(IssueAuthorizationNormalizer.IssueAuthorizationField.GROUPS.field(), group));
+    }
+    SearchRequestBuilder request = getClient().prepareSearch(getIndexName())
+      .setTypes(getIndexType())
+      .setQuery(QueryBuilders.filteredQuery(QueryBuilders.matchAllQuery(),
+        FilterBuilders.boolFilter()
+          .must(FilterBuilders.termFilter(IssueAuthorizationNormalizer.IssueAuthorizationField.PERMISSION.field(), permission), groupsAndUser)))
+      .setSearchType(SearchType.SCAN)
+      .setScroll(TimeValue.timeValueMinutes(1))
+      .setSize(SCROLL_SIZE)
+      .setNoFields();
+    SearchResponse response = getClient().execute(request);
+
+    // document id is the project key
+    Set<String> projectKeys = Sets.newHashSet();
+    while (true) {
+      response = getClient().execute(getClient().prepareSearchScroll(response.getScrollId())
+        .setScroll(TimeValue.timeValueMinutes(1)));
+      SearchHit[] hits = response.getHits().getHits();
+      if (hits.length == 0) {
+        break;
+      }
+      for (SearchHit hit : hits) {
+        projectKeys.add(hit.getId());
+      }
+    }
+    return ImmutableSet.copyOf(projectKeys);
+  }
+
+  /**
+   * Values are not joined in a string, as logins and group names can contain any separator
+   */
+  private static List<Object> cacheKey(@Nullable String login, Set<String> groups, String permission) {
+    return Collections.unmodifiableList(Arrays.<Object>asList(permission, login, ImmutableSortedSet.copyOf(groups)));
+  }
 }
@@ -34,6 +34,7 @@ import org.elasticsearch.search.aggregations.bucket.terms.Terms;
 import org.elasticsearch.search.sort.FieldSortBuilder;
 import org.elasticsearch.search.sort.SortBuilders;
 import org.elasticsearch.search.sort.SortOrder;
+import org.sonar.api.config.Settings;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.web.UserRole;
 import org.sonar.core.issue.db.IssueDto;
@@ -49,10 +50,21 @@ import static com.google.common.collect.Maps.newHashMap;
 
 public class IssueIndex extends BaseIndex<Issue, IssueDto, String> {
 
+  /**
+   * When enabled, issues are filtered on the cached keys of the projects the user is authorized to browse,
+   * instead of joining with the authorization documents on each search.
+   */
+  public static final String CACHED_AUTHORIZATION_PROPERTY = "sonar.search.issues.cachedAuthorization";
+
+  private final IssueAuthorizationIndex authorizationIndex;
+  private final boolean cachedAuthorization;
+
   private Map<String, IndexField> sortColumns = newHashMap();
 
-  public IssueIndex(IssueNormalizer normalizer, SearchClient client) {
+  public IssueIndex(IssueNormalizer normalizer, SearchClient client, IssueAuthorizationIndex authorizationIndex, Settings settings) {
     super(IndexDefinition.ISSUES, normalizer, client);
+    this.authorizationIndex = authorizationIndex;
+    this.cachedAuthorization = settings.getBoolean(CACHED_AUTHORIZATION_PROPERTY);
 
     sortColumns.put(IssueQuery.SORT_BY_ASSIGNEE, IssueNormalizer.IssueField.ASSIGNEE);
     sortColumns.put(IssueQuery.SORT_BY_STATUS, IssueNormalizer.IssueField.STATUS);
@@ -239,6 +251,11 @@ public class IssueIndex extends BaseIndex<Issue, IssueDto, String> {
   private void addAuthorizationFilter(BoolFilterBuilder esFilter, QueryContext options) {
     String user = options.getUserLogin();
     Set<String> groups = options.getUserGroups();
+    if (cachedAuthorization) {
+      Set<String> projectKeys = authorizationIndex.findAuthorizedProjectKeys(user, groups, UserRole.USER);
+      esFilter.must(FilterBuilders.termsFilter(IssueNormalizer.IssueField.PROJECT.field(), projectKeys));
+      return;
+    }
     OrFilterBuilder groupsAndUser = FilterBuilders.orFilter();
     if (user != null) {
       groupsAndUser.add(FilterBuilders.termFilter(IssueAuthorizationNormalizer.IssueAuthorizationField.USERS.field(), user));
@@ -34,14 +34,18 @@ import java.util.List;
 
 public class MeasureFilterExecutor implements ServerComponent {
 
+  static final String IN_MEMORY = "(in-memory store)";
+
   private MyBatis mybatis;
   private Database database;
   private ResourceDao resourceDao;
+  private MeasureFilterStore store;
 
-  public MeasureFilterExecutor(MyBatis mybatis, Database database, ResourceDao resourceDao) {
+  public MeasureFilterExecutor(MyBatis mybatis, Database database, ResourceDao resourceDao, MeasureFilterStore store) {
     this.mybatis = mybatis;
     this.database = database;
     this.resourceDao = resourceDao;
+    this.store = store;
   }
 
   public List<MeasureFilterRow> execute(MeasureFilter filter, MeasureFilterContext context) throws SQLException {
@@ -56,13 +60,16 @@ public class MeasureFilterExecutor implements ServerComponent {
       session = mybatis.openSession(false);
       prepareContext(context, filter, session);
 
-      if (isValid(filter, context)) {
+      if (!isValid(filter, context)) {
+        rows = Collections.emptyList();
+      } else if (store.supports(filter)) {
+        context.setSql(IN_MEMORY);
+        rows = store.execute(filter, context);
+      } else {
         MeasureFilterSql sql = new MeasureFilterSql(database, filter, context);
         context.setSql(sql.sql());
         connection = session.getConnection();
         rows = sql.execute(connection);
-      } else {
-        rows = Collections.emptyList();
       }
     } finally {
       MyBatis.closeQuietly(session);
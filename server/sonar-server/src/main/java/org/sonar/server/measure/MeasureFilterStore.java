@@ -0,0 +1,418 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.measure;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.commons.dbutils.DbUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.ibatis.session.SqlSession;
+import org.picocontainer.Startable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.ServerComponent;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Qualifiers;
+import org.sonar.api.utils.TimeProfiler;
+import org.sonar.core.persistence.Database;
+import org.sonar.core.persistence.MyBatis;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.collect.Maps.newHashMap;
+
+/**
+ * In-memory store of the last measures of projects, modules and views, used by {@link MeasureFilterExecutor} to
+ * evaluate the most common filters without requesting the database. Filters on other qualifiers, on components of a
+ * base resource or on resource names are not supported and are executed in SQL.
+ * <p/>
+ * Measures are kept in an immutable {@link MeasureTable} per project or view, so that the table of a project is replaced
+ * without copying the others when its analysis report is processed or when its keys are updated (see {@link #refresh(String)}).
+ * Changes that are not notified, for example the computation of views, are loaded by a periodic reload of all the
+ * measures (see {@link #EXPIRATION_PROPERTY}). Loads are executed by a background thread : filters are executed in SQL
+ * until the first load is done, then the previous tables are used while the next ones are loading. The store can be
+ * disabled with the property {@link #ENABLED_PROPERTY}.
+ *
+ * @since 5.0
+ */
+public class MeasureFilterStore implements ServerComponent, Startable {
+
+  public static final String ENABLED_PROPERTY = "sonar.measureFilters.inMemory";
+
+  /**
+   * Delay in minutes between two reloads of all the measures
+   */
+  public static final String EXPIRATION_PROPERTY = "sonar.measureFilters.inMemory.expirationMinutes";
+  static final int DEFAULT_EXPIRATION_MINUTES = 60;
+
+  static final Set<String> QUALIFIERS = ImmutableSet.of(Qualifiers.PROJECT, Qualifiers.MODULE, Qualifiers.VIEW, Qualifiers.SUBVIEW);
+
+  private static final Logger LOG = LoggerFactory.getLogger(MeasureFilterStore.class);
+
+  private static final String ROWS_SQL = "SELECT s.id, s.project_id, s.root_project_id, s.scope, s.qualifier, p.kee, p.name, p.long_name, "
+    + "p.description, s.version, s.created_at, p.created_at "
+    + "FROM snapshots s INNER JOIN projects p ON s.project_id=p.id ";
+  private static final String MEASURES_SQL = "SELECT pm.snapshot_id, pm.metric_id, pm.value, pm.text_value, pm.variation_value_1, "
+    + "pm.variation_value_2, pm.variation_value_3, pm.variation_value_4, pm.variation_value_5 "
+    + "FROM project_measures pm INNER JOIN snapshots s ON pm.snapshot_id=s.id INNER JOIN projects p ON s.project_id=p.id ";
+  private static final String MEASURES_CONDITIONS = " AND pm.rule_id IS NULL AND pm.rule_priority IS NULL AND pm.characteristic_id IS NULL "
+    + "AND pm.person_id IS NULL";
+  private static final String FAVOURITES_SQL = "SELECT resource_id FROM properties WHERE prop_key='favourite' AND resource_id IS NOT NULL AND user_id=?";
+
+  private final MyBatis mybatis;
+  private final Database database;
+  private final Settings settings;
+  private final ScheduledExecutorService executor;
+
+  /**
+   * Tables by id of root project or view. Null until loaded. Only modified by the background thread.
+   */
+  private volatile ConcurrentMap<Long, MeasureTable> tables = null;
+  private volatile boolean started = false;
+
+  public MeasureFilterStore(MyBatis mybatis, Database database, Settings settings) {
+    this(mybatis, database, settings, Executors.newSingleThreadScheduledExecutor());
+  }
+
+  @VisibleForTesting
+  MeasureFilterStore(MyBatis mybatis, Database database, Settings settings, ScheduledExecutorService executor) {
+    this.mybatis = mybatis;
+    this.database = database;
+    this.settings = settings;
+    this.executor = executor;
+  }
+
+  @Override
+  public void start() {
+    if (!settings.hasKey(ENABLED_PROPERTY) || settings.getBoolean(ENABLED_PROPERTY)) {
+      long expiration = settings.hasKey(EXPIRATION_PROPERTY) ? settings.getLong(EXPIRATION_PROPERTY) : DEFAULT_EXPIRATION_MINUTES;
+      started = true;
+      executor.execute(new LoadAll());
+      executor.scheduleWithFixedDelay(new LoadAll(), expiration, expiration, TimeUnit.MINUTES);
+    }
+  }
+
+  @VisibleForTesting
+  void loadAll() {
+    TimeProfiler profiler = new TimeProfiler(LOG).start("Load last measures of projects");
+    ConcurrentMap<Long, MeasureTable> loaded = load(null);
+    tables = loaded;
+    profiler.stop();
+    LOG.debug(String.format("%d projects and views loaded in memory", loaded.size()));
+  }
+
+  @Override
+  public void stop() {
+    started = false;
+    executor.shutdownNow();
+    tables = null;
+  }
+
+  boolean isEnabled() {
+    return tables != null;
+  }
+
+  /**
+   * Only the filters on projects, modules and views are supported. Conditions on text values must use
+   * the operator IN, as generated for alert levels by {@link MeasureFilterFactory}.
+   */
+  boolean supports(MeasureFilter filter) {
+    if (!isEnabled() || filter.getBaseResourceKey() != null || StringUtils.isNotBlank(filter.getResourceName())) {
+      return false;
+    }
+    if (filter.getResourceQualifiers().isEmpty() || !QUALIFIERS.containsAll(filter.getResourceQualifiers())) {
+      return false;
+    }
+    for (MeasureFilterCondition condition : filter.getMeasureConditions()) {
+      boolean isIn = condition.operator() == MeasureFilterCondition.Operator.IN;
+      if ((condition.textValue() != null) != isIn) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  List<MeasureFilterRow> execute(MeasureFilter filter, MeasureFilterContext context) throws SQLException {
+    Map<Long, MeasureTable> current = tables;
+    if (current == null) {
+      throw new IllegalStateException("Measure filter store is disabled");
+    }
+    Set<Long> favourites = null;
+    if (filter.isOnFavourites()) {
+      favourites = loadFavourites(context.getUserId());
+    }
+    return MeasureTable.select(current.values(), filter, favourites);
+  }
+
+  /**
+   * Reloads in background the table of the given project, its modules included. Executed when its analysis report
+   * is processed and when its keys are updated.
+   */
+  public void refresh(final String projectKey) {
+    if (started) {
+      executor.execute(new SafeRunnable() {
+        @Override
+        void doRun() {
+          Long projectId = selectProjectId(projectKey);
+          ConcurrentMap<Long, MeasureTable> current = tables;
+          if (projectId != null && current != null) {
+            MeasureTable loaded = load(projectId).get(projectId);
+            if (loaded != null) {
+              current.put(projectId, loaded);
+            } else {
+              current.remove(projectId);
+            }
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * Removes in background the table of the given project, for example when it's deleted.
+   */
+  public void remove(final long projectId) {
+    if (started) {
+      executor.execute(new SafeRunnable() {
+        @Override
+        void doRun() {
+          ConcurrentMap<Long, MeasureTable> current = tables;
+          if (current != null) {
+            current.remove(projectId);
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * @param rootProjectId the project to load, or null to load all the projects and views
+   * @return tables by id of root project or view
+   */
+  @VisibleForTesting
+  ConcurrentMap<Long, MeasureTable> load(@Nullable Long rootProjectId) {
+    SqlSession session = mybatis.openSession(false);
+    Connection connection = null;
+    try {
+      connection = session.getConnection();
+      Map<Long, MeasureTable.Builder> buildersByRootId = newHashMap();
+      Map<Long, MeasureTable.Builder> buildersBySnapshotId = newHashMap();
+      Map<Long, Integer> rowsBySnapshotId = loadRows(connection, rootProjectId, buildersByRootId, buildersBySnapshotId);
+      loadMeasures(connection, rootProjectId, rowsBySnapshotId, buildersBySnapshotId);
+      ConcurrentMap<Long, MeasureTable> result = Maps.newConcurrentMap();
+      for (Map.Entry<Long, MeasureTable.Builder> entry : buildersByRootId.entrySet()) {
+        result.put(entry.getKey(), entry.getValue().build());
+      }
+      return result;
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to load last measures", e);
+    } finally {
+      MyBatis.closeQuietly(session);
+      // connection is supposed to be closed by the session
+      DbUtils.closeQuietly(connection);
+    }
+  }
+
+  private Map<Long, Integer> loadRows(Connection connection, @Nullable Long rootProjectId, Map<Long, MeasureTable.Builder> buildersByRootId,
+    Map<Long, MeasureTable.Builder> buildersBySnapshotId) throws SQLException {
+    Map<Long, Integer> rowsBySnapshotId = newHashMap();
+    PreparedStatement statement = prepare(connection, ROWS_SQL + snapshotConditions(rootProjectId), rootProjectId);
+    ResultSet rs = null;
+    try {
+      rs = statement.executeQuery();
+      while (rs.next()) {
+        MeasureTable.Row row = new MeasureTable.Row();
+        row.snapshotId = rs.getLong(1);
+        row.resourceId = rs.getLong(2);
+        row.rootId = rs.getLong(3);
+        row.scope = rs.getString(4);
+        row.qualifier = rs.getString(5);
+        row.key = rs.getString(6);
+        row.name = rs.getString(7);
+        row.longName = rs.getString(8);
+        row.description = rs.getString(9);
+        row.version = rs.getString(10);
+        row.createdAt = time(rs.getTimestamp(11));
+        row.projectCreatedAt = time(rs.getTimestamp(12));
+        MeasureTable.Builder builder = buildersByRootId.get(row.rootId);
+        if (builder == null) {
+          builder = new MeasureTable.Builder();
+          buildersByRootId.put(row.rootId, builder);
+        }
+        buildersBySnapshotId.put(row.snapshotId, builder);
+        rowsBySnapshotId.put(row.snapshotId, builder.addRow(row));
+      }
+    } finally {
+      DbUtils.closeQuietly(rs);
+      DbUtils.closeQuietly(statement);
+    }
+    return rowsBySnapshotId;
+  }
+
+  private void loadMeasures(Connection connection, @Nullable Long rootProjectId, Map<Long, Integer> rowsBySnapshotId,
+    Map<Long, MeasureTable.Builder> buildersBySnapshotId) throws SQLException {
+    PreparedStatement statement = prepare(connection, MEASURES_SQL + snapshotConditions(rootProjectId) + MEASURES_CONDITIONS, rootProjectId);
+    ResultSet rs = null;
+    try {
+      rs = statement.executeQuery();
+      while (rs.next()) {
+        long snapshotId = rs.getLong(1);
+        Integer row = rowsBySnapshotId.get(snapshotId);
+        if (row != null) {
+          int metricId = rs.getInt(2);
+          double value = getDouble(rs, 3);
+          String text = rs.getString(4);
+          double[] variations = new double[MeasureTable.PERIODS];
+          for (int period = 0; period < MeasureTable.PERIODS; period++) {
+            variations[period] = getDouble(rs, 5 + period);
+          }
+          buildersBySnapshotId.get(snapshotId).addMeasure(row, metricId, value, variations, text);
+        }
+      }
+    } finally {
+      DbUtils.closeQuietly(rs);
+      DbUtils.closeQuietly(statement);
+    }
+  }
+
+  private String snapshotConditions(@Nullable Long rootProjectId) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("WHERE s.status='P' AND s.islast=").append(database.getDialect().getTrueSqlValue());
+    sb.append(" AND p.copy_resource_id IS NULL AND s.qualifier IN ('");
+    sb.append(StringUtils.join(QUALIFIERS, "','"));
+    sb.append("')");
+    if (rootProjectId != null) {
+      sb.append(" AND s.root_project_id=?");
+    }
+    return sb.toString();
+  }
+
+  private static PreparedStatement prepare(Connection connection, String sql, @Nullable Long rootProjectId) throws SQLException {
+    PreparedStatement statement = connection.prepareStatement(sql);
+    if (rootProjectId != null) {
+      statement.setLong(1, rootProjectId);
+    }
+    return statement;
+  }
+
+  @CheckForNull
+  private Long selectProjectId(String projectKey) {
+    SqlSession session = mybatis.openSession(false);
+    Connection connection = null;
+    PreparedStatement statement = null;
+    ResultSet rs = null;
+    try {
+      connection = session.getConnection();
+      statement = connection.prepareStatement("SELECT id FROM projects WHERE kee=? AND enabled=" + database.getDialect().getTrueSqlValue());
+      statement.setString(1, projectKey);
+      rs = statement.executeQuery();
+      return rs.next() ? rs.getLong(1) : null;
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to load project " + projectKey, e);
+    } finally {
+      DbUtils.closeQuietly(rs);
+      DbUtils.closeQuietly(statement);
+      MyBatis.closeQuietly(session);
+      DbUtils.closeQuietly(connection);
+    }
+  }
+
+  private Set<Long> loadFavourites(Long userId) throws SQLException {
+    Set<Long> favourites = Sets.newHashSet();
+    SqlSession session = mybatis.openSession(false);
+    Connection connection = null;
+    PreparedStatement statement = null;
+    ResultSet rs = null;
+    try {
+      connection = session.getConnection();
+      statement = connection.prepareStatement(FAVOURITES_SQL);
+      statement.setLong(1, userId);
+      rs = statement.executeQuery();
+      while (rs.next()) {
+        favourites.add(rs.getLong(1));
+      }
+    } finally {
+      DbUtils.closeQuietly(rs);
+      DbUtils.closeQuietly(statement);
+      MyBatis.closeQuietly(session);
+      DbUtils.closeQuietly(connection);
+    }
+    return favourites;
+  }
+
+  private static double getDouble(ResultSet rs, int index) throws SQLException {
+    double value = rs.getDouble(index);
+    return rs.wasNull() ? Double.NaN : value;
+  }
+
+  private static long time(@Nullable Timestamp timestamp) {
+    return timestamp != null ? timestamp.getTime() : MeasureTable.NO_DATE;
+  }
+
+  /**
+   * Values of the conditions on text measures, for example {@code ('ERROR', 'WARN')}
+   */
+  static Set<String> textValues(MeasureFilterCondition condition) {
+    Set<String> values = Sets.newHashSet();
+    for (String value : StringUtils.split(StringUtils.strip(condition.textValue(), "() "), ',')) {
+      values.add(StringUtils.strip(value, "' "));
+    }
+    return values;
+  }
+
+  /**
+   * Exceptions are logged, else they would cancel the periodic reloads
+   */
+  private abstract static class SafeRunnable implements Runnable {
+    @Override
+    public void run() {
+      try {
+        doRun();
+      } catch (RuntimeException e) {
+        LOG.error("Fail to load last measures of projects", e);
+      }
+    }
+
+    abstract void doRun();
+  }
+
+  private class LoadAll extends SafeRunnable {
+    @Override
+    void doRun() {
+      loadAll();
+    }
+  }
+}
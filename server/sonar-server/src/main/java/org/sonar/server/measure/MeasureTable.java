@@ -0,0 +1,370 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.measure;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.time.DateUtils;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable columnar table of the last measures of a project and its modules, or of a view and its sub-views. Each row
+ * is a last snapshot.
+ * Measures are stored by metric in primitive arrays indexed by row, {@link Double#NaN} standing for missing values.
+ * As comparisons with NaN are always false, missing measures never match conditions, as with the inner joins of
+ * {@link MeasureFilterSql}.
+ *
+ * @since 5.0
+ */
+class MeasureTable {
+
+  static final int PERIODS = 5;
+  static final long NO_DATE = Long.MIN_VALUE;
+
+  private final int size;
+  private final long[] snapshotIds;
+  private final long[] resourceIds;
+  private final long[] rootIds;
+  private final long[] createdAts;
+  private final long[] projectCreatedAts;
+  private final String[] scopes;
+  private final String[] qualifiers;
+  private final String[] keys;
+  private final String[] upperCaseKeys;
+  private final String[] names;
+  private final String[] longNames;
+  private final String[] descriptions;
+  private final String[] versions;
+  private final Map<Integer, Column> columnsByMetricId;
+
+  private MeasureTable(Builder builder) {
+    size = builder.rows.size();
+    snapshotIds = new long[size];
+    resourceIds = new long[size];
+    rootIds = new long[size];
+    createdAts = new long[size];
+    projectCreatedAts = new long[size];
+    scopes = new String[size];
+    qualifiers = new String[size];
+    keys = new String[size];
+    upperCaseKeys = new String[size];
+    names = new String[size];
+    longNames = new String[size];
+    descriptions = new String[size];
+    versions = new String[size];
+    for (int index = 0; index < size; index++) {
+      Row row = builder.rows.get(index);
+      snapshotIds[index] = row.snapshotId;
+      resourceIds[index] = row.resourceId;
+      rootIds[index] = row.rootId;
+      createdAts[index] = row.createdAt;
+      projectCreatedAts[index] = row.projectCreatedAt;
+      // strings are shared by many rows
+      scopes[index] = row.scope != null ? row.scope.intern() : null;
+      qualifiers[index] = row.qualifier != null ? row.qualifier.intern() : null;
+      keys[index] = row.key;
+      upperCaseKeys[index] = StringUtils.upperCase(row.key);
+      names[index] = row.name;
+      longNames[index] = row.longName;
+      descriptions[index] = row.description;
+      versions[index] = row.version;
+    }
+    columnsByMetricId = Maps.newHashMap();
+    for (Map.Entry<Integer, List<Cell>> entry : builder.cellsByMetricId.entrySet()) {
+      columnsByMetricId.put(entry.getKey(), new Column(size, entry.getValue()));
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  int metrics() {
+    return columnsByMetricId.size();
+  }
+
+  /**
+   * Evaluates the filter on the given tables, generally the tables of all the projects and views. The filter must be
+   * supported by {@link MeasureFilterStore#supports(MeasureFilter)}.
+   *
+   * @param favouriteResourceIds the favourites of the user if the filter is on favourites
+   */
+  static List<MeasureFilterRow> select(Iterable<MeasureTable> tables, MeasureFilter filter, @Nullable Set<Long> favouriteResourceIds) {
+    Query query = new Query(filter, favouriteResourceIds);
+    List<MeasureFilterRow> rows = Lists.newArrayList();
+    for (MeasureTable table : tables) {
+      table.select(query, rows);
+    }
+    return MeasureFilterSql.rowProcessor(filter.sort()).sort(rows, filter.sort().isAsc());
+  }
+
+  private void select(Query query, List<MeasureFilterRow> rows) {
+    List<MeasureFilterCondition> conditions = query.conditions;
+    Column[] conditionColumns = new Column[conditions.size()];
+    for (int index = 0; index < conditions.size(); index++) {
+      conditionColumns[index] = columnsByMetricId.get(conditions.get(index).metric().getId());
+      if (conditionColumns[index] == null) {
+        // no measures match
+        return;
+      }
+    }
+
+    for (int index = 0; index < size; index++) {
+      boolean match = query.qualifiers.contains(qualifiers[index])
+        && (query.scopes.isEmpty() || query.scopes.contains(scopes[index]))
+        && (query.fromDate == NO_DATE || createdAts[index] >= query.fromDate)
+        && (query.toDate == NO_DATE || createdAts[index] <= query.toDate)
+        && (query.favouriteResourceIds == null || query.favouriteResourceIds.contains(resourceIds[index]))
+        && (query.keyCondition == null || StringUtils.contains(upperCaseKeys[index], query.keyCondition))
+        && matchConditions(index, conditions, conditionColumns);
+      if (match) {
+        rows.add(newRow(index, query.sort));
+      }
+    }
+  }
+
+  /**
+   * Dates are bound as {@link java.sql.Date} by {@link MeasureFilterSql}, so only the day is compared
+   */
+  private static long dateCondition(@Nullable Date date) {
+    return date != null ? DateUtils.truncate(date, Calendar.DATE).getTime() : NO_DATE;
+  }
+
+  private static boolean matchConditions(int index, List<MeasureFilterCondition> conditions, Column[] columns) {
+    for (int i = 0; i < conditions.size(); i++) {
+      if (!columns[i].match(index, conditions.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private MeasureFilterRow newRow(int index, MeasureFilterSort sort) {
+    MeasureFilterRow row = new MeasureFilterRow(snapshotIds[index], resourceIds[index], rootIds[index]);
+    switch (sort.field()) {
+      case KEY:
+        row.setSortText(keys[index]);
+        break;
+      case NAME:
+        row.setSortText(longNames[index]);
+        break;
+      case SHORT_NAME:
+        row.setSortText(names[index]);
+        break;
+      case DESCRIPTION:
+        row.setSortText(descriptions[index]);
+        break;
+      case VERSION:
+        row.setSortText(versions[index]);
+        break;
+      case DATE:
+        row.setSortDate(timestamp(createdAts[index]));
+        break;
+      case PROJECT_CREATION_DATE:
+        row.setSortDate(timestamp(projectCreatedAts[index]));
+        break;
+      case METRIC:
+        Column column = columnsByMetricId.get(sort.metric().getId());
+        if (sort.metric().isNumericType()) {
+          double value = column != null ? column.value(index, sort.period()) : Double.NaN;
+          row.setSortDouble(Double.isNaN(value) ? null : value);
+        } else {
+          row.setSortText(column != null ? column.text(index) : null);
+        }
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported sorting: " + sort.field());
+    }
+    return row;
+  }
+
+  @CheckForNull
+  private static Timestamp timestamp(long date) {
+    return date != NO_DATE ? new Timestamp(date) : null;
+  }
+
+  private static class Column {
+    private final double[] values;
+    // by period index, null if the period has no variations
+    private final double[][] variations = new double[PERIODS][];
+    private String[] texts = null;
+
+    Column(int size, List<Cell> cells) {
+      values = newNaNs(size);
+      for (Cell cell : cells) {
+        values[cell.row] = cell.value;
+        for (int period = 0; period < PERIODS; period++) {
+          double variation = cell.variations[period];
+          if (!Double.isNaN(variation)) {
+            if (variations[period] == null) {
+              variations[period] = newNaNs(size);
+            }
+            variations[period][cell.row] = variation;
+          }
+        }
+        if (cell.text != null) {
+          if (texts == null) {
+            texts = new String[size];
+          }
+          texts[cell.row] = cell.text;
+        }
+      }
+    }
+
+    private static double[] newNaNs(int size) {
+      double[] array = new double[size];
+      Arrays.fill(array, Double.NaN);
+      return array;
+    }
+
+    double value(int row, @Nullable Integer period) {
+      if (period == null) {
+        return values[row];
+      }
+      double[] periodVariations = variations[period - 1];
+      return periodVariations != null ? periodVariations[row] : Double.NaN;
+    }
+
+    @CheckForNull
+    String text(int row) {
+      return texts != null ? texts[row] : null;
+    }
+
+    boolean match(int row, MeasureFilterCondition condition) {
+      if (condition.textValue() != null) {
+        String text = text(row);
+        return text != null && MeasureFilterStore.textValues(condition).contains(text);
+      }
+      double value = value(row, condition.period());
+      double expected = condition.value();
+      switch (condition.operator()) {
+        case EQUALS:
+          return value == expected;
+        case GREATER:
+          return value > expected;
+        case GREATER_OR_EQUALS:
+          return value >= expected;
+        case LESS:
+          return value < expected;
+        case LESS_OR_EQUALS:
+          return value <= expected;
+        default:
+          throw new IllegalArgumentException("Unsupported operator: " + condition.operator());
+      }
+    }
+  }
+
+  /**
+   * Conditions of a filter, computed once for all the tables
+   */
+  private static class Query {
+    private final Set<String> qualifiers;
+    private final Set<String> scopes;
+    private final long fromDate;
+    private final long toDate;
+    private final String keyCondition;
+    private final List<MeasureFilterCondition> conditions;
+    private final Set<Long> favouriteResourceIds;
+    private final MeasureFilterSort sort;
+
+    Query(MeasureFilter filter, @Nullable Set<Long> favouriteResourceIds) {
+      qualifiers = Sets.newHashSet(filter.getResourceQualifiers());
+      scopes = Sets.newHashSet(filter.getResourceScopes());
+      fromDate = dateCondition(filter.getFromDate());
+      toDate = dateCondition(filter.getToDate());
+      keyCondition = StringUtils.isNotBlank(filter.getResourceKey()) ? StringUtils.upperCase(filter.getResourceKey()) : null;
+      conditions = filter.getMeasureConditions();
+      this.favouriteResourceIds = favouriteResourceIds;
+      sort = filter.sort();
+    }
+  }
+
+  static class Row {
+    long snapshotId;
+    long resourceId;
+    long rootId;
+    long createdAt = NO_DATE;
+    long projectCreatedAt = NO_DATE;
+    String scope;
+    String qualifier;
+    String key;
+    String name;
+    String longName;
+    String description;
+    String version;
+  }
+
+  private static class Cell {
+    private final int row;
+    private final double value;
+    private final double[] variations;
+    private final String text;
+
+    Cell(int row, double value, double[] variations, @Nullable String text) {
+      this.row = row;
+      this.value = value;
+      this.variations = variations;
+      this.text = text;
+    }
+  }
+
+  static class Builder {
+    private final List<Row> rows = Lists.newArrayList();
+    private final Map<Integer, List<Cell>> cellsByMetricId = Maps.newHashMap();
+
+    /**
+     * @return the index of the row
+     */
+    int addRow(Row row) {
+      rows.add(row);
+      return rows.size() - 1;
+    }
+
+    /**
+     * @param value NaN if missing
+     * @param variations variations of the {@link #PERIODS} periods, NaN if missing
+     */
+    Builder addMeasure(int row, int metricId, double value, double[] variations, @Nullable String text) {
+      List<Cell> cells = cellsByMetricId.get(metricId);
+      if (cells == null) {
+        cells = Lists.newArrayList();
+        cellsByMetricId.put(metricId, cells);
+      }
+      cells.add(new Cell(row, value, variations, text));
+      return this;
+    }
+
+    MeasureTable build() {
+      return new MeasureTable(this);
+    }
+  }
+}
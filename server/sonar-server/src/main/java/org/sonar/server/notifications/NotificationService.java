@@ -21,6 +21,7 @@ package org.sonar.server.notifications;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.SetMultimap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,15 +34,23 @@ import org.sonar.api.notifications.NotificationChannel;
 import org.sonar.api.notifications.NotificationDispatcher;
 import org.sonar.api.utils.TimeProfiler;
 import org.sonar.core.notification.DefaultNotificationManager;
+import org.sonar.core.profiling.Gauge;
+import org.sonar.core.profiling.MetricsRegistry;
 import org.sonar.jpa.session.DatabaseSessionFactory;
 
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @since 2.10
@@ -58,6 +67,18 @@ import java.util.concurrent.TimeUnit;
     defaultValue = "600",
     name = "Delay before reporting notification status, in seconds",
     project = false,
+    global = false),
+  @Property(
+    key = NotificationService.PROPERTY_BATCH_SIZE,
+    defaultValue = "50",
+    name = "Number of notifications dequeued at once",
+    project = false,
+    global = false),
+  @Property(
+    key = NotificationService.PROPERTY_DELIVERY_THREADS,
+    defaultValue = "4",
+    name = "Number of threads delivering notifications through channels",
+    project = false,
     global = false)
 })
 public class NotificationService implements ServerComponent {
@@ -66,25 +87,56 @@ public class NotificationService implements ServerComponent {
 
   public static final String PROPERTY_DELAY = "sonar.notifications.delay";
   public static final String PROPERTY_DELAY_BEFORE_REPORTING_STATUS = "sonar.notifications.runningDelayBeforeReportingStatus";
+  public static final String PROPERTY_BATCH_SIZE = "sonar.notifications.batchSize";
+  public static final String PROPERTY_DELIVERY_THREADS = "sonar.notifications.deliveryThreads";
+
+  /**
+   * Max number of pending deliveries per delivery thread. When reached, the thread
+   * processing the queue delivers by itself.
+   */
+  private static final int DELIVERIES_PER_THREAD = 20;
+
+  /**
+   * Prefix of the gauges registered in {@link MetricsRegistry}, which are exposed over JMX
+   */
+  static final String METRICS_PREFIX = "notifications.";
 
   private static final TimeProfiler TIME_PROFILER = new TimeProfiler(LOG).setLevelToDebug();
 
   private final long delayInSeconds;
   private final long delayBeforeReportingStatusInSeconds;
+  private final int batchSize;
+  private final int deliveryThreads;
   private final DefaultNotificationManager manager;
   private final NotificationDispatcher[] dispatchers;
   private final DatabaseSessionFactory databaseSessionFactory;
+  private final MetricsRegistry metricsRegistry;
 
   private ScheduledExecutorService executorService;
+  private ExecutorService deliveryService;
   private boolean stopping = false;
 
+  private final AtomicLong deliveredCount = new AtomicLong();
+  private volatile long backlogStartedAt = 0L;
+  private volatile long remainingCount = 0L;
+  private volatile double deliveryRatePerSecond = 0.0;
+
   /**
    * Constructor for {@link NotificationService}
    */
   public NotificationService(Settings settings, DefaultNotificationManager manager, DatabaseSessionFactory databaseSessionFactory, NotificationDispatcher[] dispatchers) {
+    this(settings, manager, databaseSessionFactory, dispatchers, MetricsRegistry.get());
+  }
+
+  @VisibleForTesting
+  NotificationService(Settings settings, DefaultNotificationManager manager, DatabaseSessionFactory databaseSessionFactory, NotificationDispatcher[] dispatchers,
+    MetricsRegistry metricsRegistry) {
+    this.metricsRegistry = metricsRegistry;
     this.databaseSessionFactory = databaseSessionFactory;
     delayInSeconds = settings.getLong(PROPERTY_DELAY);
     delayBeforeReportingStatusInSeconds = settings.getLong(PROPERTY_DELAY_BEFORE_REPORTING_STATUS);
+    batchSize = Math.max(1, settings.getInt(PROPERTY_BATCH_SIZE));
+    deliveryThreads = Math.max(1, settings.getInt(PROPERTY_DELIVERY_THREADS));
     this.manager = manager;
     this.dispatchers = dispatchers;
   }
@@ -98,6 +150,8 @@ public class NotificationService implements ServerComponent {
   }
 
   public void start() {
+    deliveryService = new ThreadPoolExecutor(deliveryThreads, deliveryThreads, 0L, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<Runnable>(deliveryThreads * DELIVERIES_PER_THREAD), new ThreadPoolExecutor.CallerRunsPolicy());
     executorService = Executors.newSingleThreadScheduledExecutor();
     executorService.scheduleWithFixedDelay(new Runnable() {
       @Override
@@ -112,20 +166,57 @@ public class NotificationService implements ServerComponent {
         }
       }
     }, 0, delayInSeconds, TimeUnit.SECONDS);
-    LOG.info("Notification service started (delay {} sec.)", delayInSeconds);
+    registerGauges();
+    LOG.info("Notification service started (delay {} sec., batch size {}, {} delivery threads)", new Object[] {delayInSeconds, batchSize, deliveryThreads});
   }
 
   public void stop() {
+    unregisterGauges();
     try {
       stopping = true;
       executorService.shutdown();
       executorService.awaitTermination(5, TimeUnit.SECONDS);
+      deliveryService.shutdown();
+      deliveryService.awaitTermination(5, TimeUnit.SECONDS);
     } catch (InterruptedException e) {
       LOG.error("Error during stop of notification service", e);
     }
     LOG.info("Notification service stopped");
   }
 
+  private void registerGauges() {
+    metricsRegistry.register(METRICS_PREFIX + "delivered", new Gauge() {
+      @Override
+      public long value() {
+        return getDeliveredCount();
+      }
+    });
+    metricsRegistry.register(METRICS_PREFIX + "deliveryRatePerSecond", new Gauge() {
+      @Override
+      public long value() {
+        return Math.round(getDeliveryRatePerSecond());
+      }
+    });
+    metricsRegistry.register(METRICS_PREFIX + "remaining", new Gauge() {
+      @Override
+      public long value() {
+        return getRemainingCount();
+      }
+    });
+    metricsRegistry.register(METRICS_PREFIX + "queueLagInMs", new Gauge() {
+      @Override
+      public long value() {
+        return getQueueLagInMs();
+      }
+    });
+  }
+
+  private void unregisterGauges() {
+    for (String name : Arrays.asList("delivered", "deliveryRatePerSecond", "remaining", "queueLagInMs")) {
+      metricsRegistry.unregister(METRICS_PREFIX + name);
+    }
+  }
+
   @VisibleForTesting
   synchronized void processQueue() {
     TIME_PROFILER.start("Processing notifications queue");
@@ -133,26 +224,93 @@ public class NotificationService implements ServerComponent {
     long lastLog = start;
     long notifSentCount = 0;
 
-    Notification notifToSend = manager.getFromQueue();
-    while (notifToSend != null) {
-      deliver(notifToSend);
-      notifSentCount++;
+    List<Notification> notifsToSend = manager.getFromQueue(batchSize);
+    if (!notifsToSend.isEmpty() && backlogStartedAt == 0L) {
+      backlogStartedAt = start;
+    }
+    while (!notifsToSend.isEmpty()) {
+      deliver(notifsToSend);
+      notifSentCount += notifsToSend.size();
+      deliveredCount.addAndGet(notifsToSend.size());
       if (stopping) {
         break;
       }
       long now = now();
+      if (now > start) {
+        deliveryRatePerSecond = notifSentCount * 1000.0 / (now - start);
+      }
       if (now - lastLog > delayBeforeReportingStatusInSeconds * 1000) {
         long remainingNotifCount = manager.count();
+        remainingCount = remainingNotifCount;
         lastLog = now;
         long spentTimeInMinutes = (now - start) / (60 * 1000);
         log(notifSentCount, remainingNotifCount, spentTimeInMinutes);
       }
-      notifToSend = manager.getFromQueue();
+      notifsToSend = manager.getFromQueue(batchSize);
+    }
+    if (notifsToSend.isEmpty()) {
+      // an empty batch does not mean that the queue is empty, as notifications that can't be read are ignored
+      long remainingNotifCount = manager.count();
+      remainingCount = remainingNotifCount;
+      if (remainingNotifCount == 0L) {
+        backlogStartedAt = 0L;
+      }
     }
 
     TIME_PROFILER.stop();
   }
 
+  /**
+   * Dispatchers are executed by the calling thread, then deliveries through channels are
+   * executed by the pool of delivery threads. Returns when all the notifications are delivered.
+   */
+  private void deliver(List<Notification> notifications) {
+    List<Future<?>> deliveries = Lists.newArrayList();
+    for (Notification notification : notifications) {
+      deliveries.addAll(deliver(notification));
+    }
+    for (Future<?> delivery : deliveries) {
+      try {
+        delivery.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException e) {
+        // deliveries catch their own exceptions
+        LOG.warn("Unable to deliver notification", e);
+      }
+    }
+  }
+
+  /**
+   * Number of notifications delivered since startup
+   */
+  public long getDeliveredCount() {
+    return deliveredCount.get();
+  }
+
+  /**
+   * Number of notifications delivered per second during the current (or last) processing of the queue
+   */
+  public double getDeliveryRatePerSecond() {
+    return deliveryRatePerSecond;
+  }
+
+  /**
+   * Number of notifications waiting to be sent, as computed during the last status report
+   */
+  public long getRemainingCount() {
+    return remainingCount;
+  }
+
+  /**
+   * Time in milliseconds since the queue stopped being empty, zero if the queue has been fully processed
+   */
+  public long getQueueLagInMs() {
+    long startedAt = backlogStartedAt;
+    return startedAt == 0L ? 0L : Math.max(0L, System.currentTimeMillis() - startedAt);
+  }
+
   @VisibleForTesting
   void log(long notifSentCount, long remainingNotifCount, long spentTimeInMinutes) {
     LOG.info("{} notifications sent during the past {} minutes and {} still waiting to be sent", new Object[] {notifSentCount, spentTimeInMinutes, remainingNotifCount});
@@ -163,7 +321,7 @@ public class NotificationService implements ServerComponent {
     return System.currentTimeMillis();
   }
 
-  private void deliver(Notification notification) {
+  private List<Future<?>> deliver(Notification notification) {
     LOG.debug("Delivering notification " + notification);
     final SetMultimap<String, NotificationChannel> recipients = HashMultimap.create();
     for (NotificationDispatcher dispatcher : dispatchers) {
@@ -187,23 +345,30 @@ public class NotificationService implements ServerComponent {
         LOG.warn("Unable to dispatch notification " + notification + " using " + dispatcher, e);
       }
     }
-    dispatch(notification, recipients);
+    return dispatch(notification, recipients);
   }
 
-  private void dispatch(Notification notification, SetMultimap<String, NotificationChannel> recipients) {
+  private List<Future<?>> dispatch(final Notification notification, SetMultimap<String, NotificationChannel> recipients) {
+    List<Future<?>> deliveries = Lists.newArrayList();
     for (Map.Entry<String, Collection<NotificationChannel>> entry : recipients.asMap().entrySet()) {
-      String username = entry.getKey();
-      Collection<NotificationChannel> userChannels = entry.getValue();
+      final String username = entry.getKey();
+      final Collection<NotificationChannel> userChannels = entry.getValue();
       LOG.debug("For user {} via {}", username, userChannels);
-      for (NotificationChannel channel : userChannels) {
-        try {
-          channel.deliver(notification, username);
-        } catch (Exception e) {
-          // catch all exceptions in order to deliver via other channels
-          LOG.warn("Unable to deliver notification " + notification + " for user " + username + " via " + channel, e);
+      deliveries.add(deliveryService.submit(new Runnable() {
+        @Override
+        public void run() {
+          for (NotificationChannel channel : userChannels) {
+            try {
+              channel.deliver(notification, username);
+            } catch (Exception e) {
+              // catch all exceptions in order to deliver via other channels
+              LOG.warn("Unable to deliver notification " + notification + " for user " + username + " via " + channel, e);
+            }
+          }
         }
-      }
+      }));
     }
+    return deliveries;
   }
 
   @VisibleForTesting
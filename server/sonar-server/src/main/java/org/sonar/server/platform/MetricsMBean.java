@@ -0,0 +1,127 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.sonar.core.profiling.Histogram;
+import org.sonar.core.profiling.MetricsRegistry;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ReflectionException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * JMX view of {@link MetricsRegistry}. Each counter and gauge is a read-only attribute. Each histogram is
+ * exposed as the attributes "&lt;name&gt;.count", "&lt;name&gt;.mean", "&lt;name&gt;.p50", "&lt;name&gt;.p90",
+ * "&lt;name&gt;.p99" and "&lt;name&gt;.max", in microseconds.
+ *
+ * @since 5.0
+ */
+class MetricsMBean implements DynamicMBean {
+
+  static final String RESET_OPERATION = "reset";
+
+  private final MetricsRegistry registry;
+
+  MetricsMBean(MetricsRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  public Object getAttribute(String attribute) throws AttributeNotFoundException {
+    Object value = attributes().get(attribute);
+    if (value == null) {
+      throw new AttributeNotFoundException(attribute);
+    }
+    return value;
+  }
+
+  @Override
+  public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+    throw new AttributeNotFoundException("Attributes are read-only: " + attribute.getName());
+  }
+
+  @Override
+  public AttributeList getAttributes(String[] names) {
+    Map<String, Object> attributes = attributes();
+    AttributeList list = new AttributeList();
+    for (String name : names) {
+      Object value = attributes.get(name);
+      if (value != null) {
+        list.add(new Attribute(name, value));
+      }
+    }
+    return list;
+  }
+
+  @Override
+  public AttributeList setAttributes(AttributeList attributes) {
+    return new AttributeList();
+  }
+
+  @Override
+  public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+    if (RESET_OPERATION.equals(actionName)) {
+      registry.reset();
+      return null;
+    }
+    throw new ReflectionException(new NoSuchMethodException(actionName));
+  }
+
+  @Override
+  public MBeanInfo getMBeanInfo() {
+    List<MBeanAttributeInfo> infos = Lists.newArrayList();
+    for (Map.Entry<String, Object> entry : attributes().entrySet()) {
+      infos.add(new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(), entry.getKey(), true, false, false));
+    }
+    MBeanOperationInfo reset = new MBeanOperationInfo(RESET_OPERATION, "Reset counters and histograms", new MBeanParameterInfo[0],
+      "void", MBeanOperationInfo.ACTION);
+    return new MBeanInfo(getClass().getName(), "SonarQube metrics", infos.toArray(new MBeanAttributeInfo[infos.size()]), null,
+      new MBeanOperationInfo[] {reset}, null);
+  }
+
+  Map<String, Object> attributes() {
+    SortedMap<String, Object> attributes = Maps.newTreeMap();
+    attributes.putAll(registry.counters());
+    attributes.putAll(registry.gauges());
+    for (Map.Entry<String, Histogram> entry : registry.histograms().entrySet()) {
+      String name = entry.getKey();
+      Histogram histogram = entry.getValue();
+      attributes.put(name + ".count", histogram.count());
+      attributes.put(name + ".mean", histogram.mean());
+      attributes.put(name + ".p50", histogram.percentile(50.0));
+      attributes.put(name + ".p90", histogram.percentile(90.0));
+      attributes.put(name + ".p99", histogram.percentile(99.0));
+      attributes.put(name + ".max", histogram.max());
+    }
+    return attributes;
+  }
+}
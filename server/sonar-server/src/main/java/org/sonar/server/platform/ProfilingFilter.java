@@ -24,6 +24,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableSet;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.config.Settings;
+import org.sonar.core.profiling.MetricsRegistry;
 import org.sonar.core.profiling.Profiling;
 import org.sonar.core.profiling.Profiling.Level;
 import org.sonar.core.profiling.StopWatch;
@@ -46,6 +47,8 @@ public class ProfilingFilter implements Filter {
 
   private static final String CONFIG_SEPARATOR = ",";
   private static final String URL_SEPARATOR = "/";
+  private static final String API_PATH = "/api/";
+  static final String METRIC = "http";
 
   private static final String MESSAGE_WITH_QUERY = "%s %s?%s";
   private static final String MESSAGE_WITHOUT_QUERY = "%s %s";
@@ -77,11 +80,17 @@ public class ProfilingFilter implements Filter {
         chain.doFilter(request, response);
       } else {
         StopWatch watch = getProfiling().start("http", Level.BASIC);
+        MetricsRegistry metrics = getMetrics();
+        long timer = metrics.startTimer();
         try {
           chain.doFilter(request, response);
         } finally {
           String queryString = httpRequest.getQueryString();
           watch.stop(queryString == null ? MESSAGE_WITHOUT_QUERY : MESSAGE_WITH_QUERY, httpRequest.getMethod(), requestUri, queryString);
+          long duration = metrics.stopTimer(METRIC, timer);
+          if (duration >= 0L) {
+            metrics.record(metricName(httpRequest.getMethod(), requestUri), duration);
+          }
         }
       }
     } else {
@@ -90,6 +99,22 @@ public class ProfilingFilter implements Filter {
     }
   }
 
+  /**
+   * Requests are grouped by the first two levels of path, or three levels for web services, for example
+   * "http: GET /api/issues/search" or "http: GET /dashboard/index".
+   */
+  @VisibleForTesting
+  String metricName(String method, String requestUri) {
+    String localPath = requestUri.startsWith(contextRoot) ? requestUri.substring(contextRoot.length()) : requestUri;
+    int levels = localPath.startsWith(API_PATH) ? 3 : 2;
+    int end = 0;
+    for (int level = 0; level < levels && end >= 0; level++) {
+      end = localPath.indexOf(URL_SEPARATOR, end + 1);
+    }
+    String path = end > 0 ? localPath.substring(0, end) : localPath;
+    return METRIC + ": " + method + " " + path;
+  }
+
   private String getRootDir(String requestUri) {
     String rootPath = "";
     String localPath = StringUtils.substringAfter(requestUri, contextRoot);
@@ -115,4 +140,9 @@ public class ProfilingFilter implements Filter {
     }
     return new Profiling(new Settings());
   }
+
+  @VisibleForTesting
+  MetricsRegistry getMetrics() {
+    return MetricsRegistry.get();
+  }
 }
@@ -0,0 +1,299 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.sonar.api.web.ServletFilter;
+
+import javax.annotation.CheckForNull;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sends the file declared by Ruby on Rails with <code>send_file(path, :x_sendfile => true)</code>,
+ * so that large files like preview databases are transferred from disk without being loaded
+ * in memory. Conditional requests (If-None-Match) and partial requests (Range, If-Range)
+ * are supported. The ETag is the MD5 hash of the file.
+ *
+ * @since 5.0
+ */
+public class SendFileFilter extends ServletFilter {
+
+  static final String SENDFILE_HEADER = "X-Sendfile";
+  private static final String CONTENT_LENGTH_HEADER = "Content-Length";
+  private static final int MAX_CACHED_ETAGS = 100;
+
+  /**
+   * ETags by path, last modification date and size of files
+   */
+  private final Map<String, String> etags = Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+      return size() > MAX_CACHED_ETAGS;
+    }
+  });
+
+  @Override
+  public UrlPattern doGetPattern() {
+    return UrlPattern.create("/batch_bootstrap/*");
+  }
+
+  @Override
+  public void init(FilterConfig filterConfig) throws ServletException {
+    // nothing to do
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+    if (!(request instanceof HttpServletRequest) || !(response instanceof HttpServletResponse)) {
+      chain.doFilter(request, response);
+      return;
+    }
+    SendFileResponse wrapper = new SendFileResponse((HttpServletResponse) response);
+    chain.doFilter(request, wrapper);
+    String path = wrapper.path();
+    if (path != null) {
+      sendFile((HttpServletRequest) request, (HttpServletResponse) response, new File(path));
+    }
+  }
+
+  @Override
+  public void destroy() {
+    etags.clear();
+  }
+
+  private void sendFile(HttpServletRequest request, HttpServletResponse response, File file) throws IOException {
+    if (!file.isFile()) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+    long length = file.length();
+    String etag = etag(file);
+    response.setHeader("ETag", etag);
+    response.setHeader("Accept-Ranges", "bytes");
+    if (etag.equals(request.getHeader("If-None-Match"))) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    long[] range = new long[] {0L, length - 1};
+    String rangeHeader = request.getHeader("Range");
+    String ifRange = request.getHeader("If-Range");
+    if (rangeHeader != null && (ifRange == null || ifRange.equals(etag))) {
+      range = parseRange(rangeHeader, length);
+      if (range == null) {
+        response.setHeader("Content-Range", "bytes */" + length);
+        response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        return;
+      }
+      if (range[1] - range[0] + 1 < length) {
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + length);
+      }
+    }
+    long count = range[1] - range[0] + 1;
+    // header instead of setContentLength(int), which is limited to 2GB
+    response.setHeader(CONTENT_LENGTH_HEADER, String.valueOf(count));
+    if (!"HEAD".equals(request.getMethod())) {
+      transfer(file, range[0], count, response.getOutputStream());
+    }
+  }
+
+  private String etag(File file) throws IOException {
+    String key = file.getAbsolutePath() + "|" + file.lastModified() + "|" + file.length();
+    String etag = etags.get(key);
+    if (etag == null) {
+      InputStream input = new FileInputStream(file);
+      try {
+        etag = "\"" + DigestUtils.md5Hex(input) + "\"";
+      } finally {
+        input.close();
+      }
+      etags.put(key, etag);
+    }
+    return etag;
+  }
+
+  /**
+   * Bounds of the single byte range requested by the header "Range". Headers that are not supported, for
+   * example multiple ranges, are ignored and the whole file is returned.
+   *
+   * @return inclusive bounds, or null if the range is not satisfiable
+   */
+  @CheckForNull
+  @VisibleForTesting
+  static long[] parseRange(String header, long length) {
+    long[] all = new long[] {0L, length - 1};
+    if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+      return all;
+    }
+    String spec = header.substring("bytes=".length()).trim();
+    int dash = spec.indexOf('-');
+    if (dash < 0) {
+      return all;
+    }
+    String first = spec.substring(0, dash).trim();
+    String last = spec.substring(dash + 1).trim();
+    try {
+      if (first.isEmpty()) {
+        // suffix range, for example "bytes=-500" for the last 500 bytes
+        long suffixLength = last.isEmpty() ? -1L : Long.parseLong(last);
+        if (suffixLength < 0) {
+          return all;
+        }
+        return suffixLength == 0 || length == 0 ? null : new long[] {Math.max(0L, length - suffixLength), length - 1};
+      }
+      long start = Long.parseLong(first);
+      long end = last.isEmpty() ? length - 1 : Long.parseLong(last);
+      if (end < start) {
+        return all;
+      }
+      return start >= length ? null : new long[] {start, Math.min(end, length - 1)};
+    } catch (NumberFormatException e) {
+      return all;
+    }
+  }
+
+  /**
+   * Bytes are transferred by the file channel, without intermediary buffer on the heap
+   */
+  private static void transfer(File file, long position, long count, OutputStream output) throws IOException {
+    FileInputStream input = new FileInputStream(file);
+    try {
+      FileChannel channel = input.getChannel();
+      WritableByteChannel target = Channels.newChannel(output);
+      long transferred = 0L;
+      while (transferred < count) {
+        long n = channel.transferTo(position + transferred, count - transferred, target);
+        if (n <= 0) {
+          // file has been truncated
+          break;
+        }
+        transferred += n;
+      }
+    } finally {
+      input.close();
+    }
+    output.flush();
+  }
+
+  /**
+   * Hides the header X-Sendfile, and ignores the body and the length written by Ruby on Rails when this header is set.
+   * The length of other responses is applied when the body starts being written.
+   */
+  private static class SendFileResponse extends HttpServletResponseWrapper {
+    private String path;
+    private String contentLength;
+
+    SendFileResponse(HttpServletResponse response) {
+      super(response);
+    }
+
+    @CheckForNull
+    String path() {
+      return path;
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+      if (SENDFILE_HEADER.equalsIgnoreCase(name)) {
+        path = value;
+      } else if (CONTENT_LENGTH_HEADER.equalsIgnoreCase(name)) {
+        contentLength = value;
+      } else {
+        super.setHeader(name, value);
+      }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+      if (SENDFILE_HEADER.equalsIgnoreCase(name) || CONTENT_LENGTH_HEADER.equalsIgnoreCase(name)) {
+        setHeader(name, value);
+      } else {
+        super.addHeader(name, value);
+      }
+    }
+
+    @Override
+    public void setContentLength(int len) {
+      contentLength = String.valueOf(len);
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      if (path != null) {
+        return new ServletOutputStream() {
+          @Override
+          public void write(int b) {
+            // body of Ruby on Rails is ignored
+          }
+        };
+      }
+      applyContentLength();
+      return super.getOutputStream();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+      if (path != null) {
+        return new PrintWriter(new OutputStreamWriter(getOutputStream()));
+      }
+      applyContentLength();
+      return super.getWriter();
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+      if (path == null) {
+        applyContentLength();
+        super.flushBuffer();
+      }
+    }
+
+    private void applyContentLength() {
+      if (contentLength != null) {
+        super.setHeader(CONTENT_LENGTH_HEADER, contentLength);
+        contentLength = null;
+      }
+    }
+  }
+}
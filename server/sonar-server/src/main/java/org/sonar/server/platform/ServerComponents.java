@@ -105,8 +105,11 @@ import org.sonar.server.db.EmbeddedDatabaseFactory;
 import org.sonar.server.db.migrations.DatabaseMigrations;
 import org.sonar.server.db.migrations.DatabaseMigrator;
 import org.sonar.server.debt.*;
+import org.sonar.server.design.DsmService;
 import org.sonar.server.design.FileDesignWidget;
 import org.sonar.server.design.PackageDesignWidget;
+import org.sonar.server.design.ws.DesignWs;
+import org.sonar.server.design.ws.DsmAction;
 import org.sonar.server.duplication.ws.DuplicationsJsonWriter;
 import org.sonar.server.duplication.ws.DuplicationsParser;
 import org.sonar.server.duplication.ws.DuplicationsWs;
@@ -127,6 +130,7 @@ import org.sonar.server.issue.ws.IssueShowAction;
 import org.sonar.server.issue.ws.IssuesWs;
 import org.sonar.server.measure.MeasureFilterEngine;
 import org.sonar.server.measure.MeasureFilterExecutor;
+import org.sonar.server.measure.MeasureFilterStore;
 import org.sonar.server.measure.MeasureFilterFactory;
 import org.sonar.server.measure.persistence.MeasureDao;
 import org.sonar.server.measure.persistence.MetricDao;
@@ -140,6 +144,7 @@ import org.sonar.server.permission.InternalPermissionTemplateService;
 import org.sonar.server.permission.PermissionFinder;
 import org.sonar.server.permission.ws.PermissionsWs;
 import org.sonar.server.platform.ws.L10nWs;
+import org.sonar.server.platform.ws.MetricsHandler;
 import org.sonar.server.platform.ws.RestartHandler;
 import org.sonar.server.platform.ws.ServerWs;
 import org.sonar.server.platform.ws.SystemWs;
@@ -162,6 +167,7 @@ import org.sonar.server.search.*;
 import org.sonar.server.source.CodeColorizers;
 import org.sonar.server.source.DeprecatedSourceDecorator;
 import org.sonar.server.source.HtmlSourceDecorator;
+import org.sonar.server.source.SourceLinesLoader;
 import org.sonar.server.source.SourceService;
 import org.sonar.server.source.ws.ScmAction;
 import org.sonar.server.source.ws.ScmWriter;
@@ -212,6 +218,7 @@ class ServerComponents {
       Logback.class,
       Profiling.class,
       JRubyProfiling.class,
+      ServerMetrics.class,
       EmbeddedDatabaseFactory.class,
       DefaultDatabase.class,
       DatabaseChecker.class,
@@ -305,6 +312,7 @@ class ServerComponents {
 
       // ws
       RestartHandler.class,
+      MetricsHandler.class,
       SystemWs.class
     );
   }
@@ -347,6 +355,7 @@ class ServerComponents {
     pico.addSingleton(ProjectReferentialsAction.class);
     pico.addSingleton(UploadReportAction.class);
     pico.addSingleton(BatchWs.class);
+    pico.addSingleton(SendFileFilter.class);
 
     // update center
     pico.addSingleton(UpdateCenterClient.class);
@@ -411,6 +420,7 @@ class ServerComponents {
     // measure
     pico.addComponent(MeasuresDao.class, false);
     pico.addSingleton(MeasureFilterFactory.class);
+    pico.addSingleton(MeasureFilterStore.class);
     pico.addSingleton(MeasureFilterExecutor.class);
     pico.addSingleton(MeasureFilterEngine.class);
     pico.addSingleton(DefaultMetricFinder.class);
@@ -537,6 +547,7 @@ class ServerComponents {
 
     // source
     pico.addSingleton(HtmlSourceDecorator.class);
+    pico.addSingleton(SourceLinesLoader.class);
     pico.addSingleton(DeprecatedSourceDecorator.class);
     pico.addSingleton(SourceService.class);
     pico.addSingleton(SourcesWs.class);
@@ -589,6 +600,9 @@ class ServerComponents {
     // Design
     pico.addSingleton(FileDesignWidget.class);
     pico.addSingleton(PackageDesignWidget.class);
+    pico.addSingleton(DsmService.class);
+    pico.addSingleton(DesignWs.class);
+    pico.addSingleton(DsmAction.class);
 
     // Compute engine
     pico.addSingleton(ComputationService.class);
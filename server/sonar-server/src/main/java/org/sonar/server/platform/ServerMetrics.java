@@ -0,0 +1,89 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform;
+
+import org.picocontainer.Startable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.ServerComponent;
+import org.sonar.api.config.Settings;
+import org.sonar.core.profiling.MetricsRegistry;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Enables the {@link MetricsRegistry} when the property {@link MetricsRegistry#ENABLED_PROPERTY} is true, and
+ * exposes the metrics over JMX.
+ *
+ * @since 5.0
+ */
+public class ServerMetrics implements Startable, ServerComponent {
+
+  static final String OBJECT_NAME = "SonarQube:name=Metrics";
+  private static final Logger LOG = LoggerFactory.getLogger(ServerMetrics.class);
+
+  private final Settings settings;
+  private final MetricsRegistry registry;
+  private final MBeanServer mbeanServer;
+  private ObjectName objectName;
+
+  public ServerMetrics(Settings settings) {
+    this(settings, MetricsRegistry.get(), ManagementFactory.getPlatformMBeanServer());
+  }
+
+  ServerMetrics(Settings settings, MetricsRegistry registry, MBeanServer mbeanServer) {
+    this.settings = settings;
+    this.registry = registry;
+    this.mbeanServer = mbeanServer;
+  }
+
+  @Override
+  public void start() {
+    if (settings.getBoolean(MetricsRegistry.ENABLED_PROPERTY)) {
+      registry.setEnabled(true);
+      try {
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (!mbeanServer.isRegistered(name)) {
+          mbeanServer.registerMBean(new MetricsMBean(registry), name);
+          objectName = name;
+        }
+      } catch (JMException e) {
+        LOG.warn("Fail to register metrics in JMX", e);
+      }
+    }
+  }
+
+  @Override
+  public void stop() {
+    registry.setEnabled(false);
+    if (objectName != null) {
+      try {
+        mbeanServer.unregisterMBean(objectName);
+      } catch (JMException e) {
+        LOG.warn("Fail to unregister metrics from JMX", e);
+      }
+      objectName = null;
+    }
+  }
+}
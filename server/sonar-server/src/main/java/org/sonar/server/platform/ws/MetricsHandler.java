@@ -0,0 +1,93 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.ws;
+
+import com.google.common.io.Resources;
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.RequestHandler;
+import org.sonar.api.server.ws.Response;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.api.utils.text.JsonWriter;
+import org.sonar.core.permission.GlobalPermissions;
+import org.sonar.core.profiling.Histogram;
+import org.sonar.core.profiling.MetricsRegistry;
+import org.sonar.server.user.UserSession;
+
+import java.util.Map;
+
+/**
+ * @since 5.0
+ */
+public class MetricsHandler implements RequestHandler {
+
+  private final MetricsRegistry registry;
+
+  public MetricsHandler() {
+    this(MetricsRegistry.get());
+  }
+
+  MetricsHandler(MetricsRegistry registry) {
+    this.registry = registry;
+  }
+
+  void define(WebService.NewController controller) {
+    controller.createAction("metrics")
+      .setDescription("Counters, gauges and latency histograms of HTTP requests, SQL requests, Elasticsearch requests and " +
+        "analysis reports. Durations are in microseconds. Metrics are recorded only if the property " + MetricsRegistry.ENABLED_PROPERTY +
+        " is true. Requires administration permission.")
+      .setSince("5.0")
+      .setResponseExample(Resources.getResource(getClass(), "example-metrics.json"))
+      .setHandler(this);
+  }
+
+  @Override
+  public void handle(Request request, Response response) {
+    UserSession.get().checkGlobalPermission(GlobalPermissions.SYSTEM_ADMIN);
+
+    JsonWriter json = response.newJsonWriter().beginObject();
+    json.prop("enabled", registry.isEnabled());
+    writeValues("counters", registry.counters(), json);
+    writeValues("gauges", registry.gauges(), json);
+    json.name("histograms").beginArray();
+    for (Map.Entry<String, Histogram> entry : registry.histograms().entrySet()) {
+      Histogram histogram = entry.getValue();
+      json.beginObject()
+        .prop("name", entry.getKey())
+        .prop("count", histogram.count())
+        .prop("min", histogram.min())
+        .prop("mean", histogram.mean())
+        .prop("p50", histogram.percentile(50.0))
+        .prop("p90", histogram.percentile(90.0))
+        .prop("p99", histogram.percentile(99.0))
+        .prop("max", histogram.max())
+        .endObject();
+    }
+    json.endArray();
+    json.endObject().close();
+  }
+
+  private static void writeValues(String name, Map<String, Long> values, JsonWriter json) {
+    json.name(name).beginArray();
+    for (Map.Entry<String, Long> entry : values.entrySet()) {
+      json.beginObject().prop("name", entry.getKey()).prop("value", entry.getValue()).endObject();
+    }
+    json.endArray();
+  }
+}
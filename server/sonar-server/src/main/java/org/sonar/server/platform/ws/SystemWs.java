@@ -24,18 +24,21 @@ import org.sonar.api.server.ws.WebService;
 public class SystemWs implements WebService {
 
   private final RestartHandler restartHandler;
+  private final MetricsHandler metricsHandler;
 
-  public SystemWs(RestartHandler restartHandler) {
+  public SystemWs(RestartHandler restartHandler, MetricsHandler metricsHandler) {
     this.restartHandler = restartHandler;
+    this.metricsHandler = metricsHandler;
   }
 
   @Override
   public void define(Context context) {
     NewController controller = context.createController("api/system")
-      .setDescription("Restart server")
+      .setDescription("Restart server and get metrics")
       .setSince("4.3");
 
     restartHandler.define(controller);
+    metricsHandler.define(controller);
 
     controller.done();
   }
@@ -22,6 +22,7 @@ package org.sonar.server.qualityprofile;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
 import org.sonar.api.ServerComponent;
+import org.sonar.api.rule.RuleKey;
 import org.sonar.api.server.rule.RuleParamType;
 import org.sonar.core.activity.Activity;
 import org.sonar.core.persistence.DbSession;
@@ -49,6 +50,7 @@ import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
 import java.util.Arrays;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -94,6 +96,15 @@ public class RuleActivator implements ServerComponent {
   }
 
   private List<ActiveRuleChange> doActivate(DbSession dbSession, RuleActivation activation, RuleActivatorContext context) {
+    return doActivate(dbSession, activation, context, null);
+  }
+
+  /**
+   * @param cache if not null, then contexts of descendant profiles are loaded from this cache, and profile dates
+   *              and preview cache are not updated. It's up to the caller to do it once the bulk change is done.
+   */
+  private List<ActiveRuleChange> doActivate(DbSession dbSession, RuleActivation activation, RuleActivatorContext context,
+    @Nullable RuleActivatorCache cache) {
     context.verifyForActivation();
     List<ActiveRuleChange> changes = Lists.newArrayList();
     ActiveRuleChange change;
@@ -139,22 +150,33 @@ public class RuleActivator implements ServerComponent {
     if (change != null) {
       changes.add(change);
       persist(change, context, dbSession);
+      if (cache != null) {
+        cache.update(context);
+      }
     }
 
     if (!stopPropagation) {
-      changes.addAll(cascadeActivation(dbSession, activation, context.profile().getKey()));
+      changes.addAll(cascadeActivation(dbSession, activation, context.profile().getKey(), cache));
     }
 
     if (!changes.isEmpty()) {
-      updateProfileDate(dbSession, context);
-      previewCache.reportGlobalModification(dbSession);
+      if (cache == null) {
+        updateProfileDate(dbSession, context);
+        previewCache.reportGlobalModification(dbSession);
+      } else {
+        cache.markAsChanged(context.profile());
+      }
     }
     return changes;
   }
 
   private void updateProfileDate(DbSession dbSession, RuleActivatorContext context) {
-    context.profile().setRulesUpdatedAtAsDate(context.getInitDate());
-    db.qualityProfileDao().update(dbSession, context.profile());
+    updateProfileDate(dbSession, context.profile(), context.getInitDate());
+  }
+
+  private void updateProfileDate(DbSession dbSession, QualityProfileDto profile, Date date) {
+    profile.setRulesUpdatedAtAsDate(date);
+    db.qualityProfileDao().update(dbSession, profile);
   }
 
   /**
@@ -219,14 +241,20 @@ public class RuleActivator implements ServerComponent {
     return null;
   }
 
-  private List<ActiveRuleChange> cascadeActivation(DbSession session, RuleActivation activation, String profileKey) {
+  private List<ActiveRuleChange> cascadeActivation(DbSession session, RuleActivation activation, String profileKey,
+    @Nullable RuleActivatorCache cache) {
     List<ActiveRuleChange> changes = Lists.newArrayList();
 
     // get all inherited profiles
-    List<QualityProfileDto> children = db.qualityProfileDao().findChildren(session, profileKey);
+    List<QualityProfileDto> children = cache != null ? cache.children(profileKey) : db.qualityProfileDao().findChildren(session, profileKey);
     for (QualityProfileDto child : children) {
       RuleActivation childActivation = new RuleActivation(activation).setCascade(true);
-      changes.addAll(activate(session, childActivation, child.getKey()));
+      if (cache == null) {
+        changes.addAll(activate(session, childActivation, child.getKey()));
+      } else {
+        RuleActivatorContext childContext = cache.createContext(child, childActivation.getRuleKey());
+        changes.addAll(doActivate(session, childActivation, childContext, cache));
+      }
     }
     return changes;
   }
@@ -239,6 +267,7 @@ public class RuleActivator implements ServerComponent {
     } else if (change.getType() == ActiveRuleChange.Type.DEACTIVATED) {
       ActiveRuleDao dao = db.activeRuleDao();
       dao.deleteByKey(dbSession, change.getKey());
+      context.setActiveRule(null).setActiveRuleParams(null);
 
     } else if (change.getType() == ActiveRuleChange.Type.UPDATED) {
       activeRule = doUpdate(change, context, dbSession);
@@ -260,13 +289,16 @@ public class RuleActivator implements ServerComponent {
       activeRule.setInheritance(inheritance.name());
     }
     dao.insert(dbSession, activeRule);
+    List<ActiveRuleParamDto> paramDtos = Lists.newArrayList();
     for (Map.Entry<String, String> param : change.getParameters().entrySet()) {
       if (param.getValue() != null) {
         ActiveRuleParamDto paramDto = ActiveRuleParamDto.createFor(context.ruleParamsByKeys().get(param.getKey()));
         paramDto.setValue(param.getValue());
         dao.addParam(dbSession, activeRule, paramDto);
+        paramDtos.add(paramDto);
       }
     }
+    context.setActiveRule(activeRule).setActiveRuleParams(paramDtos);
     return activeRule;
   }
 
@@ -291,6 +323,7 @@ public class RuleActivator implements ServerComponent {
           activeRuleParamDto = ActiveRuleParamDto.createFor(context.ruleParamsByKeys().get(param.getKey()));
           activeRuleParamDto.setValue(param.getValue());
           dao.addParam(dbSession, activeRule, activeRuleParamDto);
+          context.activeRuleParamsAsMap().put(param.getKey(), activeRuleParamDto);
         }
       } else {
         if (param.getValue() != null) {
@@ -298,6 +331,7 @@ public class RuleActivator implements ServerComponent {
           dao.updateParam(dbSession, activeRule, activeRuleParamDto);
         } else {
           dao.deleteParam(dbSession, activeRule, activeRuleParamDto);
+          context.activeRuleParamsAsMap().remove(param.getKey());
         }
       }
     }
@@ -396,13 +430,20 @@ public class RuleActivator implements ServerComponent {
     try {
       Result<Rule> ruleSearchResult = ruleIndex.search(ruleQuery, new QueryContext().setScroll(true)
         .setFieldsToReturn(Arrays.asList(RuleNormalizer.RuleField.KEY.field())));
+      List<RuleKey> ruleKeys = Lists.newArrayList();
       Iterator<Rule> rules = ruleSearchResult.scroll();
       while (rules.hasNext()) {
-        Rule rule = rules.next();
+        ruleKeys.add(rules.next().key());
+      }
+
+      // rules, active rules and profile hierarchy are loaded once, then changes are computed in memory
+      RuleActivatorCache cache = contextFactory.createCache(profileKey, ruleKeys, dbSession);
+      QualityProfileDto profile = cache.profile(profileKey);
+      for (RuleKey ruleKey : ruleKeys) {
         try {
-          RuleActivation activation = new RuleActivation(rule.key());
+          RuleActivation activation = new RuleActivation(ruleKey);
           activation.setSeverity(severity);
-          List<ActiveRuleChange> changes = activate(dbSession, activation, profileKey);
+          List<ActiveRuleChange> changes = doActivate(dbSession, activation, cache.createContext(profile, ruleKey), cache);
           result.addChanges(changes);
           if (!changes.isEmpty()) {
             result.incrementSucceeded();
@@ -414,6 +455,14 @@ public class RuleActivator implements ServerComponent {
           result.getErrors().add(e.errors());
         }
       }
+
+      Date now = new Date();
+      for (QualityProfileDto changedProfile : cache.changedProfiles()) {
+        updateProfileDate(dbSession, changedProfile, now);
+      }
+      if (!cache.changedProfiles().isEmpty()) {
+        previewCache.reportGlobalModification(dbSession);
+      }
       dbSession.commit();
     } finally {
       dbSession.close();
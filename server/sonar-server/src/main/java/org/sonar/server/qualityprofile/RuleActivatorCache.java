@@ -0,0 +1,147 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.qualityprofile;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.core.qualityprofile.db.ActiveRuleDto;
+import org.sonar.core.qualityprofile.db.ActiveRuleKey;
+import org.sonar.core.qualityprofile.db.ActiveRuleParamDto;
+import org.sonar.core.qualityprofile.db.QualityProfileDto;
+import org.sonar.core.rule.RuleDto;
+import org.sonar.core.rule.RuleParamDto;
+import org.sonar.server.exceptions.BadRequestException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rules, profile hierarchy and active rules loaded once for a bulk change. It builds the
+ * {@link RuleActivatorContext}s without additional DB requests and is kept up-to-date
+ * with the changes persisted during the bulk change.
+ */
+class RuleActivatorCache {
+
+  private final Map<String, QualityProfileDto> profilesByKey = Maps.newHashMap();
+  private final ListMultimap<String, QualityProfileDto> childrenByParentKey = ArrayListMultimap.create();
+  private final Map<RuleKey, RuleDto> rulesByKey = Maps.newHashMap();
+  private final ListMultimap<Integer, RuleParamDto> ruleParamsByRuleId = ArrayListMultimap.create();
+  private final Map<ActiveRuleKey, ActiveRuleDto> activeRulesByKey = Maps.newHashMap();
+  private final ListMultimap<ActiveRuleKey, ActiveRuleParamDto> activeRuleParamsByKey = ArrayListMultimap.create();
+  private final Map<String, QualityProfileDto> changedProfilesByKey = Maps.newLinkedHashMap();
+
+  RuleActivatorCache addRules(Collection<RuleDto> rules, Collection<RuleParamDto> ruleParams) {
+    for (RuleDto rule : rules) {
+      rulesByKey.put(rule.getKey(), rule);
+    }
+    for (RuleParamDto ruleParam : ruleParams) {
+      ruleParamsByRuleId.put(ruleParam.getRuleId(), ruleParam);
+    }
+    return this;
+  }
+
+  /**
+   * Registers the profile and its active rules. Only the active rules related to the rules
+   * registered by {@link #addRules(java.util.Collection, java.util.Collection)} are kept.
+   */
+  RuleActivatorCache addProfile(QualityProfileDto profile, Collection<ActiveRuleDto> activeRules, Collection<ActiveRuleParamDto> activeRuleParams) {
+    profilesByKey.put(profile.getKey(), profile);
+    String parentKee = profile.getParentKee();
+    if (parentKee != null) {
+      childrenByParentKey.put(parentKee, profile);
+    }
+    Map<Integer, ActiveRuleKey> keysById = Maps.newHashMap();
+    for (ActiveRuleDto activeRule : activeRules) {
+      ActiveRuleKey key = activeRule.getKey();
+      if (rulesByKey.containsKey(key.ruleKey())) {
+        activeRulesByKey.put(key, activeRule);
+        keysById.put(activeRule.getId(), key);
+      }
+    }
+    for (ActiveRuleParamDto activeRuleParam : activeRuleParams) {
+      ActiveRuleKey key = keysById.get(activeRuleParam.getActiveRuleId());
+      if (key != null) {
+        activeRuleParamsByKey.put(key, activeRuleParam);
+      }
+    }
+    return this;
+  }
+
+  QualityProfileDto profile(String profileKey) {
+    QualityProfileDto profile = profilesByKey.get(profileKey);
+    if (profile == null) {
+      throw new BadRequestException("Quality profile not found: " + profileKey);
+    }
+    return profile;
+  }
+
+  List<QualityProfileDto> children(String profileKey) {
+    return childrenByParentKey.get(profileKey);
+  }
+
+  RuleActivatorContext createContext(QualityProfileDto profile, RuleKey ruleKey) {
+    RuleDto rule = rulesByKey.get(ruleKey);
+    if (rule == null) {
+      throw new BadRequestException("Rule not found: " + ruleKey);
+    }
+    RuleActivatorContext context = new RuleActivatorContext()
+      .setProfile(profile)
+      .setRule(rule)
+      .setRuleParams(ruleParamsByRuleId.get(rule.getId()));
+
+    ActiveRuleKey key = ActiveRuleKey.of(profile.getKey(), ruleKey);
+    context.setActiveRule(activeRulesByKey.get(key));
+    context.setActiveRuleParams(activeRuleParamsByKey.get(key));
+    String parentKee = profile.getParentKee();
+    if (parentKee != null) {
+      ActiveRuleKey parentKey = ActiveRuleKey.of(parentKee, ruleKey);
+      context.setParentActiveRule(activeRulesByKey.get(parentKey));
+      context.setParentActiveRuleParams(activeRuleParamsByKey.get(parentKey));
+    }
+    return context;
+  }
+
+  /**
+   * Registers the state of the active rule once the change is persisted, so that
+   * the contexts of descendant profiles are built upon it.
+   */
+  void update(RuleActivatorContext context) {
+    ActiveRuleKey key = context.activeRuleKey();
+    activeRuleParamsByKey.removeAll(key);
+    ActiveRuleDto activeRule = context.activeRule();
+    if (activeRule == null) {
+      activeRulesByKey.remove(key);
+    } else {
+      activeRulesByKey.put(key, activeRule);
+      activeRuleParamsByKey.putAll(key, context.activeRuleParamsAsMap().values());
+    }
+  }
+
+  void markAsChanged(QualityProfileDto profile) {
+    changedProfilesByKey.put(profile.getKey(), profile);
+  }
+
+  Collection<QualityProfileDto> changedProfiles() {
+    return changedProfilesByKey.values();
+  }
+}
@@ -19,6 +19,7 @@
  */
 package org.sonar.server.qualityprofile;
 
+import com.google.common.collect.Lists;
 import org.sonar.api.ServerComponent;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.core.persistence.DbSession;
@@ -31,6 +32,7 @@ import org.sonar.server.db.DbClient;
 import org.sonar.server.exceptions.BadRequestException;
 
 import java.util.Collection;
+import java.util.List;
 
 public class RuleActivatorContextFactory implements ServerComponent {
 
@@ -74,6 +76,42 @@ public class RuleActivatorContextFactory implements ServerComponent {
     return context;
   }
 
+  /**
+   * Loads at once everything required to activate the given rules on the profile and on its descendants
+   */
+  RuleActivatorCache createCache(String profileKey, Collection<RuleKey> ruleKeys, DbSession session) {
+    QualityProfileDto profile = db.qualityProfileDao().getByKey(session, profileKey);
+    if (profile == null) {
+      throw new BadRequestException("Quality profile not found: " + profileKey);
+    }
+    RuleActivatorCache cache = new RuleActivatorCache();
+    List<RuleDto> rules = db.ruleDao().getByKeys(session, ruleKeys);
+    List<Integer> ruleIds = Lists.newArrayList();
+    for (RuleDto rule : rules) {
+      ruleIds.add(rule.getId());
+    }
+    cache.addRules(rules, db.ruleDao().findRuleParamsByRuleIds(session, ruleIds));
+
+    String parentKee = profile.getParentKee();
+    if (parentKee != null) {
+      QualityProfileDto parent = db.qualityProfileDao().getByKey(session, parentKee);
+      if (parent != null) {
+        addProfileToCache(parent, cache, session);
+      }
+    }
+    addProfileToCache(profile, cache, session);
+    for (QualityProfileDto descendant : db.qualityProfileDao().findDescendants(session, profileKey)) {
+      addProfileToCache(descendant, cache, session);
+    }
+    return cache;
+  }
+
+  private void addProfileToCache(QualityProfileDto profile, RuleActivatorCache cache, DbSession session) {
+    cache.addProfile(profile,
+      db.activeRuleDao().findByProfileKey(session, profile.getKey()),
+      db.activeRuleDao().findParamsByProfileKey(session, profile.getKey()));
+  }
+
   private RuleDto initRule(RuleKey ruleKey, RuleActivatorContext context, DbSession dbSession) {
     RuleDto rule = db.ruleDao().getNullableByKey(dbSession, ruleKey);
     if (rule == null) {
@@ -21,6 +21,7 @@ package org.sonar.server.rule.db;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.utils.System2;
 import org.sonar.core.persistence.DbSession;
@@ -31,8 +32,12 @@ import org.sonar.server.db.BaseDao;
 import org.sonar.server.search.IndexDefinition;
 
 import javax.annotation.CheckForNull;
+
+import java.util.Collection;
 import java.util.List;
 
+import static com.google.common.collect.Lists.newArrayList;
+
 public class RuleDao extends BaseDao<RuleMapper, RuleDto, RuleKey> {
 
   public RuleDao() {
@@ -49,6 +54,11 @@ public class RuleDao extends BaseDao<RuleMapper, RuleDto, RuleKey> {
     return mapper(session).selectByKey(key);
   }
 
+  @Override
+  protected List<RuleDto> doGetByKeys(DbSession session, Collection<RuleKey> keys) {
+    return mapper(session).selectByKeys(newArrayList(keys));
+  }
+
   public RuleDto getByName(String name, DbSession session) {
     return mapper(session).selectByName(name);
   }
@@ -135,6 +145,14 @@ public class RuleDao extends BaseDao<RuleMapper, RuleDto, RuleKey> {
     return mapper(session).selectAllParams();
   }
 
+  public List<RuleParamDto> findRuleParamsByRuleIds(DbSession session, Collection<Integer> ruleIds) {
+    List<RuleParamDto> params = newArrayList();
+    for (List<Integer> partition : Lists.partition(newArrayList(ruleIds), 1000)) {
+      params.addAll(mapper(session).selectParamsByRuleIds(partition));
+    }
+    return params;
+  }
+
   public List<RuleParamDto> findRuleParamsByRuleKey(DbSession session, RuleKey key) {
     return mapper(session).selectParamsByRuleKey(key);
   }
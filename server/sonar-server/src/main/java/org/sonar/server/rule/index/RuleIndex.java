@@ -20,6 +20,9 @@
 package org.sonar.server.rule.index;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.elasticsearch.action.search.SearchRequestBuilder;
@@ -49,6 +52,7 @@ import org.sonar.core.rule.RuleDto;
 import org.sonar.server.qualityprofile.index.ActiveRuleNormalizer;
 import org.sonar.server.rule.Rule;
 import org.sonar.server.search.BaseIndex;
+import org.sonar.server.search.FacetValue;
 import org.sonar.server.search.IndexDefinition;
 import org.sonar.server.search.IndexField;
 import org.sonar.server.search.QueryContext;
@@ -58,11 +62,17 @@ import org.sonar.server.search.SearchClient;
 import javax.annotation.CheckForNull;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.google.common.collect.Lists.newArrayList;
 
@@ -72,6 +82,19 @@ public class RuleIndex extends BaseIndex<Rule, RuleDto, RuleKey> {
   public static final String FACET_TAGS = "tags";
   public static final String FACET_REPOSITORIES = "repositories";
 
+  private static final int MAX_CACHED_FACETS = 500;
+  private static final String ACTIVATION_FILTER = "activation";
+
+  private final Map<String, Multimap<String, FacetValue>> facetsCache = Collections.synchronizedMap(
+    new LinkedHashMap<String, Multimap<String, FacetValue>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Multimap<String, FacetValue>> eldest) {
+        return size() > MAX_CACHED_FACETS;
+      }
+    });
+  private final ConcurrentMap<String, Set<String>> termsCache = new ConcurrentHashMap<String, Set<String>>();
+  private final AtomicLong cacheGeneration = new AtomicLong();
+
   public RuleIndex(RuleNormalizer normalizer, SearchClient client) {
     super(IndexDefinition.RULE, normalizer, client);
   }
@@ -97,7 +120,28 @@ public class RuleIndex extends BaseIndex<Rule, RuleDto, RuleKey> {
     return mapping;
   }
 
+  /**
+   * Facets and terms are computed from rule documents only. They are cached until the next
+   * update of the rules, as they are requested by every search of the rules page. Updates are
+   * made visible before the caches are dropped, otherwise facets computed from the previous
+   * documents would be cached again.
+   */
+  @Override
+  public void onUpdate(boolean refreshed) {
+    if (!refreshed) {
+      refresh();
+    }
+    cacheGeneration.incrementAndGet();
+    facetsCache.clear();
+    termsCache.clear();
+  }
+
   private void setFields(QueryContext options, SearchRequestBuilder esSearch) {
+    if (options.getLimit() == 0) {
+      // only total and facets are requested
+      esSearch.setFetchSource(false);
+      return;
+    }
     /* integrate Option's Fields */
     Set<String> fields = new HashSet<String>();
     if (!options.getFieldsToReturn().isEmpty()) {
@@ -319,11 +363,11 @@ public class RuleIndex extends BaseIndex<Rule, RuleDto, RuleKey> {
 
     /** Implementation of activation query */
     if (Boolean.TRUE.equals(query.getActivation())) {
-      filters.put("activation",
+      filters.put(ACTIVATION_FILTER,
         FilterBuilders.hasChildFilter(IndexDefinition.ACTIVE_RULE.getIndexType(),
           childQuery));
     } else if (Boolean.FALSE.equals(query.getActivation())) {
-      filters.put("activation",
+      filters.put(ACTIVATION_FILTER,
         FilterBuilders.boolFilter().mustNot(
           FilterBuilders.hasChildFilter(IndexDefinition.ACTIVE_RULE.getIndexType(),
             childQuery)));
@@ -416,9 +460,18 @@ public class RuleIndex extends BaseIndex<Rule, RuleDto, RuleKey> {
     QueryBuilder qb = this.getQuery(query);
     Map<String, FilterBuilder> filters = this.getFilters(query, options);
 
+    long generation = cacheGeneration.get();
+    String facetsCacheKey = null;
+    Multimap<String, FacetValue> cachedFacets = null;
     if (options.isFacet()) {
-      for (AggregationBuilder aggregation : getFacets(qb, filters).values()) {
-        esSearch.addAggregation(aggregation);
+      facetsCacheKey = facetsCacheKey(qb, filters, options);
+      if (facetsCacheKey != null) {
+        cachedFacets = facetsCache.get(facetsCacheKey);
+      }
+      if (cachedFacets == null) {
+        for (AggregationBuilder aggregation : getFacets(qb, filters).values()) {
+          esSearch.addAggregation(aggregation);
+        }
       }
     }
 
@@ -433,7 +486,45 @@ public class RuleIndex extends BaseIndex<Rule, RuleDto, RuleKey> {
 
     esSearch.setQuery(QueryBuilders.filteredQuery(qb, fb));
     SearchResponse esResult = getClient().execute(esSearch);
-    return new Result<Rule>(this, esResult);
+    Result<Rule> result = new Result<Rule>(this, esResult);
+    if (cachedFacets != null) {
+      result.setFacets(cachedFacets);
+    } else if (facetsCacheKey != null) {
+      cacheFacets(generation, facetsCacheKey, result);
+    }
+    return result;
+  }
+
+  /**
+   * Facets do not depend on pagination, sorting or returned fields, so the key is built
+   * from the query and the filters only. Returns null when facets must not be cached:
+   * the activation filter relies on active rules, which are not covered by {@link #onUpdate(boolean)}.
+   */
+  @CheckForNull
+  private static String facetsCacheKey(QueryBuilder query, Map<String, FilterBuilder> filters, QueryContext options) {
+    if (options.isScroll() || filters.containsKey(ACTIVATION_FILTER)) {
+      return null;
+    }
+    StringBuilder key = new StringBuilder(query.toString());
+    for (Map.Entry<String, FilterBuilder> filter : new TreeMap<String, FilterBuilder>(filters).entrySet()) {
+      key.append('|').append(filter.getKey()).append('=').append(filter.getValue());
+    }
+    return key.toString();
+  }
+
+  private void cacheFacets(long generation, String key, Result<Rule> result) {
+    Multimap<String, FacetValue> facets = LinkedListMultimap.create();
+    for (Map.Entry<String, Collection<FacetValue>> facet : result.getFacets().entrySet()) {
+      facets.putAll(facet.getKey(), facet.getValue());
+    }
+    // do not cache facets that may have been computed before an update of the index
+    if (generation == cacheGeneration.get()) {
+      facetsCache.put(key, Multimaps.unmodifiableMultimap(facets));
+      if (generation != cacheGeneration.get()) {
+        // index updated meanwhile
+        facetsCache.remove(key);
+      }
+    }
   }
 
   @Override
@@ -442,7 +533,26 @@ public class RuleIndex extends BaseIndex<Rule, RuleDto, RuleKey> {
     return new RuleDoc(fields);
   }
 
+  /**
+   * Distinct values of the field. Result is cached until the next update of the index.
+   */
   public Set<String> terms(String fields) {
+    Set<String> terms = termsCache.get(fields);
+    if (terms == null) {
+      long generation = cacheGeneration.get();
+      terms = loadTerms(fields);
+      if (generation == cacheGeneration.get()) {
+        termsCache.put(fields, terms);
+        if (generation != cacheGeneration.get()) {
+          // index updated meanwhile
+          termsCache.remove(fields);
+        }
+      }
+    }
+    return new HashSet<String>(terms);
+  }
+
+  private Set<String> loadTerms(String fields) {
     Set<String> tags = new HashSet<String>();
     String key = "_ref";
 
@@ -159,6 +159,23 @@ public abstract class BaseIndex<DOMAIN, DTO extends Dto<KEY>, KEY extends Serial
     };
   }
 
+  /**
+   * Called once a bulk of changes has been submitted to the index. Indices keeping
+   * data computed from their documents must drop it. When {@code refreshed} is false, the
+   * changes are not yet visible to searches, so the data must not be computed again before
+   * a call to {@link #refresh()}.
+   */
+  public void onUpdate(boolean refreshed) {
+    // nothing to do by default
+  }
+
+  /**
+   * Makes the changes submitted to the index visible to searches
+   */
+  protected void refresh() {
+    client.execute(client.admin().indices().prepareRefresh(getIndexName()));
+  }
+
   /* Cluster And ES Stats/Client methods */
 
   protected void initializeIndex() {
@@ -35,6 +35,7 @@ import org.sonar.api.platform.ComponentContainer;
 import org.sonar.core.cluster.WorkQueue;
 import org.sonar.server.search.action.IndexAction;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -70,6 +71,7 @@ public class IndexQueue implements ServerComponent, WorkQueue<IndexAction<?>> {
 
       Map<String, Index> indexes = getIndexMap();
       Set<String> indices = new HashSet<String>();
+      Set<Index> updatedIndexes = new HashSet<Index>();
       for (IndexAction action : actions) {
         Index index = indexes.get(action.getIndexType());
         action.setIndex(index);
@@ -81,7 +83,7 @@ public class IndexQueue implements ServerComponent, WorkQueue<IndexAction<?>> {
 
       BulkRequestBuilder bulkRequestBuilder = new BulkRequestBuilder(searchClient);
 
-      long normTime = processActionsIntoQueries(bulkRequestBuilder, actions);
+      long normTime = processActionsIntoQueries(bulkRequestBuilder, actions, indexes, updatedIndexes);
 
       if (bulkRequestBuilder.numberOfActions() > 0) {
         // execute the request
@@ -98,6 +100,8 @@ public class IndexQueue implements ServerComponent, WorkQueue<IndexAction<?>> {
         LOGGER.debug("-- submitted {} items with {}ms in normalization, {}ms indexing and {}ms refresh({}). Total: {}ms",
           bulkRequestBuilder.numberOfActions(), normTime, indexTime, refreshTime, indices, (normTime + indexTime + refreshTime));
 
+        notifyUpdatedIndexes(updatedIndexes, refreshRequired ? indices : Collections.<String>emptySet());
+
         if (response.hasFailures()) {
           throw new IllegalStateException("Errors while indexing stack: " + response.buildFailureMessage());
         }
@@ -107,6 +111,14 @@ public class IndexQueue implements ServerComponent, WorkQueue<IndexAction<?>> {
     }
   }
 
+  private void notifyUpdatedIndexes(Set<Index> updatedIndexes, Set<String> refreshedIndices) {
+    for (Index index : updatedIndexes) {
+      if (index instanceof BaseIndex) {
+        ((BaseIndex) index).onUpdate(refreshedIndices.contains(index.getIndexName()));
+      }
+    }
+  }
+
   private long refreshRequiredIndex(Set<String> indices) {
 
     long refreshTime = System.currentTimeMillis();
@@ -124,22 +136,31 @@ public class IndexQueue implements ServerComponent, WorkQueue<IndexAction<?>> {
     return System.currentTimeMillis() - refreshTime;
   }
 
-  private long processActionsIntoQueries(BulkRequestBuilder bulkRequestBuilder, List<IndexAction<?>> actions) {
+  /**
+   * @param updatedIndexes filled with the indexes of the actions that write documents
+   */
+  private long processActionsIntoQueries(BulkRequestBuilder bulkRequestBuilder, List<IndexAction<?>> actions, Map<String, Index> indexes,
+    Set<Index> updatedIndexes) {
     long normTime = System.currentTimeMillis();
     try {
       boolean hasInlineRefreshRequest = false;
       ExecutorService executorService = Executors.newFixedThreadPool(CONCURRENT_NORMALIZATION_FACTOR);
       // invokeAll() blocks until ALL tasks submitted to executor complete
       List<Future<List<? extends ActionRequest>>> requests = executorService.invokeAll(actions, 20, TimeUnit.MINUTES);
-      for (Future<List<? extends ActionRequest>> updates : requests) {
-        for (ActionRequest update : updates.get()) {
+      for (int i = 0; i < requests.size(); i++) {
+        // futures are returned in the same order than actions
+        Index index = indexes.get(actions.get(i).getIndexType());
+        for (ActionRequest update : requests.get(i).get()) {
 
           if (IndexRequest.class.isAssignableFrom(update.getClass())) {
             bulkRequestBuilder.add((IndexRequest) update);
+            updatedIndexes.add(index);
           } else if (UpdateRequest.class.isAssignableFrom(update.getClass())) {
             bulkRequestBuilder.add((UpdateRequest) update);
+            updatedIndexes.add(index);
           } else if (DeleteRequest.class.isAssignableFrom(update.getClass())) {
             bulkRequestBuilder.add((DeleteRequest) update);
+            updatedIndexes.add(index);
           } else if (RefreshRequest.class.isAssignableFrom(update.getClass())) {
             hasInlineRefreshRequest = true;
           } else {
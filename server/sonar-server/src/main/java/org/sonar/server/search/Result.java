@@ -102,6 +102,15 @@ public class Result<K> {
     return this.facets.asMap();
   }
 
+  /**
+   * Replaces the facets of the result, for example by facets previously computed for the same query.
+   */
+  public Result<K> setFacets(Multimap<String, FacetValue> facets) {
+    this.facets.clear();
+    this.facets.putAll(facets);
+    return this;
+  }
+
   @CheckForNull
   public Collection<FacetValue> getFacetValues(String facetName) {
     return this.facets.get(facetName);
@@ -37,6 +37,7 @@ import org.picocontainer.Startable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.config.Settings;
+import org.sonar.core.profiling.MetricsRegistry;
 import org.sonar.core.profiling.Profiling;
 import org.sonar.core.profiling.StopWatch;
 import org.sonar.process.LoopbackAddress;
@@ -49,7 +50,10 @@ public class SearchClient extends TransportClient implements Startable {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(SearchClient.class);
 
+  static final String METRIC = "search";
+
   private final Profiling profiling;
+  private final MetricsRegistry metrics = MetricsRegistry.get();
 
   public SearchClient(Settings settings) {
     super(ImmutableSettings.settingsBuilder()
@@ -83,9 +87,14 @@ public class SearchClient extends TransportClient implements Startable {
 
   public <K extends ActionResponse> K execute(ActionRequestBuilder request) {
     StopWatch fullProfile = profiling.start("search", Profiling.Level.FULL);
+    long timer = metrics.startTimer();
     K response = null;
     try {
       response = (K) request.get();
+      long duration = metrics.stopTimer(METRIC, timer);
+      if (duration >= 0L) {
+        metrics.record(METRIC + ": " + request.getClass().getSimpleName(), duration);
+      }
 
       if (profiling.isProfilingEnabled(Profiling.Level.BASIC)) {
         if (ToXContent.class.isAssignableFrom(request.getClass())) {
@@ -39,12 +39,14 @@ import java.util.Map;
  */
 public class CodeColorizers implements ServerExtension {
 
-  private final Map<String, CodeColorizerFormat> byLang;
+  private static final CodeColorizer NO_COLORIZER = new CodeColorizer(Collections.<Tokenizer>emptyList());
+
+  private final Map<String, CodeColorizer> byLang;
 
   public CodeColorizers(List<CodeColorizerFormat> formats) {
-    byLang = new HashMap<String, CodeColorizerFormat>();
+    byLang = new HashMap<String, CodeColorizer>();
     for (CodeColorizerFormat format : formats) {
-      byLang.put(format.getLanguageKey(), format);
+      byLang.put(format.getLanguageKey(), new CodeColorizer(format.getTokenizers()));
     }
 
     LoggerFactory.getLogger(getClass()).info("Code colorizer, supported languages: " + StringUtils.join(byLang.keySet(), ","));
@@ -58,13 +60,23 @@ public class CodeColorizers implements ServerExtension {
   }
 
   public String toHtml(String code, String language) {
-    CodeColorizerFormat format = byLang.get(language);
-    List<Tokenizer> tokenizers;
-    if (format == null) {
-      tokenizers = Collections.emptyList();
-    } else {
-      tokenizers = format.getTokenizers();
-    }
-    return new CodeColorizer(tokenizers).toHtml(new StringReader(code), HtmlOptions.ONLY_SYNTAX);
+    return colorizer(language).toHtml(new StringReader(code), HtmlOptions.ONLY_SYNTAX);
+  }
+
+  /**
+   * Colorizes the lines <code>fromLine</code> to <code>toLine</code> (1-based, inclusive). The following lines are not colorized.
+   *
+   * @see CodeColorizer#toHtml(java.io.Reader, Appendable, int, int)
+   * @since 5.0
+   */
+  public String toHtml(String code, String language, int fromLine, int toLine) {
+    StringBuilder html = new StringBuilder();
+    colorizer(language).toHtml(new StringReader(code), html, fromLine, toLine);
+    return html.toString();
+  }
+
+  private CodeColorizer colorizer(String language) {
+    CodeColorizer colorizer = byLang.get(language);
+    return colorizer == null ? NO_COLORIZER : colorizer;
   }
 }
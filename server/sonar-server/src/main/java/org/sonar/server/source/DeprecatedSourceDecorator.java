@@ -21,7 +21,9 @@
 package org.sonar.server.source;
 
 import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
 import org.sonar.api.ServerComponent;
+import org.sonar.core.component.SnapshotDto;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.core.resource.ResourceDao;
@@ -33,19 +35,34 @@ import org.sonar.server.exceptions.NotFoundException;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.google.common.collect.Lists.newArrayList;
 
 /**
- * When a plugin do not use the new API to add syntax highlighting on source code, this class is called to add html info on source code
+ * When a plugin do not use the new API to add syntax highlighting on source code, this class is called to add html info on source code.
+ * As sources can't change once a snapshot is persisted, the colorized lines of the last requested snapshots are kept in memory.
+ * When a range of lines is requested, the file is only colorized up to the last requested line and the following lines are
+ * colorized by the next request that needs them.
  */
 public class DeprecatedSourceDecorator implements ServerComponent {
 
+  static final int MAX_CACHED_SOURCES = 50;
+  private static final Splitter LINE_SPLITTER = Splitter.onPattern("\r?\n|\r");
+
   private final MyBatis mybatis;
   private final ResourceDao resourceDao;
   private final CodeColorizers codeColorizers;
   private final SnapshotSourceDao snapshotSourceDao;
+  private final Map<Long, ColorizedLines> linesBySnapshotId = Collections.synchronizedMap(new LinkedHashMap<Long, ColorizedLines>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Long, ColorizedLines> eldest) {
+      return size() > MAX_CACHED_SOURCES;
+    }
+  });
 
   public DeprecatedSourceDecorator(MyBatis mybatis, ResourceDao resourceDao, CodeColorizers codeColorizers, SnapshotSourceDao snapshotSourceDao) {
     this.mybatis = mybatis;
@@ -67,20 +84,39 @@ public class DeprecatedSourceDecorator implements ServerComponent {
       if (component == null) {
         throw new NotFoundException("The component '" + componentKey + "' does not exists.");
       }
-      String source = snapshotSourceDao.selectSnapshotSourceByComponentKey(componentKey, session);
-      if (source != null) {
-        return splitSourceByLine(source, component.getLanguage(), from, to);
-      } else {
+      SnapshotDto snapshot = resourceDao.getLastSnapshot(componentKey, session);
+      if (snapshot == null) {
         return null;
       }
+      ColorizedLines lines = linesBySnapshotId.get(snapshot.getId());
+      if (lines == null || !lines.contains(to)) {
+        String source = snapshotSourceDao.selectSnapshotSource(snapshot.getId(), session);
+        if (source == null) {
+          return null;
+        }
+        lines = colorize(source, component.getLanguage(), to);
+        linesBySnapshotId.put(snapshot.getId(), lines);
+      }
+      return selectLines(lines.lines, from, to);
     } finally {
       MyBatis.closeQuietly(session);
     }
   }
 
-  private List<String> splitSourceByLine(String source, String language, @Nullable Integer from, @Nullable Integer to) {
-    String htmlSource = codeColorizers.toHtml(source, language);
-    List<String> splitSource = newArrayList(Splitter.onPattern("\r?\n|\r").split(htmlSource));
+  private ColorizedLines colorize(String source, String language, @Nullable Integer to) {
+    if (to == null) {
+      return new ColorizedLines(ImmutableList.copyOf(LINE_SPLITTER.split(codeColorizers.toHtml(source, language))), true);
+    }
+    int toLine = Math.max(to, 0);
+    List<String> lines = ImmutableList.copyOf(LINE_SPLITTER.split(codeColorizers.toHtml(source, language, 1, toLine)));
+    if (lines.size() > toLine) {
+      // the colorized code ends with the line break of the last requested line
+      return new ColorizedLines(lines.subList(0, toLine), false);
+    }
+    return new ColorizedLines(lines, lines.size() < toLine);
+  }
+
+  private List<String> selectLines(List<String> splitSource, @Nullable Integer from, @Nullable Integer to) {
     List<String> result = newArrayList();
     for (int i = 0; i < splitSource.size(); i++) {
       int currentLine = i + 1;
@@ -92,4 +128,22 @@ public class DeprecatedSourceDecorator implements ServerComponent {
     }
     return result;
   }
+
+  /**
+   * Colorized lines of a file, from its first line
+   */
+  private static class ColorizedLines {
+    private final List<String> lines;
+    // false if the following lines of the file are not colorized yet
+    private final boolean complete;
+
+    ColorizedLines(List<String> lines, boolean complete) {
+      this.lines = lines;
+      this.complete = complete;
+    }
+
+    boolean contains(@Nullable Integer to) {
+      return complete || (to != null && to <= lines.size());
+    }
+  }
 }
@@ -25,6 +25,8 @@ import org.apache.ibatis.session.SqlSession;
 import org.sonar.api.ServerComponent;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.core.source.SnapshotDataTypes;
+import org.sonar.core.source.SourceLine;
+import org.sonar.core.source.SourceLinesDecoder;
 import org.sonar.core.source.db.SnapshotDataDao;
 import org.sonar.core.source.db.SnapshotDataDto;
 import org.sonar.core.source.db.SnapshotSourceDao;
@@ -52,6 +54,16 @@ public class HtmlSourceDecorator implements ServerComponent {
   public List<String> getDecoratedSourceAsHtml(String componentKey, @Nullable Integer from, @Nullable Integer to) {
     SqlSession session = mybatis.openSession(false);
     try {
+      Collection<SnapshotDataDto> sourceLines = snapshotDataDao.selectSnapshotDataByComponentKey(componentKey,
+        Lists.newArrayList(SnapshotDataTypes.SOURCE_LINES), session);
+      if (!sourceLines.isEmpty()) {
+        // only the requested lines are decoded
+        List<SourceLine> lines = SourceLinesDecoder.fromString(sourceLines.iterator().next().getData()).decode(from, to);
+        if (hasHighlighting(lines)) {
+          return decorate(lines);
+        }
+        return null;
+      }
       Collection<SnapshotDataDto> snapshotDataEntries = snapshotDataDao.selectSnapshotDataByComponentKey(componentKey, highlightingDataTypes(), session);
       if (!snapshotDataEntries.isEmpty()) {
         String snapshotSource = snapshotSourceDao.selectSnapshotSourceByComponentKey(componentKey, session);
@@ -89,6 +101,68 @@ public class HtmlSourceDecorator implements ServerComponent {
     return null;
   }
 
+  private static boolean hasHighlighting(List<SourceLine> lines) {
+    for (SourceLine line : lines) {
+      if (line.getHighlighting() != null || line.getSymbols() != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Lines are joined and the offsets of their highlighting data are converted to offsets in the joined text.
+   */
+  private List<String> decorate(List<SourceLine> lines) {
+    StringBuilder text = new StringBuilder();
+    StringBuilder highlighting = new StringBuilder();
+    StringBuilder symbols = new StringBuilder();
+    for (int index = 0; index < lines.size(); index++) {
+      SourceLine line = lines.get(index);
+      if (index > 0) {
+        text.append('\n');
+      }
+      int lineOffset = text.length();
+      text.append(line.getSource());
+      appendWithOffset(highlighting, line.getHighlighting(), lineOffset, false);
+      appendWithOffset(symbols, line.getSymbols(), lineOffset, true);
+    }
+
+    DecorationDataHolder decorationDataHolder = new DecorationDataHolder();
+    if (highlighting.length() > 0) {
+      decorationDataHolder.loadSyntaxHighlightingData(highlighting.toString());
+    }
+    if (symbols.length() > 0) {
+      decorationDataHolder.loadSymbolReferences(symbols.toString());
+    }
+    List<String> htmlLines = new HtmlTextDecorator().decorateTextWithHtml(text.toString(), decorationDataHolder);
+    while (htmlLines.size() < lines.size()) {
+      htmlLines.add("");
+    }
+    return htmlLines;
+  }
+
+  /**
+   * Highlighting entries are "start,end,cssClass;". Symbol entries "start,end,symbolId;" are converted
+   * to the format of symbol references : "symbolId,symbolId+length,start;".
+   */
+  private static void appendWithOffset(StringBuilder sb, @Nullable String lineData, int lineOffset, boolean symbol) {
+    if (Strings.isNullOrEmpty(lineData)) {
+      return;
+    }
+    for (String entry : lineData.split(";")) {
+      String[] fields = entry.split(",");
+      int start = Integer.parseInt(fields[0]) + lineOffset;
+      int end = Integer.parseInt(fields[1]) + lineOffset;
+      if (symbol) {
+        int symbolId = Integer.parseInt(fields[2]);
+        sb.append(symbolId).append(',').append(symbolId + end - start).append(',').append(start).append(';');
+      } else {
+        sb.append(start).append(',').append(end).append(',').append(fields[2]).append(';');
+      }
+    }
+  }
+
   private List<String> highlightingDataTypes() {
     return Lists.newArrayList(SnapshotDataTypes.SYNTAX_HIGHLIGHTING,
       SnapshotDataTypes.SYMBOL_HIGHLIGHTING);
@@ -0,0 +1,77 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+import com.google.common.collect.Lists;
+import org.apache.ibatis.session.SqlSession;
+import org.sonar.api.ServerComponent;
+import org.sonar.core.persistence.MyBatis;
+import org.sonar.core.source.SnapshotDataTypes;
+import org.sonar.core.source.SourceLine;
+import org.sonar.core.source.SourceLinesDecoder;
+import org.sonar.core.source.db.SnapshotDataDao;
+import org.sonar.core.source.db.SnapshotDataDto;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Reads a range of lines of the {@link SnapshotDataTypes#SOURCE_LINES} data of a file. Only the blocks
+ * containing the requested lines are uncompressed.
+ *
+ * @since 5.0
+ */
+public class SourceLinesLoader implements ServerComponent {
+
+  private final MyBatis mybatis;
+  private final SnapshotDataDao snapshotDataDao;
+
+  public SourceLinesLoader(MyBatis mybatis, SnapshotDataDao snapshotDataDao) {
+    this.mybatis = mybatis;
+    this.snapshotDataDao = snapshotDataDao;
+  }
+
+  /**
+   * @return null if the file has not been analyzed since the source lines are stored, for example on
+   * files of projects analyzed before 5.0
+   */
+  @CheckForNull
+  public List<SourceLine> load(String fileKey, @Nullable Integer from, @Nullable Integer to) {
+    SqlSession session = mybatis.openSession(false);
+    try {
+      return load(session, fileKey, from, to);
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  @CheckForNull
+  public List<SourceLine> load(SqlSession session, String fileKey, @Nullable Integer from, @Nullable Integer to) {
+    Collection<SnapshotDataDto> sourceLines = snapshotDataDao.selectSnapshotDataByComponentKey(fileKey,
+      Lists.newArrayList(SnapshotDataTypes.SOURCE_LINES), session);
+    if (sourceLines.isEmpty()) {
+      return null;
+    }
+    return SourceLinesDecoder.fromString(sourceLines.iterator().next().getData()).decode(from, to);
+  }
+}
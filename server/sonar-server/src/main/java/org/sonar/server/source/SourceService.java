@@ -27,6 +27,7 @@ import org.sonar.core.measure.db.MeasureDto;
 import org.sonar.core.measure.db.MeasureKey;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
+import org.sonar.core.source.SourceLine;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.user.UserSession;
 
@@ -39,15 +40,18 @@ public class SourceService implements ServerComponent {
 
   private final DbClient dbClient;
   private final HtmlSourceDecorator sourceDecorator;
+  private final SourceLinesLoader sourceLinesLoader;
 
   /**
    * Old service to colorize code
    */
   private final DeprecatedSourceDecorator deprecatedSourceDecorator;
 
-  public SourceService(DbClient dbClient, HtmlSourceDecorator sourceDecorator, DeprecatedSourceDecorator deprecatedSourceDecorator) {
+  public SourceService(DbClient dbClient, HtmlSourceDecorator sourceDecorator, SourceLinesLoader sourceLinesLoader,
+    DeprecatedSourceDecorator deprecatedSourceDecorator) {
     this.dbClient = dbClient;
     this.sourceDecorator = sourceDecorator;
+    this.sourceLinesLoader = sourceLinesLoader;
     this.deprecatedSourceDecorator = deprecatedSourceDecorator;
   }
 
@@ -67,6 +71,19 @@ public class SourceService implements ServerComponent {
     return deprecatedSourceDecorator.getSourceAsHtml(fileKey, from, to);
   }
 
+  /**
+   * Source, SCM and coverage data of the lines [from, to] of the last analysis. Only the requested lines are decoded.
+   *
+   * @return null if the source lines are not stored for this file, for example when it was last analyzed before 5.0.
+   * In this case the data must be read from measures.
+   * @since 5.0
+   */
+  @CheckForNull
+  public List<SourceLine> getLines(String fileKey, @Nullable Integer from, @Nullable Integer to) {
+    checkPermission(fileKey);
+    return sourceLinesLoader.load(fileKey, from, to);
+  }
+
   @CheckForNull
   public String getScmAuthorData(String fileKey) {
     checkPermission(fileKey);
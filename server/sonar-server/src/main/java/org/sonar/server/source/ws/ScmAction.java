@@ -26,8 +26,11 @@ import org.sonar.api.server.ws.RequestHandler;
 import org.sonar.api.server.ws.Response;
 import org.sonar.api.server.ws.WebService;
 import org.sonar.api.utils.text.JsonWriter;
+import org.sonar.core.source.SourceLine;
 import org.sonar.server.source.SourceService;
 
+import java.util.List;
+
 public class ScmAction implements RequestHandler {
 
   private final SourceService service;
@@ -79,14 +82,19 @@ public class ScmAction implements RequestHandler {
   @Override
   public void handle(Request request, Response response) {
     String fileKey = request.mandatoryParam("key");
-
-    String authors = service.getScmAuthorData(fileKey);
-    String dates = service.getScmDateData(fileKey);
-
-    JsonWriter json = response.newJsonWriter().beginObject();
     int from = Math.max(request.mandatoryParamAsInt("from"), 1);
     int to = (Integer) ObjectUtils.defaultIfNull(request.paramAsInt("to"), Integer.MAX_VALUE);
-    scmWriter.write(authors, dates, from, to, request.mandatoryParamAsBoolean("commits_by_line"), json);
+    boolean commitsByLine = request.mandatoryParamAsBoolean("commits_by_line");
+
+    JsonWriter json = response.newJsonWriter().beginObject();
+    List<SourceLine> lines = service.getLines(fileKey, from, to);
+    if (lines != null) {
+      scmWriter.write(lines, commitsByLine, json);
+    } else {
+      String authors = service.getScmAuthorData(fileKey);
+      String dates = service.getScmDateData(fileKey);
+      scmWriter.write(authors, dates, from, to, commitsByLine, json);
+    }
     json.endObject().close();
   }
 }
@@ -23,9 +23,11 @@ import org.sonar.api.ServerComponent;
 import org.sonar.api.utils.DateUtils;
 import org.sonar.api.utils.KeyValueFormat;
 import org.sonar.api.utils.text.JsonWriter;
+import org.sonar.core.source.SourceLine;
 
 import javax.annotation.Nullable;
 
+import java.util.List;
 import java.util.Map;
 
 public class ScmWriter implements ServerComponent {
@@ -61,6 +63,32 @@ public class ScmWriter implements ServerComponent {
     json.endArray();
   }
 
+  /**
+   * @param lines the lines of the requested range, as decoded from the source lines of the file
+   * @since 5.0
+   */
+  void write(List<SourceLine> lines, boolean showCommitsByLine, JsonWriter json) {
+    json.name("scm").beginArray();
+    String previousAuthor = null;
+    String previousDate = null;
+    for (SourceLine line : lines) {
+      String author = line.getScmAuthor();
+      String date = line.getScmDate();
+      if (author != null && date != null) {
+        if (previousAuthor == null || showCommitsByLine || !isSameCommit(date, previousDate, author, previousAuthor)) {
+          json.beginArray();
+          json.value(line.getLine());
+          json.value(author);
+          json.value(DateUtils.formatDate(DateUtils.parseDateTime(date)));
+          json.endArray();
+        }
+        previousAuthor = author;
+        previousDate = date;
+      }
+    }
+    json.endArray();
+  }
+
   private boolean isSameCommit(String date, String previousDate, String author, String previousAuthor) {
     return author.equals(previousAuthor) && date.equals(previousDate);
   }
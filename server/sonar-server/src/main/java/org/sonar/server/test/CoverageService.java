@@ -20,23 +20,28 @@
 
 package org.sonar.server.test;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Maps;
 import org.sonar.api.ServerComponent;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.test.MutableTestable;
 import org.sonar.api.test.Testable;
-import org.sonar.api.utils.KeyValueFormat;
 import org.sonar.api.web.UserRole;
 import org.sonar.core.component.SnapshotPerspectives;
 import org.sonar.core.measure.db.MeasureDto;
-import org.sonar.core.measure.db.MeasureKey;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
+import org.sonar.core.source.SourceLine;
 import org.sonar.server.measure.persistence.MeasureDao;
+import org.sonar.server.source.SourceLinesLoader;
 import org.sonar.server.user.UserSession;
 
 import javax.annotation.CheckForNull;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class CoverageService implements ServerComponent {
@@ -45,51 +50,98 @@ public class CoverageService implements ServerComponent {
     UT, IT, OVERALL
   }
 
+  /**
+   * Maximum number of decoded files kept in memory
+   */
+  static final int CACHE_SIZE = 100;
+
   private final MyBatis myBatis;
   private final MeasureDao measureDao;
   private final SnapshotPerspectives snapshotPerspectives;
+  private final SourceLinesLoader sourceLinesLoader;
+  private final Map<String, FileCoverage> cache = Collections.synchronizedMap(new LruCache(CACHE_SIZE));
 
-  public CoverageService(MyBatis myBatis, MeasureDao measureDao, SnapshotPerspectives snapshotPerspectives) {
+  public CoverageService(MyBatis myBatis, MeasureDao measureDao, SnapshotPerspectives snapshotPerspectives, SourceLinesLoader sourceLinesLoader) {
     this.myBatis = myBatis;
     this.measureDao = measureDao;
     this.snapshotPerspectives = snapshotPerspectives;
+    this.sourceLinesLoader = sourceLinesLoader;
   }
 
   public void checkPermission(String fileKey) {
     UserSession.get().checkComponentPermission(UserRole.CODEVIEWER, fileKey);
   }
 
-  public Map<Integer, Integer> getHits(String fileKey, CoverageService.TYPE type) {
-    switch (type) {
-      case IT:
-        return findDataFromComponent(fileKey, CoreMetrics.IT_COVERAGE_LINE_HITS_DATA_KEY);
-      case OVERALL:
-        return findDataFromComponent(fileKey, CoreMetrics.OVERALL_COVERAGE_LINE_HITS_DATA_KEY);
-      default:
-        return findDataFromComponent(fileKey, CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY);
+  /**
+   * Hits, conditions and covered conditions of the last analysis of the file, loaded in a single request.
+   * The decoded data is kept in a LRU cache keyed by snapshot, so browsing the lines of a file does not parse
+   * its measures again.
+   *
+   * @since 5.0
+   */
+  public FileCoverage getCoverage(String fileKey, CoverageService.TYPE type) {
+    String[] metricKeys = metricKeys(type);
+    DbSession session = myBatis.openSession(false);
+    try {
+      List<MeasureDto> measures = measureDao.findByComponentKeyAndMetricKeys(fileKey, Arrays.asList(metricKeys), session);
+      if (measures.isEmpty()) {
+        return FileCoverage.EMPTY;
+      }
+      Long snapshotId = measures.get(0).getSnapshotId();
+      String cacheKey = snapshotId + ":" + type;
+      FileCoverage coverage = snapshotId != null ? cache.get(cacheKey) : null;
+      if (coverage == null) {
+        coverage = FileCoverage.decode(data(measures, metricKeys[0]), data(measures, metricKeys[1]), data(measures, metricKeys[2]));
+        if (snapshotId != null) {
+          cache.put(cacheKey, coverage);
+        }
+      }
+      return coverage;
+    } finally {
+      MyBatis.closeQuietly(session);
     }
   }
 
-  public Map<Integer, Integer> getConditions(String fileKey, CoverageService.TYPE type) {
-    switch (type) {
-      case IT:
-        return findDataFromComponent(fileKey, CoreMetrics.IT_CONDITIONS_BY_LINE_KEY);
-      case OVERALL:
-        return findDataFromComponent(fileKey, CoreMetrics.OVERALL_CONDITIONS_BY_LINE_KEY);
-      default:
-        return findDataFromComponent(fileKey, CoreMetrics.CONDITIONS_BY_LINE_KEY);
+  /**
+   * Coverage of the lines [from, to] of the last analysis. Unit test coverage is decoded from the source lines
+   * of the file, so only the requested lines are read. Integration and overall coverage, which are not part of
+   * the source lines, and files last analyzed before 5.0 fall back to {@link #getCoverage(String, TYPE)}.
+   *
+   * @since 5.0
+   */
+  public FileCoverage getCoverage(String fileKey, CoverageService.TYPE type, int from, int to) {
+    if (TYPE.UT.equals(type)) {
+      List<SourceLine> lines = sourceLinesLoader.load(fileKey, from, to);
+      if (lines != null) {
+        return FileCoverage.of(lines);
+      }
     }
+    return getCoverage(fileKey, type);
   }
 
+  /**
+   * @deprecated since 5.0, use {@link #getCoverage(String, TYPE)}, which decodes the three measures at once without boxing
+   * and caches the result. This method returns a copy of its hits.
+   */
+  @Deprecated
+  public Map<Integer, Integer> getHits(String fileKey, CoverageService.TYPE type) {
+    return getCoverage(fileKey, type).hitsByLine();
+  }
+
+  /**
+   * @deprecated since 5.0, use {@link #getCoverage(String, TYPE)}
+   */
+  @Deprecated
+  public Map<Integer, Integer> getConditions(String fileKey, CoverageService.TYPE type) {
+    return getCoverage(fileKey, type).conditionsByLine();
+  }
+
+  /**
+   * @deprecated since 5.0, use {@link #getCoverage(String, TYPE)}
+   */
+  @Deprecated
   public Map<Integer, Integer> getCoveredConditions(String fileKey, CoverageService.TYPE type) {
-    switch (type) {
-      case IT:
-        return findDataFromComponent(fileKey, CoreMetrics.IT_COVERED_CONDITIONS_BY_LINE_KEY);
-      case OVERALL:
-        return findDataFromComponent(fileKey, CoreMetrics.OVERALL_COVERED_CONDITIONS_BY_LINE_KEY);
-      default:
-        return findDataFromComponent(fileKey, CoreMetrics.COVERED_CONDITIONS_BY_LINE_KEY);
-    }
+    return getCoverage(fileKey, type).coveredConditionsByLine();
   }
 
   /**
@@ -105,18 +157,44 @@ public class CoverageService implements ServerComponent {
     return Maps.newHashMap();
   }
 
+  @VisibleForTesting
+  int cacheSize() {
+    return cache.size();
+  }
+
+  private static String[] metricKeys(CoverageService.TYPE type) {
+    switch (type) {
+      case IT:
+        return new String[] {CoreMetrics.IT_COVERAGE_LINE_HITS_DATA_KEY, CoreMetrics.IT_CONDITIONS_BY_LINE_KEY, CoreMetrics.IT_COVERED_CONDITIONS_BY_LINE_KEY};
+      case OVERALL:
+        return new String[] {CoreMetrics.OVERALL_COVERAGE_LINE_HITS_DATA_KEY, CoreMetrics.OVERALL_CONDITIONS_BY_LINE_KEY,
+          CoreMetrics.OVERALL_COVERED_CONDITIONS_BY_LINE_KEY};
+      default:
+        return new String[] {CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY, CoreMetrics.CONDITIONS_BY_LINE_KEY, CoreMetrics.COVERED_CONDITIONS_BY_LINE_KEY};
+    }
+  }
+
   @CheckForNull
-  private Map<Integer, Integer> findDataFromComponent(String fileKey, String metricKey) {
-    DbSession session = myBatis.openSession(false);
-    try {
-      MeasureDto data = measureDao.getNullableByKey(session, MeasureKey.of(fileKey, metricKey));
-      String dataValue = data != null ? data.getData() : null;
-      if (dataValue != null) {
-        return KeyValueFormat.parseIntInt(dataValue);
+  private static String data(List<MeasureDto> measures, String metricKey) {
+    for (MeasureDto measure : measures) {
+      if (metricKey.equals(measure.getKey().metricKey())) {
+        return measure.getData();
       }
-      return Maps.newHashMap();
-    } finally {
-      MyBatis.closeQuietly(session);
+    }
+    return null;
+  }
+
+  private static class LruCache extends LinkedHashMap<String, FileCoverage> {
+    private final int maxSize;
+
+    LruCache(int maxSize) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, FileCoverage> eldest) {
+      return size() > maxSize;
     }
   }
 }
@@ -0,0 +1,187 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.test;
+
+import com.google.common.collect.Maps;
+import org.sonar.api.utils.IntKeyValues;
+import org.sonar.api.utils.KeyValueFormat;
+import org.sonar.core.source.SourceLine;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decoded coverage of a file, without boxing. Lines are sorted so that a range of lines is
+ * read without iterating over the whole file. Immutable.
+ *
+ * @since 5.0
+ */
+public class FileCoverage {
+
+  static final FileCoverage EMPTY = new FileCoverage(new int[0], new int[0], new IntKeyValues(0), new IntKeyValues(0));
+
+  private final int[] lines;
+  private final int[] hits;
+  private final IntKeyValues conditions;
+  private final IntKeyValues coveredConditions;
+
+  private FileCoverage(int[] lines, int[] hits, IntKeyValues conditions, IntKeyValues coveredConditions) {
+    this.lines = lines;
+    this.hits = hits;
+    this.conditions = conditions;
+    this.coveredConditions = coveredConditions;
+  }
+
+  public static FileCoverage decode(@Nullable String hitsData, @Nullable String conditionsData, @Nullable String coveredConditionsData) {
+    IntKeyValues hitsByLine = KeyValueFormat.parseIntIntValues(hitsData);
+    if (hitsByLine.isEmpty()) {
+      return EMPTY;
+    }
+    int size = hitsByLine.size();
+    int[] lines = new int[size];
+    int[] hits = new int[size];
+    boolean sorted = true;
+    for (int i = 0; i < size; i++) {
+      lines[i] = hitsByLine.keyAt(i);
+      hits[i] = hitsByLine.intValueAt(i);
+      sorted &= i == 0 || lines[i - 1] < lines[i];
+    }
+    if (!sorted) {
+      sort(lines, hits);
+    }
+    return new FileCoverage(lines, hits, KeyValueFormat.parseIntIntValues(conditionsData), KeyValueFormat.parseIntIntValues(coveredConditionsData));
+  }
+
+  /**
+   * Coverage of a range of lines decoded from the source lines of the file. Lines are already sorted.
+   */
+  public static FileCoverage of(List<SourceLine> sourceLines) {
+    int size = 0;
+    for (SourceLine sourceLine : sourceLines) {
+      if (sourceLine.getLineHits() != null) {
+        size++;
+      }
+    }
+    if (size == 0) {
+      return EMPTY;
+    }
+    int[] lines = new int[size];
+    int[] hits = new int[size];
+    IntKeyValues conditions = new IntKeyValues();
+    IntKeyValues coveredConditions = new IntKeyValues();
+    int index = 0;
+    for (SourceLine sourceLine : sourceLines) {
+      Integer lineHits = sourceLine.getLineHits();
+      if (lineHits != null) {
+        lines[index] = sourceLine.getLine();
+        hits[index] = lineHits;
+        index++;
+      }
+      if (sourceLine.getConditions() != null) {
+        conditions.put(sourceLine.getLine(), sourceLine.getConditions());
+      }
+      if (sourceLine.getCoveredConditions() != null) {
+        coveredConditions.put(sourceLine.getLine(), sourceLine.getCoveredConditions());
+      }
+    }
+    return new FileCoverage(lines, hits, conditions, coveredConditions);
+  }
+
+  private static void sort(int[] lines, int[] hits) {
+    // line in the high bits, position in the low bits
+    long[] packed = new long[lines.length];
+    for (int i = 0; i < lines.length; i++) {
+      packed[i] = ((long) lines[i] << 32) | i;
+    }
+    Arrays.sort(packed);
+    int[] sortedHits = new int[hits.length];
+    for (int i = 0; i < packed.length; i++) {
+      lines[i] = (int) (packed[i] >> 32);
+      sortedHits[i] = hits[(int) packed[i]];
+    }
+    System.arraycopy(sortedHits, 0, hits, 0, hits.length);
+  }
+
+  public boolean isEmpty() {
+    return lines.length == 0;
+  }
+
+  /**
+   * Number of lines having coverage data
+   */
+  public int size() {
+    return lines.length;
+  }
+
+  /**
+   * @return the index of the first line greater than or equal to the given line, or {@link #size()} if none
+   */
+  public int firstIndex(int fromLine) {
+    int index = Arrays.binarySearch(lines, fromLine);
+    return index >= 0 ? index : -index - 1;
+  }
+
+  public int line(int index) {
+    return lines[index];
+  }
+
+  public int hits(int index) {
+    return hits[index];
+  }
+
+  @CheckForNull
+  public Integer conditions(int line) {
+    return valueOf(conditions, line);
+  }
+
+  @CheckForNull
+  public Integer coveredConditions(int line) {
+    return valueOf(coveredConditions, line);
+  }
+
+  /**
+   * Boxed copy of the hits, in the format of {@link KeyValueFormat#parseIntInt(String)}
+   */
+  public Map<Integer, Integer> hitsByLine() {
+    Map<Integer, Integer> map = Maps.newLinkedHashMap();
+    for (int index = 0; index < lines.length; index++) {
+      map.put(lines[index], hits[index]);
+    }
+    return map;
+  }
+
+  public Map<Integer, Integer> conditionsByLine() {
+    return conditions.toIntMap();
+  }
+
+  public Map<Integer, Integer> coveredConditionsByLine() {
+    return coveredConditions.toIntMap();
+  }
+
+  @CheckForNull
+  private static Integer valueOf(IntKeyValues values, int line) {
+    int index = values.indexOf(line);
+    return index >= 0 ? values.intValueAt(index) : null;
+  }
+}
@@ -28,7 +28,9 @@ import org.sonar.api.server.ws.Response;
 import org.sonar.api.server.ws.WebService;
 import org.sonar.api.utils.text.JsonWriter;
 import org.sonar.server.test.CoverageService;
+import org.sonar.server.test.FileCoverage;
 
+import java.util.Collections;
 import java.util.Map;
 
 public class CoverageShowAction implements RequestHandler {
@@ -99,35 +101,30 @@ public class CoverageShowAction implements RequestHandler {
 
     JsonWriter json = response.newJsonWriter().beginObject();
 
-    Map<Integer, Integer> hits = coverageService.getHits(fileKey, type);
-    if (!hits.isEmpty()) {
-      Map<Integer, Integer> testCases = coverageService.getTestCases(fileKey, type);
-      Map<Integer, Integer> conditions = coverageService.getConditions(fileKey, type);
-      Map<Integer, Integer> coveredConditions = coverageService.getCoveredConditions(fileKey, type);
-      writeCoverage(hits, testCases, conditions, coveredConditions, from, to, json);
+    FileCoverage coverage = coverageService.getCoverage(fileKey, type, from, to);
+    int firstIndex = coverage.firstIndex(from);
+    if (!coverage.isEmpty()) {
+      Map<Integer, Integer> testCases = Collections.emptyMap();
+      if (firstIndex < coverage.size() && coverage.line(firstIndex) <= to) {
+        testCases = coverageService.getTestCases(fileKey, type);
+      }
+      writeCoverage(coverage, firstIndex, testCases, to, json);
     }
 
     json.endObject().close();
   }
 
-  private void writeCoverage(Map<Integer, Integer> hitsByLine,
-                             Map<Integer, Integer> testCasesByLines,
-                             Map<Integer, Integer> conditionsByLine,
-                             Map<Integer, Integer> coveredConditionsByLine,
-                             int from, int to, JsonWriter json) {
+  private void writeCoverage(FileCoverage coverage, int firstIndex, Map<Integer, Integer> testCasesByLines, int to, JsonWriter json) {
     json.name("coverage").beginArray();
-    for (Map.Entry<Integer, Integer> entry : hitsByLine.entrySet()) {
-      Integer line = entry.getKey();
-      if (line >= from && line <= to) {
-        Integer hits = entry.getValue();
-        json.beginArray();
-        json.value(line);
-        json.value(hits > 0);
-        json.value(testCasesByLines.get(line));
-        json.value(conditionsByLine.get(line));
-        json.value(coveredConditionsByLine.get(line));
-        json.endArray();
-      }
+    for (int index = firstIndex; index < coverage.size() && coverage.line(index) <= to; index++) {
+      int line = coverage.line(index);
+      json.beginArray();
+      json.value(line);
+      json.value(coverage.hits(index) > 0);
+      json.value(testCasesByLines.get(line));
+      json.value(coverage.conditions(line));
+      json.value(coverage.coveredConditions(line));
+      json.endArray();
     }
     json.endArray();
   }
@@ -376,8 +376,8 @@ public final class JRubyFacade {
     }
   }
 
-  public byte[] createDatabaseForPreview(@Nullable Long projectId) {
-    return get(PreviewCache.class).getDatabaseForPreview(projectId);
+  public String getDatabaseFilePathForPreview(@Nullable Long projectId) {
+    return get(PreviewCache.class).getDatabaseFileForPreview(projectId).getAbsolutePath();
   }
 
   public String getPeriodLabel(int periodIndex) {
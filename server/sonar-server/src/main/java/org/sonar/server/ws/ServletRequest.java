@@ -48,4 +48,9 @@ public class ServletRequest extends ValidatingRequest {
     return value;
   }
 
+  @Override
+  public String header(String name) {
+    return source.getHeader(name);
+  }
+
 }
@@ -19,7 +19,9 @@
  */
 package org.sonar.server.ws;
 
+import com.google.common.collect.Maps;
 import org.sonar.api.server.ws.Response;
+import org.sonar.api.server.ws.ResponseWithHeaders;
 import org.sonar.api.utils.text.JsonWriter;
 import org.sonar.api.utils.text.XmlWriter;
 import org.sonar.server.plugins.MimeTypes;
@@ -28,8 +30,9 @@ import javax.annotation.CheckForNull;
 import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.util.Map;
 
-public class ServletResponse implements Response {
+public class ServletResponse implements ResponseWithHeaders {
 
   public static class ServletStream implements Stream {
     private String mediaType;
@@ -73,6 +76,7 @@ public class ServletResponse implements Response {
   }
 
   private final ServletStream stream = new ServletStream();
+  private final Map<String, String> headers = Maps.newLinkedHashMap();
 
   @Override
   public JsonWriter newJsonWriter() {
@@ -96,4 +100,17 @@ public class ServletResponse implements Response {
     stream.setStatus(204);
     return this;
   }
+
+  @Override
+  public ServletResponse setHeader(String name, String value) {
+    headers.put(name, value);
+    return this;
+  }
+
+  /**
+   * Used by Ruby on Rails to copy headers to the HTTP response
+   */
+  public Map<String, String> headers() {
+    return headers;
+  }
 }
@@ -0,0 +1,90 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.app;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class ConnectorExecutorTest {
+
+  MBeanServer mbeanServer = mock(MBeanServer.class);
+  ConnectorExecutor executor = new ConnectorExecutor("http", mbeanServer);
+  CountDownLatch latch = new CountDownLatch(1);
+
+  @After
+  public void tearDown() throws Exception {
+    latch.countDown();
+    executor.stop();
+  }
+
+  @Test
+  public void count_rejected_connections() throws Exception {
+    executor.setMinSpareThreads(1);
+    executor.setMaxThreads(1);
+    executor.setMaxQueueSize(1);
+    executor.start();
+
+    executor.execute(new Waiting());
+    while (executor.getActiveThreads() < 1) {
+      Thread.sleep(10L);
+    }
+    executor.execute(new Waiting());
+    try {
+      executor.execute(new Waiting());
+      fail();
+    } catch (RejectedExecutionException e) {
+      assertThat(executor.getRejectedConnections()).isEqualTo(1L);
+      assertThat(executor.getQueueLength()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void register_in_jmx() throws Exception {
+    executor.start();
+    verify(mbeanServer).registerMBean(any(), eq(new ObjectName("SonarQube:type=Connector,name=http")));
+
+    executor.stop();
+    verify(mbeanServer).unregisterMBean(new ObjectName("SonarQube:type=Connector,name=http"));
+  }
+
+  private class Waiting implements Runnable {
+    @Override
+    public void run() {
+      try {
+        latch.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
@@ -21,6 +21,7 @@
 package org.sonar.server.app;
 
 import com.google.common.collect.ImmutableMap;
+import org.apache.catalina.Executor;
 import org.apache.catalina.connector.Connector;
 import org.apache.catalina.startup.Tomcat;
 import org.junit.Test;
@@ -73,6 +74,69 @@ public class ConnectorsTest {
       )));
   }
 
+  @Test
+  public void configure_executor() throws Exception {
+    Properties p = new Properties();
+    p.setProperty("sonar.web.http.minThreads", "2");
+    p.setProperty("sonar.web.http.maxThreads", "30");
+    p.setProperty("sonar.web.http.maxQueueSize", "100");
+    Props props = new Props(p);
+
+    Connectors.configure(tomcat, props);
+
+    verify(tomcat.getService()).addExecutor(argThat(new ArgumentMatcher<Executor>() {
+      @Override
+      public boolean matches(Object o) {
+        ConnectorExecutor executor = (ConnectorExecutor) o;
+        return executor.getName().equals("http") && executor.getMinSpareThreads() == 2 && executor.getMaxThreads() == 30
+          && executor.getMaxQueueSize() == 100;
+      }
+    }));
+  }
+
+  @Test
+  public void blocking_connector_by_default() throws Exception {
+    Connectors.configure(tomcat, new Props(new Properties()));
+
+    verify(tomcat).setConnector(argThat(new ArgumentMatcher<Connector>() {
+      @Override
+      public boolean matches(Object o) {
+        return ((Connector) o).getProtocol().equals(Connectors.HTTP_PROTOCOL);
+      }
+    }));
+  }
+
+  @Test
+  public void configure_non_blocking_connector() throws Exception {
+    Properties p = new Properties();
+    p.setProperty("sonar.web.http.protocol", "nio");
+    p.setProperty("sonar.web.http.acceptorThreads", "1");
+
+    Connectors.configure(tomcat, new Props(p));
+
+    verify(tomcat).setConnector(argThat(new ArgumentMatcher<Connector>() {
+      @Override
+      public boolean matches(Object o) {
+        Connector c = (Connector) o;
+        return c.getProtocolHandlerClassName().equals(Connectors.NIO_PROTOCOL) && c.getProperty("useSendfile").equals(true)
+          && c.getProperty("acceptorThreadCount").equals(1);
+      }
+    }));
+  }
+
+  @Test
+  public void fail_if_unsupported_protocol() throws Exception {
+    Properties p = new Properties();
+    p.setProperty("sonar.web.http.protocol", "apr");
+
+    try {
+      Connectors.configure(tomcat, new Props(p));
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Unsupported protocol 'apr' for http connector. Valid values are 'bio' and 'nio'");
+    }
+  }
+
   @Test
   public void different_thread_pools_for_connectors() throws Exception {
     Properties p = new Properties();
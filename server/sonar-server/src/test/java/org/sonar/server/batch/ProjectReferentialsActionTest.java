@@ -20,7 +20,10 @@
 
 package org.sonar.server.batch;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Multimap;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -46,14 +49,20 @@ import org.sonar.server.qualityprofile.QProfileFactory;
 import org.sonar.server.qualityprofile.QProfileLoader;
 import org.sonar.server.rule.Rule;
 import org.sonar.server.rule.RuleService;
+import org.sonar.server.rule.index.RuleIndex;
 import org.sonar.server.user.MockUserSession;
 import org.sonar.server.ws.WsTester;
 
 import java.util.Collections;
+import java.util.Date;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -77,6 +86,9 @@ public class ProjectReferentialsActionTest {
   @Mock
   RuleService ruleService;
 
+  @Mock
+  RuleIndex ruleIndex;
+
   @Mock
   Languages languages;
 
@@ -89,20 +101,25 @@ public class ProjectReferentialsActionTest {
   ComponentDto module;
   ComponentDto subModule;
 
+  Multimap<Long, PropertyDto> propertiesByResourceId = ArrayListMultimap.create();
+
   @Before
   public void setUp() throws Exception {
     DbClient dbClient = mock(DbClient.class);
     when(dbClient.openSession(false)).thenReturn(session);
     when(dbClient.componentDao()).thenReturn(componentDao);
 
-    project = new ComponentDto().setKey("org.codehaus.sonar:sonar").setQualifier(Qualifiers.PROJECT);
-    module = new ComponentDto().setKey("org.codehaus.sonar:sonar-server").setQualifier(Qualifiers.MODULE);
-    subModule = new ComponentDto().setKey("org.codehaus.sonar:sonar-server-dao").setQualifier(Qualifiers.MODULE);
+    project = new ComponentDto().setId(1L).setKey("org.codehaus.sonar:sonar").setQualifier(Qualifiers.PROJECT);
+    module = new ComponentDto().setId(2L).setKey("org.codehaus.sonar:sonar-server").setQualifier(Qualifiers.MODULE);
+    subModule = new ComponentDto().setId(3L).setKey("org.codehaus.sonar:sonar-server-dao").setQualifier(Qualifiers.MODULE);
 
     when(componentDao.getNullableAuthorizedComponentByKey(project.key(), session)).thenReturn(project);
     when(componentDao.getNullableAuthorizedComponentByKey(module.key(), session)).thenReturn(module);
     when(componentDao.getNullableAuthorizedComponentByKey(subModule.key(), session)).thenReturn(subModule);
 
+    when(propertiesDao.selectProjectPropertiesByResourceIds(anyCollectionOf(Long.class), eq(session))).thenReturn(propertiesByResourceId);
+    when(ruleIndex.getLastSynchronization()).thenReturn(new Date(1400000000000L));
+
     when(language.getKey()).thenReturn("java");
     when(languages.all()).thenReturn(new Language[] {language});
 
@@ -111,7 +128,7 @@ public class ProjectReferentialsActionTest {
       );
 
     tester = new WsTester(new BatchWs(mock(BatchIndex.class), mock(GlobalReferentialsAction.class),
-      new ProjectReferentialsAction(dbClient, propertiesDao, qProfileFactory, qProfileLoader, ruleService, languages), mock(UploadReportAction.class)));
+      new ProjectReferentialsAction(dbClient, propertiesDao, qProfileFactory, qProfileLoader, ruleService, ruleIndex, languages), mock(UploadReportAction.class)));
   }
 
   @Test
@@ -122,7 +139,7 @@ public class ProjectReferentialsActionTest {
     when(componentDao.getNullableRootProjectByKey(project.key(), session)).thenReturn(project);
     when(componentDao.findModulesByProject(project.key(), session)).thenReturn(Collections.<ComponentDto>emptyList());
 
-    when(propertiesDao.selectProjectProperties(project.key(), session)).thenReturn(newArrayList(
+    propertiesByResourceId.putAll(project.getId(), newArrayList(
       new PropertyDto().setKey("sonar.jira.project.key").setValue("SONAR"),
       new PropertyDto().setKey("sonar.jira.login.secured").setValue("john")
       ));
@@ -139,7 +156,7 @@ public class ProjectReferentialsActionTest {
     when(componentDao.getNullableRootProjectByKey(project.key(), session)).thenReturn(project);
     when(componentDao.findModulesByProject(project.key(), session)).thenReturn(Collections.<ComponentDto>emptyList());
 
-    when(propertiesDao.selectProjectProperties(project.key(), session)).thenReturn(newArrayList(
+    propertiesByResourceId.putAll(project.getId(), newArrayList(
       new PropertyDto().setKey("sonar.jira.project.key").setValue("SONAR"),
       new PropertyDto().setKey("sonar.jira.login.secured").setValue("john")
     ));
@@ -155,12 +172,12 @@ public class ProjectReferentialsActionTest {
     when(componentDao.getNullableRootProjectByKey(project.key(), session)).thenReturn(project);
     when(componentDao.findModulesByProject(project.key(), session)).thenReturn(newArrayList(module));
 
-    when(propertiesDao.selectProjectProperties(project.key(), session)).thenReturn(newArrayList(
+    propertiesByResourceId.putAll(project.getId(), newArrayList(
       new PropertyDto().setKey("sonar.jira.project.key").setValue("SONAR"),
       new PropertyDto().setKey("sonar.jira.login.secured").setValue("john")
     ));
 
-    when(propertiesDao.selectProjectProperties(module.key(), session)).thenReturn(newArrayList(
+    propertiesByResourceId.putAll(module.getId(), newArrayList(
       new PropertyDto().setKey("sonar.jira.project.key").setValue("SONAR-SERVER"),
       new PropertyDto().setKey("sonar.coverage.exclusions").setValue("**/*.java")
       ));
@@ -176,7 +193,7 @@ public class ProjectReferentialsActionTest {
     when(componentDao.getNullableRootProjectByKey(project.key(), session)).thenReturn(project);
     when(componentDao.findModulesByProject(project.key(), session)).thenReturn(newArrayList(module));
 
-    when(propertiesDao.selectProjectProperties(project.key(), session)).thenReturn(newArrayList(
+    propertiesByResourceId.putAll(project.getId(), newArrayList(
       new PropertyDto().setKey("sonar.jira.project.key").setValue("SONAR"),
       new PropertyDto().setKey("sonar.jira.login.secured").setValue("john")
       ));
@@ -194,17 +211,17 @@ public class ProjectReferentialsActionTest {
     when(componentDao.findModulesByProject(project.key(), session)).thenReturn(newArrayList(module));
     when(componentDao.findModulesByProject(module.key(), session)).thenReturn(newArrayList(subModule));
 
-    when(propertiesDao.selectProjectProperties(project.key(), session)).thenReturn(newArrayList(
+    propertiesByResourceId.putAll(project.getId(), newArrayList(
       new PropertyDto().setKey("sonar.jira.project.key").setValue("SONAR"),
       new PropertyDto().setKey("sonar.jira.login.secured").setValue("john")
       ));
 
-    when(propertiesDao.selectProjectProperties(module.key(), session)).thenReturn(newArrayList(
+    propertiesByResourceId.putAll(module.getId(), newArrayList(
       new PropertyDto().setKey("sonar.jira.project.key").setValue("SONAR-SERVER"),
       new PropertyDto().setKey("sonar.coverage.exclusions").setValue("**/*.java")
       ));
 
-    when(propertiesDao.selectProjectProperties(subModule.key(), session)).thenReturn(newArrayList(
+    propertiesByResourceId.putAll(subModule.getId(), newArrayList(
       new PropertyDto().setKey("sonar.jira.project.key").setValue("SONAR-SERVER-DAO")
       ));
 
@@ -216,23 +233,23 @@ public class ProjectReferentialsActionTest {
   public void return_project_with_two_modules() throws Exception {
     MockUserSession.set().setLogin("john").setGlobalPermissions(GlobalPermissions.SCAN_EXECUTION);
 
-    ComponentDto module2 = new ComponentDto().setKey("org.codehaus.sonar:sonar-application").setQualifier(Qualifiers.MODULE);
+    ComponentDto module2 = new ComponentDto().setId(4L).setKey("org.codehaus.sonar:sonar-application").setQualifier(Qualifiers.MODULE);
 
     when(componentDao.getNullableRootProjectByKey(project.key(), session)).thenReturn(project);
     when(componentDao.findModulesByProject(project.key(), session)).thenReturn(newArrayList(module, module2));
 
-    when(propertiesDao.selectProjectProperties(project.key(), session)).thenReturn(newArrayList(
+    propertiesByResourceId.putAll(project.getId(), newArrayList(
       new PropertyDto().setKey("sonar.jira.project.key").setValue("SONAR"),
       new PropertyDto().setKey("sonar.jira.login.secured").setValue("john")
     ));
 
-    when(propertiesDao.selectProjectProperties(module.key(), session)).thenReturn(newArrayList(
+    propertiesByResourceId.putAll(module.getId(), newArrayList(
       new PropertyDto().setKey("sonar.jira.project.key").setValue("SONAR-SERVER"),
       // This property should not be found on the other module
       new PropertyDto().setKey("sonar.coverage.exclusions").setValue("**/*.java")
     ));
 
-    when(propertiesDao.selectProjectProperties(module2.key(), session)).thenReturn(newArrayList(
+    propertiesByResourceId.putAll(module2.getId(), newArrayList(
       new PropertyDto().setKey("sonar.jira.project.key").setValue("SONAR-APPLICATION")
     ));
 
@@ -279,7 +296,7 @@ public class ProjectReferentialsActionTest {
     when(componentDao.getParentModuleByKey(module.key(), session)).thenReturn(project);
     when(componentDao.getParentModuleByKey(subModule.key(), session)).thenReturn(module);
 
-    when(propertiesDao.selectProjectProperties(subModule.key(), session)).thenReturn(newArrayList(
+    propertiesByResourceId.putAll(subModule.getId(), newArrayList(
       new PropertyDto().setKey("sonar.jira.project.key").setValue("SONAR"),
       new PropertyDto().setKey("sonar.jira.login.secured").setValue("john"),
       new PropertyDto().setKey("sonar.coverage.exclusions").setValue("**/*.java")
@@ -297,15 +314,15 @@ public class ProjectReferentialsActionTest {
     when(componentDao.getParentModuleByKey(module.key(), session)).thenReturn(project);
     when(componentDao.getParentModuleByKey(subModule.key(), session)).thenReturn(module);
 
-    when(propertiesDao.selectProjectProperties(project.key(), session)).thenReturn(newArrayList(
+    propertiesByResourceId.putAll(project.getId(), newArrayList(
       new PropertyDto().setKey("sonar.jira.project.key").setValue("SONAR")
     ));
 
-    when(propertiesDao.selectProjectProperties(module.key(), session)).thenReturn(newArrayList(
+    propertiesByResourceId.putAll(module.getId(), newArrayList(
       new PropertyDto().setKey("sonar.jira.login.secured").setValue("john")
     ));
 
-    when(propertiesDao.selectProjectProperties(subModule.key(), session)).thenReturn(newArrayList(
+    propertiesByResourceId.putAll(subModule.getId(), newArrayList(
       new PropertyDto().setKey("sonar.coverage.exclusions").setValue("**/*.java")
     ));
 
@@ -321,7 +338,7 @@ public class ProjectReferentialsActionTest {
     when(componentDao.getParentModuleByKey(module.key(), session)).thenReturn(project);
     when(componentDao.getParentModuleByKey(subModule.key(), session)).thenReturn(module);
 
-    when(propertiesDao.selectProjectProperties(project.key(), session)).thenReturn(newArrayList(
+    propertiesByResourceId.putAll(project.getId(), newArrayList(
       new PropertyDto().setKey("sonar.jira.project.key").setValue("SONAR"),
       new PropertyDto().setKey("sonar.jira.login.secured").setValue("john"),
       new PropertyDto().setKey("sonar.coverage.exclusions").setValue("**/*.java")
@@ -340,12 +357,12 @@ public class ProjectReferentialsActionTest {
     when(componentDao.getParentModuleByKey(module.key(), session)).thenReturn(project);
     when(componentDao.getParentModuleByKey(subModule.key(), session)).thenReturn(module);
 
-    when(propertiesDao.selectProjectProperties(project.key(), session)).thenReturn(newArrayList(
+    propertiesByResourceId.putAll(project.getId(), newArrayList(
       new PropertyDto().setKey("sonar.jira.login.secured").setValue("john"),
       new PropertyDto().setKey("sonar.coverage.exclusions").setValue("**/*.java")
     ));
 
-    when(propertiesDao.selectProjectProperties(module.key(), session)).thenReturn(newArrayList(
+    propertiesByResourceId.putAll(module.getId(), newArrayList(
       new PropertyDto().setKey("sonar.jira.project.key").setValue("SONAR-SERVER")
     ));
 
@@ -446,6 +463,43 @@ public class ProjectReferentialsActionTest {
     request.execute().assertJson(getClass(), "return_active_rules.json");
   }
 
+  @Test
+  public void return_not_modified_if_etag_is_unchanged() throws Exception {
+    MockUserSession.set().setLogin("john").setGlobalPermissions(GlobalPermissions.SCAN_EXECUTION);
+    when(componentDao.getNullableRootProjectByKey(project.key(), session)).thenReturn(project);
+    propertiesByResourceId.put(project.getId(), new PropertyDto().setKey("sonar.jira.project.key").setValue("SONAR"));
+
+    WsTester.Result result = tester.newGetRequest("batch", "project").setParam("key", project.key()).execute();
+    String etag = result.header("ETag");
+    // MD5 hash of the body, as computed by batch on its local copy
+    assertThat(etag).isEqualTo(ProjectReferentialsAction.etag(result.outputAsString().getBytes(Charsets.UTF_8)));
+
+    WsTester.Result notModified = tester.newGetRequest("batch", "project").setParam("key", project.key()).setHeader("If-None-Match", etag).execute();
+    notModified.assertNotModified();
+    assertThat(notModified.outputAsString()).isEmpty();
+    verify(qProfileLoader).findActiveRulesByProfile("abcd");
+
+    // settings are changed
+    propertiesByResourceId.put(project.getId(), new PropertyDto().setKey("sonar.coverage.exclusions").setValue("**/*.java"));
+    WsTester.Result modified = tester.newGetRequest("batch", "project").setParam("key", project.key()).setHeader("If-None-Match", etag).execute();
+    assertThat(modified.header("ETag")).isNotEqualTo(etag);
+    assertThat(modified.outputAsString()).contains("sonar.coverage.exclusions");
+  }
+
+  @Test
+  public void reuse_active_rules_of_unchanged_profiles() throws Exception {
+    MockUserSession.set().setLogin("john").setGlobalPermissions(GlobalPermissions.SCAN_EXECUTION);
+
+    tester.newGetRequest("batch", "project").setParam("key", project.key()).execute();
+    tester.newGetRequest("batch", "project").setParam("key", module.key()).execute();
+    verify(qProfileLoader, times(1)).findActiveRulesByProfile("abcd");
+
+    // rules are updated
+    when(ruleIndex.getLastSynchronization()).thenReturn(new Date(1500000000000L));
+    tester.newGetRequest("batch", "project").setParam("key", project.key()).execute();
+    verify(qProfileLoader, times(2)).findActiveRulesByProfile("abcd");
+  }
+
   @Test
   public void fail_if_no_permission() throws Exception {
     MockUserSession.set().setLogin("john").setGlobalPermissions();
@@ -36,6 +36,7 @@ import org.sonar.api.rule.RuleKey;
 import org.sonar.api.utils.DateUtils;
 import org.sonar.api.utils.Duration;
 import org.sonar.api.utils.Durations;
+import org.sonar.api.utils.System2;
 import org.sonar.api.web.NavigationSection;
 import org.sonar.api.web.Page;
 import org.sonar.api.web.UserRole;
@@ -70,8 +71,10 @@ import java.util.List;
 import java.util.Locale;
 
 import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Sets.newHashSet;
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
@@ -122,6 +125,10 @@ public class ComponentAppActionTest {
 
   List<MeasureDto> measures = newArrayList();
 
+  List<ComponentDto> parents = newArrayList();
+
+  System2 system = mock(System2.class);
+
   WsTester tester;
 
   @Before
@@ -136,8 +143,9 @@ public class ComponentAppActionTest {
     when(issueService.findSeveritiesByComponent(anyString(), any(Date.class), eq(session))).thenReturn(mock(Multiset.class));
     when(issueService.findRulesByComponent(anyString(), any(Date.class), eq(session))).thenReturn(mock(RulesAggregation.class));
     when(measureDao.findByComponentKeyAndMetricKeys(anyString(), anyListOf(String.class), eq(session))).thenReturn(measures);
+    when(componentDao.getByIds(eq(session), anyCollectionOf(Long.class))).thenReturn(parents);
 
-    tester = new WsTester(new ComponentsWs(new ComponentAppAction(dbClient, issueService, views, ruleService, periods, durations, i18n)));
+    tester = new WsTester(new ComponentsWs(new ComponentAppAction(dbClient, issueService, views, ruleService, periods, durations, i18n, system)));
   }
 
   @Test
@@ -148,8 +156,8 @@ public class ComponentAppActionTest {
       .setLongName("src/main/java/org/sonar/api/Plugin.java")
       .setPath("src/main/java/org/sonar/api/Plugin.java").setSubProjectId(5L).setProjectId_unit_test_only(1L);
     when(componentDao.getNullableByKey(session, COMPONENT_KEY)).thenReturn(file);
-    when(componentDao.getById(5L, session)).thenReturn(new ComponentDto().setId(5L).setLongName("SonarQube :: Plugin API").setKey(SUB_PROJECT_KEY));
-    when(componentDao.getById(1L, session)).thenReturn(new ComponentDto().setId(1L).setLongName("SonarQube").setKey("org.codehaus.sonar:sonar"));
+    parents.add(new ComponentDto().setId(5L).setLongName("SonarQube :: Plugin API").setKey(SUB_PROJECT_KEY));
+    parents.add(new ComponentDto().setId(1L).setLongName("SonarQube").setKey("org.codehaus.sonar:sonar"));
     when(propertiesDao.selectByQuery(any(PropertyQuery.class), eq(session))).thenReturn(newArrayList(new PropertyDto()));
 
     WsTester.TestRequest request = tester.newGetRequest("api/components", "app").setParam("key", COMPONENT_KEY);
@@ -163,7 +171,7 @@ public class ComponentAppActionTest {
 
     ComponentDto file = new ComponentDto().setId(1L).setQualifier("TRK").setKey(componentKey).setName("SonarQube").setProjectId_unit_test_only(1L);
     when(componentDao.getNullableByKey(session, componentKey)).thenReturn(file);
-    when(componentDao.getById(1L, session)).thenReturn(new ComponentDto().setId(1L).setLongName("SonarQube").setKey("org.codehaus.sonar:sonar"));
+    parents.add(new ComponentDto().setId(1L).setLongName("SonarQube").setKey("org.codehaus.sonar:sonar"));
     when(propertiesDao.selectByQuery(any(PropertyQuery.class), eq(session))).thenReturn(newArrayList(new PropertyDto()));
 
     WsTester.TestRequest request = tester.newGetRequest("api/components", "app").setParam("key", componentKey);
@@ -177,7 +185,7 @@ public class ComponentAppActionTest {
     ComponentDto file = new ComponentDto().setId(10L).setQualifier("FIL").setKey(COMPONENT_KEY).setName("Plugin.java")
       .setPath("src/main/java/org/sonar/api/Plugin.java").setSubProjectId(1L).setProjectId_unit_test_only(1L);
     when(componentDao.getNullableByKey(session, COMPONENT_KEY)).thenReturn(file);
-    when(componentDao.getById(1L, session)).thenReturn(new ComponentDto().setId(1L).setLongName("SonarQube").setKey("org.codehaus.sonar:sonar"));
+    parents.add(new ComponentDto().setId(1L).setLongName("SonarQube").setKey("org.codehaus.sonar:sonar"));
     when(propertiesDao.selectByQuery(any(PropertyQuery.class), eq(session))).thenReturn(newArrayList(new PropertyDto()));
 
     WsTester.TestRequest request = tester.newGetRequest("api/components", "app").setParam("key", COMPONENT_KEY);
@@ -307,8 +315,8 @@ public class ComponentAppActionTest {
     ComponentDto file = new ComponentDto().setId(10L).setQualifier("UTS").setKey(componentKey).setName("PlanActionTest.java")
       .setPath("src/test/java/org/sonar/server/issue/PlanActionTest.java").setSubProjectId(5L).setProjectId_unit_test_only(1L);
     when(componentDao.getNullableByKey(session, componentKey)).thenReturn(file);
-    when(componentDao.getById(5L, session)).thenReturn(new ComponentDto().setId(5L).setLongName("SonarQube :: Plugin API").setKey(SUB_PROJECT_KEY));
-    when(componentDao.getById(1L, session)).thenReturn(new ComponentDto().setId(1L).setLongName("SonarQube").setKey("org.codehaus.sonar:sonar"));
+    parents.add(new ComponentDto().setId(5L).setLongName("SonarQube :: Plugin API").setKey(SUB_PROJECT_KEY));
+    parents.add(new ComponentDto().setId(1L).setLongName("SonarQube").setKey("org.codehaus.sonar:sonar"));
 
     addMeasure(CoreMetrics.TESTS_KEY, 10);
 
@@ -474,13 +482,56 @@ public class ComponentAppActionTest {
     request.execute().assertJson(getClass(), "app_with_manual_rules.json");
   }
 
+  @Test
+  public void load_project_and_sub_project_in_one_request() throws Exception {
+    MockUserSession.set().addComponentPermission(UserRole.USER, SUB_PROJECT_KEY, COMPONENT_KEY);
+    addComponent();
+
+    tester.newGetRequest("api/components", "app").setParam("key", COMPONENT_KEY).execute();
+
+    verify(componentDao).getByIds(session, newHashSet(1L, 5L));
+    verify(componentDao, never()).getById(anyLong(), eq(session));
+  }
+
+  @Test
+  public void do_not_load_favourite_of_anonymous() throws Exception {
+    MockUserSession.set().addComponentPermission(UserRole.USER, SUB_PROJECT_KEY, COMPONENT_KEY);
+    addComponent();
+
+    tester.newGetRequest("api/components", "app").setParam("key", COMPONENT_KEY).execute();
+
+    verifyZeroInteractions(propertiesDao);
+  }
+
+  @Test
+  public void keep_manual_rules_and_periods_in_cache() throws Exception {
+    MockUserSession.set().addComponentPermission(UserRole.USER, SUB_PROJECT_KEY, COMPONENT_KEY);
+    addComponent();
+    addPeriod();
+    when(system.now()).thenReturn(1000L);
+
+    tester.newGetRequest("api/components", "app").setParam("key", COMPONENT_KEY).execute();
+    when(system.now()).thenReturn(1000L + ComponentAppAction.CACHE_TTL_MS - 1L);
+    tester.newGetRequest("api/components", "app").setParam("key", COMPONENT_KEY).execute();
+
+    verify(ruleService, times(1)).search(any(RuleQuery.class), any(QueryContext.class));
+    verify(resourceDao, times(1)).getLastSnapshotByResourceId(1L, session);
+
+    // cache expired
+    when(system.now()).thenReturn(1000L + ComponentAppAction.CACHE_TTL_MS);
+    tester.newGetRequest("api/components", "app").setParam("key", COMPONENT_KEY).execute();
+
+    verify(ruleService, times(2)).search(any(RuleQuery.class), any(QueryContext.class));
+    verify(resourceDao, times(2)).getLastSnapshotByResourceId(1L, session);
+  }
+
   private void addComponent() {
     ComponentDto file = new ComponentDto().setId(10L).setQualifier("FIL").setKey(COMPONENT_KEY).setName("Plugin.java")
       .setLongName("src/main/java/org/sonar/api/Plugin.java")
       .setPath("src/main/java/org/sonar/api/Plugin.java").setSubProjectId(5L).setProjectId_unit_test_only(1L);
     when(componentDao.getNullableByKey(session, COMPONENT_KEY)).thenReturn(file);
-    when(componentDao.getById(5L, session)).thenReturn(new ComponentDto().setId(5L).setLongName("SonarQube :: Plugin API").setKey(SUB_PROJECT_KEY));
-    when(componentDao.getById(1L, session)).thenReturn(new ComponentDto().setId(1L).setLongName("SonarQube").setKey("org.codehaus.sonar:sonar"));
+    parents.add(new ComponentDto().setId(5L).setLongName("SonarQube :: Plugin API").setKey(SUB_PROJECT_KEY));
+    parents.add(new ComponentDto().setId(1L).setLongName("SonarQube").setKey("org.codehaus.sonar:sonar"));
   }
 
   private void addPeriod() {
@@ -23,7 +23,9 @@ package org.sonar.server.computation;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.core.computation.db.AnalysisReportDto;
+import org.sonar.core.profiling.MetricsRegistry;
 
+import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
 
@@ -58,6 +60,29 @@ public class AnalysisReportTaskTest {
     verify(service).analyzeReport(any(AnalysisReportDto.class));
   }
 
+  @Test
+  public void record_duration_of_analysis() {
+    MetricsRegistry metrics = new MetricsRegistry().setEnabled(true);
+    sut = new AnalysisReportTask(queue, service, metrics);
+    when(queue.bookNextAvailable()).thenReturn(AnalysisReportDto.newForTests(1L));
+
+    sut.run();
+
+    assertThat(metrics.histograms().get("computation").count()).isEqualTo(1);
+  }
+
+  @Test
+  public void count_failures() {
+    MetricsRegistry metrics = new MetricsRegistry().setEnabled(true);
+    sut = new AnalysisReportTask(queue, service, metrics);
+    when(queue.bookNextAvailable()).thenReturn(AnalysisReportDto.newForTests(1L));
+    doThrow(new IllegalStateException()).when(service).analyzeReport(any(AnalysisReportDto.class));
+
+    sut.run();
+
+    assertThat(metrics.counters().get("computation.failures")).isEqualTo(1L);
+  }
+
 
 
 }
@@ -42,6 +42,7 @@ public class BaseDataChangeTest extends AbstractDaoTestCase {
   @Before
   public void setUp() throws Exception {
     db.executeUpdateSql("truncate table persons");
+    db.executeUpdateSql("truncate table properties");
   }
 
   @Test
@@ -336,6 +337,114 @@ public class BaseDataChangeTest extends AbstractDaoTestCase {
     }
   }
 
+  @Test
+  public void partitioned_mass_update() throws Exception {
+    db.prepareDbUnit(getClass(), "persons.xml");
+
+    new BaseDataChange(db.database()) {
+      @Override
+      public void execute(Context context) throws SQLException {
+        PartitionedMassUpdate massUpdate = context.preparePartitionedMassUpdate("test");
+        massUpdate.range("select min(id), max(id) from persons where id>=2");
+        massUpdate.select("select id from persons where id>=? and id<?");
+        massUpdate.update("update persons set login=?, age=? where id=?");
+        massUpdate.chunkSize(1).threads(2);
+        massUpdate.execute(new UpdateLoginAndAge());
+      }
+    }.execute();
+
+    db.assertDbUnit(getClass(), "mass-update-result.xml", "persons");
+    // checkpoint is dropped when migration is completed
+    assertThat(db.count("select count(*) from properties")).isEqualTo(0);
+  }
+
+  @Test
+  public void partitioned_mass_update_saves_checkpoint() throws Exception {
+    db.prepareDbUnit(getClass(), "persons.xml");
+
+    BaseDataChange change = new BaseDataChange(db.database()) {
+      @Override
+      public void execute(Context context) throws SQLException {
+        PartitionedMassUpdate massUpdate = context.preparePartitionedMassUpdate("test");
+        massUpdate.range("select min(id), max(id) from persons");
+        massUpdate.select("select id from persons where id>=? and id<?");
+        massUpdate.update("update persons set login=?, age=? where id=?");
+        massUpdate.chunkSize(1);
+        massUpdate.execute(new UpdateLoginAndAge() {
+          @Override
+          public boolean handle(Select.Row row, SqlStatement update) throws SQLException {
+            if (row.getLong(1) == 3L) {
+              throw new SQLException("Fail on row 3");
+            }
+            return super.handle(row, update);
+          }
+        });
+      }
+    };
+    try {
+      change.execute();
+      fail();
+    } catch (SQLException e) {
+      assertThat(e).hasMessage("Fail on row 3");
+    }
+
+    // chunks [1,2[ and [2,3[ are committed
+    assertThat(db.count("select age from persons where id=2")).isEqualTo(12);
+    assertThat(db.count("select count(*) from properties where prop_key='sonar.dbMigration.checkpoint.test' and text_value='3'")).isEqualTo(1);
+  }
+
+  @Test
+  public void resume_partitioned_mass_update_from_checkpoint() throws Exception {
+    db.prepareDbUnit(getClass(), "persons.xml");
+    db.executeUpdateSql("insert into properties (prop_key, text_value) values ('sonar.dbMigration.checkpoint.test', '3')");
+
+    new BaseDataChange(db.database()) {
+      @Override
+      public void execute(Context context) throws SQLException {
+        PartitionedMassUpdate massUpdate = context.preparePartitionedMassUpdate("test");
+        massUpdate.range("select min(id), max(id) from persons");
+        massUpdate.select("select id from persons where id>=? and id<?");
+        massUpdate.update("update persons set login=?, age=? where id=?");
+        massUpdate.execute(new UpdateLoginAndAge());
+      }
+    }.execute();
+
+    db.assertDbUnit(getClass(), "resume-partitioned-mass-update-result.xml", "persons");
+    assertThat(db.count("select count(*) from properties")).isEqualTo(0);
+  }
+
+  @Test
+  public void bad_partitioned_mass_update() throws Exception {
+    BaseDataChange change = new BaseDataChange(db.database()) {
+      @Override
+      public void execute(Context context) throws SQLException {
+        PartitionedMassUpdate massUpdate = context.preparePartitionedMassUpdate("test");
+        massUpdate.select("select id from persons where id>=? and id<?");
+        massUpdate.update("update persons set login=?, age=? where id=?");
+        // range is not set
+        massUpdate.execute(new UpdateLoginAndAge());
+      }
+    };
+    try {
+      change.execute();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("RANGE, SELECT or UPDATE requests are not defined");
+    }
+  }
+
+  static class UpdateLoginAndAge implements MassUpdate.Handler {
+    @Override
+    public boolean handle(Select.Row row, SqlStatement update) throws SQLException {
+      long id = row.getLong(1);
+      update
+        .setString(1, "login" + id)
+        .setInt(2, 10 + (int) id)
+        .setLong(3, id);
+      return true;
+    }
+  }
+
   static class UserReader implements Select.RowReader<Object[]> {
     @Override
     public Object[] read(Select.Row row) throws SQLException {
@@ -0,0 +1,139 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.design;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.core.component.SnapshotDto;
+import org.sonar.core.dependency.DependencyDto;
+import org.sonar.core.dependency.DependencyMapper;
+import org.sonar.core.measure.db.MeasureDto;
+import org.sonar.core.measure.db.MeasureKey;
+import org.sonar.core.persistence.DbSession;
+import org.sonar.core.resource.ResourceDao;
+import org.sonar.core.resource.ResourceDto;
+import org.sonar.server.db.DbClient;
+import org.sonar.server.measure.persistence.MeasureDao;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DsmServiceTest {
+
+  static final String DIRECTORY_KEY = "org.codehaus.sonar:sonar:src/main/java/org/foo";
+
+  @Mock
+  DbClient dbClient;
+
+  @Mock
+  DbSession session;
+
+  @Mock
+  MeasureDao measureDao;
+
+  @Mock
+  ResourceDao resourceDao;
+
+  @Mock
+  DependencyMapper mapper;
+
+  DsmService service;
+
+  @Before
+  public void setUp() throws Exception {
+    when(dbClient.openSession(false)).thenReturn(session);
+    when(dbClient.measureDao()).thenReturn(measureDao);
+    when(dbClient.resourceDao()).thenReturn(resourceDao);
+    when(session.getMapper(DependencyMapper.class)).thenReturn(mapper);
+    when(resourceDao.getLastSnapshot(DIRECTORY_KEY, session)).thenReturn(new SnapshotDto().setId(100L));
+    service = new DsmService(dbClient);
+  }
+
+  @Test
+  public void return_stored_dsm() throws Exception {
+    when(measureDao.findByComponentKeyAndMetricKey(DIRECTORY_KEY, CoreMetrics.DEPENDENCY_MATRIX_KEY, session))
+      .thenReturn(MeasureDto.createFor(MeasureKey.of(DIRECTORY_KEY, CoreMetrics.DEPENDENCY_MATRIX_KEY)).setTextValue("[{stored}]"));
+
+    assertThat(service.getDsm(DIRECTORY_KEY)).isEqualTo("[{stored}]");
+    verify(mapper, never()).selectChildrenComponents(anyLong());
+  }
+
+  @Test
+  public void compute_sorted_dsm_from_dependencies() throws Exception {
+    when(mapper.selectChildrenComponents(100L)).thenReturn(Arrays.asList(file(3L, "C.java"), file(2L, "B.java"), file(1L, "A.java")));
+    when(mapper.selectBetweenChildren(100L)).thenReturn(Arrays.asList(
+      dependency(10L, 1L, 2L, 3),
+      // feedback edge
+      dependency(11L, 2L, 1L, 1),
+      dependency(12L, 2L, 3L, 2)));
+
+    String dsm = service.getDsm(DIRECTORY_KEY);
+
+    JSONAssert.assertEquals("[" +
+      "{\"i\":1,\"n\":\"A.java\",\"q\":\"FIL\",\"v\":[{},{\"i\":11,\"w\":1},{}]}," +
+      "{\"i\":2,\"n\":\"B.java\",\"q\":\"FIL\",\"v\":[{\"i\":10,\"w\":3},{},{}]}," +
+      "{\"i\":3,\"n\":\"C.java\",\"q\":\"FIL\",\"v\":[{},{\"i\":12,\"w\":2},{}]}" +
+      "]", dsm, true);
+  }
+
+  @Test
+  public void keep_computed_dsm_of_snapshot_in_memory() throws Exception {
+    when(mapper.selectChildrenComponents(100L)).thenReturn(Arrays.asList(file(1L, "A.java")));
+    when(mapper.selectBetweenChildren(100L)).thenReturn(Collections.<DependencyDto>emptyList());
+
+    String dsm = service.getDsm(DIRECTORY_KEY);
+    assertThat(service.getDsm(DIRECTORY_KEY)).isEqualTo(dsm);
+
+    verify(mapper, times(1)).selectChildrenComponents(100L);
+  }
+
+  @Test
+  public void no_dsm_without_children() throws Exception {
+    when(mapper.selectChildrenComponents(100L)).thenReturn(Collections.<ResourceDto>emptyList());
+
+    assertThat(service.getDsm(DIRECTORY_KEY)).isNull();
+  }
+
+  @Test
+  public void no_dsm_without_snapshot() throws Exception {
+    assertThat(service.getDsm("unknown")).isNull();
+  }
+
+  private static ResourceDto file(long id, String name) {
+    return new ResourceDto().setId(id).setName(name).setQualifier("FIL");
+  }
+
+  private static DependencyDto dependency(long id, long from, long to, int weight) {
+    return new DependencyDto().setId(id).setFromResourceId(from).setToResourceId(to).setWeight(weight);
+  }
+}
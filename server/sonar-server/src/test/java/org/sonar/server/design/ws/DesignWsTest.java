@@ -0,0 +1,72 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.design.ws;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.api.web.UserRole;
+import org.sonar.server.design.DsmService;
+import org.sonar.server.exceptions.NotFoundException;
+import org.sonar.server.user.MockUserSession;
+import org.sonar.server.ws.WsTester;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DesignWsTest {
+
+  static final String DIRECTORY_KEY = "org.codehaus.sonar:sonar:src/main/java/org/foo";
+
+  DsmService dsmService = mock(DsmService.class);
+  WsTester tester = new WsTester(new DesignWs(new DsmAction(dsmService)));
+
+  @Before
+  public void setUp() throws Exception {
+    MockUserSession.set().addComponentPermission(UserRole.USER, "org.codehaus.sonar:sonar", DIRECTORY_KEY);
+  }
+
+  @Test
+  public void define_ws() throws Exception {
+    WebService.Controller controller = tester.controller("api/design");
+    assertThat(controller).isNotNull();
+    assertThat(controller.since()).isEqualTo("5.0");
+
+    WebService.Action dsm = controller.action("dsm");
+    assertThat(dsm).isNotNull();
+    assertThat(dsm.isInternal()).isTrue();
+    assertThat(dsm.params()).hasSize(1);
+  }
+
+  @Test
+  public void return_dsm() throws Exception {
+    when(dsmService.getDsm(DIRECTORY_KEY)).thenReturn("[{\"i\":1,\"n\":\"A.java\",\"q\":\"FIL\",\"v\":[{}]}]");
+
+    WsTester.Result result = tester.newGetRequest("api/design", "dsm").setParam("key", DIRECTORY_KEY).execute();
+
+    assertThat(result.outputAsString()).isEqualTo("[{\"i\":1,\"n\":\"A.java\",\"q\":\"FIL\",\"v\":[{}]}]");
+  }
+
+  @Test(expected = NotFoundException.class)
+  public void fail_if_no_dsm() throws Exception {
+    tester.newGetRequest("api/design", "dsm").setParam("key", DIRECTORY_KEY).execute();
+  }
+}
@@ -37,6 +37,8 @@ import java.util.Collections;
 import java.util.List;
 
 import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Sets.newHashSet;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
@@ -52,8 +54,11 @@ public class DuplicationsJsonWriterTest {
 
   DuplicationsJsonWriter writer;
 
+  List<ComponentDto> projects = newArrayList();
+
   @Before
   public void setUp() throws Exception {
+    when(componentDao.getByIds(eq(session), anyCollectionOf(Long.class))).thenReturn(projects);
     writer = new DuplicationsJsonWriter(componentDao);
   }
 
@@ -64,10 +69,8 @@ public class DuplicationsJsonWriterTest {
     String key2 = "org.codehaus.sonar:sonar-ws-client:src/main/java/org/sonar/wsclient/services/PropertyUpdateQuery.java";
     ComponentDto file2 = new ComponentDto().setId(11L).setQualifier("FIL").setKey(key2).setLongName("PropertyUpdateQuery").setProjectId_unit_test_only(1L).setSubProjectId(5L);
 
-    when(componentDao.getNullableByKey(session, key1)).thenReturn(file1);
-    when(componentDao.getNullableByKey(session, key2)).thenReturn(file2);
-    when(componentDao.getNullableById(1L, session)).thenReturn(new ComponentDto().setId(1L).setKey("org.codehaus.sonar:sonar").setLongName("SonarQube"));
-    when(componentDao.getNullableById(5L, session)).thenReturn(new ComponentDto().setId(5L).setKey("org.codehaus.sonar:sonar-ws-client").setLongName("SonarQube :: Web Service Client"));
+    projects.add(new ComponentDto().setId(1L).setKey("org.codehaus.sonar:sonar").setLongName("SonarQube"));
+    projects.add(new ComponentDto().setId(5L).setKey("org.codehaus.sonar:sonar-ws-client").setLongName("SonarQube :: Web Service Client"));
 
     List<DuplicationsParser.Block> blocks = newArrayList();
     blocks.add(new DuplicationsParser.Block(newArrayList(
@@ -110,10 +113,11 @@ public class DuplicationsJsonWriterTest {
         "}"
     );
 
-    verify(componentDao, times(2)).getNullableByKey(eq(session), anyString());
-    // Verify call to dao is cached when searching for project / sub project
-    verify(componentDao, times(1)).getNullableById(eq(1L), eq(session));
-    verify(componentDao, times(1)).getNullableById(eq(5L), eq(session));
+    // Files are already loaded by the parser
+    verify(componentDao, never()).getNullableByKey(eq(session), anyString());
+    // Projects and sub projects are loaded in one request
+    verify(componentDao).getByIds(session, newHashSet(1L, 5L));
+    verify(componentDao, never()).getNullableById(anyLong(), eq(session));
   }
 
   @Test
@@ -123,9 +127,7 @@ public class DuplicationsJsonWriterTest {
     String key2 = "org.codehaus.sonar:sonar-ws-client:src/main/java/org/sonar/wsclient/services/PropertyUpdateQuery.java";
     ComponentDto file2 = new ComponentDto().setId(11L).setQualifier("FIL").setKey(key2).setLongName("PropertyUpdateQuery").setProjectId_unit_test_only(1L);
 
-    when(componentDao.getNullableByKey(session, key1)).thenReturn(file1);
-    when(componentDao.getNullableByKey(session, key2)).thenReturn(file2);
-    when(componentDao.getNullableById(1L, session)).thenReturn(new ComponentDto().setId(1L).setKey("org.codehaus.sonar:sonar").setLongName("SonarQube"));
+    projects.add(new ComponentDto().setId(1L).setKey("org.codehaus.sonar:sonar").setLongName("SonarQube"));
 
     List<DuplicationsParser.Block> blocks = newArrayList();
     blocks.add(new DuplicationsParser.Block(newArrayList(
@@ -170,8 +172,7 @@ public class DuplicationsJsonWriterTest {
     String key1 = "org.codehaus.sonar:sonar-ws-client:src/main/java/org/sonar/wsclient/services/PropertyDeleteQuery.java";
     ComponentDto file1 = new ComponentDto().setId(10L).setQualifier("FIL").setKey(key1).setLongName("PropertyDeleteQuery").setProjectId_unit_test_only(1L);
 
-    when(componentDao.getNullableByKey(session, key1)).thenReturn(file1);
-    when(componentDao.getNullableById(1L, session)).thenReturn(new ComponentDto().setId(1L).setKey("org.codehaus.sonar:sonar").setLongName("SonarQube"));
+    projects.add(new ComponentDto().setId(1L).setKey("org.codehaus.sonar:sonar").setLongName("SonarQube"));
 
     List<DuplicationsParser.Block> blocks = newArrayList();
 
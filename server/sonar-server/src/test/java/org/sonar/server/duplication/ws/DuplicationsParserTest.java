@@ -40,7 +40,14 @@ import java.io.File;
 import java.io.IOException;
 import java.util.List;
 
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Sets.newHashSet;
 import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -63,17 +70,16 @@ public class DuplicationsParserTest {
     // Current file
     String key1 = "org.codehaus.sonar:sonar-plugin-api:src/main/java/org/sonar/api/utils/command/CommandExecutor.java";
     currentFile = new ComponentDto().setId(10L).setQualifier("FIL").setKey(key1).setLongName("CommandExecutor").setProjectId_unit_test_only(1L);
-    when(componentDao.getNullableByKey(session, key1)).thenReturn(currentFile);
 
     // File on same project
     String key2 = "org.codehaus.sonar:sonar-plugin-api:src/main/java/com/sonar/orchestrator/util/CommandExecutor.java";
     fileOnSameProject = new ComponentDto().setId(11L).setQualifier("FIL").setKey(key2).setLongName("CommandExecutor").setProjectId_unit_test_only(1L);
-    when(componentDao.getNullableByKey(session, key2)).thenReturn(fileOnSameProject);
 
     // File on different project
     String key3 = "com.sonarsource.orchestrator:sonar-orchestrator:src/main/java/com/sonar/orchestrator/util/CommandExecutor.java";
     fileOnDifferentProject = new ComponentDto().setId(12L).setQualifier("FIL").setKey(key3).setLongName("CommandExecutor").setProjectId_unit_test_only(2L);
-    when(componentDao.getNullableByKey(session, key3)).thenReturn(fileOnDifferentProject);
+
+    when(componentDao.getByKeys(eq(session), anyCollectionOf(String.class))).thenReturn(newArrayList(currentFile, fileOnSameProject, fileOnDifferentProject));
 
     parser = new DuplicationsParser(componentDao);
   }
@@ -185,6 +191,14 @@ public class DuplicationsParserTest {
     assertThat(duplication2.size()).isEqualTo(5);
   }
 
+  @Test
+  public void load_referenced_components_in_one_request() throws Exception {
+    parser.parse(currentFile, getData("duplications_on_different_project.xml"), session);
+
+    verify(componentDao).getByKeys(session, newHashSet(currentFile.key(), fileOnSameProject.key(), fileOnDifferentProject.key()));
+    verify(componentDao, never()).getNullableByKey(eq(session), anyString());
+  }
+
   @Test
   public void compare_duplications() throws Exception {
     ComponentDto currentFile = new ComponentDto().setId(11L).setProjectId_unit_test_only(1L);
@@ -54,7 +54,10 @@ import org.sonar.server.search.*;
 import org.sonar.server.tester.ServerTester;
 import org.sonar.server.user.MockUserSession;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 
 import static com.google.common.collect.Lists.newArrayList;
@@ -670,6 +673,55 @@ public class IssueIndexMediumTest {
     assertThat(index.search(query.build(), new QueryContext()).getHits()).hasSize(1);
   }
 
+  @Test
+  public void cached_authorization_gives_same_results_as_join() throws Exception {
+    ComponentDto project1 = ComponentTesting.newProjectDto().setKey("project1");
+    ComponentDto project2 = ComponentTesting.newProjectDto().setKey("project2");
+    tester.get(ComponentDao.class).insert(session, project1, project2);
+
+    UserDto john = new UserDto().setLogin("john").setName("john").setActive(true);
+    db.userDao().insert(session, john);
+    tester.get(PermissionFacade.class).insertUserPermission(project1.getId(), john.getId(), UserRole.USER, session);
+
+    db.issueAuthorizationDao().synchronizeAfter(session, new Date(0));
+    db.issueDao().insert(session,
+      IssueTesting.newDto(rule, file, project1),
+      IssueTesting.newDto(rule, file, project2));
+    session.commit();
+    session.clearCache();
+
+    IssueAuthorizationIndex authorizationIndex = tester.get(IssueAuthorizationIndex.class);
+    authorizationIndex.clearAuthorizedProjectsCache();
+    IssueIndex cachedIndex = new IssueIndex(tester.get(IssueNormalizer.class), tester.get(SearchClient.class), authorizationIndex,
+      new org.sonar.api.config.Settings().setProperty(IssueIndex.CACHED_AUTHORIZATION_PROPERTY, true));
+    MockUserSession.set().setLogin("john");
+    try {
+      assertThat(cachedIndex.search(IssueQuery.builder().build(), new QueryContext()).getHits()).hasSize(1);
+      assertThat(index.search(IssueQuery.builder().build(), new QueryContext()).getHits()).hasSize(1);
+      assertThat(authorizationIndex.findAuthorizedProjectKeys("john", Collections.<String>emptySet(), UserRole.USER)).containsOnly("project1");
+
+      // group names containing separators are not mixed up
+      authorizationIndex.findAuthorizedProjectKeys(null, Collections.singleton("a,b"), UserRole.USER);
+      authorizationIndex.findAuthorizedProjectKeys(null, new HashSet<String>(Arrays.asList("a", "b")), UserRole.USER);
+      assertThat(authorizationIndex.cachedAuthorizations()).isEqualTo(3);
+
+      // cache is kept when only issues are updated
+      db.issueDao().insert(session, IssueTesting.newDto(rule, file, project1));
+      session.commit();
+      assertThat(authorizationIndex.cachedAuthorizations()).isEqualTo(3);
+
+      // cache is dropped when authorizations are updated
+      tester.get(PermissionFacade.class).insertUserPermission(project2.getId(), john.getId(), UserRole.USER, session);
+      db.issueAuthorizationDao().synchronizeAfter(session, new Date(0));
+      session.commit();
+      assertThat(authorizationIndex.cachedAuthorizations()).isEqualTo(0);
+      assertThat(cachedIndex.search(IssueQuery.builder().build(), new QueryContext()).getHits()).hasSize(3);
+      assertThat(index.search(IssueQuery.builder().build(), new QueryContext()).getHits()).hasSize(3);
+    } finally {
+      authorizationIndex.clearAuthorizedProjectsCache();
+    }
+  }
+
   @Test
   public void synchronize_issues() throws Exception {
     Integer numberOfIssues = 1000;
@@ -0,0 +1,41 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.measure;
+
+import org.sonar.api.config.Settings;
+
+/**
+ * Executes the tests of {@link MeasureFilterExecutorTest} on the in-memory store, to check that it returns the
+ * same results as SQL.
+ */
+public class InMemoryMeasureFilterExecutorTest extends MeasureFilterExecutorTest {
+
+  @Override
+  MeasureFilterStore createStore() {
+    return new MeasureFilterStore(db.myBatis(), db.database(), new Settings()) {
+      @Override
+      boolean supports(MeasureFilter filter) {
+        // the dataset is loaded by each test, so measures are reloaded before executing the filter
+        loadAll();
+        return super.supports(filter);
+      }
+    };
+  }
+}
@@ -22,6 +22,7 @@ package org.sonar.server.measure;
 import org.junit.Before;
 import org.junit.ClassRule;
 import org.junit.Test;
+import org.sonar.api.config.Settings;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Metric;
 import org.sonar.api.utils.DateUtils;
@@ -60,7 +61,14 @@ public class MeasureFilterExecutorTest {
 
   @Before
   public void before() {
-    executor = new MeasureFilterExecutor(db.myBatis(), db.database(), new ResourceDao(db.myBatis(), System2.INSTANCE));
+    executor = new MeasureFilterExecutor(db.myBatis(), db.database(), new ResourceDao(db.myBatis(), System2.INSTANCE), createStore());
+  }
+
+  /**
+   * The store is not started, so filters are executed in SQL. See {@link InMemoryMeasureFilterExecutorTest}.
+   */
+  MeasureFilterStore createStore() {
+    return new MeasureFilterStore(db.myBatis(), db.database(), new Settings());
   }
 
   @Test
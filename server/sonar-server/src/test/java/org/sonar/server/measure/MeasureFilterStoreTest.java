@@ -0,0 +1,241 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.measure;
+
+import org.apache.ibatis.session.SqlSession;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.config.Settings;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.utils.DateUtils;
+import org.sonar.core.persistence.MyBatis;
+import org.sonar.core.persistence.TestDatabase;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class MeasureFilterStoreTest {
+
+  private static final long JAVA_PROJECT_ID = 1L;
+  private static final long PHP_PROJECT_ID = 10L;
+  private static final long PHP_SNAPSHOT_ID = 110L;
+  private static final Metric METRIC_LINES = new Metric.Builder("lines", "Lines", Metric.ValueType.INT).create().setId(1);
+  private static final Metric METRIC_PROFILE = new Metric.Builder("profile", "Profile", Metric.ValueType.STRING).create().setId(2);
+  private static final Metric METRIC_COVERAGE = new Metric.Builder("coverage", "Coverage", Metric.ValueType.FLOAT).create().setId(3);
+  private static final Metric METRIC_UNKNOWN = new Metric.Builder("unknown", "Unknown", Metric.ValueType.FLOAT).create().setId(4);
+
+  @ClassRule
+  public static TestDatabase db = new TestDatabase();
+
+  private Settings settings = new Settings();
+  private ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+  private MeasureFilterStore store;
+
+  @Before
+  public void before() {
+    db.prepareDbUnit(MeasureFilterExecutorTest.class, "shared.xml");
+    // background tasks are executed immediately
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        ((Runnable) invocation.getArguments()[0]).run();
+        return null;
+      }
+    }).when(executor).execute(any(Runnable.class));
+    store = new MeasureFilterStore(db.myBatis(), db.database(), settings, executor);
+  }
+
+  @Test
+  public void load_last_snapshots_of_projects() {
+    store.start();
+
+    assertThat(store.isEnabled()).isTrue();
+    Map<Long, MeasureTable> tables = store.load(null);
+    // java project and php project, but not their directories and files
+    assertThat(tables.keySet()).containsOnly(JAVA_PROJECT_ID, PHP_PROJECT_ID);
+    assertThat(tables.get(JAVA_PROJECT_ID).size()).isEqualTo(1);
+    assertThat(tables.get(PHP_PROJECT_ID).size()).isEqualTo(1);
+  }
+
+  @Test
+  public void execute_filters_in_sql_until_loaded() {
+    MeasureFilterStore notLoadedStore = new MeasureFilterStore(db.myBatis(), db.database(), settings, mock(ScheduledExecutorService.class));
+    notLoadedStore.start();
+
+    assertThat(notLoadedStore.isEnabled()).isFalse();
+    assertThat(notLoadedStore.supports(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")))).isFalse();
+  }
+
+  @Test
+  public void do_not_load_if_disabled() {
+    settings.setProperty(MeasureFilterStore.ENABLED_PROPERTY, false);
+    store.start();
+
+    assertThat(store.isEnabled()).isFalse();
+    assertThat(store.supports(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")))).isFalse();
+  }
+
+  @Test
+  public void supported_filters() {
+    store.start();
+
+    assertThat(store.supports(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK", "VW")))).isTrue();
+    assertThat(store.supports(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK"))
+      .addCondition(new MeasureFilterCondition(METRIC_LINES, MeasureFilterCondition.Operator.GREATER, 100.0))
+      .addCondition(new MeasureFilterCondition(METRIC_PROFILE, MeasureFilterCondition.Operator.IN, "('Sonar way')")))).isTrue();
+
+    // files are not in memory
+    assertThat(store.supports(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK", "CLA")))).isFalse();
+    assertThat(store.supports(new MeasureFilter().setResourceKey("java"))).isFalse();
+    assertThat(store.supports(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")).setResourceName("java"))).isFalse();
+    assertThat(store.supports(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")).setBaseResourceKey("java_project"))).isFalse();
+    assertThat(store.supports(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK"))
+      .addCondition(new MeasureFilterCondition(METRIC_PROFILE, MeasureFilterCondition.Operator.EQUALS, "Sonar way")))).isFalse();
+  }
+
+  @Test
+  public void return_same_results_as_sql() throws SQLException {
+    store.start();
+
+    assertSameResults(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")));
+    assertSameResults(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")).setSortAsc(false));
+    assertSameResults(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")).setSortOnMetric(METRIC_LINES));
+    assertSameResults(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")).setSortOnMetric(METRIC_LINES).setSortOnPeriod(5).setSortAsc(false));
+    assertSameResults(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")).setSortOn(MeasureFilterSort.Field.DATE));
+    assertSameResults(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")).setSortOn(MeasureFilterSort.Field.PROJECT_CREATION_DATE));
+    assertSameResults(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")).setSortOn(MeasureFilterSort.Field.VERSION));
+    assertSameResults(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")).setResourceKey("php"));
+    assertSameResults(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")).setFromDate(DateUtils.parseDate("2012-01-01")));
+    assertSameResults(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")).setToDate(DateUtils.parseDate("2012-01-01")));
+    assertSameResults(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK"))
+      .addCondition(new MeasureFilterCondition(METRIC_LINES, MeasureFilterCondition.Operator.GREATER, 1000.0)));
+    assertSameResults(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK"))
+      .addCondition(new MeasureFilterCondition(METRIC_LINES, MeasureFilterCondition.Operator.LESS_OR_EQUALS, 1000.0).setPeriod(5)));
+    assertSameResults(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK"))
+      .addCondition(new MeasureFilterCondition(METRIC_COVERAGE, MeasureFilterCondition.Operator.GREATER, 0.0)));
+    assertSameResults(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK"))
+      .addCondition(new MeasureFilterCondition(METRIC_PROFILE, MeasureFilterCondition.Operator.IN, "('php way', 'other way')")));
+    assertSameResults(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK"))
+      .addCondition(new MeasureFilterCondition(METRIC_UNKNOWN, MeasureFilterCondition.Operator.GREATER, 0.0)));
+  }
+
+  @Test
+  public void filter_on_favourites() throws SQLException {
+    store.start();
+
+    MeasureFilter filter = new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")).setUserFavourites(true);
+    List<MeasureFilterRow> rows = store.execute(filter, new MeasureFilterContext().setUserId(50L));
+
+    assertThat(rows).hasSize(1);
+    assertThat(rows.get(0).getSnapshotId()).isEqualTo(PHP_SNAPSHOT_ID);
+  }
+
+  @Test
+  public void refresh_project() throws SQLException {
+    store.start();
+    db.prepareDbUnit(getClass(), "refresh_project.xml");
+
+    store.refresh("java_project");
+
+    List<MeasureFilterRow> rows = store.execute(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK"))
+      .addCondition(new MeasureFilterCondition(METRIC_LINES, MeasureFilterCondition.Operator.GREATER, 1000.0)), new MeasureFilterContext());
+    // new snapshot of java project, php project is unchanged
+    assertThat(rows).hasSize(2);
+    assertThat(rows.get(0).getSnapshotId()).isEqualTo(201L);
+    assertThat(rows.get(1).getSnapshotId()).isEqualTo(PHP_SNAPSHOT_ID);
+  }
+
+  @Test
+  public void reload_all_measures_periodically() throws SQLException {
+    settings.setProperty(MeasureFilterStore.EXPIRATION_PROPERTY, 10);
+    store.start();
+    ArgumentCaptor<Runnable> reload = ArgumentCaptor.forClass(Runnable.class);
+    verify(executor).scheduleWithFixedDelay(reload.capture(), eq(10L), eq(10L), eq(TimeUnit.MINUTES));
+    db.prepareDbUnit(getClass(), "refresh_project.xml");
+    MeasureFilter filter = new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK"))
+      .addCondition(new MeasureFilterCondition(METRIC_LINES, MeasureFilterCondition.Operator.GREATER, 1000.0));
+
+    // previous measures are used until reloaded
+    assertThat(store.execute(filter, new MeasureFilterContext())).hasSize(1);
+
+    reload.getValue().run();
+    List<MeasureFilterRow> rows = store.execute(filter, new MeasureFilterContext());
+    assertThat(rows).hasSize(2);
+    assertThat(rows.get(0).getSnapshotId()).isEqualTo(201L);
+  }
+
+  @Test
+  public void stop_background_thread() {
+    store.start();
+    store.stop();
+
+    verify(executor).shutdownNow();
+    assertThat(store.isEnabled()).isFalse();
+  }
+
+  @Test
+  public void remove_project() throws SQLException {
+    store.start();
+
+    store.remove(JAVA_PROJECT_ID);
+
+    List<MeasureFilterRow> rows = store.execute(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")), new MeasureFilterContext());
+    assertThat(rows).hasSize(1);
+    assertThat(rows.get(0).getResourceId()).isEqualTo(PHP_PROJECT_ID);
+  }
+
+  @Test
+  public void parse_text_values() {
+    assertThat(MeasureFilterStore.textValues(new MeasureFilterCondition(METRIC_PROFILE, MeasureFilterCondition.Operator.IN, "('ERROR', 'WARN')")))
+      .containsOnly("ERROR", "WARN");
+  }
+
+  private void assertSameResults(MeasureFilter filter) throws SQLException {
+    MeasureFilterContext context = new MeasureFilterContext();
+    List<MeasureFilterRow> expected;
+    SqlSession session = db.myBatis().openSession(false);
+    try {
+      expected = new MeasureFilterSql(db.database(), filter, context).execute(session.getConnection());
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+    List<MeasureFilterRow> rows = store.execute(filter, context);
+
+    assertThat(rows).hasSize(expected.size());
+    for (int index = 0; index < rows.size(); index++) {
+      assertThat(rows.get(index).getSnapshotId()).isEqualTo(expected.get(index).getSnapshotId());
+    }
+  }
+}
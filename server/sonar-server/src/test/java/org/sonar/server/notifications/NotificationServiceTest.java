@@ -27,10 +27,15 @@ import org.sonar.api.notifications.Notification;
 import org.sonar.api.notifications.NotificationChannel;
 import org.sonar.api.notifications.NotificationDispatcher;
 import org.sonar.core.notification.DefaultNotificationManager;
+import org.sonar.core.profiling.MetricsRegistry;
 import org.sonar.jpa.session.DatabaseSessionFactory;
 
+import java.util.Arrays;
+import java.util.Collections;
+
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.doAnswer;
@@ -60,7 +65,7 @@ public class NotificationServiceTest {
     when(gtalkChannel.getKey()).thenReturn("gtalk");
     when(commentOnReviewAssignedToMe.getKey()).thenReturn("comment on review assigned to me");
     when(commentOnReviewCreatedByMe.getKey()).thenReturn("comment on review created by me");
-    when(manager.getFromQueue()).thenReturn(notification).thenReturn(null);
+    when(manager.getFromQueue(anyInt())).thenReturn(Arrays.asList(notification)).thenReturn(Collections.<Notification>emptyList());
 
     Settings settings = new Settings().setProperty("sonar.notifications.delay", 1L);
 
@@ -167,7 +172,8 @@ public class NotificationServiceTest {
   @Test
   public void shouldNotStopWhenException() {
     setUpMocks(CREATOR_SIMON, ASSIGNEE_SIMON);
-    when(manager.getFromQueue()).thenThrow(new RuntimeException("Unexpected exception")).thenReturn(notification).thenReturn(null);
+    when(manager.getFromQueue(anyInt())).thenThrow(new RuntimeException("Unexpected exception"))
+      .thenReturn(Arrays.asList(notification)).thenReturn(Collections.<Notification>emptyList());
     doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnReviewAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
     doAnswer(addUser(CREATOR_SIMON, emailChannel)).when(commentOnReviewCreatedByMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
 
@@ -209,7 +215,8 @@ public class NotificationServiceTest {
   public void shouldLogEvery10Minutes() throws InterruptedException {
     setUpMocks(CREATOR_EVGENY, ASSIGNEE_SIMON);
     // Emulate 2 notifications in DB
-    when(manager.getFromQueue()).thenReturn(notification).thenReturn(notification).thenReturn(null);
+    when(manager.getFromQueue(anyInt())).thenReturn(Arrays.asList(notification)).thenReturn(Arrays.asList(notification))
+      .thenReturn(Collections.<Notification>emptyList());
     when(manager.count()).thenReturn(1L).thenReturn(0L);
     service = spy(service);
     // Emulate processing of each notification take 10 min to have a log each time
@@ -220,6 +227,63 @@ public class NotificationServiceTest {
     service.stop();
   }
 
+  @Test
+  public void shouldDeliverBatchOfNotifications() {
+    setUpMocks(CREATOR_SIMON, ASSIGNEE_SIMON);
+    Notification otherNotification = mock(Notification.class);
+    when(manager.getFromQueue(anyInt())).thenReturn(Arrays.asList(notification, otherNotification)).thenReturn(Collections.<Notification>emptyList());
+    doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnReviewAssignedToMe).dispatch(any(Notification.class), any(NotificationDispatcher.Context.class));
+
+    service.start();
+    verify(emailChannel, timeout(2000)).deliver(notification, ASSIGNEE_SIMON);
+    verify(emailChannel, timeout(2000)).deliver(otherNotification, ASSIGNEE_SIMON);
+    service.stop();
+
+    assertThat(service.getDeliveredCount()).isEqualTo(2);
+    assertThat(service.getQueueLagInMs()).isEqualTo(0);
+  }
+
+  @Test
+  public void keep_backlog_when_notifications_can_not_be_read() {
+    setUpMocks(CREATOR_SIMON, ASSIGNEE_SIMON);
+    // second batch can't be deserialized but the queue is not empty
+    when(manager.getFromQueue(anyInt())).thenReturn(Arrays.asList(notification)).thenReturn(Collections.<Notification>emptyList());
+    when(manager.count()).thenReturn(3L);
+    service = spy(service);
+    when(service.now()).thenReturn(1L);
+
+    service.processQueue();
+
+    assertThat(service.getDeliveredCount()).isEqualTo(1);
+    assertThat(service.getRemainingCount()).isEqualTo(3);
+    assertThat(service.getQueueLagInMs()).isGreaterThan(0);
+
+    // queue is now empty
+    when(manager.getFromQueue(anyInt())).thenReturn(Collections.<Notification>emptyList());
+    when(manager.count()).thenReturn(0L);
+    service.processQueue();
+
+    assertThat(service.getRemainingCount()).isEqualTo(0);
+    assertThat(service.getQueueLagInMs()).isEqualTo(0);
+  }
+
+  @Test
+  public void expose_statistics_in_metrics_registry() {
+    setUpMocks(CREATOR_SIMON, ASSIGNEE_SIMON);
+    MetricsRegistry registry = new MetricsRegistry();
+    service = new NotificationService(new Settings().setProperty("sonar.notifications.delay", 1L), manager, mock(DatabaseSessionFactory.class),
+      new NotificationDispatcher[0], registry);
+
+    service.start();
+    verify(manager, timeout(2000).atLeastOnce()).count();
+    assertThat(registry.gauges().keySet()).containsOnly("notifications.delivered", "notifications.deliveryRatePerSecond", "notifications.remaining",
+      "notifications.queueLagInMs");
+    assertThat(registry.gauges().get("notifications.remaining")).isEqualTo(0L);
+
+    service.stop();
+    assertThat(registry.gauges()).isEmpty();
+  }
+
   private static Answer<Object> addUser(final String user, final NotificationChannel channel) {
     return addUser(user, new NotificationChannel[] {channel});
   }
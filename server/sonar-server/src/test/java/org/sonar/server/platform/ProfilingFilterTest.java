@@ -24,11 +24,13 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.sonar.api.config.Settings;
+import org.sonar.core.profiling.MetricsRegistry;
 import org.sonar.core.profiling.Profiling;
 
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
 
+import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
@@ -101,6 +103,27 @@ public class ProfilingFilterTest {
     filter.doFilter(request("GET", "/context/static/image.png", null), null, chain);
   }
 
+  @Test
+  public void should_record_metrics() throws Exception {
+    MetricsRegistry metrics = new MetricsRegistry().setEnabled(true);
+    when(filter.getMetrics()).thenReturn(metrics);
+
+    filter.doFilter(request("GET", "/context/api/issues/search", "param=value"), null, chain);
+    filter.doFilter(request("GET", "/context/api/issues/search", null), null, chain);
+    filter.doFilter(request("GET", "/context/static/image.png", null), null, chain);
+
+    assertThat(metrics.histograms().get("http").count()).isEqualTo(2);
+    assertThat(metrics.histograms().get("http: GET /api/issues/search").count()).isEqualTo(2);
+  }
+
+  @Test
+  public void should_group_requests_by_path() throws Exception {
+    assertThat(filter.metricName("GET", "/context/api/issues/search")).isEqualTo("http: GET /api/issues/search");
+    assertThat(filter.metricName("GET", "/context/api/sources/show/foo")).isEqualTo("http: GET /api/sources/show");
+    assertThat(filter.metricName("POST", "/context/dashboard/index/12")).isEqualTo("http: POST /dashboard/index");
+    assertThat(filter.metricName("GET", "/context/")).isEqualTo("http: GET /");
+  }
+
   private HttpServletRequest request(String method, String path, String query) {
     HttpServletRequest request = mock(HttpServletRequest.class);
     when(request.getMethod()).thenReturn(method);
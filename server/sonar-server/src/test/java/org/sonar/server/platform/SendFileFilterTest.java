@@ -0,0 +1,199 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SendFileFilterTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  SendFileFilter filter = new SendFileFilter();
+  HttpServletRequest request = mock(HttpServletRequest.class);
+  HttpServletResponse response = mock(HttpServletResponse.class);
+  FilterChain chain = mock(FilterChain.class);
+  ByteArrayOutputStream output = new ByteArrayOutputStream();
+  File file;
+
+  @Before
+  public void setUp() throws Exception {
+    file = temp.newFile("preview.h2.db");
+    Files.write("0123456789", file, Charsets.UTF_8);
+    when(request.getMethod()).thenReturn("GET");
+    when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        output.write(b);
+      }
+    });
+  }
+
+  @Test
+  public void send_file() throws Exception {
+    railsSendsFile(file.getAbsolutePath());
+
+    filter.doFilter(request, response, chain);
+
+    assertThat(output.toString("UTF-8")).isEqualTo("0123456789");
+    verify(response).setHeader("Content-Length", "10");
+    verify(response).setHeader("ETag", "\"781e5e245d69b566979b86e28d23f2c7\"");
+    verify(response, never()).setHeader("X-Sendfile", file.getAbsolutePath());
+    verify(response, never()).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+  }
+
+  @Test
+  public void send_range_of_file() throws Exception {
+    when(request.getHeader("Range")).thenReturn("bytes=4-");
+    railsSendsFile(file.getAbsolutePath());
+
+    filter.doFilter(request, response, chain);
+
+    assertThat(output.toString("UTF-8")).isEqualTo("456789");
+    verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+    verify(response).setHeader("Content-Range", "bytes 4-9/10");
+    verify(response).setHeader("Content-Length", "6");
+  }
+
+  @Test
+  public void send_whole_file_if_range_does_not_match_etag() throws Exception {
+    when(request.getHeader("Range")).thenReturn("bytes=4-");
+    when(request.getHeader("If-Range")).thenReturn("\"abcd\"");
+    railsSendsFile(file.getAbsolutePath());
+
+    filter.doFilter(request, response, chain);
+
+    assertThat(output.toString("UTF-8")).isEqualTo("0123456789");
+  }
+
+  @Test
+  public void do_not_send_file_if_not_modified() throws Exception {
+    when(request.getHeader("If-None-Match")).thenReturn("\"781e5e245d69b566979b86e28d23f2c7\"");
+    railsSendsFile(file.getAbsolutePath());
+
+    filter.doFilter(request, response, chain);
+
+    verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    assertThat(output.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void fail_if_range_is_not_satisfiable() throws Exception {
+    when(request.getHeader("Range")).thenReturn("bytes=20-");
+    railsSendsFile(file.getAbsolutePath());
+
+    filter.doFilter(request, response, chain);
+
+    verify(response).setHeader("Content-Range", "bytes */10");
+    verify(response).sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+  }
+
+  @Test
+  public void fail_if_file_does_not_exist() throws Exception {
+    railsSendsFile(new File(temp.getRoot(), "unknown").getAbsolutePath());
+
+    filter.doFilter(request, response, chain);
+
+    verify(response).sendError(HttpServletResponse.SC_NOT_FOUND);
+  }
+
+  @Test
+  public void do_not_change_other_responses() throws Exception {
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        HttpServletResponse wrapper = (HttpServletResponse) invocation.getArguments()[1];
+        wrapper.setHeader("Content-Length", "5");
+        wrapper.getOutputStream().write("error".getBytes());
+        return null;
+      }
+    }).when(chain).doFilter(any(ServletRequest.class), any(ServletResponse.class));
+
+    filter.doFilter(request, response, chain);
+
+    verify(response).setHeader("Content-Length", "5");
+    verify(response, never()).setStatus(anyInt());
+    assertThat(output.toString("UTF-8")).isEqualTo("error");
+  }
+
+  @Test
+  public void parse_range() throws Exception {
+    assertThat(SendFileFilter.parseRange("bytes=0-4", 10)).isEqualTo(new long[] {0, 4});
+    assertThat(SendFileFilter.parseRange("bytes=5-", 10)).isEqualTo(new long[] {5, 9});
+    assertThat(SendFileFilter.parseRange("bytes=5-100", 10)).isEqualTo(new long[] {5, 9});
+    assertThat(SendFileFilter.parseRange("bytes=-3", 10)).isEqualTo(new long[] {7, 9});
+    assertThat(SendFileFilter.parseRange("bytes=-30", 10)).isEqualTo(new long[] {0, 9});
+
+    // not satisfiable
+    assertThat(SendFileFilter.parseRange("bytes=10-", 10)).isNull();
+    assertThat(SendFileFilter.parseRange("bytes=-0", 10)).isNull();
+
+    // not supported or invalid, so whole file
+    assertThat(SendFileFilter.parseRange("bytes=0-1,5-6", 10)).isEqualTo(new long[] {0, 9});
+    assertThat(SendFileFilter.parseRange("items=0-1", 10)).isEqualTo(new long[] {0, 9});
+    assertThat(SendFileFilter.parseRange("bytes=5-2", 10)).isEqualTo(new long[] {0, 9});
+    assertThat(SendFileFilter.parseRange("bytes=a-", 10)).isEqualTo(new long[] {0, 9});
+  }
+
+  /**
+   * Same as <code>send_file(path, :x_sendfile => true)</code>: the response of Ruby on Rails has the header X-Sendfile
+   * and a body of one space.
+   */
+  private void railsSendsFile(final String path) throws Exception {
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        HttpServletResponse wrapper = (HttpServletResponse) invocation.getArguments()[1];
+        wrapper.setHeader("Content-Type", "application/octet-stream");
+        wrapper.setHeader("Content-Length", "10");
+        wrapper.setHeader("X-Sendfile", path);
+        wrapper.getOutputStream().write(' ');
+        return null;
+      }
+    }).when(chain).doFilter(any(ServletRequest.class), any(ServletResponse.class));
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.ws;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.core.permission.GlobalPermissions;
+import org.sonar.core.profiling.MetricsRegistry;
+import org.sonar.server.exceptions.ForbiddenException;
+import org.sonar.server.user.MockUserSession;
+import org.sonar.server.ws.WsTester;
+
+import static org.mockito.Mockito.mock;
+
+public class MetricsHandlerTest {
+
+  MetricsRegistry registry = new MetricsRegistry();
+  WsTester tester;
+
+  @Before
+  public void setUp() throws Exception {
+    tester = new WsTester(new SystemWs(mock(RestartHandler.class), new MetricsHandler(registry)));
+  }
+
+  @Test
+  public void return_metrics() throws Exception {
+    MockUserSession.set().setGlobalPermissions(GlobalPermissions.SYSTEM_ADMIN);
+    registry.setEnabled(true);
+    registry.increment("computation.failures");
+    registry.record("sql", 10L);
+    registry.record("sql", 30L);
+
+    tester.newGetRequest("api/system", "metrics").execute().assertJson("{" +
+      "\"enabled\": true," +
+      "\"counters\": [{\"name\": \"computation.failures\", \"value\": 1}]," +
+      "\"gauges\": []," +
+      "\"histograms\": [{\"name\": \"sql\", \"count\": 2, \"min\": 10, \"mean\": 20.0, \"p50\": 10, \"p90\": 30, \"p99\": 30, \"max\": 30}]" +
+      "}");
+  }
+
+  @Test(expected = ForbiddenException.class)
+  public void require_admin_permission() throws Exception {
+    MockUserSession.set().setGlobalPermissions(GlobalPermissions.DASHBOARD_SHARING);
+
+    tester.newGetRequest("api/system", "metrics").execute();
+  }
+}
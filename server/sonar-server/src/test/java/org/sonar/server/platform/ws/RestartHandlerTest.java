@@ -22,6 +22,7 @@ package org.sonar.server.platform.ws;
 import org.junit.Test;
 import org.sonar.api.config.Settings;
 import org.sonar.api.utils.System2;
+import org.sonar.core.profiling.MetricsRegistry;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.platform.Platform;
 import org.sonar.server.ws.WsTester;
@@ -44,7 +45,7 @@ public class RestartHandlerTest {
     when(system.isOsWindows()).thenReturn(false);
 
     RestartHandler restartHandler = new RestartHandler(settings, platform, system);
-    SystemWs ws = new SystemWs(restartHandler);
+    SystemWs ws = new SystemWs(restartHandler, new MetricsHandler(new MetricsRegistry()));
 
     WsTester tester = new WsTester(ws);
     tester.newPostRequest("api/system", "restart").execute();
@@ -57,7 +58,7 @@ public class RestartHandlerTest {
     Platform platform = mock(Platform.class);
     Settings settings = new Settings();
     RestartHandler restartHandler = new RestartHandler(settings, platform, system);
-    SystemWs ws = new SystemWs(restartHandler);
+    SystemWs ws = new SystemWs(restartHandler, new MetricsHandler(new MetricsRegistry()));
 
     WsTester tester = new WsTester(ws);
     try {
@@ -77,7 +78,7 @@ public class RestartHandlerTest {
     when(system.isJavaAtLeast17()).thenReturn(false);
 
     RestartHandler restartHandler = new RestartHandler(settings, platform, system);
-    SystemWs ws = new SystemWs(restartHandler);
+    SystemWs ws = new SystemWs(restartHandler, new MetricsHandler(new MetricsRegistry()));
 
     WsTester tester = new WsTester(ws);
     try {
@@ -23,6 +23,7 @@ import org.junit.Test;
 import org.sonar.api.config.Settings;
 import org.sonar.api.server.ws.WebService;
 import org.sonar.api.utils.System2;
+import org.sonar.core.profiling.MetricsRegistry;
 import org.sonar.server.platform.Platform;
 
 import static org.fest.assertions.Assertions.assertThat;
@@ -35,7 +36,7 @@ public class SystemWsTest {
     Platform platform = mock(Platform.class);
     Settings settings = new Settings();
     RestartHandler restartHandler = new RestartHandler(settings, platform, mock(System2.class));
-    SystemWs ws = new SystemWs(restartHandler);
+    SystemWs ws = new SystemWs(restartHandler, new MetricsHandler(new MetricsRegistry()));
     WebService.Context context = new WebService.Context();
 
     ws.define(context);
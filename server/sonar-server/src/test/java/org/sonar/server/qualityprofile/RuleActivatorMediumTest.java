@@ -809,6 +809,25 @@ public class RuleActivatorMediumTest {
     assertThat(result.countFailed()).isEqualTo(0);
   }
 
+  @Test
+  public void bulk_activation_propagates_to_descendants() {
+    createChildProfiles();
+
+    // x1 already activated on P2 with overridden severity
+    RuleActivation activation = new RuleActivation(RuleTesting.XOO_X1);
+    activation.setSeverity(Severity.BLOCKER);
+    activate(activation, XOO_P2_KEY);
+
+    BulkChangeResult result = ruleActivator.bulkActivate(
+      new RuleQuery().setKey(RuleTesting.XOO_X1.toString()), XOO_P1_KEY, Severity.MINOR);
+
+    dbSession.clearCache();
+    assertThat(result.countSucceeded()).isEqualTo(1);
+    verifyOneActiveRule(XOO_P1_KEY, RuleTesting.XOO_X1, Severity.MINOR, null, ImmutableMap.of("max", "10"));
+    verifyOneActiveRule(XOO_P2_KEY, RuleTesting.XOO_X1, Severity.BLOCKER, ActiveRuleDto.OVERRIDES, ImmutableMap.of("max", "10"));
+    verifyOneActiveRule(XOO_P3_KEY, RuleTesting.XOO_X1, Severity.BLOCKER, ActiveRuleDto.INHERITED, ImmutableMap.of("max", "10"));
+  }
+
   @Test
   public void bulk_activation_ignores_errors() {
     // 1. bulk activate all the rules, even non xoo-rules and xoo templates
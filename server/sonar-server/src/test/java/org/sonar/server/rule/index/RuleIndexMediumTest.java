@@ -1011,6 +1011,31 @@ public class RuleIndexMediumTest extends SearchMediumTest {
     assertThat(result.getFacets().get(RuleIndex.FACET_TAGS)).onProperty("key").containsOnly("systag1", "systag2", "T1", "T2", "T3");
   }
 
+  @Test
+  public void facets_and_terms_are_refreshed_when_rules_are_updated() {
+    dao.insert(dbSession, RuleTesting.newDto(RuleKey.of("xoo", "S001")).setLanguage("java")
+      .setTags(ImmutableSet.of("T1")).setSystemTags(ImmutableSet.<String>of()));
+    dbSession.commit();
+
+    Result<Rule> result = index.search(new RuleQuery(), new QueryContext().setFacet(true));
+    assertThat(result.getFacets().get(RuleIndex.FACET_LANGUAGES)).onProperty("key").containsOnly("java");
+    assertThat(index.terms(RuleNormalizer.RuleField.ALL_TAGS.field())).containsOnly("T1");
+
+    // same facets, with another page and without documents
+    result = index.search(new RuleQuery(), new QueryContext().setFacet(true).setLimit(0));
+    assertThat(result.getHits()).isEmpty();
+    assertThat(result.getTotal()).isEqualTo(1);
+    assertThat(result.getFacets().get(RuleIndex.FACET_LANGUAGES)).onProperty("key").containsOnly("java");
+
+    dao.insert(dbSession, RuleTesting.newDto(RuleKey.of("xoo", "S002")).setLanguage("cobol")
+      .setTags(ImmutableSet.of("T2")).setSystemTags(ImmutableSet.<String>of()));
+    dbSession.commit();
+
+    result = index.search(new RuleQuery(), new QueryContext().setFacet(true));
+    assertThat(result.getFacets().get(RuleIndex.FACET_LANGUAGES)).onProperty("key").containsOnly("java", "cobol");
+    assertThat(index.terms(RuleNormalizer.RuleField.ALL_TAGS.field())).containsOnly("T1", "T2");
+  }
+
   private static List<String> ruleKeys(List<Rule> rules) {
     return newArrayList(Iterables.transform(rules, new Function<Rule, String>() {
       @Override
@@ -39,6 +39,15 @@ public class CodeColorizersTest {
     assertThat(html).isEqualTo("String s = <span class=\"s\">\"foo\"</span>;");
   }
 
+  @Test
+  public void colorize_range_of_lines() throws Exception {
+    CodeColorizerFormat format = new LiteralFormat("java");
+    CodeColorizers colorizers = new CodeColorizers(Arrays.asList(format));
+
+    String html = colorizers.toHtml("int i = 0;\nString s = \"foo\";\nString t = \"bar\";", "java", 1, 2);
+    assertThat(html).isEqualTo("int i = 0;\nString s = <span class=\"s\">\"foo\"</span>;\n");
+  }
+
   @Test
   public void do_not_fail_if_unsupported_language() throws Exception {
     CodeColorizerFormat format = new LiteralFormat("java");
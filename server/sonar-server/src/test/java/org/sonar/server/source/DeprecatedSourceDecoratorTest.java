@@ -25,6 +25,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.sonar.core.component.SnapshotDto;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.core.resource.ResourceDao;
@@ -39,6 +40,9 @@ import static org.fest.assertions.Assertions.assertThat;
 import static org.fest.assertions.Fail.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -64,6 +68,7 @@ public class DeprecatedSourceDecoratorTest {
   @Before
   public void setUp() throws Exception {
     when(mybatis.openSession(false)).thenReturn(session);
+    when(resourceDao.getLastSnapshot("org.sonar.sample:Sample", session)).thenReturn(new SnapshotDto().setId(10L));
     sourceDecorator = new DeprecatedSourceDecorator(mybatis, resourceDao, codeColorizers, snapshotSourceDao);
   }
 
@@ -74,7 +79,7 @@ public class DeprecatedSourceDecoratorTest {
     String htmlSource = "<span>line 1</span>\n<span>line 2</span>\n";
 
     when(resourceDao.getResource(any(ResourceQuery.class), eq(session))).thenReturn(new ResourceDto().setKey(componentKey).setLanguage("java"));
-    when(snapshotSourceDao.selectSnapshotSourceByComponentKey(componentKey, session)).thenReturn(source);
+    when(snapshotSourceDao.selectSnapshotSource(10L, session)).thenReturn(source);
     when(codeColorizers.toHtml(source, "java")).thenReturn(htmlSource);
 
     List<String> result = sourceDecorator.getSourceAsHtml(componentKey);
@@ -85,11 +90,63 @@ public class DeprecatedSourceDecoratorTest {
   public void return_null_if_no_source_code_on_component() throws Exception {
     String componentKey = "org.sonar.sample:Sample";
     when(resourceDao.getResource(any(ResourceQuery.class), eq(session))).thenReturn(new ResourceDto().setKey(componentKey).setLanguage("java"));
-    when(snapshotSourceDao.selectSnapshotSourceByComponentKey(componentKey, session)).thenReturn(null);
+    when(snapshotSourceDao.selectSnapshotSource(10L, session)).thenReturn(null);
 
     assertThat(sourceDecorator.getSourceAsHtml(componentKey)).isNull();
   }
 
+  @Test
+  public void return_null_if_component_has_no_snapshot() throws Exception {
+    String componentKey = "org.sonar.sample:Sample";
+    when(resourceDao.getResource(any(ResourceQuery.class), eq(session))).thenReturn(new ResourceDto().setKey(componentKey).setLanguage("java"));
+    when(resourceDao.getLastSnapshot(componentKey, session)).thenReturn(null);
+
+    assertThat(sourceDecorator.getSourceAsHtml(componentKey)).isNull();
+  }
+
+  @Test
+  public void colorize_source_once_per_snapshot() throws Exception {
+    String componentKey = "org.sonar.sample:Sample";
+    String source = "line 1\nline 2\nline 3\n";
+    String htmlSource = "<span>line 1</span>\n<span>line 2</span>\n<span>line 3</span>\n";
+
+    when(resourceDao.getResource(any(ResourceQuery.class), eq(session))).thenReturn(new ResourceDto().setKey(componentKey).setLanguage("java"));
+    when(snapshotSourceDao.selectSnapshotSource(10L, session)).thenReturn(source);
+    when(codeColorizers.toHtml(source, "java")).thenReturn(htmlSource);
+
+    assertThat(sourceDecorator.getSourceAsHtml(componentKey)).hasSize(4);
+    assertThat(sourceDecorator.getSourceAsHtml(componentKey, 2, 3)).containsExactly("<span>line 2</span>", "<span>line 3</span>");
+    assertThat(sourceDecorator.getSourceAsHtml(componentKey, null, 1)).containsExactly("<span>line 1</span>");
+    verify(snapshotSourceDao, times(1)).selectSnapshotSource(10L, session);
+    verify(codeColorizers, times(1)).toHtml(source, "java");
+
+    // new analysis
+    when(resourceDao.getLastSnapshot(componentKey, session)).thenReturn(new SnapshotDto().setId(11L));
+    when(snapshotSourceDao.selectSnapshotSource(11L, session)).thenReturn(source);
+    sourceDecorator.getSourceAsHtml(componentKey);
+    verify(codeColorizers, times(2)).toHtml(source, "java");
+  }
+
+  @Test
+  public void colorize_source_up_to_last_requested_line() throws Exception {
+    String componentKey = "org.sonar.sample:Sample";
+    String source = "line 1\nline 2\nline 3\n";
+
+    when(resourceDao.getResource(any(ResourceQuery.class), eq(session))).thenReturn(new ResourceDto().setKey(componentKey).setLanguage("java"));
+    when(snapshotSourceDao.selectSnapshotSource(10L, session)).thenReturn(source);
+    when(codeColorizers.toHtml(source, "java", 1, 2)).thenReturn("<span>line 1</span>\n<span>line 2</span>\n");
+    when(codeColorizers.toHtml(source, "java")).thenReturn("<span>line 1</span>\n<span>line 2</span>\n<span>line 3</span>\n");
+
+    assertThat(sourceDecorator.getSourceAsHtml(componentKey, 2, 2)).containsExactly("<span>line 2</span>");
+    assertThat(sourceDecorator.getSourceAsHtml(componentKey, 1, 2)).containsExactly("<span>line 1</span>", "<span>line 2</span>");
+    verify(codeColorizers, times(1)).toHtml(source, "java", 1, 2);
+    verify(codeColorizers, never()).toHtml(source, "java");
+
+    // following lines are colorized when requested
+    assertThat(sourceDecorator.getSourceAsHtml(componentKey, 3, null)).containsExactly("<span>line 3</span>", "");
+    verify(codeColorizers, times(1)).toHtml(source, "java");
+  }
+
   @Test
   public void fail_to_get_source_as_html_on_unknown_component() throws Exception {
     String componentKey = "org.sonar.sample:Sample";
@@ -109,8 +166,8 @@ public class DeprecatedSourceDecoratorTest {
     String htmlSource = "<span>line 1</span>\n<span>line 2</span>\n<span>line 3</span>\n";
 
     when(resourceDao.getResource(any(ResourceQuery.class), eq(session))).thenReturn(new ResourceDto().setKey(componentKey).setLanguage("java"));
-    when(snapshotSourceDao.selectSnapshotSourceByComponentKey(componentKey, session)).thenReturn(source);
-    when(codeColorizers.toHtml(source, "java")).thenReturn(htmlSource);
+    when(snapshotSourceDao.selectSnapshotSource(10L, session)).thenReturn(source);
+    when(codeColorizers.toHtml(source, "java", 1, 3)).thenReturn(htmlSource);
 
     List<String> result = sourceDecorator.getSourceAsHtml(componentKey, 2, 3);
     assertThat(result).containsExactly("<span>line 2</span>", "<span>line 3</span>");
@@ -123,7 +180,7 @@ public class DeprecatedSourceDecoratorTest {
     String htmlSource = "<span>line 1</span>\n<span>line 2</span>\n<span>line 3</span>\n";
 
     when(resourceDao.getResource(any(ResourceQuery.class), eq(session))).thenReturn(new ResourceDto().setKey(componentKey).setLanguage("java"));
-    when(snapshotSourceDao.selectSnapshotSourceByComponentKey(componentKey, session)).thenReturn(source);
+    when(snapshotSourceDao.selectSnapshotSource(10L, session)).thenReturn(source);
     when(codeColorizers.toHtml(source, "java")).thenReturn(htmlSource);
 
     List<String> result = sourceDecorator.getSourceAsHtml(componentKey, 2, null);
@@ -137,8 +194,8 @@ public class DeprecatedSourceDecoratorTest {
     String htmlSource = "<span>line 1</span>\n<span>line 2</span>\n<span>line 3</span>\n";
 
     when(resourceDao.getResource(any(ResourceQuery.class), eq(session))).thenReturn(new ResourceDto().setKey(componentKey).setLanguage("java"));
-    when(snapshotSourceDao.selectSnapshotSourceByComponentKey(componentKey, session)).thenReturn(source);
-    when(codeColorizers.toHtml(source, "java")).thenReturn(htmlSource);
+    when(snapshotSourceDao.selectSnapshotSource(10L, session)).thenReturn(source);
+    when(codeColorizers.toHtml(source, "java", 1, 3)).thenReturn(htmlSource);
 
     List<String> result = sourceDecorator.getSourceAsHtml(componentKey, null, 3);
     assertThat(result).containsExactly("<span>line 1</span>", "<span>line 2</span>", "<span>line 3</span>");
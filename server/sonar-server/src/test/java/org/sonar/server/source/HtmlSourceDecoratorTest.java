@@ -26,7 +26,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.sonar.core.persistence.AbstractDaoTestCase;
 import org.sonar.core.persistence.MyBatis;
+import org.sonar.core.source.SourceLinesEncoder;
 import org.sonar.core.source.db.SnapshotDataDao;
+import org.sonar.core.source.db.SnapshotDataDto;
 import org.sonar.core.source.db.SnapshotSourceDao;
 
 import java.util.List;
@@ -149,6 +151,41 @@ public class HtmlSourceDecoratorTest extends AbstractDaoTestCase {
     );
   }
 
+  @Test
+  public void decorate_source_lines_from_component() throws Exception {
+    SnapshotSourceDao snapshotSourceDao = mock(SnapshotSourceDao.class);
+    SnapshotDataDao snapshotDataDao = mock(SnapshotDataDao.class);
+    SnapshotDataDto sourceLines = new SnapshotDataDto();
+    sourceLines.setData(new SourceLinesEncoder("/*\n * Header\n */\n\npublic class HelloWorld {\n  public void foo() {\n  }\n  public void bar() {\n    foo();\n  }\n}")
+      .setSyntaxHighlighting("0,16,cppd;18,25,k;25,31,k;46,52,k;53,57,k;72,78,k;79,83,k;")
+      .setSymbols("31,41,31;58,61,58,96;84,87,84;")
+      .encodeToString());
+    when(snapshotDataDao.selectSnapshotDataByComponentKey(eq("org.apache.struts:struts:DebuggingInterceptor"), eq(Lists.newArrayList("source_lines")),
+      any(SqlSession.class))).thenReturn(Lists.newArrayList(sourceLines));
+
+    HtmlSourceDecorator sourceDecorator = new HtmlSourceDecorator(mock(MyBatis.class), snapshotSourceDao, snapshotDataDao);
+
+    assertThat(sourceDecorator.getDecoratedSourceAsHtml("org.apache.struts:struts:DebuggingInterceptor", null, null)).containsExactly(
+      "<span class=\"cppd\">/*</span>",
+      "<span class=\"cppd\"> * Header</span>",
+      "<span class=\"cppd\"> */</span>",
+      "",
+      "<span class=\"k\">public </span><span class=\"k\">class </span><span class=\"sym-31 sym\">HelloWorld</span> {",
+      "  <span class=\"k\">public</span> <span class=\"k\">void</span> <span class=\"sym-58 sym\">foo</span>() {",
+      "  }",
+      "  <span class=\"k\">public</span> <span class=\"k\">void</span> <span class=\"sym-84 sym\">bar</span>() {",
+      "    <span class=\"sym-58 sym\">foo</span>();",
+      "  }",
+      "}"
+    );
+    assertThat(sourceDecorator.getDecoratedSourceAsHtml("org.apache.struts:struts:DebuggingInterceptor", 2, 4)).containsExactly(
+      "<span class=\"cppd\"> * Header</span>",
+      "<span class=\"cppd\"> */</span>",
+      ""
+    );
+    verify(snapshotSourceDao, never()).selectSnapshotSourceByComponentKey(anyString(), any(SqlSession.class));
+  }
+
   @Test
   public void should_not_query_sources_if_no_snapshot_data() throws Exception {
     SnapshotSourceDao snapshotSourceDao = mock(SnapshotSourceDao.class);
@@ -0,0 +1,69 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+import com.google.common.collect.Lists;
+import org.apache.ibatis.session.SqlSession;
+import org.junit.Test;
+import org.sonar.core.persistence.MyBatis;
+import org.sonar.core.source.SourceLine;
+import org.sonar.core.source.SourceLinesEncoder;
+import org.sonar.core.source.db.SnapshotDataDao;
+import org.sonar.core.source.db.SnapshotDataDto;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SourceLinesLoaderTest {
+
+  static final String FILE_KEY = "org.sonar.sample:Sample";
+
+  SnapshotDataDao snapshotDataDao = mock(SnapshotDataDao.class);
+  SourceLinesLoader loader = new SourceLinesLoader(mock(MyBatis.class), snapshotDataDao);
+
+  @Test
+  public void load_range_of_lines() throws Exception {
+    SnapshotDataDto dto = new SnapshotDataDto();
+    dto.setData(new SourceLinesEncoder("first\nsecond\nthird").setScmAuthors("1=julien;2=simon;3=simon").setLineHits("2=3").encodeToString());
+    when(snapshotDataDao.selectSnapshotDataByComponentKey(eq(FILE_KEY), eq(Lists.newArrayList("source_lines")), any(SqlSession.class)))
+      .thenReturn(Lists.newArrayList(dto));
+
+    List<SourceLine> lines = loader.load(FILE_KEY, 2, 2);
+
+    assertThat(lines).hasSize(1);
+    assertThat(lines.get(0).getSource()).isEqualTo("second");
+    assertThat(lines.get(0).getScmAuthor()).isEqualTo("simon");
+    assertThat(lines.get(0).getLineHits()).isEqualTo(3);
+  }
+
+  @Test
+  public void return_null_if_no_source_lines() throws Exception {
+    when(snapshotDataDao.selectSnapshotDataByComponentKey(eq(FILE_KEY), eq(Lists.newArrayList("source_lines")), any(SqlSession.class)))
+      .thenReturn(Collections.<SnapshotDataDto>emptyList());
+
+    assertThat(loader.load(FILE_KEY, 1, 10)).isNull();
+  }
+}
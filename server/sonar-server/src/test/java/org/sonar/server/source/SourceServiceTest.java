@@ -47,6 +47,9 @@ public class SourceServiceTest {
   @Mock
   HtmlSourceDecorator sourceDecorator;
 
+  @Mock
+  SourceLinesLoader sourceLinesLoader;
+
   @Mock
   DeprecatedSourceDecorator deprecatedSourceDecorator;
 
@@ -63,7 +66,7 @@ public class SourceServiceTest {
     DbClient dbClient = mock(DbClient.class);
     when(dbClient.openSession(false)).thenReturn(session);
     when(dbClient.measureDao()).thenReturn(measureDao);
-    service = new SourceService(dbClient, sourceDecorator, deprecatedSourceDecorator);
+    service = new SourceService(dbClient, sourceDecorator, sourceLinesLoader, deprecatedSourceDecorator);
   }
 
   @Test
@@ -94,6 +97,27 @@ public class SourceServiceTest {
     verify(deprecatedSourceDecorator).getSourceAsHtml(COMPONENT_KEY, 1, 2);
   }
 
+  @Test
+  public void get_range_of_source_lines() throws Exception {
+    MockUserSession.set().addComponentPermission(UserRole.CODEVIEWER, PROJECT_KEY, COMPONENT_KEY);
+
+    service.getLines(COMPONENT_KEY, 10, 20);
+
+    verify(sourceLinesLoader).load(COMPONENT_KEY, 10, 20);
+  }
+
+  @Test
+  public void fail_to_get_source_lines_if_no_permission() throws Exception {
+    MockUserSession.set().setLogin("johh");
+    try {
+      service.getLines(COMPONENT_KEY, 10, 20);
+      fail();
+    } catch (Exception e) {
+      assertThat(e).isInstanceOf(ForbiddenException.class);
+    }
+    verifyZeroInteractions(sourceLinesLoader);
+  }
+
   @Test
   public void get_scm_author_data() throws Exception {
     service.getScmAuthorData(COMPONENT_KEY);
@@ -21,12 +21,17 @@ package org.sonar.server.source.ws;
 
 import org.junit.Test;
 import org.sonar.api.utils.text.JsonWriter;
+import org.sonar.core.source.SourceLine;
 import org.sonar.server.source.SourceService;
 import org.sonar.server.ws.WsTester;
 
+import java.util.Arrays;
+import java.util.List;
+
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -79,4 +84,16 @@ public class ScmActionTest {
     request.execute();
     verify(scmWriter).write(eq("1=julien"), eq("1=2013-01-01"), eq(1), eq(20), eq(false), any(JsonWriter.class));
   }
+
+  @Test
+  public void get_scm_from_source_lines() throws Exception {
+    String fileKey = "src/Foo.java";
+    List<SourceLine> lines = Arrays.asList(new SourceLine(3).setScmAuthor("julien").setScmDate("2013-03-13T16:22:31+0100"));
+    when(sourceService.getLines(fileKey, 3, 20)).thenReturn(lines);
+
+    WsTester.TestRequest request = tester.newGetRequest("api/sources", "scm").setParam("key", fileKey).setParam("from", "3").setParam("to", "20");
+    request.execute();
+    verify(scmWriter).write(eq(lines), eq(false), any(JsonWriter.class));
+    verify(sourceService, never()).getScmAuthorData(fileKey);
+  }
 }
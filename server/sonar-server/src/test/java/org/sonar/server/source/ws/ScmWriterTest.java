@@ -23,8 +23,11 @@ import org.json.JSONException;
 import org.junit.Test;
 import org.skyscreamer.jsonassert.JSONAssert;
 import org.sonar.api.utils.text.JsonWriter;
+import org.sonar.core.source.SourceLine;
 
 import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
 
 public class ScmWriterTest {
 
@@ -63,6 +66,27 @@ public class ScmWriterTest {
     test(authors, dates, 10, 20, false, "{\"scm\": []}");
   }
 
+  @Test
+  public void write_source_lines() throws Exception {
+    // lines 2 and 3 are the same commit, line 4 has no SCM data
+    List<SourceLine> lines = Arrays.asList(
+      new SourceLine(2).setScmAuthor("julien").setScmDate("2013-03-13T16:22:31+0100"),
+      new SourceLine(3).setScmAuthor("julien").setScmDate("2013-03-13T16:22:31+0100"),
+      new SourceLine(4),
+      new SourceLine(5).setScmAuthor("simon").setScmDate("2014-01-01T16:22:31+0100"));
+
+    test(lines, false, "{\"scm\": [[2, \"julien\", \"2013-03-13\"], [5, \"simon\", \"2014-01-01\"]]}");
+    test(lines, true, "{\"scm\": [[2, \"julien\", \"2013-03-13\"], [3, \"julien\", \"2013-03-13\"], [5, \"simon\", \"2014-01-01\"]]}");
+  }
+
+  private void test(List<SourceLine> lines, boolean showCommitsByLine, String expected) throws JSONException {
+    StringWriter output = new StringWriter();
+    JsonWriter jsonWriter = JsonWriter.of(output);
+    jsonWriter.beginObject();
+    writer.write(lines, showCommitsByLine, jsonWriter);
+    jsonWriter.endObject();
+    JSONAssert.assertEquals(output.toString(), expected, true);
+  }
 
   private void test(String authors, String dates, int from, int to, boolean group, String expected) throws JSONException {
     StringWriter output = new StringWriter();
@@ -30,15 +30,22 @@ import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.test.MutableTestable;
 import org.sonar.api.web.UserRole;
 import org.sonar.core.component.SnapshotPerspectives;
+import org.sonar.core.measure.db.MeasureDto;
 import org.sonar.core.measure.db.MeasureKey;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
+import org.sonar.core.source.SourceLine;
 import org.sonar.server.measure.persistence.MeasureDao;
+import org.sonar.server.source.SourceLinesLoader;
 import org.sonar.server.user.MockUserSession;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Map;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.MapAssert.entry;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -57,6 +64,9 @@ public class CoverageServiceTest {
   @Mock
   SnapshotPerspectives snapshotPerspectives;
 
+  @Mock
+  SourceLinesLoader sourceLinesLoader;
+
   static final String COMPONENT_KEY = "org.sonar.sample:Sample";
 
   CoverageService service;
@@ -65,7 +75,7 @@ public class CoverageServiceTest {
   public void setUp() throws Exception {
     MyBatis myBatis = mock(MyBatis.class);
     when(myBatis.openSession(false)).thenReturn(session);
-    service = new CoverageService(myBatis, measureDao, snapshotPerspectives);
+    service = new CoverageService(myBatis, measureDao, snapshotPerspectives, sourceLinesLoader);
   }
 
   @Test
@@ -78,44 +88,33 @@ public class CoverageServiceTest {
 
   @Test
   public void get_hits_data() throws Exception {
-    service.getHits(COMPONENT_KEY, CoverageService.TYPE.UT);
-    verify(measureDao).getNullableByKey(session, MeasureKey.of(COMPONENT_KEY, CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY));
+    when(measureDao.findByComponentKeyAndMetricKeys(eq(COMPONENT_KEY), anyListOf(String.class), eq(session))).thenReturn(Arrays.asList(
+      measure(CoreMetrics.IT_COVERAGE_LINE_HITS_DATA_KEY, 10L, "1=1;2=0;5=3")));
 
-    service.getHits(COMPONENT_KEY, CoverageService.TYPE.IT);
-    verify(measureDao).getNullableByKey(session, MeasureKey.of(COMPONENT_KEY, CoreMetrics.IT_COVERAGE_LINE_HITS_DATA_KEY));
+    Map<Integer, Integer> hits = service.getHits(COMPONENT_KEY, CoverageService.TYPE.IT);
 
-    service.getHits(COMPONENT_KEY, CoverageService.TYPE.OVERALL);
-    verify(measureDao).getNullableByKey(session, MeasureKey.of(COMPONENT_KEY, CoreMetrics.OVERALL_COVERAGE_LINE_HITS_DATA_KEY));
+    verify(measureDao).findByComponentKeyAndMetricKeys(COMPONENT_KEY,
+      Arrays.asList(CoreMetrics.IT_COVERAGE_LINE_HITS_DATA_KEY, CoreMetrics.IT_CONDITIONS_BY_LINE_KEY, CoreMetrics.IT_COVERED_CONDITIONS_BY_LINE_KEY), session);
+    assertThat(hits).hasSize(3).includes(entry(1, 1), entry(2, 0), entry(5, 3));
   }
 
   @Test
   public void not_get_hits_data_if_no_data() throws Exception {
-    when(measureDao.getNullableByKey(eq(session), any(MeasureKey.class))).thenReturn(null);
     assertThat(service.getHits(COMPONENT_KEY, CoverageService.TYPE.UT)).isEqualTo(Collections.emptyMap());
   }
 
   @Test
   public void get_conditions_data() throws Exception {
-    service.getConditions(COMPONENT_KEY, CoverageService.TYPE.UT);
-    verify(measureDao).getNullableByKey(session, MeasureKey.of(COMPONENT_KEY, CoreMetrics.CONDITIONS_BY_LINE_KEY));
-
-    service.getConditions(COMPONENT_KEY, CoverageService.TYPE.IT);
-    verify(measureDao).getNullableByKey(session, MeasureKey.of(COMPONENT_KEY, CoreMetrics.IT_CONDITIONS_BY_LINE_KEY));
-
-    service.getConditions(COMPONENT_KEY, CoverageService.TYPE.OVERALL);
-    verify(measureDao).getNullableByKey(session, MeasureKey.of(COMPONENT_KEY, CoreMetrics.OVERALL_CONDITIONS_BY_LINE_KEY));
-  }
+    when(measureDao.findByComponentKeyAndMetricKeys(eq(COMPONENT_KEY), anyListOf(String.class), eq(session))).thenReturn(Arrays.asList(
+      measure(CoreMetrics.OVERALL_COVERAGE_LINE_HITS_DATA_KEY, 10L, "1=1;2=0"),
+      measure(CoreMetrics.OVERALL_CONDITIONS_BY_LINE_KEY, 10L, "2=4"),
+      measure(CoreMetrics.OVERALL_COVERED_CONDITIONS_BY_LINE_KEY, 10L, "2=1")));
 
-  @Test
-  public void get_covered_conditions_data() throws Exception {
-    service.getCoveredConditions(COMPONENT_KEY, CoverageService.TYPE.UT);
-    verify(measureDao).getNullableByKey(session, MeasureKey.of(COMPONENT_KEY, CoreMetrics.COVERED_CONDITIONS_BY_LINE_KEY));
-
-    service.getCoveredConditions(COMPONENT_KEY, CoverageService.TYPE.IT);
-    verify(measureDao).getNullableByKey(session, MeasureKey.of(COMPONENT_KEY, CoreMetrics.IT_COVERED_CONDITIONS_BY_LINE_KEY));
+    assertThat(service.getConditions(COMPONENT_KEY, CoverageService.TYPE.OVERALL)).hasSize(1).includes(entry(2, 4));
+    assertThat(service.getCoveredConditions(COMPONENT_KEY, CoverageService.TYPE.OVERALL)).hasSize(1).includes(entry(2, 1));
 
-    service.getCoveredConditions(COMPONENT_KEY, CoverageService.TYPE.OVERALL);
-    verify(measureDao).getNullableByKey(session, MeasureKey.of(COMPONENT_KEY, CoreMetrics.OVERALL_COVERED_CONDITIONS_BY_LINE_KEY));
+    // measures are decoded once
+    assertThat(service.cacheSize()).isEqualTo(1);
   }
 
   @Test
@@ -136,4 +135,100 @@ public class CoverageServiceTest {
     assertThat(service.getTestCases(COMPONENT_KEY, CoverageService.TYPE.UT)).isEqualTo(Collections.emptyMap());
   }
 
+  @Test
+  public void get_coverage_in_a_single_request() throws Exception {
+    when(measureDao.findByComponentKeyAndMetricKeys(eq(COMPONENT_KEY), anyListOf(String.class), eq(session))).thenReturn(Arrays.asList(
+      measure(CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY, 10L, "1=1;2=0;5=3"),
+      measure(CoreMetrics.CONDITIONS_BY_LINE_KEY, 10L, "2=4"),
+      measure(CoreMetrics.COVERED_CONDITIONS_BY_LINE_KEY, 10L, "2=1")
+      ));
+
+    FileCoverage coverage = service.getCoverage(COMPONENT_KEY, CoverageService.TYPE.UT);
+
+    verify(measureDao).findByComponentKeyAndMetricKeys(COMPONENT_KEY,
+      Arrays.asList(CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY, CoreMetrics.CONDITIONS_BY_LINE_KEY, CoreMetrics.COVERED_CONDITIONS_BY_LINE_KEY), session);
+    assertThat(coverage.size()).isEqualTo(3);
+    assertThat(coverage.line(1)).isEqualTo(2);
+    assertThat(coverage.hits(1)).isEqualTo(0);
+    assertThat(coverage.conditions(2)).isEqualTo(4);
+    assertThat(coverage.coveredConditions(2)).isEqualTo(1);
+    assertThat(coverage.conditions(5)).isNull();
+  }
+
+  @Test
+  public void get_overall_coverage() throws Exception {
+    service.getCoverage(COMPONENT_KEY, CoverageService.TYPE.OVERALL);
+
+    verify(measureDao).findByComponentKeyAndMetricKeys(COMPONENT_KEY,
+      Arrays.asList(CoreMetrics.OVERALL_COVERAGE_LINE_HITS_DATA_KEY, CoreMetrics.OVERALL_CONDITIONS_BY_LINE_KEY, CoreMetrics.OVERALL_COVERED_CONDITIONS_BY_LINE_KEY), session);
+  }
+
+  @Test
+  public void get_empty_coverage_if_no_data() throws Exception {
+    assertThat(service.getCoverage(COMPONENT_KEY, CoverageService.TYPE.IT).isEmpty()).isTrue();
+  }
+
+  @Test
+  public void keep_decoded_coverage_of_snapshot_in_cache() throws Exception {
+    when(measureDao.findByComponentKeyAndMetricKeys(eq(COMPONENT_KEY), anyListOf(String.class), eq(session))).thenReturn(Arrays.asList(
+      measure(CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY, 10L, "1=1;2=0")));
+
+    FileCoverage coverage = service.getCoverage(COMPONENT_KEY, CoverageService.TYPE.UT);
+
+    assertThat(service.getCoverage(COMPONENT_KEY, CoverageService.TYPE.UT)).isSameAs(coverage);
+    assertThat(service.cacheSize()).isEqualTo(1);
+
+    // new analysis
+    when(measureDao.findByComponentKeyAndMetricKeys(eq(COMPONENT_KEY), anyListOf(String.class), eq(session))).thenReturn(Arrays.asList(
+      measure(CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY, 11L, "1=1;2=1")));
+    assertThat(service.getCoverage(COMPONENT_KEY, CoverageService.TYPE.UT).hits(1)).isEqualTo(1);
+  }
+
+  @Test
+  public void limit_size_of_cache() throws Exception {
+    for (long snapshotId = 0; snapshotId < CoverageService.CACHE_SIZE + 10; snapshotId++) {
+      when(measureDao.findByComponentKeyAndMetricKeys(eq(COMPONENT_KEY), anyListOf(String.class), eq(session))).thenReturn(Arrays.asList(
+        measure(CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY, snapshotId, "1=1")));
+      service.getCoverage(COMPONENT_KEY, CoverageService.TYPE.UT);
+    }
+
+    assertThat(service.cacheSize()).isEqualTo(CoverageService.CACHE_SIZE);
+  }
+
+  @Test
+  public void get_range_of_unit_test_coverage_from_source_lines() throws Exception {
+    when(sourceLinesLoader.load(COMPONENT_KEY, 2, 3)).thenReturn(Arrays.asList(
+      new SourceLine(2).setLineHits(0).setConditions(4).setCoveredConditions(1),
+      new SourceLine(3)));
+
+    FileCoverage coverage = service.getCoverage(COMPONENT_KEY, CoverageService.TYPE.UT, 2, 3);
+
+    assertThat(coverage.size()).isEqualTo(1);
+    assertThat(coverage.line(0)).isEqualTo(2);
+    assertThat(coverage.hits(0)).isEqualTo(0);
+    assertThat(coverage.conditions(2)).isEqualTo(4);
+    assertThat(coverage.coveredConditions(2)).isEqualTo(1);
+    verifyZeroInteractions(measureDao);
+  }
+
+  @Test
+  public void get_range_of_coverage_from_measures_if_no_source_lines() throws Exception {
+    when(measureDao.findByComponentKeyAndMetricKeys(eq(COMPONENT_KEY), anyListOf(String.class), eq(session))).thenReturn(Arrays.asList(
+      measure(CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY, 10L, "1=1;2=0")));
+
+    assertThat(service.getCoverage(COMPONENT_KEY, CoverageService.TYPE.UT, 1, 2).size()).isEqualTo(2);
+  }
+
+  @Test
+  public void get_range_of_integration_test_coverage_from_measures() throws Exception {
+    service.getCoverage(COMPONENT_KEY, CoverageService.TYPE.IT, 1, 2);
+
+    verifyZeroInteractions(sourceLinesLoader);
+    verify(measureDao).findByComponentKeyAndMetricKeys(COMPONENT_KEY,
+      Arrays.asList(CoreMetrics.IT_COVERAGE_LINE_HITS_DATA_KEY, CoreMetrics.IT_CONDITIONS_BY_LINE_KEY, CoreMetrics.IT_COVERED_CONDITIONS_BY_LINE_KEY), session);
+  }
+
+  private static MeasureDto measure(String metricKey, long snapshotId, String data) {
+    return MeasureDto.createFor(MeasureKey.of(COMPONENT_KEY, metricKey)).setSnapshotId(snapshotId).setTextValue(data);
+  }
 }
@@ -0,0 +1,73 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.test;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FileCoverageTest {
+
+  @Test
+  public void decode() throws Exception {
+    FileCoverage coverage = FileCoverage.decode("1=3;4=0;7=1", "4=2", "4=1");
+
+    assertThat(coverage.isEmpty()).isFalse();
+    assertThat(coverage.size()).isEqualTo(3);
+    assertThat(coverage.line(0)).isEqualTo(1);
+    assertThat(coverage.hits(0)).isEqualTo(3);
+    assertThat(coverage.line(1)).isEqualTo(4);
+    assertThat(coverage.hits(1)).isEqualTo(0);
+    assertThat(coverage.conditions(4)).isEqualTo(2);
+    assertThat(coverage.coveredConditions(4)).isEqualTo(1);
+    assertThat(coverage.conditions(1)).isNull();
+    assertThat(coverage.coveredConditions(7)).isNull();
+  }
+
+  @Test
+  public void decode_empty_data() throws Exception {
+    assertThat(FileCoverage.decode(null, "4=2", "4=1").isEmpty()).isTrue();
+    assertThat(FileCoverage.decode("", null, null).size()).isEqualTo(0);
+  }
+
+  @Test
+  public void sort_lines() throws Exception {
+    FileCoverage coverage = FileCoverage.decode("7=1;1=3;4=0", null, null);
+
+    assertThat(coverage.line(0)).isEqualTo(1);
+    assertThat(coverage.hits(0)).isEqualTo(3);
+    assertThat(coverage.line(1)).isEqualTo(4);
+    assertThat(coverage.hits(1)).isEqualTo(0);
+    assertThat(coverage.line(2)).isEqualTo(7);
+    assertThat(coverage.hits(2)).isEqualTo(1);
+  }
+
+  @Test
+  public void first_index_of_range() throws Exception {
+    FileCoverage coverage = FileCoverage.decode("1=3;4=0;7=1", null, null);
+
+    assertThat(coverage.firstIndex(0)).isEqualTo(0);
+    assertThat(coverage.firstIndex(1)).isEqualTo(0);
+    assertThat(coverage.firstIndex(2)).isEqualTo(1);
+    assertThat(coverage.firstIndex(4)).isEqualTo(1);
+    assertThat(coverage.firstIndex(7)).isEqualTo(2);
+    assertThat(coverage.firstIndex(8)).isEqualTo(3);
+  }
+}
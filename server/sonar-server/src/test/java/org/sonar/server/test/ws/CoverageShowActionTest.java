@@ -27,8 +27,13 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.sonar.server.test.CoverageService;
+import org.sonar.server.test.FileCoverage;
 import org.sonar.server.ws.WsTester;
 
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -47,10 +52,8 @@ public class CoverageShowActionTest {
   @Test
   public void show_coverage_for_unit_test() throws Exception {
     String fileKey = "src/Foo.java";
-    when(coverageService.getHits(fileKey, CoverageService.TYPE.UT)).thenReturn(ImmutableMap.of(1, 1, 2, 1, 3, 0, 4, 1, 5 , 1));
+    when(coverageService.getCoverage(eq(fileKey), eq(CoverageService.TYPE.UT), anyInt(), anyInt())).thenReturn(FileCoverage.decode("1=1;2=1;3=0;4=1;5=1", "2=3;3=2", "2=1;3=2"));
     when(coverageService.getTestCases(fileKey, CoverageService.TYPE.UT)).thenReturn(ImmutableMap.of(4, 8, 1, 2));
-    when(coverageService.getConditions(fileKey, CoverageService.TYPE.UT)).thenReturn(ImmutableMap.of(2, 3, 3, 2));
-    when(coverageService.getCoveredConditions(fileKey, CoverageService.TYPE.UT)).thenReturn(ImmutableMap.of(2, 1, 3, 2));
 
     WsTester.TestRequest request = tester.newGetRequest("api/coverage", "show").setParam("key", fileKey).setParam("type", "UT");
 
@@ -60,22 +63,19 @@ public class CoverageShowActionTest {
   @Test
   public void show_coverage_for_unit_test_with_from_and_to() throws Exception {
     String fileKey = "src/Foo.java";
-    when(coverageService.getHits(fileKey, CoverageService.TYPE.UT)).thenReturn(ImmutableMap.of(1, 1, 2, 1, 3, 0, 4, 1, 5 , 1));
+    when(coverageService.getCoverage(eq(fileKey), eq(CoverageService.TYPE.UT), anyInt(), anyInt())).thenReturn(FileCoverage.decode("1=1;2=1;3=0;4=1;5=1", "2=3;3=2", "2=1;3=2"));
     when(coverageService.getTestCases(fileKey, CoverageService.TYPE.UT)).thenReturn(ImmutableMap.of(4, 8, 1, 2));
-    when(coverageService.getConditions(fileKey, CoverageService.TYPE.UT)).thenReturn(ImmutableMap.of(2, 3, 3, 2));
-    when(coverageService.getCoveredConditions(fileKey, CoverageService.TYPE.UT)).thenReturn(ImmutableMap.of(2, 1, 3, 2));
 
     WsTester.TestRequest request = tester.newGetRequest("api/coverage", "show").setParam("key", fileKey).setParam("from", "3").setParam("to", "4").setParam("type", "UT");
 
     request.execute().assertJson(getClass(), "show_coverage_with_from_and_to.json");
+    verify(coverageService).getCoverage(fileKey, CoverageService.TYPE.UT, 3, 4);
   }
 
   @Test
   public void show_coverage_for_integration_test() throws Exception {
     String fileKey = "src/Foo.java";
-    when(coverageService.getHits(fileKey, CoverageService.TYPE.IT)).thenReturn(ImmutableMap.of(1, 1, 2, 1, 3, 0, 4, 1, 5 , 1));
-    when(coverageService.getConditions(fileKey, CoverageService.TYPE.IT)).thenReturn(ImmutableMap.of(2, 3, 3, 2));
-    when(coverageService.getCoveredConditions(fileKey, CoverageService.TYPE.IT)).thenReturn(ImmutableMap.of(2, 1, 3, 2));
+    when(coverageService.getCoverage(eq(fileKey), eq(CoverageService.TYPE.IT), anyInt(), anyInt())).thenReturn(FileCoverage.decode("1=1;2=1;3=0;4=1;5=1", "2=3;3=2", "2=1;3=2"));
 
     WsTester.TestRequest request = tester.newGetRequest("api/coverage", "show").setParam("key", fileKey).setParam("type", "IT");
 
@@ -85,13 +85,31 @@ public class CoverageShowActionTest {
   @Test
   public void show_coverage_for_overall_test() throws Exception {
     String fileKey = "src/Foo.java";
-    when(coverageService.getHits(fileKey, CoverageService.TYPE.OVERALL)).thenReturn(ImmutableMap.of(1, 1, 2, 1, 3, 0, 4, 1, 5 , 1));
-    when(coverageService.getConditions(fileKey, CoverageService.TYPE.OVERALL)).thenReturn(ImmutableMap.of(2, 3, 3, 2));
-    when(coverageService.getCoveredConditions(fileKey, CoverageService.TYPE.OVERALL)).thenReturn(ImmutableMap.of(2, 1, 3, 2));
+    when(coverageService.getCoverage(eq(fileKey), eq(CoverageService.TYPE.OVERALL), anyInt(), anyInt())).thenReturn(FileCoverage.decode("1=1;2=1;3=0;4=1;5=1", "2=3;3=2", "2=1;3=2"));
 
     WsTester.TestRequest request = tester.newGetRequest("api/coverage", "show").setParam("key", fileKey).setParam("type", "OVERALL");
 
     request.execute().assertJson(getClass(), "show_coverage_for_overall_test.json");
   }
 
+  @Test
+  public void show_nothing_if_no_coverage() throws Exception {
+    String fileKey = "src/Foo.java";
+    when(coverageService.getCoverage(eq(fileKey), eq(CoverageService.TYPE.UT), anyInt(), anyInt())).thenReturn(FileCoverage.decode(null, null, null));
+
+    WsTester.TestRequest request = tester.newGetRequest("api/coverage", "show").setParam("key", fileKey).setParam("type", "UT");
+
+    request.execute().assertJson("{}");
+  }
+
+  @Test
+  public void do_not_load_test_cases_if_no_lines_in_range() throws Exception {
+    String fileKey = "src/Foo.java";
+    when(coverageService.getCoverage(eq(fileKey), eq(CoverageService.TYPE.UT), anyInt(), anyInt())).thenReturn(FileCoverage.decode("1=1;2=1", null, null));
+
+    WsTester.TestRequest request = tester.newGetRequest("api/coverage", "show").setParam("key", fileKey).setParam("from", "10").setParam("type", "UT");
+
+    request.execute().assertJson("{\"coverage\": []}");
+    verify(coverageService, never()).getTestCases(fileKey, CoverageService.TYPE.UT);
+  }
 }
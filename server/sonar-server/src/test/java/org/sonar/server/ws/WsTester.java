@@ -24,6 +24,7 @@ import org.apache.commons.io.Charsets;
 import org.apache.commons.io.IOUtils;
 import org.skyscreamer.jsonassert.JSONAssert;
 import org.sonar.api.server.ws.Response;
+import org.sonar.api.server.ws.ResponseWithHeaders;
 import org.sonar.api.server.ws.WebService;
 import org.sonar.api.server.ws.internal.ValidatingRequest;
 import org.sonar.api.utils.text.JsonWriter;
@@ -51,6 +52,7 @@ public class WsTester {
 
     private final String method;
     private Map<String, String> params = Maps.newHashMap();
+    private final Map<String, String> headers = Maps.newHashMap();
 
     private TestRequest(String method) {
       this.method = method;
@@ -78,6 +80,16 @@ public class WsTester {
       return params.get(key);
     }
 
+    public TestRequest setHeader(String name, String value) {
+      headers.put(name, value);
+      return this;
+    }
+
+    @Override
+    public String header(String name) {
+      return headers.get(name);
+    }
+
     public Result execute() throws Exception {
       TestResponse response = new TestResponse();
       action().handler().handle(this, response);
@@ -85,7 +97,7 @@ public class WsTester {
     }
   }
 
-  public static class TestResponse implements Response {
+  public static class TestResponse implements ResponseWithHeaders {
 
     private TestStream stream;
 
@@ -121,6 +133,7 @@ public class WsTester {
     }
 
     private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final Map<String, String> headers = Maps.newHashMap();
 
     @Override
     public JsonWriter newJsonWriter() {
@@ -147,6 +160,12 @@ public class WsTester {
       IOUtils.closeQuietly(output);
       return this;
     }
+
+    @Override
+    public TestResponse setHeader(String name, String value) {
+      headers.put(name, value);
+      return this;
+    }
   }
 
 
@@ -194,6 +213,11 @@ public class WsTester {
       return this;
     }
 
+    @CheckForNull
+    public String header(String name) {
+      return response.headers.get(name);
+    }
+
     public Result assertNotModified() {
       return assertStatus(HttpURLConnection.HTTP_NOT_MODIFIED);
     }
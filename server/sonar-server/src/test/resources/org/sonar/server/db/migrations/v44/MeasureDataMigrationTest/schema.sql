@@ -32,3 +32,11 @@ CREATE TABLE "MEASURE_DATA" (
   "SNAPSHOT_ID" INTEGER,
   "DATA" BINARY(167772150)
 );
+
+CREATE TABLE "PROPERTIES" (
+  "ID" INTEGER NOT NULL GENERATED BY DEFAULT AS IDENTITY (START WITH 1, INCREMENT BY 1),
+  "PROP_KEY" VARCHAR(512),
+  "RESOURCE_ID" INTEGER,
+  "TEXT_VALUE" CLOB(2147483647),
+  "USER_ID" INTEGER
+);
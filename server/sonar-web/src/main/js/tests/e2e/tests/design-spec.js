@@ -11,6 +11,7 @@ casper.test.begin(testName('Base'), function suite(test) {
         lib.setDefaultViewport();
         lib.mockRequest('/api/l10n/index', '{}');
         lib.mockRequestFromFile('/api/resources', 'resources.json');
+        lib.mockRequestFromFile('/api/design/dsm', 'dsm.json');
         lib.mockRequestFromFile('/api/dependencies', 'dependencies.json');
       })
 
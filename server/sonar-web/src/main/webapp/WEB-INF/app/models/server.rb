@@ -73,6 +73,9 @@ class Server
     add_property(sonar_info, 'Automatic User Creation') { sonar_property(org.sonar.api.CoreProperties.CORE_AUTHENTICATOR_CREATE_USERS) }
     add_property(sonar_info, 'Allow Users to Sign Up') { sonar_property(org.sonar.api.CoreProperties.CORE_ALLOW_USERS_TO_SIGNUP_PROPERTY) }
     add_property(sonar_info, 'Force Authentication') { sonar_property(org.sonar.api.CoreProperties.CORE_FORCE_AUTHENTICATION_PROPERTY) }
+    add_property(sonar_info, 'Notifications (delivered/waiting)') { "#{notification_service.getDeliveredCount()} / #{notification_service.getRemainingCount()}" }
+    add_property(sonar_info, 'Notifications Delivery Rate') { "#{format_double(notification_service.getDeliveryRatePerSecond())} per second" }
+    add_property(sonar_info, 'Notifications Queue Lag') { "#{notification_service.getQueueLagInMs() / 1000} sec." }
     sonar_info
   end
 
@@ -167,6 +170,10 @@ class Server
     end
   end
 
+  def notification_service
+    @notification_service ||= Api::Utils.java_facade.getCoreComponentByClassname('org.sonar.server.notifications.NotificationService')
+  end
+
   def jdbc_metadata
     @metadata ||=
         begin
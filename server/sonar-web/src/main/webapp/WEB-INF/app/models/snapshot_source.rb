@@ -58,6 +58,11 @@ class SnapshotSource < ActiveRecord::Base
     txt
   end
 
+  # large sources are stored compressed
+  def data
+    Java::OrgSonarCoreSourceDb::SnapshotSourceCodec.decode(read_attribute(:data))
+  end
+
   def encoded_data(escape_html=false)
     escape_html ? CGI::escapeHTML(data) : data
   end
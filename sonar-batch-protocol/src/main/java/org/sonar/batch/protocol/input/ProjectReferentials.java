@@ -45,6 +45,13 @@ public class ProjectReferentials {
     return settingsByModule.containsKey(projectKey) ? settingsByModule.get(projectKey) : Collections.<String, String>emptyMap();
   }
 
+  /**
+   * Settings of all the modules, by module key
+   */
+  public Map<String, Map<String, String>> settingsByModule() {
+    return Collections.unmodifiableMap(settingsByModule);
+  }
+
   public ProjectReferentials addSettings(String projectKey, Map<String, String> settings) {
     Map<String, String> existingSettings = settingsByModule.get(projectKey);
     if (existingSettings == null) {
@@ -45,6 +45,7 @@ public class ProjectReferentialsTest {
     settings.put("prop2", "value2");
     ref.addSettings("foo", settings);
     ref.settings("foo").put("prop", "value");
+    assertThat(ref.settingsByModule().keySet()).containsOnly("foo");
     ActiveRule activeRule = new ActiveRule("repo", "rule", "Rule", "MAJOR", "rule", "java");
     activeRule.addParam("param1", "value1");
     ref.addActiveRule(activeRule);
@@ -25,6 +25,7 @@ import org.sonar.api.batch.TimeMachine;
 import org.sonar.api.batch.TimeMachineQuery;
 import org.sonar.api.database.DatabaseSession;
 import org.sonar.api.database.model.MeasureModel;
+import org.sonar.api.database.model.ResourceModel;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.Metric;
@@ -35,9 +36,11 @@ import org.sonar.api.technicaldebt.batch.Characteristic;
 import org.sonar.api.technicaldebt.batch.TechnicalDebtModel;
 import org.sonar.batch.index.DefaultIndex;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import javax.persistence.Query;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -87,11 +90,42 @@ public class DefaultTimeMachine implements TimeMachine {
     return rows;
   }
 
-  protected List<Object[]> execute(TimeMachineQuery query, boolean selectAllFields, Set<Integer> metricIds) {
-    Resource resource = query.getResource();
-    if (resource != null && resource.getId() == null) {
-      resource = index.getResource(query.getResource());
+  @Override
+  public List<Object[]> getModuleMeasuresFields(TimeMachineQuery query, String... scopes) {
+    Map<Integer, Metric> metricById = getMetricsById(query);
+    Resource module = getResource(query);
+    if (module == null) {
+      return Collections.emptyList();
     }
+
+    StringBuilder sb = new StringBuilder();
+    Map<String, Object> params = Maps.newHashMap();
+    sb.append("SELECT s.resourceId, s.createdAt, m.metricId, m.value FROM ")
+      .append(MeasureModel.class.getSimpleName())
+      .append(" m, ")
+      .append(Snapshot.class.getSimpleName())
+      .append(" s, ")
+      .append(ResourceModel.class.getSimpleName())
+      .append(" r WHERE m.snapshotId=s.id AND s.resourceId=r.id AND (r.id=:moduleId OR r.rootId=:moduleId)")
+      .append(" AND s.status=:status AND s.qualifier<>:lib");
+    params.put("moduleId", module.getId());
+    params.put("status", Snapshot.STATUS_PROCESSED);
+    params.put("lib", Qualifiers.LIBRARY);
+    if (scopes.length > 0) {
+      sb.append(" AND s.scope IN (:scopes)");
+      params.put("scopes", Arrays.asList(scopes));
+    }
+    appendFilters(query, metricById.keySet(), sb, params);
+
+    List<Object[]> rows = createQuery(sb, params).getResultList();
+    for (Object[] fields : rows) {
+      fields[2] = metricById.get(fields[2]);
+    }
+    return rows;
+  }
+
+  protected List<Object[]> execute(TimeMachineQuery query, boolean selectAllFields, Set<Integer> metricIds) {
+    Resource resource = getResource(query);
     if (resource == null) {
       return Collections.emptyList();
     }
@@ -112,7 +146,21 @@ public class DefaultTimeMachine implements TimeMachine {
     params.put("resourceId", resource.getId());
     params.put("status", Snapshot.STATUS_PROCESSED);
     params.put("lib", Qualifiers.LIBRARY);
+    appendFilters(query, metricIds, sb, params);
+
+    return createQuery(sb, params).getResultList();
+  }
 
+  @CheckForNull
+  private Resource getResource(TimeMachineQuery query) {
+    Resource resource = query.getResource();
+    if (resource != null && resource.getId() == null) {
+      resource = index.getResource(query.getResource());
+    }
+    return resource;
+  }
+
+  private void appendFilters(TimeMachineQuery query, Set<Integer> metricIds, StringBuilder sb, Map<String, Object> params) {
     sb.append(" AND m.characteristicId IS NULL");
     sb.append(" AND m.personId IS NULL");
     sb.append(" AND m.ruleId IS NULL AND m.rulePriority IS NULL");
@@ -141,13 +189,14 @@ public class DefaultTimeMachine implements TimeMachine {
       params.put("last", Boolean.TRUE);
     }
     sb.append(" ORDER BY s.createdAt ");
+  }
 
+  private Query createQuery(StringBuilder sb, Map<String, Object> params) {
     Query jpaQuery = session.createQuery(sb.toString());
-
     for (Map.Entry<String, Object> entry : params.entrySet()) {
       jpaQuery.setParameter(entry.getKey(), entry.getValue());
     }
-    return jpaQuery.getResultList();
+    return jpaQuery;
   }
 
   public Map<Integer, Metric> getMetricsById(TimeMachineQuery query) {
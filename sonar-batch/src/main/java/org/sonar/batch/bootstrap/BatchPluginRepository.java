@@ -19,6 +19,7 @@
  */
 package org.sonar.batch.bootstrap;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
@@ -42,6 +43,11 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Sets.newHashSet;
@@ -50,6 +56,7 @@ public class BatchPluginRepository implements PluginRepository {
 
   private static final Logger LOG = LoggerFactory.getLogger(BatchPluginRepository.class);
   private static final String CORE_PLUGIN = "core";
+  private static final int MAX_CONCURRENT_DOWNLOADS = 4;
 
   private PluginsReferential pluginsReferential;
   private Map<String, Plugin> pluginsByKey;
@@ -83,22 +90,82 @@ public class BatchPluginRepository implements PluginRepository {
 
   void doStart(List<RemotePlugin> remotePlugins) {
     PluginFilter filter = new PluginFilter(settings, analysisMode);
-    metadataByKey = Maps.newHashMap();
+    List<RemotePlugin> acceptedPlugins = Lists.newArrayList();
     for (RemotePlugin remote : remotePlugins) {
       if (filter.accepts(remote.getKey())) {
-        File pluginFile = pluginsReferential.pluginFile(remote);
-        PluginMetadata metadata = pluginInstaller.installToCache(pluginFile, remote.isCore());
-        if (StringUtils.isBlank(metadata.getBasePlugin()) || filter.accepts(metadata.getBasePlugin())) {
-          metadataByKey.put(metadata.getKey(), metadata);
-        } else {
-          LOG.debug("Excluded plugin: " + metadata.getKey());
-        }
+        acceptedPlugins.add(remote);
+      }
+    }
+    metadataByKey = Maps.newHashMap();
+    for (PluginMetadata metadata : install(acceptedPlugins)) {
+      if (StringUtils.isBlank(metadata.getBasePlugin()) || filter.accepts(metadata.getBasePlugin())) {
+        metadataByKey.put(metadata.getKey(), metadata);
+      } else {
+        LOG.debug("Excluded plugin: " + metadata.getKey());
       }
     }
     classLoaders = new PluginClassloaders(Thread.currentThread().getContextClassLoader());
     pluginsByKey = classLoaders.init(metadataByKey.values());
   }
 
+  /**
+   * Plugins are downloaded to the user cache and installed concurrently. Metadata are returned
+   * in the same order than the given plugins.
+   */
+  private List<PluginMetadata> install(List<RemotePlugin> remotePlugins) {
+    List<PluginMetadata> metadata = Lists.newArrayList();
+    if (remotePlugins.size() <= 1) {
+      for (RemotePlugin remote : remotePlugins) {
+        metadata.add(install(remote));
+      }
+      return metadata;
+    }
+
+    ExecutorService executor = newExecutor(Math.min(MAX_CONCURRENT_DOWNLOADS, remotePlugins.size()));
+    try {
+      List<Future<PluginMetadata>> futures = Lists.newArrayList();
+      for (final RemotePlugin remote : remotePlugins) {
+        futures.add(executor.submit(new Callable<PluginMetadata>() {
+          @Override
+          public PluginMetadata call() {
+            return install(remote);
+          }
+        }));
+      }
+      for (Future<PluginMetadata> future : futures) {
+        metadata.add(waitFor(future));
+      }
+      return metadata;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @VisibleForTesting
+  ExecutorService newExecutor(int threads) {
+    return Executors.newFixedThreadPool(threads);
+  }
+
+  private PluginMetadata install(RemotePlugin remote) {
+    File pluginFile = pluginsReferential.pluginFile(remote);
+    return pluginInstaller.installToCache(pluginFile, remote.isCore());
+  }
+
+  private static PluginMetadata waitFor(Future<PluginMetadata> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while installing plugins", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException("Fail to install plugin", cause);
+    }
+  }
+
   public void stop() {
     if (classLoaders != null) {
       classLoaders.clean();
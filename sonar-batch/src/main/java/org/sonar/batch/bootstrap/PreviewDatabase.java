@@ -19,8 +19,13 @@
  */
 package org.sonar.batch.bootstrap;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.comparator.LastModifiedFileComparator;
+import org.apache.commons.io.filefilter.SuffixFileFilter;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,9 +36,16 @@ import org.sonar.api.database.DatabaseProperties;
 import org.sonar.api.utils.HttpDownloader.HttpException;
 import org.sonar.api.utils.SonarException;
 import org.sonar.api.utils.TempFolder;
+import org.sonar.home.cache.FileCache;
 
 import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.UUID;
 
 /**
  * @since 3.4
@@ -47,16 +59,25 @@ public class PreviewDatabase implements BatchComponent {
   private static final String USER = "sonar";
   private static final String PASSWORD = USER;
 
+  private static final String CACHE_DIRNAME = "preview";
+  private static final String DATABASE_SUFFIX = ".h2.db";
+  private static final String TEMP_SUFFIX = ".tmp";
+  @VisibleForTesting
+  static final int MAX_CACHED_DATABASES = 5;
+  private static final long TEMP_FILE_EXPIRATION_MS = 24L * 60 * 60 * 1000;
+
   private final Settings settings;
   private final ServerClient server;
   private final TempFolder tempUtils;
   private final AnalysisMode mode;
+  private final FileCache fileCache;
 
-  public PreviewDatabase(Settings settings, ServerClient server, TempFolder tempUtils, AnalysisMode mode) {
+  public PreviewDatabase(Settings settings, ServerClient server, TempFolder tempUtils, AnalysisMode mode, FileCache fileCache) {
     this.settings = settings;
     this.server = server;
     this.tempUtils = tempUtils;
     this.mode = mode;
+    this.fileCache = fileCache;
   }
 
   public void start() {
@@ -80,9 +101,9 @@ public class PreviewDatabase implements BatchComponent {
         projectKey = String.format("%s:%s", projectKey, branch);
       }
       if (StringUtils.isBlank(projectKey)) {
-        server.download("/batch_bootstrap/db", toFile, readTimeoutMillis);
+        download("/batch_bootstrap/db", toFile, readTimeoutMillis);
       } else {
-        server.download("/batch_bootstrap/db?project=" + projectKey, toFile, readTimeoutMillis);
+        download("/batch_bootstrap/db?project=" + projectKey, toFile, readTimeoutMillis);
       }
       LOG.debug("Dry Run database size: {}", FileUtils.byteCountToDisplaySize(FileUtils.sizeOf(toFile)));
     } catch (SonarException e) {
@@ -91,6 +112,99 @@ public class PreviewDatabase implements BatchComponent {
     }
   }
 
+  /**
+   * The last downloaded database of each project is kept in the user cache. It is downloaded again only if the server
+   * returns another version. The analysis is executed on a copy as the database is updated by the batch.
+   */
+  private void download(String url, File toFile, int readTimeoutMillis) {
+    File cacheDir = new File(fileCache.getDir(), CACHE_DIRNAME);
+    File localCopy = new File(cacheDir, DigestUtils.md5Hex(server.getURL() + url) + DATABASE_SUFFIX);
+    // the ETag is computed on the private copy, as the cached database can be replaced by a concurrent analysis
+    String etag = copyFromCache(localCopy, toFile) ? etag(toFile) : null;
+    if (server.downloadIfNoneMatch(url, toFile, etag, readTimeoutMillis)) {
+      writeToCache(toFile, localCopy);
+      evictFromCache(cacheDir, MAX_CACHED_DATABASES);
+    } else {
+      LOG.debug("Dry Run database is up-to-date in cache: {}", localCopy);
+      localCopy.setLastModified(System.currentTimeMillis());
+    }
+  }
+
+  private static boolean copyFromCache(File localCopy, File toFile) {
+    if (!localCopy.isFile()) {
+      return false;
+    }
+    try {
+      FileUtils.copyFile(localCopy, toFile);
+      return true;
+    } catch (IOException e) {
+      // for example evicted by a concurrent analysis
+      LOG.debug("Fail to copy preview database from cache: " + localCopy, e);
+      return false;
+    }
+  }
+
+  /**
+   * The database is copied to a temporary file which is then renamed, so that concurrent analyses
+   * never read a partially written database. Failures are ignored as the cache is only an optimization.
+   */
+  private static void writeToCache(File file, File localCopy) {
+    File tempFile = new File(localCopy.getParentFile(), localCopy.getName() + "." + UUID.randomUUID().toString() + TEMP_SUFFIX);
+    try {
+      FileUtils.copyFile(file, tempFile);
+      if (!tempFile.renameTo(localCopy)) {
+        // target can't be replaced on some file systems
+        FileUtils.deleteQuietly(localCopy);
+        if (!tempFile.renameTo(localCopy)) {
+          LOG.debug("Fail to rename {} to {}", tempFile, localCopy);
+        }
+      }
+    } catch (IOException e) {
+      LOG.debug("Fail to copy preview database to cache: " + localCopy, e);
+    } finally {
+      FileUtils.deleteQuietly(tempFile);
+    }
+  }
+
+  /**
+   * Only the most recently used databases are kept. Temporary files left by interrupted analyses are deleted.
+   */
+  @VisibleForTesting
+  static void evictFromCache(File cacheDir, int maxDatabases) {
+    File[] databases = cacheDir.listFiles((FileFilter) new SuffixFileFilter(DATABASE_SUFFIX));
+    if (databases != null && databases.length > maxDatabases) {
+      Arrays.sort(databases, LastModifiedFileComparator.LASTMODIFIED_REVERSE);
+      for (int i = maxDatabases; i < databases.length; i++) {
+        FileUtils.deleteQuietly(databases[i]);
+      }
+    }
+    File[] tempFiles = cacheDir.listFiles((FileFilter) new SuffixFileFilter(TEMP_SUFFIX));
+    if (tempFiles != null) {
+      long expiredAt = System.currentTimeMillis() - TEMP_FILE_EXPIRATION_MS;
+      for (File tempFile : tempFiles) {
+        if (tempFile.lastModified() < expiredAt) {
+          FileUtils.deleteQuietly(tempFile);
+        }
+      }
+    }
+  }
+
+  /**
+   * Same format as the ETag sent by the server
+   */
+  @VisibleForTesting
+  static String etag(File file) {
+    InputStream input = null;
+    try {
+      input = new FileInputStream(file);
+      return "\"" + DigestUtils.md5Hex(input) + "\"";
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read " + file, e);
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
   private void handleException(int readTimeout, String projectKey, SonarException e) {
     Throwable rootCause = Throwables.getRootCause(e);
     if (rootCause instanceof SocketTimeoutException) {
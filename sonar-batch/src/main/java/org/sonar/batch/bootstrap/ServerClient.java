@@ -21,6 +21,7 @@ package org.sonar.batch.bootstrap;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Files;
 import com.google.common.io.InputSupplier;
 import org.apache.commons.io.IOUtils;
@@ -31,14 +32,18 @@ import org.sonar.api.CoreProperties;
 import org.sonar.api.utils.HttpDownloader;
 import org.sonar.batch.bootstrapper.EnvironmentInformation;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URLEncoder;
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * Replace the deprecated org.sonar.batch.ServerMetadata
@@ -76,6 +81,28 @@ public class ServerClient implements BatchComponent {
     }
   }
 
+  /**
+   * Conditional download. The ETag is the one of the local copy of the file.
+   *
+   * @return false if the server answers that the local copy is up-to-date (HTTP status 304). In this case the file is not written.
+   * @since 5.0
+   */
+  public boolean downloadIfNoneMatch(String pathStartingWithSlash, File toFile, @Nullable String etag, @Nullable Integer readTimeoutMillis) {
+    Map<String, String> headers = etag != null ? ImmutableMap.of("If-None-Match", etag) : Collections.<String, String>emptyMap();
+    try {
+      InputSupplier<InputStream> inputSupplier = doRequest(pathStartingWithSlash, GET, readTimeoutMillis, headers);
+      Files.copy(inputSupplier, toFile);
+      return true;
+    } catch (HttpDownloader.HttpException he) {
+      if (he.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        return false;
+      }
+      throw handleHttpException(he);
+    } catch (IOException e) {
+      throw new IllegalStateException(String.format("Unable to download '%s' to: %s", pathStartingWithSlash, toFile), e);
+    }
+  }
+
   public String request(String pathStartingWithSlash) {
     return request(pathStartingWithSlash, GET, true);
   }
@@ -103,7 +130,34 @@ public class ServerClient implements BatchComponent {
     }
   }
 
+  /**
+   * Conditional GET request. The ETag is the one of the local copy of the response.
+   *
+   * @return the response, or {@code null} if the server answers that the local copy is up-to-date (HTTP status 304)
+   * @since 5.0
+   */
+  @CheckForNull
+  public String requestIfNoneMatch(String pathStartingWithSlash, @Nullable String etag) {
+    Map<String, String> headers = etag != null ? ImmutableMap.of("If-None-Match", etag) : Collections.<String, String>emptyMap();
+    InputSupplier<InputStream> inputSupplier = doRequest(pathStartingWithSlash, GET, null, headers);
+    try {
+      return IOUtils.toString(inputSupplier.getInput(), "UTF-8");
+    } catch (HttpDownloader.HttpException e) {
+      if (e.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        return null;
+      }
+      throw handleHttpException(e);
+    } catch (IOException e) {
+      throw new IllegalStateException(String.format("Unable to request: %s", pathStartingWithSlash), e);
+    }
+  }
+
   private InputSupplier<InputStream> doRequest(String pathStartingWithSlash, String requestMethod, @Nullable Integer timeoutMillis) {
+    return doRequest(pathStartingWithSlash, requestMethod, timeoutMillis, Collections.<String, String>emptyMap());
+  }
+
+  private InputSupplier<InputStream> doRequest(String pathStartingWithSlash, String requestMethod, @Nullable Integer timeoutMillis,
+    Map<String, String> headers) {
     Preconditions.checkArgument(pathStartingWithSlash.startsWith("/"), "Path must start with slash /");
     String path = StringEscapeUtils.escapeHtml(pathStartingWithSlash);
 
@@ -111,9 +165,9 @@ public class ServerClient implements BatchComponent {
     try {
       InputSupplier<InputStream> inputSupplier;
       if (Strings.isNullOrEmpty(getLogin())) {
-        inputSupplier = downloader.newInputSupplier(uri, requestMethod, timeoutMillis);
+        inputSupplier = downloader.newInputSupplier(uri, requestMethod, null, null, timeoutMillis, headers);
       } else {
-        inputSupplier = downloader.newInputSupplier(uri, requestMethod, getLogin(), getPassword(), timeoutMillis);
+        inputSupplier = downloader.newInputSupplier(uri, requestMethod, getLogin(), getPassword(), timeoutMillis, headers);
       }
       return inputSupplier;
     } catch (Exception e) {
@@ -19,9 +19,11 @@
  */
 package org.sonar.batch.design;
 
+import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.config.Settings;
 import org.sonar.api.design.Dependency;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
@@ -45,9 +47,11 @@ import java.util.Set;
 public class SubProjectDsmDecorator implements Decorator {
 
   private SonarIndex index;
+  private Settings settings;
 
-  public SubProjectDsmDecorator(SonarIndex index) {
+  public SubProjectDsmDecorator(SonarIndex index, Settings settings) {
     this.index = index;
+    this.settings = settings;
   }
 
   @Override
@@ -76,8 +80,11 @@ public class SubProjectDsmDecorator implements Decorator {
       savePositiveMeasure(context, CoreMetrics.DIRECTORY_TANGLES, tangles);
       savePositiveMeasure(context, CoreMetrics.DIRECTORY_EDGES_WEIGHT, getEdgesWeight(directories));
 
-      Dsm<Resource> dsm = getDsm(directories, feedbackEdges);
-      saveDsm(context, dsm);
+      if (!settings.getBoolean(CoreProperties.DESIGN_LAZY_DSM_KEY)) {
+        // otherwise the DSM is computed by the server from the persisted dependencies
+        Dsm<Resource> dsm = getDsm(directories, feedbackEdges);
+        saveDsm(context, dsm);
+      }
     }
   }
 
@@ -0,0 +1,112 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.index;
+
+import org.sonar.api.database.model.Snapshot;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Measure;
+import org.sonar.batch.scan.measure.MeasureCache;
+import org.sonar.core.persistence.DbSession;
+import org.sonar.core.persistence.MyBatis;
+import org.sonar.core.source.SnapshotDataTypes;
+import org.sonar.core.source.SourceLinesEncoder;
+import org.sonar.core.source.db.SnapshotDataDao;
+import org.sonar.core.source.db.SnapshotDataDto;
+
+import javax.annotation.CheckForNull;
+
+import java.util.Map;
+
+/**
+ * Groups source, SCM, coverage and highlighting data of each file saved during the analysis, so
+ * that the server can read a range of lines without loading all the data of the file.
+ *
+ * @since 5.0
+ */
+public class SourceLinesPersister implements ScanPersister {
+
+  private final SnapshotCache snapshots;
+  private final SourcePersister sourcePersister;
+  private final MeasureCache measures;
+  private final ComponentDataCache data;
+  private final SnapshotDataDao dao;
+  private final MyBatis mybatis;
+
+  public SourceLinesPersister(SnapshotCache snapshots, SourcePersister sourcePersister, MeasureCache measures, ComponentDataCache data,
+    SnapshotDataDao dao, MyBatis mybatis) {
+    this.snapshots = snapshots;
+    this.sourcePersister = sourcePersister;
+    this.measures = measures;
+    this.data = data;
+    this.dao = dao;
+    this.mybatis = mybatis;
+  }
+
+  @Override
+  public void persist() {
+    DbSession session = mybatis.openSession(true);
+    try {
+      for (Map.Entry<String, Snapshot> componentEntry : snapshots.snapshots()) {
+        String componentKey = componentEntry.getKey();
+        Snapshot snapshot = componentEntry.getValue();
+        String source = sourcePersister.getSavedSource(snapshot);
+        if (source != null) {
+          SnapshotDataDto dto = new SnapshotDataDto();
+          dto.setSnapshotId(snapshot.getId());
+          dto.setResourceId(snapshot.getResourceId());
+          dto.setDataType(SnapshotDataTypes.SOURCE_LINES);
+          dto.setData(encode(componentKey, source));
+          dao.insert(session, dto);
+        }
+      }
+      session.commit();
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  private String encode(String componentKey, String source) {
+    return new SourceLinesEncoder(source)
+      .setScmAuthors(measureData(componentKey, CoreMetrics.SCM_AUTHORS_BY_LINE_KEY))
+      .setScmDates(measureData(componentKey, CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE_KEY))
+      .setLineHits(measureData(componentKey, CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY))
+      .setConditions(measureData(componentKey, CoreMetrics.CONDITIONS_BY_LINE_KEY))
+      .setCoveredConditions(measureData(componentKey, CoreMetrics.COVERED_CONDITIONS_BY_LINE_KEY))
+      .setSyntaxHighlighting(componentData(componentKey, SnapshotDataTypes.SYNTAX_HIGHLIGHTING))
+      .setSymbols(componentData(componentKey, SnapshotDataTypes.SYMBOL_HIGHLIGHTING))
+      .encodeToString();
+  }
+
+  @CheckForNull
+  private String measureData(String componentKey, String metricKey) {
+    for (Measure measure : measures.byMetric(componentKey, metricKey)) {
+      if (measure.getData() != null) {
+        return measure.getData();
+      }
+    }
+    return null;
+  }
+
+  @CheckForNull
+  private String componentData(String componentKey, String dataType) {
+    Data value = data.getData(componentKey, dataType);
+    return value != null ? value.writeString() : null;
+  }
+}
@@ -19,7 +19,7 @@
  */
 package org.sonar.batch.index;
 
-import com.google.common.collect.Sets;
+import com.google.common.collect.Lists;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.resources.DuplicatedSourceException;
 import org.sonar.api.resources.Resource;
@@ -28,49 +28,77 @@ import org.sonar.core.source.db.SnapshotSourceDto;
 
 import javax.annotation.CheckForNull;
 
-import java.util.Set;
+import java.util.List;
 
-public final class SourcePersister {
+/**
+ * Sources are inserted by batches of {@link #BATCH_SIZE} files. Remaining ones are inserted during the
+ * persisters phase, before the analysis is published, and by {@link #clear()} at the end of the analysis of each module.
+ */
+public final class SourcePersister implements ScanPersister {
+
+  static final int BATCH_SIZE = 100;
 
-  private Set<Integer> savedSnapshotIds = Sets.newHashSet();
   private ResourcePersister resourcePersister;
   private final SnapshotSourceDao sourceDao;
+  private final List<SnapshotSourceDto> pendingSources = Lists.newArrayList();
 
-  public SourcePersister(ResourcePersister resourcePersister, SnapshotSourceDao sourceDao) {
+  /**
+   * Sources saved during the analysis, by snapshot id. Read by {@link SourceLinesPersister}.
+   */
+  private final Cache<String> sources;
+
+  public SourcePersister(ResourcePersister resourcePersister, SnapshotSourceDao sourceDao, Caches caches) {
     this.resourcePersister = resourcePersister;
     this.sourceDao = sourceDao;
+    this.sources = caches.createCache("sources");
   }
 
-  public void saveSource(Resource resource, String source) {
+  public synchronized void saveSource(Resource resource, String source) {
     Snapshot snapshot = resourcePersister.getSnapshotOrFail(resource);
-    if (isCached(snapshot)) {
+    if (sources.containsKey(snapshot.getId())) {
       throw new DuplicatedSourceException(resource);
     }
     SnapshotSourceDto dto = new SnapshotSourceDto();
     dto.setSnapshotId(snapshot.getId().longValue());
     dto.setData(source);
-    sourceDao.insert(dto);
-    addToCache(snapshot);
+    pendingSources.add(dto);
+    sources.put(snapshot.getId(), source);
+    if (pendingSources.size() >= BATCH_SIZE) {
+      flush();
+    }
+  }
+
+  /**
+   * Source saved during the current analysis
+   */
+  @CheckForNull
+  String getSavedSource(Snapshot snapshot) {
+    return sources.get(snapshot.getId());
   }
 
   @CheckForNull
   public String getSource(Resource resource) {
     Snapshot snapshot = resourcePersister.getSnapshot(resource);
     if (snapshot != null && snapshot.getId() != null) {
-      return sourceDao.selectSnapshotSource(snapshot.getId());
+      String savedSource = getSavedSource(snapshot);
+      return savedSource != null ? savedSource : sourceDao.selectSnapshotSource(snapshot.getId());
     }
     return null;
   }
 
-  private boolean isCached(Snapshot snapshot) {
-    return savedSnapshotIds.contains(snapshot.getId());
+  private void flush() {
+    if (!pendingSources.isEmpty()) {
+      sourceDao.insert(pendingSources);
+      pendingSources.clear();
+    }
   }
 
-  private void addToCache(Snapshot snapshot) {
-    savedSnapshotIds.add(snapshot.getId());
+  @Override
+  public synchronized void persist() {
+    flush();
   }
 
-  public void clear() {
-    savedSnapshotIds.clear();
+  public synchronized void clear() {
+    flush();
   }
 }
@@ -19,9 +19,14 @@
  */
 package org.sonar.batch.referential;
 
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
 import com.google.common.collect.Maps;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
 import org.sonar.api.batch.bootstrap.ProjectReactor;
 import org.sonar.api.database.DatabaseSession;
@@ -33,6 +38,7 @@ import org.sonar.api.measures.Metric;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.utils.KeyValueFormat;
 import org.sonar.batch.bootstrap.AnalysisMode;
+import org.sonar.batch.bootstrap.BootstrapProperties;
 import org.sonar.batch.bootstrap.ServerClient;
 import org.sonar.batch.bootstrap.TaskProperties;
 import org.sonar.batch.protocol.input.FileData;
@@ -41,9 +47,13 @@ import org.sonar.batch.rule.ModuleQProfiles;
 import org.sonar.core.source.SnapshotDataTypes;
 import org.sonar.core.source.db.SnapshotDataDao;
 import org.sonar.core.source.db.SnapshotDataDto;
+import org.sonar.home.cache.FileCache;
 
+import javax.annotation.CheckForNull;
 import javax.persistence.Query;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -59,13 +69,17 @@ public class DefaultProjectReferentialsLoader implements ProjectReferentialsLoad
   private final AnalysisMode analysisMode;
   private final SnapshotDataDao dao;
   private final DatabaseSession session;
+  private final FileCache fileCache;
+  private final BootstrapProperties bootstrapProps;
 
   public DefaultProjectReferentialsLoader(DatabaseSession session, ServerClient serverClient, AnalysisMode analysisMode,
-    SnapshotDataDao dao) {
+    SnapshotDataDao dao, FileCache fileCache, BootstrapProperties bootstrapProps) {
     this.session = session;
     this.serverClient = serverClient;
     this.analysisMode = analysisMode;
     this.dao = dao;
+    this.fileCache = fileCache;
+    this.bootstrapProps = bootstrapProps;
   }
 
   @Override
@@ -78,7 +92,7 @@ public class DefaultProjectReferentialsLoader implements ProjectReferentialsLoad
       url += "&profile=" + ServerClient.encodeForUrl(taskProperties.properties().get(ModuleQProfiles.SONAR_PROFILE_PROP));
     }
     url += "&preview=" + analysisMode.isPreview();
-    ProjectReferentials ref = ProjectReferentials.fromJson(serverClient.request(url));
+    ProjectReferentials ref = requestReferentials(url);
 
     for (ProjectDefinition module : reactor.getProjects()) {
 
@@ -105,6 +119,70 @@ public class DefaultProjectReferentialsLoader implements ProjectReferentialsLoad
     return ref;
   }
 
+  /**
+   * The server answers "304 Not Modified" when the ETag of the local copy of the referentials,
+   * which is the MD5 of its content, is still up-to-date.
+   */
+  private ProjectReferentials requestReferentials(String url) {
+    File localCopy = localCopy(url);
+    String localJson = readLocalCopy(localCopy);
+    String etag = localJson != null ? etag(localJson) : null;
+    String json = serverClient.requestIfNoneMatch(url, etag);
+    if (json == null) {
+      LOG.debug("Project referentials are up-to-date");
+      return ProjectReferentials.fromJson(localJson);
+    }
+    ProjectReferentials ref = ProjectReferentials.fromJson(json);
+    if (hasSecuredSettings(ref)) {
+      // secured settings must never be stored on disk
+      FileUtils.deleteQuietly(localCopy);
+    } else {
+      writeLocalCopy(localCopy, json);
+    }
+    return ref;
+  }
+
+  private static boolean hasSecuredSettings(ProjectReferentials ref) {
+    for (Map<String, String> settings : ref.settingsByModule().values()) {
+      for (String key : settings.keySet()) {
+        if (key.endsWith(".secured")) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private File localCopy(String url) {
+    String name = DigestUtils.md5Hex(serverClient.getURL() + url + "|" + Strings.nullToEmpty(bootstrapProps.property(CoreProperties.LOGIN)));
+    return new File(new File(fileCache.getDir(), "referentials"), name + ".json");
+  }
+
+  static String etag(String json) {
+    return "\"" + DigestUtils.md5Hex(json.getBytes(Charsets.UTF_8)) + "\"";
+  }
+
+  @CheckForNull
+  private static String readLocalCopy(File file) {
+    if (!file.isFile()) {
+      return null;
+    }
+    try {
+      return FileUtils.readFileToString(file, Charsets.UTF_8.name());
+    } catch (IOException e) {
+      LOG.debug("Fail to read local copy of project referentials: " + file, e);
+      return null;
+    }
+  }
+
+  private static void writeLocalCopy(File file, String json) {
+    try {
+      FileUtils.writeStringToFile(file, json, Charsets.UTF_8.name());
+    } catch (IOException e) {
+      LOG.debug("Fail to write local copy of project referentials: " + file, e);
+    }
+  }
+
   public Map<String, String> hashByRelativePath(String projectKey) {
     Map<String, String> map = Maps.newHashMap();
     Collection<SnapshotDataDto> selectSnapshotData = dao.selectSnapshotDataByComponentKey(
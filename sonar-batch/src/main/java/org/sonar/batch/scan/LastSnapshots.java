@@ -19,6 +19,7 @@
  */
 package org.sonar.batch.scan;
 
+import com.google.common.collect.Lists;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,6 +34,11 @@ import org.sonar.core.source.db.SnapshotSourceDao;
 
 import javax.annotation.CheckForNull;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class LastSnapshots implements BatchComponent {
 
   private static final Logger LOG = LoggerFactory.getLogger(LastSnapshots.class);
@@ -40,6 +46,8 @@ public class LastSnapshots implements BatchComponent {
   private final AnalysisMode analysisMode;
   private final ServerClient server;
   private final SnapshotSourceDao sourceDao;
+  // sources loaded by prefetchSources() and not requested yet, by component key
+  private final Map<String, String> prefetchedSources = new ConcurrentHashMap<String, String>();
 
   public LastSnapshots(AnalysisMode analysisMode, SnapshotSourceDao dao, ServerClient server) {
     this.analysisMode = analysisMode;
@@ -47,10 +55,38 @@ public class LastSnapshots implements BatchComponent {
     this.server = server;
   }
 
+  /**
+   * Loads the sources of the given files in bulk, so that the following calls to {@link #getSource(Resource)}
+   * on these files do not request the database. Each prefetched source is released once requested, and the
+   * sources of the previous call that have not been requested are dropped, so that callers can prefetch by windows
+   * of files. Does nothing in preview mode, as sources are loaded from web services.
+   * @since 5.0
+   */
+  public void prefetchSources(Collection<? extends Resource> resources) {
+    prefetchedSources.clear();
+    if (analysisMode.isPreview()) {
+      return;
+    }
+    List<String> keys = Lists.newArrayList();
+    for (Resource resource : resources) {
+      if (ResourceUtils.isFile(resource)) {
+        keys.add(resource.getEffectiveKey());
+      }
+    }
+    Map<String, String> sources = sourceDao.selectSnapshotSourcesByComponentKeys(keys);
+    for (String key : keys) {
+      // files without previous source are prefetched too, so that they are not requested again
+      prefetchedSources.put(key, StringUtils.defaultString(sources.get(key), ""));
+    }
+  }
+
   public String getSource(Resource resource) {
     String source = null;
     if (ResourceUtils.isFile(resource)) {
-      if (analysisMode.isPreview()) {
+      String prefetched = prefetchedSources.remove(resource.getEffectiveKey());
+      if (prefetched != null) {
+        source = prefetched;
+      } else if (analysisMode.isPreview()) {
         source = loadSourceFromWs(resource);
       } else {
         source = loadSourceFromDb(resource);
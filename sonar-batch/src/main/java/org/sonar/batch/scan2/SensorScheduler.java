@@ -0,0 +1,301 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scan2;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.measure.Metric;
+import org.sonar.api.batch.sensor.Sensor;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.internal.DefaultSensorDescriptor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes sensors according to the dependency graph built from the metrics they depend upon and provide
+ * (see {@link DefaultSensorDescriptor#dependsOn()} and {@link DefaultSensorDescriptor#provides()}).
+ * <p/>
+ * Sensors declared as thread-safe are executed concurrently on a bounded pool of threads. Other sensors are executed
+ * one after the other on the calling thread. When several sensors are ready, the first one in the initial order
+ * is executed first, so the initial order is kept when no sensor is thread-safe.
+ *
+ * @since 5.0
+ */
+class SensorScheduler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SensorScheduler.class);
+
+  private static final Comparator<Node> BY_INDEX = new Comparator<Node>() {
+    @Override
+    public int compare(Node n1, Node n2) {
+      return n1.index - n2.index;
+    }
+  };
+
+  private final int threads;
+
+  /**
+   * @param threads maximum number of thread-safe sensors executed concurrently. Value 1 disables concurrent execution.
+   */
+  SensorScheduler(int threads) {
+    this.threads = Math.max(1, threads);
+  }
+
+  void execute(Map<Sensor, DefaultSensorDescriptor> sensors, SensorContext context) {
+    List<Node> nodes = graph(sensors);
+    new Execution(nodes, context).run();
+  }
+
+  private List<Node> graph(Map<Sensor, DefaultSensorDescriptor> sensors) {
+    List<Node> nodes = Lists.newArrayList();
+    Map<String, List<Node>> providersByMetric = Maps.newHashMap();
+    for (Map.Entry<Sensor, DefaultSensorDescriptor> entry : sensors.entrySet()) {
+      DefaultSensorDescriptor descriptor = entry.getValue();
+      Node node = new Node(nodes.size(), entry.getKey(), descriptor, threads > 1 && descriptor.isThreadSafe());
+      nodes.add(node);
+      for (Metric metric : descriptor.provides()) {
+        List<Node> providers = providersByMetric.get(metric.key());
+        if (providers == null) {
+          providers = Lists.newArrayList();
+          providersByMetric.put(metric.key(), providers);
+        }
+        providers.add(node);
+      }
+    }
+    for (Node node : nodes) {
+      Set<Node> dependencies = Sets.newHashSet();
+      for (Metric metric : node.descriptor.dependsOn()) {
+        List<Node> providers = providersByMetric.get(metric.key());
+        if (providers != null) {
+          dependencies.addAll(providers);
+        }
+      }
+      dependencies.remove(node);
+      for (Node dependency : dependencies) {
+        dependency.dependents.add(node);
+      }
+      node.pendingDependencies = dependencies.size();
+    }
+    return nodes;
+  }
+
+  private class Execution {
+    private final List<Node> nodes;
+    private final SensorContext context;
+    private final PriorityQueue<Node> readyOnCallingThread = new PriorityQueue<Node>(11, BY_INDEX);
+    private final PriorityQueue<Node> readyOnPool = new PriorityQueue<Node>(11, BY_INDEX);
+    private final BlockingQueue<Node> completed = new LinkedBlockingQueue<Node>();
+    private ExecutorService pool;
+    private int remaining;
+    private int running = 0;
+    private Throwable failure;
+
+    Execution(List<Node> nodes, SensorContext context) {
+      this.nodes = nodes;
+      this.context = context;
+      this.remaining = nodes.size();
+    }
+
+    void run() {
+      for (Node node : nodes) {
+        if (node.pendingDependencies == 0) {
+          ready(node);
+        }
+      }
+      try {
+        while (remaining > 0) {
+          if (failure == null) {
+            submitReadyNodes();
+            Node node = readyOnCallingThread.poll();
+            if (node != null) {
+              execute(node);
+              done(node);
+              continue;
+            }
+          }
+          if (running == 0) {
+            if (failure != null) {
+              break;
+            }
+            // dependency cycle
+            ready(firstBlockedNode());
+            continue;
+          }
+          waitForCompletion();
+        }
+      } finally {
+        if (pool != null) {
+          pool.shutdown();
+        }
+      }
+      rethrowFailure();
+    }
+
+    private void submitReadyNodes() {
+      Node node = readyOnPool.poll();
+      while (node != null) {
+        final Node submitted = node;
+        running++;
+        pool().execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              execute(submitted);
+            } finally {
+              completed.add(submitted);
+            }
+          }
+        });
+        node = readyOnPool.poll();
+      }
+    }
+
+    private void waitForCompletion() {
+      try {
+        Node node = completed.take();
+        running--;
+        done(node);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while executing sensors", e);
+      }
+    }
+
+    private void done(Node node) {
+      remaining--;
+      node.done = true;
+      if (node.failure != null && failure == null) {
+        failure = node.failure;
+      }
+      for (Node dependent : node.dependents) {
+        dependent.pendingDependencies--;
+        if (dependent.pendingDependencies == 0 && !dependent.done) {
+          ready(dependent);
+        }
+      }
+    }
+
+    private void ready(Node node) {
+      // a node is made ready only once, even when a cycle is broken
+      node.pendingDependencies = -1;
+      if (node.threadSafe) {
+        readyOnPool.add(node);
+      } else {
+        readyOnCallingThread.add(node);
+      }
+    }
+
+    private Node firstBlockedNode() {
+      for (Node node : nodes) {
+        if (!node.done && node.pendingDependencies > 0) {
+          return node;
+        }
+      }
+      throw new IllegalStateException("No sensor to execute");
+    }
+
+    private ExecutorService pool() {
+      if (pool == null) {
+        pool = Executors.newFixedThreadPool(threads, new SensorThreadFactory());
+      }
+      return pool;
+    }
+
+    private void execute(Node node) {
+      String name = node.name();
+      LOG.info("Execute sensor: " + name);
+      ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+      boolean cpuTime = threadBean.isCurrentThreadCpuTimeSupported() && threadBean.isThreadCpuTimeEnabled();
+      long startCpu = cpuTime ? threadBean.getCurrentThreadCpuTime() : 0L;
+      long start = System.nanoTime();
+      try {
+        node.sensor.execute(context);
+      } catch (RuntimeException e) {
+        node.failure = e;
+      } catch (Error e) {
+        node.failure = e;
+      }
+      long wallMs = (System.nanoTime() - start) / 1000000L;
+      if (cpuTime) {
+        long cpuMs = (threadBean.getCurrentThreadCpuTime() - startCpu) / 1000000L;
+        LOG.info(String.format("Sensor %s done: %d ms (CPU %d ms)", name, wallMs, cpuMs));
+      } else {
+        LOG.info(String.format("Sensor %s done: %d ms", name, wallMs));
+      }
+    }
+
+    private void rethrowFailure() {
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      }
+      if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+    }
+  }
+
+  private static class Node {
+    private final int index;
+    private final Sensor sensor;
+    private final DefaultSensorDescriptor descriptor;
+    private final boolean threadSafe;
+    private final List<Node> dependents = Lists.newArrayList();
+    private int pendingDependencies;
+    private boolean done = false;
+    private volatile Throwable failure;
+
+    Node(int index, Sensor sensor, DefaultSensorDescriptor descriptor, boolean threadSafe) {
+      this.index = index;
+      this.sensor = sensor;
+      this.descriptor = descriptor;
+      this.threadSafe = threadSafe;
+    }
+
+    String name() {
+      return descriptor.name() != null ? descriptor.name() : sensor.getClass().getSimpleName();
+    }
+  }
+
+  private static class SensorThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "sensor-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
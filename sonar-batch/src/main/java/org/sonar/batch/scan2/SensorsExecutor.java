@@ -19,49 +19,54 @@
  */
 package org.sonar.batch.scan2;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.google.common.collect.Maps;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.batch.sensor.Sensor;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.internal.DefaultSensorDescriptor;
+import org.sonar.api.config.Settings;
 import org.sonar.batch.bootstrap.BatchExtensionDictionnary;
 
 import java.util.Collection;
+import java.util.Map;
 
 public class SensorsExecutor implements BatchComponent {
 
-  private static final Logger LOG = LoggerFactory.getLogger(SensorsExecutor.class);
+  /**
+   * Maximum number of thread-safe sensors executed concurrently. Default is the number of processors.
+   */
+  public static final String THREADS_PROPERTY = "sonar.sensors.threads";
 
   private BatchExtensionDictionnary selector;
   private AnalyzerOptimizer optimizer;
+  private Settings settings;
 
-  public SensorsExecutor(BatchExtensionDictionnary selector, AnalyzerOptimizer optimizer) {
+  public SensorsExecutor(BatchExtensionDictionnary selector, AnalyzerOptimizer optimizer, Settings settings) {
     this.selector = selector;
     this.optimizer = optimizer;
+    this.settings = settings;
   }
 
   public void execute(SensorContext context) {
     Collection<Sensor> analyzers = selector.select(Sensor.class, null, true, null);
 
+    Map<Sensor, DefaultSensorDescriptor> descriptorsBySensor = Maps.newLinkedHashMap();
     for (Sensor analyzer : analyzers) {
 
       DefaultSensorDescriptor descriptor = new DefaultSensorDescriptor();
       analyzer.describe(descriptor);
 
-      if (!optimizer.shouldExecute(descriptor)) {
-        continue;
+      if (optimizer.shouldExecute(descriptor)) {
+        descriptorsBySensor.put(analyzer, descriptor);
       }
-
-      LOG.info("Execute sensor: " + descriptor.name());
-
-      executeSensor(context, analyzer);
     }
 
+    new SensorScheduler(threads()).execute(descriptorsBySensor, context);
   }
 
-  private void executeSensor(SensorContext context, Sensor analyzer) {
-    analyzer.execute(context);
+  private int threads() {
+    int threads = settings.getInt(THREADS_PROPERTY);
+    return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
   }
 
 }
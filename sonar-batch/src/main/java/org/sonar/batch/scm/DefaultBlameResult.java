@@ -24,10 +24,8 @@ import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.scm.BlameCommand.BlameResult;
 import org.sonar.api.batch.scm.BlameLine;
 import org.sonar.api.batch.sensor.SensorContext;
-import org.sonar.api.measures.CoreMetrics;
-import org.sonar.api.measures.Metric;
-import org.sonar.api.measures.PropertiesBuilder;
 import org.sonar.api.utils.DateUtils;
+import org.sonar.api.utils.KeyValueFormat;
 
 import javax.annotation.Nullable;
 
@@ -54,19 +52,20 @@ class DefaultBlameResult implements BlameResult {
     Preconditions.checkArgument(lines.size() == file.lines(),
       "Expected one blame result per line but provider returned " + lines.size() + " blame lines while file " + file.relativePath() + " has " + file.lines() + " lines");
 
-    PropertiesBuilder<Integer, String> authors = propertiesBuilder(CoreMetrics.SCM_AUTHORS_BY_LINE);
-    PropertiesBuilder<Integer, String> dates = propertiesBuilder(CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE);
-    PropertiesBuilder<Integer, String> revisions = propertiesBuilder(CoreMetrics.SCM_REVISIONS_BY_LINE);
+    // lines are numbered in ascending order, so pairs are directly appended instead of being sorted in a boxed map
+    StringBuilder authors = new StringBuilder(lines.size() * 16);
+    StringBuilder dates = new StringBuilder(lines.size() * 32);
+    StringBuilder revisions = new StringBuilder(lines.size() * 16);
 
     int lineNumber = 1;
     for (BlameLine line : lines) {
-      authors.add(lineNumber, normalizeString(line.author()));
+      KeyValueFormat.appendPair(authors, lineNumber, normalizeString(line.author()));
       Date date = line.date();
-      dates.add(lineNumber, date != null ? DateUtils.formatDateTime(date) : "");
-      revisions.add(lineNumber, line.revision());
+      KeyValueFormat.appendPair(dates, lineNumber, date != null ? DateUtils.formatDateTime(date) : "");
+      KeyValueFormat.appendPair(revisions, lineNumber, line.revision());
       lineNumber++;
     }
-    ScmSensor.saveMeasures(context, file, authors.buildData(), dates.buildData(), revisions.buildData());
+    ScmSensor.saveMeasures(context, file, authors.toString(), dates.toString(), revisions.toString());
   }
 
   private String normalizeString(@Nullable String inputString) {
@@ -86,8 +85,4 @@ class DefaultBlameResult implements BlameResult {
   private String removeNonAsciiCharacters(String inputString) {
     return NON_ASCII_CHARS.matcher(inputString).replaceAll("_");
   }
-
-  private static PropertiesBuilder<Integer, String> propertiesBuilder(Metric metric) {
-    return new PropertiesBuilder<Integer, String>(metric);
-  }
 }
@@ -26,6 +26,8 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.config.Settings;
 import org.sonar.core.plugins.RemotePlugin;
@@ -35,8 +37,12 @@ import org.sonar.home.cache.FileCacheBuilder;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -119,6 +125,79 @@ public class BatchPluginRepositoryTest {
     assertThat(repository.getMetadata()).isEmpty();
   }
 
+  @Test
+  public void shouldInstallRemotePluginsConcurrently() throws Exception {
+    RemotePlugin checkstyle = new RemotePlugin("checkstyle", true);
+    RemotePlugin checkstyleExt = new RemotePlugin("checkstyleextensions", false);
+
+    // each download waits for the other one, so it fails if plugins are installed sequentially
+    CyclicBarrier barrier = new CyclicBarrier(2);
+    DefaultPluginsReferential downloader = mock(DefaultPluginsReferential.class);
+    when(downloader.pluginFile(checkstyle)).thenAnswer(new ConcurrentDownload(barrier, fileFromCache("sonar-checkstyle-plugin-2.8.jar")));
+    when(downloader.pluginFile(checkstyleExt)).thenAnswer(new ConcurrentDownload(barrier, fileFromCache("sonar-checkstyle-extensions-plugin-0.1-SNAPSHOT.jar")));
+
+    ExecutorCapture capture = new ExecutorCapture(downloader);
+    repository = capture;
+
+    repository.doStart(Arrays.asList(checkstyle, checkstyleExt));
+
+    assertThat(repository.getPlugin("checkstyle")).isNotNull();
+    assertThat(repository.getPlugin("checkstyleextensions")).isNotNull();
+    assertThat(repository.getMetadata()).hasSize(2);
+    assertThat(capture.executor.isShutdown()).isTrue();
+  }
+
+  @Test
+  public void shouldFailIfOneDownloadFails() throws Exception {
+    RemotePlugin checkstyle = new RemotePlugin("checkstyle", true);
+    RemotePlugin checkstyleExt = new RemotePlugin("checkstyleextensions", false);
+
+    DefaultPluginsReferential downloader = mock(DefaultPluginsReferential.class);
+    when(downloader.pluginFile(checkstyle)).thenReturn(fileFromCache("sonar-checkstyle-plugin-2.8.jar"));
+    when(downloader.pluginFile(checkstyleExt)).thenThrow(new IllegalStateException("Fail to download plugin [checkstyleextensions]"));
+
+    ExecutorCapture capture = new ExecutorCapture(downloader);
+    repository = capture;
+
+    try {
+      repository.doStart(Arrays.asList(checkstyle, checkstyleExt));
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail to download plugin [checkstyleextensions]");
+    }
+    assertThat(capture.executor.isShutdown()).isTrue();
+  }
+
+  private class ExecutorCapture extends BatchPluginRepository {
+    ExecutorService executor;
+
+    ExecutorCapture(DefaultPluginsReferential downloader) {
+      super(downloader, new Settings(), mode, new BatchPluginJarInstaller(cache));
+    }
+
+    @Override
+    ExecutorService newExecutor(int threads) {
+      executor = super.newExecutor(threads);
+      return executor;
+    }
+  }
+
+  private static class ConcurrentDownload implements Answer<File> {
+    private final CyclicBarrier barrier;
+    private final File file;
+
+    ConcurrentDownload(CyclicBarrier barrier, File file) {
+      this.barrier = barrier;
+      this.file = file;
+    }
+
+    @Override
+    public File answer(InvocationOnMock invocation) throws Throwable {
+      barrier.await(10, TimeUnit.SECONDS);
+      return file;
+    }
+  }
+
   private File fileFromCache(String filename) throws Exception {
     File file = new File(Resources.getResource("org/sonar/batch/bootstrap/BatchPluginRepositoryTest/" + filename).toURI());
     File destDir = new File(userHome, "cache/foomd5");
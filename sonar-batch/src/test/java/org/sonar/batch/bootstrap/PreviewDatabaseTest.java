@@ -20,6 +20,8 @@
 package org.sonar.batch.bootstrap;
 
 import org.apache.commons.lang.StringUtils;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -31,11 +33,15 @@ import org.sonar.api.database.DatabaseProperties;
 import org.sonar.api.utils.HttpDownloader;
 import org.sonar.api.utils.SonarException;
 import org.sonar.api.utils.TempFolder;
+import org.sonar.home.cache.FileCache;
 
 import java.io.File;
 import java.net.SocketTimeoutException;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -46,6 +52,7 @@ public class PreviewDatabaseTest {
   Settings settings;
   ServerClient server = mock(ServerClient.class);
   TempFolder tempUtils = mock(TempFolder.class);
+  FileCache fileCache = mock(FileCache.class);
   File databaseFile;
   private AnalysisMode mode;
 
@@ -59,6 +66,9 @@ public class PreviewDatabaseTest {
   public void setUp() throws Exception {
     databaseFile = temp.newFile("preview.h2.db");
     when(tempUtils.newFile("preview", ".h2.db")).thenReturn(databaseFile);
+    when(fileCache.getDir()).thenReturn(temp.newFolder());
+    when(server.getURL()).thenReturn("http://localhost:9000");
+    when(server.downloadIfNoneMatch(anyString(), any(File.class), anyString(), anyInt())).thenReturn(true);
     settings = new Settings();
     settings.setProperty(CoreProperties.PROJECT_KEY_PROPERTY, "group:project");
 
@@ -70,29 +80,80 @@ public class PreviewDatabaseTest {
   @Test
   public void should_be_disabled_if_not_preview() {
     when(mode.isPreview()).thenReturn(false);
-    new PreviewDatabase(settings, server, tempUtils, mode).start();
+    new PreviewDatabase(settings, server, tempUtils, mode, fileCache).start();
 
     verifyZeroInteractions(tempUtils, server);
   }
 
   @Test
   public void should_download_database() {
-    new PreviewDatabase(settings, server, tempUtils, mode).start();
+    new PreviewDatabase(settings, server, tempUtils, mode, fileCache).start();
 
-    verify(server).download("/batch_bootstrap/db?project=group:project", databaseFile, 60000);
+    verify(server).downloadIfNoneMatch("/batch_bootstrap/db?project=group:project", databaseFile, null, 60000);
   }
 
   @Test
   public void should_download_database_on_branch() {
     settings.setProperty(CoreProperties.PROJECT_BRANCH_PROPERTY, "mybranch");
-    new PreviewDatabase(settings, server, tempUtils, mode).start();
+    new PreviewDatabase(settings, server, tempUtils, mode, fileCache).start();
 
-    verify(server).download("/batch_bootstrap/db?project=group:project:mybranch", databaseFile, 60000);
+    verify(server).downloadIfNoneMatch("/batch_bootstrap/db?project=group:project:mybranch", databaseFile, null, 60000);
+  }
+
+  @Test
+  public void should_reuse_database_if_not_modified() throws Exception {
+    Files.write("first version", databaseFile, Charsets.UTF_8);
+    new PreviewDatabase(settings, server, tempUtils, mode, fileCache).start();
+
+    // the server answers that the database in cache is up-to-date
+    File secondDatabaseFile = temp.newFile("preview2.h2.db");
+    when(tempUtils.newFile("preview", ".h2.db")).thenReturn(secondDatabaseFile);
+    String etag = PreviewDatabase.etag(databaseFile);
+    when(server.downloadIfNoneMatch("/batch_bootstrap/db?project=group:project", secondDatabaseFile, etag, 60000)).thenReturn(false);
+    new PreviewDatabase(settings, server, tempUtils, mode, fileCache).start();
+
+    verify(server).downloadIfNoneMatch("/batch_bootstrap/db?project=group:project", secondDatabaseFile, etag, 60000);
+    assertThat(Files.toString(secondDatabaseFile, Charsets.UTF_8)).isEqualTo("first version");
+  }
+
+  @Test
+  public void should_write_database_in_cache_without_temporary_file() throws Exception {
+    Files.write("first version", databaseFile, Charsets.UTF_8);
+    new PreviewDatabase(settings, server, tempUtils, mode, fileCache).start();
+
+    File[] cachedFiles = new File(fileCache.getDir(), "preview").listFiles();
+    assertThat(cachedFiles).hasSize(1);
+    assertThat(cachedFiles[0].getName()).endsWith(".h2.db");
+    assertThat(Files.toString(cachedFiles[0], Charsets.UTF_8)).isEqualTo("first version");
+  }
+
+  @Test
+  public void should_evict_least_recently_used_databases() throws Exception {
+    File cacheDir = temp.newFolder();
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < PreviewDatabase.MAX_CACHED_DATABASES + 2; i++) {
+      File database = new File(cacheDir, "db" + i + ".h2.db");
+      Files.write("db" + i, database, Charsets.UTF_8);
+      database.setLastModified(now - i * 60000L);
+    }
+    File oldTempFile = new File(cacheDir, "db0.h2.db.1234.tmp");
+    Files.write("partial", oldTempFile, Charsets.UTF_8);
+    oldTempFile.setLastModified(now - 2 * 24 * 3600 * 1000L);
+    File recentTempFile = new File(cacheDir, "db1.h2.db.5678.tmp");
+    Files.write("partial", recentTempFile, Charsets.UTF_8);
+
+    PreviewDatabase.evictFromCache(cacheDir, PreviewDatabase.MAX_CACHED_DATABASES);
+
+    assertThat(cacheDir.list()).hasSize(PreviewDatabase.MAX_CACHED_DATABASES + 1);
+    assertThat(new File(cacheDir, "db0.h2.db")).exists();
+    assertThat(new File(cacheDir, "db" + (PreviewDatabase.MAX_CACHED_DATABASES + 1) + ".h2.db")).doesNotExist();
+    assertThat(oldTempFile).doesNotExist();
+    assertThat(recentTempFile).exists();
   }
 
   @Test
   public void should_replace_database_settings() {
-    new PreviewDatabase(settings, server, tempUtils, mode).start();
+    new PreviewDatabase(settings, server, tempUtils, mode, fileCache).start();
 
     assertThat(settings.getString(DatabaseProperties.PROP_DIALECT)).isEqualTo("h2");
     assertThat(settings.getString(DatabaseProperties.PROP_DRIVER)).isEqualTo("org.h2.Driver");
@@ -103,39 +164,39 @@ public class PreviewDatabaseTest {
 
   @Test
   public void should_fail_on_invalid_role() {
-    doThrow(new SonarException(new HttpDownloader.HttpException(null, 401))).when(server).download("/batch_bootstrap/db?project=group:project", databaseFile, 60000);
+    doThrow(new SonarException(new HttpDownloader.HttpException(null, 401))).when(server).downloadIfNoneMatch("/batch_bootstrap/db?project=group:project", databaseFile, null, 60000);
 
     thrown.expect(SonarException.class);
     thrown.expectMessage("You don't have access rights to project [group:project]");
 
-    new PreviewDatabase(settings, server, tempUtils, mode).start();
+    new PreviewDatabase(settings, server, tempUtils, mode, fileCache).start();
   }
 
   @Test
   public void should_fail_on_read_timeout() {
-    doThrow(new SonarException(new SocketTimeoutException())).when(server).download("/batch_bootstrap/db?project=group:project", databaseFile, 60000);
+    doThrow(new SonarException(new SocketTimeoutException())).when(server).downloadIfNoneMatch("/batch_bootstrap/db?project=group:project", databaseFile, null, 60000);
 
     thrown.expect(SonarException.class);
     thrown.expectMessage("Preview database read timed out after 60000 ms. You can try to increase read timeout with property -Dsonar.preview.readTimeout (in seconds)");
 
-    new PreviewDatabase(settings, server, tempUtils, mode).start();
+    new PreviewDatabase(settings, server, tempUtils, mode, fileCache).start();
   }
 
   @Test
   public void should_fail() {
-    doThrow(new SonarException("BUG")).when(server).download("/batch_bootstrap/db?project=group:project", databaseFile, 60000);
+    doThrow(new SonarException("BUG")).when(server).downloadIfNoneMatch("/batch_bootstrap/db?project=group:project", databaseFile, null, 60000);
 
     thrown.expect(SonarException.class);
     thrown.expectMessage("BUG");
 
-    new PreviewDatabase(settings, server, tempUtils, mode).start();
+    new PreviewDatabase(settings, server, tempUtils, mode, fileCache).start();
   }
 
   @Test
   public void project_should_be_optional() {
     // on non-scan tasks
     settings.removeProperty(CoreProperties.PROJECT_KEY_PROPERTY);
-    new PreviewDatabase(settings, server, tempUtils, mode).start();
-    verify(server).download("/batch_bootstrap/db", databaseFile, 60000);
+    new PreviewDatabase(settings, server, tempUtils, mode, fileCache).start();
+    verify(server).downloadIfNoneMatch("/batch_bootstrap/db", databaseFile, null, 60000);
   }
 }
@@ -135,6 +135,49 @@ public class ServerClientTest {
     newServerClient().request("/foo");
   }
 
+  @Test
+  public void should_return_null_if_not_modified() throws Exception {
+    server = new MockHttpServer();
+    server.start();
+    server.setMockResponseStatus(304);
+
+    assertThat(newServerClient().requestIfNoneMatch("/foo", "\"abcd\"")).isNull();
+    assertThat(server.getIfNoneMatch()).isEqualTo("\"abcd\"");
+  }
+
+  @Test
+  public void should_request_if_modified() throws Exception {
+    server = new MockHttpServer();
+    server.start();
+    server.setMockResponseData("this is the new content");
+
+    assertThat(newServerClient().requestIfNoneMatch("/foo", "\"abcd\"")).isEqualTo("this is the new content");
+  }
+
+  @Test
+  public void should_not_download_file_if_not_modified() throws Exception {
+    server = new MockHttpServer();
+    server.start();
+    server.setMockResponseStatus(304);
+
+    File file = temp.newFile();
+    Files.write("this is the local copy", file, Charsets.UTF_8);
+    assertThat(newServerClient().downloadIfNoneMatch("/foo", file, "\"abcd\"", null)).isFalse();
+    assertThat(server.getIfNoneMatch()).isEqualTo("\"abcd\"");
+    assertThat(Files.toString(file, Charsets.UTF_8)).isEqualTo("this is the local copy");
+  }
+
+  @Test
+  public void should_download_file_if_modified() throws Exception {
+    server = new MockHttpServer();
+    server.start();
+    server.setMockResponseData("this is the new content");
+
+    File file = temp.newFile();
+    assertThat(newServerClient().downloadIfNoneMatch("/foo", file, "\"abcd\"", null)).isTrue();
+    assertThat(Files.toString(file, Charsets.UTF_8)).isEqualTo("this is the new content");
+  }
+
   @Test
   public void testEncode() {
     assertThat(ServerClient.encodeForUrl("my value")).isEqualTo("my+value");
@@ -149,6 +192,7 @@ public class ServerClientTest {
     private Server server;
     private String responseBody;
     private String requestBody;
+    private String ifNoneMatch;
     private String mockResponseData;
     private int mockResponseStatus = SC_OK;
 
@@ -169,6 +213,7 @@ public class ServerClientTest {
         public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
           setResponseBody(getMockResponseData());
           setRequestBody(IOUtils.toString(baseRequest.getInputStream()));
+          ifNoneMatch = request.getHeader("If-None-Match");
           response.setStatus(mockResponseStatus);
           response.setContentType("text/xml;charset=utf-8");
           write(getResponseBody(), response.getOutputStream());
@@ -204,6 +249,10 @@ public class ServerClientTest {
       this.requestBody = requestBody;
     }
 
+    public String getIfNoneMatch() {
+      return ifNoneMatch;
+    }
+
     public void setMockResponseStatus(int status) {
       this.mockResponseStatus = status;
     }
@@ -0,0 +1,109 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.design;
+
+import com.google.common.collect.Maps;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.batch.DecoratorContext;
+import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.config.Settings;
+import org.sonar.api.design.Dependency;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.resources.Directory;
+import org.sonar.api.resources.File;
+import org.sonar.api.resources.Resource;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DirectoryDsmDecoratorTest {
+
+  private SonarIndex index = mock(SonarIndex.class);
+  private DecoratorContext context = mock(DecoratorContext.class);
+  private Settings settings = new Settings();
+  private Directory directory = Directory.create("src/org/foo", "org/foo");
+
+  @Before
+  public void before() {
+    Resource foo = new File("org/foo/Foo.java").setId(1);
+    Resource bar = new File("org/foo/Bar.java").setId(2);
+    // cycle between the two files
+    Dependency fooToBar = new Dependency(foo, bar).setWeight(1).setId(10L);
+    Dependency barToFoo = new Dependency(bar, foo).setWeight(3).setId(11L);
+    when(index.getOutgoingEdges(foo)).thenReturn(Collections.singletonList(fooToBar));
+    when(index.getOutgoingEdges(bar)).thenReturn(Collections.singletonList(barToFoo));
+    when(index.getEdge(foo, bar)).thenReturn(fooToBar);
+    when(index.getEdge(bar, foo)).thenReturn(barToFoo);
+
+    DecoratorContext fooContext = mock(DecoratorContext.class);
+    when(fooContext.getResource()).thenReturn(foo);
+    DecoratorContext barContext = mock(DecoratorContext.class);
+    when(barContext.getResource()).thenReturn(bar);
+    when(context.getChildren()).thenReturn(Arrays.asList(fooContext, barContext));
+  }
+
+  @Test
+  public void save_dsm_and_cycles() {
+    new DirectoryDsmDecorator(index, settings).decorate(directory, context);
+
+    Map<String, Measure> measures = savedMeasures();
+    assertThat(measures.get(CoreMetrics.DEPENDENCY_MATRIX_KEY).getData()).isNotEmpty();
+    assertCycleMeasures(measures);
+  }
+
+  @Test
+  public void do_not_save_dsm_if_lazy() {
+    settings.setProperty(CoreProperties.DESIGN_LAZY_DSM_KEY, true);
+
+    new DirectoryDsmDecorator(index, settings).decorate(directory, context);
+
+    Map<String, Measure> measures = savedMeasures();
+    assertThat(measures.keySet()).excludes(CoreMetrics.DEPENDENCY_MATRIX_KEY);
+    assertCycleMeasures(measures);
+  }
+
+  private void assertCycleMeasures(Map<String, Measure> measures) {
+    assertThat(measures.get(CoreMetrics.FILE_CYCLES_KEY).getValue()).isEqualTo(1.0);
+    assertThat(measures.get(CoreMetrics.FILE_FEEDBACK_EDGES_KEY).getValue()).isEqualTo(1.0);
+    assertThat(measures.get(CoreMetrics.FILE_TANGLES_KEY).getValue()).isEqualTo(1.0);
+    assertThat(measures.get(CoreMetrics.FILE_EDGES_WEIGHT_KEY).getValue()).isEqualTo(4.0);
+  }
+
+  private Map<String, Measure> savedMeasures() {
+    ArgumentCaptor<Measure> captor = ArgumentCaptor.forClass(Measure.class);
+    verify(context, atLeastOnce()).saveMeasure(captor.capture());
+    Map<String, Measure> measures = Maps.newHashMap();
+    for (Measure measure : captor.getAllValues()) {
+      measures.put(measure.getMetricKey(), measure);
+    }
+    return measures;
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.index;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.sonar.api.database.model.Snapshot;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.resources.File;
+import org.sonar.api.resources.Resource;
+import org.sonar.batch.scan.measure.MeasureCache;
+import org.sonar.core.persistence.DbSession;
+import org.sonar.core.persistence.MyBatis;
+import org.sonar.core.source.SnapshotDataTypes;
+import org.sonar.core.source.SourceLine;
+import org.sonar.core.source.SourceLinesDecoder;
+import org.sonar.core.source.db.SnapshotDataDao;
+import org.sonar.core.source.db.SnapshotDataDto;
+import org.sonar.core.source.db.SnapshotSourceDao;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SourceLinesPersisterTest {
+
+  @ClassRule
+  public static TemporaryFolder temp = new TemporaryFolder();
+
+  Caches caches;
+  SnapshotCache snapshots = new SnapshotCache();
+  MeasureCache measures = mock(MeasureCache.class);
+  SnapshotDataDao dao = mock(SnapshotDataDao.class);
+  MyBatis mybatis = mock(MyBatis.class);
+  DbSession session = mock(DbSession.class);
+  Snapshot snapshot = new Snapshot();
+  SourcePersister sourcePersister;
+  ComponentDataCache data;
+
+  @Before
+  public void start() throws Exception {
+    caches = CachesTest.createCacheOnTemp(temp);
+    caches.start();
+    when(mybatis.openSession(true)).thenReturn(session);
+
+    snapshot.setId(100);
+    snapshot.setResourceId(200);
+    snapshots.put("org/struts/Action.java", snapshot);
+    ResourcePersister resourcePersister = mock(ResourcePersister.class);
+    when(resourcePersister.getSnapshotOrFail(any(Resource.class))).thenReturn(snapshot);
+    sourcePersister = new SourcePersister(resourcePersister, mock(SnapshotSourceDao.class), caches);
+    data = new ComponentDataCache(caches);
+  }
+
+  @After
+  public void stop() {
+    caches.stop();
+  }
+
+  @Test
+  public void persist_lines_of_saved_sources() throws Exception {
+    sourcePersister.saveSource(new File("org/struts/Action.java"), "class Action {\n}");
+    data.setStringData("org/struts/Action.java", SnapshotDataTypes.SYNTAX_HIGHLIGHTING, "0,5,k;");
+    when(measures.byMetric(anyString(), anyString())).thenReturn(Collections.<Measure>emptyList());
+    when(measures.byMetric("org/struts/Action.java", CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY))
+      .thenReturn(Arrays.asList(new Measure(CoreMetrics.COVERAGE_LINE_HITS_DATA, "1=3")));
+
+    new SourceLinesPersister(snapshots, sourcePersister, measures, data, dao, mybatis).persist();
+
+    ArgumentCaptor<SnapshotDataDto> dto = ArgumentCaptor.forClass(SnapshotDataDto.class);
+    verify(dao).insert(eq(session), dto.capture());
+    verify(session).commit();
+    assertThat(dto.getValue().getSnapshotId()).isEqualTo(100L);
+    assertThat(dto.getValue().getResourceId()).isEqualTo(200L);
+    assertThat(dto.getValue().getDataType()).isEqualTo(SnapshotDataTypes.SOURCE_LINES);
+
+    List<SourceLine> lines = SourceLinesDecoder.fromString(dto.getValue().getData()).decode(null, null);
+    assertThat(lines).hasSize(2);
+    assertThat(lines.get(0).getSource()).isEqualTo("class Action {");
+    assertThat(lines.get(0).getHighlighting()).isEqualTo("0,5,k;");
+    assertThat(lines.get(0).getLineHits()).isEqualTo(3);
+    assertThat(lines.get(1).getSource()).isEqualTo("}");
+  }
+
+  @Test
+  public void persist_lines_of_files_without_highlighting() throws Exception {
+    sourcePersister.saveSource(new File("org/struts/Action.java"), "class Action {\n}");
+    when(measures.byMetric(anyString(), anyString())).thenReturn(Collections.<Measure>emptyList());
+
+    new SourceLinesPersister(snapshots, sourcePersister, measures, data, dao, mybatis).persist();
+
+    ArgumentCaptor<SnapshotDataDto> dto = ArgumentCaptor.forClass(SnapshotDataDto.class);
+    verify(dao).insert(eq(session), dto.capture());
+    List<SourceLine> lines = SourceLinesDecoder.fromString(dto.getValue().getData()).decode(null, null);
+    assertThat(lines).hasSize(2);
+    assertThat(lines.get(0).getHighlighting()).isNull();
+  }
+
+  @Test
+  public void do_not_persist_lines_if_no_source() throws Exception {
+    new SourceLinesPersister(snapshots, sourcePersister, measures, data, dao, mybatis).persist();
+
+    verify(dao, never()).insert(any(DbSession.class), any(SnapshotDataDto.class));
+  }
+}
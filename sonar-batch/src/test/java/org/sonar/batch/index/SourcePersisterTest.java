@@ -19,39 +19,109 @@
  */
 package org.sonar.batch.index;
 
+import org.junit.After;
 import org.junit.Before;
+import org.junit.ClassRule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.resources.DuplicatedSourceException;
 import org.sonar.api.resources.File;
 import org.sonar.api.resources.Resource;
 import org.sonar.core.persistence.AbstractDaoTestCase;
 import org.sonar.core.source.db.SnapshotSourceDao;
+import org.sonar.core.source.db.SnapshotSourceDto;
 
+import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class SourcePersisterTest extends AbstractDaoTestCase {
 
+  @ClassRule
+  public static TemporaryFolder temp = new TemporaryFolder();
+
   private SourcePersister sourcePersister;
+  private Caches caches;
+  private SnapshotSourceDao sourceDao;
+  private ResourcePersister resourcePersister;
 
   @Before
-  public void before() {
+  public void before() throws Exception {
+    caches = CachesTest.createCacheOnTemp(temp);
+    caches.start();
     setupData("shared");
-    ResourcePersister resourcePersister = mock(ResourcePersister.class);
+    resourcePersister = mock(ResourcePersister.class);
     Snapshot snapshot = new Snapshot();
     snapshot.setId(1000);
     when(resourcePersister.getSnapshotOrFail(any(Resource.class))).thenReturn(snapshot);
-    sourcePersister = new SourcePersister(resourcePersister, new SnapshotSourceDao(getMyBatis()));
+    when(resourcePersister.getSnapshot(any(Resource.class))).thenReturn(snapshot);
+    sourceDao = spy(new SnapshotSourceDao(getMyBatis()));
+    sourcePersister = new SourcePersister(resourcePersister, sourceDao, caches);
+  }
+
+  @After
+  public void after() {
+    caches.stop();
   }
 
   @Test
   public void shouldSaveSource() {
     sourcePersister.saveSource(new File("org/foo/Bar.java"), "this is the file content");
+    sourcePersister.clear();
+    checkTables("shouldSaveSource", "snapshot_sources");
+  }
+
+  @Test
+  public void shouldInsertPendingSourcesWhenPersisting() {
+    sourcePersister.saveSource(new File("org/foo/Bar.java"), "this is the file content");
+    sourcePersister.persist();
     checkTables("shouldSaveSource", "snapshot_sources");
   }
 
+  @Test
+  public void shouldInsertSourcesByBatches() {
+    for (int i = 0; i < SourcePersister.BATCH_SIZE; i++) {
+      Snapshot snapshot = new Snapshot();
+      snapshot.setId(2000 + i);
+      when(resourcePersister.getSnapshotOrFail(any(Resource.class))).thenReturn(snapshot);
+      sourcePersister.saveSource(new File("org/foo/Bar" + i + ".java"), "content " + i);
+      if (i < SourcePersister.BATCH_SIZE - 1) {
+        verify(sourceDao, never()).insert(anyCollectionOf(SnapshotSourceDto.class));
+      }
+    }
+    verify(sourceDao, times(1)).insert(anyCollectionOf(SnapshotSourceDto.class));
+    assertThat(sourceDao.selectSnapshotSource(2000L)).isEqualTo("content 0");
+    assertThat(sourceDao.selectSnapshotSource(2000L + SourcePersister.BATCH_SIZE - 1)).isEqualTo("content " + (SourcePersister.BATCH_SIZE - 1));
+  }
+
+  @Test
+  public void shouldKeepSavedSource() {
+    sourcePersister.saveSource(new File("org/foo/Bar.java"), "this is the file content");
+
+    Snapshot snapshot = new Snapshot();
+    snapshot.setId(1000);
+    assertThat(sourcePersister.getSavedSource(snapshot)).isEqualTo("this is the file content");
+    snapshot.setId(1001);
+    assertThat(sourcePersister.getSavedSource(snapshot)).isNull();
+  }
+
+  @Test
+  public void shouldGetSavedSourceWithoutRequestingDb() {
+    File file = new File("org/foo/Bar.java");
+    sourcePersister.saveSource(file, "this is the file content");
+
+    assertThat(sourcePersister.getSource(file)).isEqualTo("this is the file content");
+    verify(sourceDao, never()).selectSnapshotSource(anyLong());
+  }
+
   @Test(expected = DuplicatedSourceException.class)
   public void shouldFailIfSourceSavedSeveralTimes() {
     File file = new File("org/foo/Bar.java");
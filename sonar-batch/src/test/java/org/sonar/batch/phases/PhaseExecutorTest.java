@@ -19,15 +19,78 @@
  */
 package org.sonar.batch.phases;
 
+import org.junit.ClassRule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InOrder;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.database.model.Snapshot;
+import org.sonar.api.resources.File;
+import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Resource;
+import org.sonar.batch.events.EventBus;
+import org.sonar.batch.index.Caches;
+import org.sonar.batch.index.CachesTest;
+import org.sonar.batch.index.DefaultIndex;
+import org.sonar.batch.index.PersistenceManager;
+import org.sonar.batch.index.ResourcePersister;
+import org.sonar.batch.index.ScanPersister;
+import org.sonar.batch.index.SourcePersister;
+import org.sonar.batch.rule.QProfileVerifier;
+import org.sonar.batch.scan.filesystem.DefaultModuleFileSystem;
+import org.sonar.batch.scan.filesystem.FileSystemLogger;
+import org.sonar.batch.scan.maven.MavenPluginsConfigurator;
+import org.sonar.batch.scan.report.JsonReport;
+import org.sonar.core.source.db.SnapshotSourceDao;
+import org.sonar.core.source.db.SnapshotSourceDto;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class PhaseExecutorTest {
 
+  @ClassRule
+  public static TemporaryFolder temp = new TemporaryFolder();
+
   @Test
   public void shouldDefinePhaseClasses() {
     assertThat(PhaseExecutor.getPhaseClasses().size()).isGreaterThan(4);
   }
 
+  @Test
+  public void shouldInsertSourcesBeforeUpdatingStatus() throws Exception {
+    Caches caches = CachesTest.createCacheOnTemp(temp);
+    caches.start();
+    try {
+      ResourcePersister resourcePersister = mock(ResourcePersister.class);
+      Snapshot snapshot = new Snapshot();
+      snapshot.setId(1000);
+      when(resourcePersister.getSnapshotOrFail(any(Resource.class))).thenReturn(snapshot);
+      SnapshotSourceDao sourceDao = mock(SnapshotSourceDao.class);
+      SourcePersister sourcePersister = new SourcePersister(resourcePersister, sourceDao, caches);
+      UpdateStatusJob updateStatusJob = mock(UpdateStatusJob.class);
+
+      PhaseExecutor executor = new PhaseExecutor(new Phases(), mock(DecoratorsExecutor.class),
+        mock(MavenPluginsConfigurator.class), mock(InitializersExecutor.class),
+        mock(PostJobsExecutor.class), mock(SensorsExecutor.class),
+        mock(PersistenceManager.class), mock(SensorContext.class), mock(DefaultIndex.class),
+        mock(EventBus.class), updateStatusJob, mock(ProjectInitializer.class),
+        new ScanPersister[] {sourcePersister}, mock(FileSystemLogger.class), mock(JsonReport.class), mock(DefaultModuleFileSystem.class),
+        mock(QProfileVerifier.class), null);
+
+      sourcePersister.saveSource(new File("org/foo/Bar.java"), "this is the file content");
+      executor.execute(new Project("key"));
+
+      InOrder inOrder = inOrder(sourceDao, updateStatusJob);
+      inOrder.verify(sourceDao).insert(anyCollectionOf(SnapshotSourceDto.class));
+      inOrder.verify(updateStatusJob).execute();
+    } finally {
+      caches.stop();
+    }
+  }
+
 }
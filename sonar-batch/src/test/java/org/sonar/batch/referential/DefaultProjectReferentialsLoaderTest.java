@@ -21,23 +21,35 @@ package org.sonar.batch.referential;
 
 import com.google.common.collect.Maps;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
 import org.sonar.api.batch.bootstrap.ProjectReactor;
 import org.sonar.api.database.DatabaseSession;
 import org.sonar.batch.bootstrap.AnalysisMode;
+import org.sonar.batch.bootstrap.BootstrapProperties;
 import org.sonar.batch.bootstrap.ServerClient;
 import org.sonar.batch.bootstrap.TaskProperties;
 import org.sonar.batch.rule.ModuleQProfiles;
 import org.sonar.core.source.db.SnapshotDataDao;
+import org.sonar.home.cache.FileCacheBuilder;
 
+import java.util.Collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.MapAssert.entry;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class DefaultProjectReferentialsLoaderTest {
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   private DefaultProjectReferentialsLoader loader;
   private ServerClient serverClient;
   private AnalysisMode analysisMode;
@@ -45,11 +57,12 @@ public class DefaultProjectReferentialsLoaderTest {
   private TaskProperties taskProperties;
 
   @Before
-  public void prepare() {
+  public void prepare() throws Exception {
     serverClient = mock(ServerClient.class);
     analysisMode = mock(AnalysisMode.class);
-    loader = new DefaultProjectReferentialsLoader(mock(DatabaseSession.class), serverClient, analysisMode, mock(SnapshotDataDao.class));
-    when(serverClient.request(anyString())).thenReturn("");
+    loader = new DefaultProjectReferentialsLoader(mock(DatabaseSession.class), serverClient, analysisMode, mock(SnapshotDataDao.class),
+      new FileCacheBuilder().setUserHome(temp.newFolder()).build(), new BootstrapProperties(Collections.<String, String>emptyMap()));
+    when(serverClient.requestIfNoneMatch(anyString(), anyString())).thenReturn("{}");
     reactor = new ProjectReactor(ProjectDefinition.create().setKey("foo"));
     taskProperties = new TaskProperties(Maps.<String, String>newHashMap(), "");
   }
@@ -58,18 +71,51 @@ public class DefaultProjectReferentialsLoaderTest {
   public void passPreviewParameter() {
     when(analysisMode.isPreview()).thenReturn(false);
     loader.load(reactor, taskProperties);
-    verify(serverClient).request("/batch/project?key=foo&preview=false");
+    verify(serverClient).requestIfNoneMatch("/batch/project?key=foo&preview=false", null);
 
     when(analysisMode.isPreview()).thenReturn(true);
     loader.load(reactor, taskProperties);
-    verify(serverClient).request("/batch/project?key=foo&preview=true");
+    verify(serverClient).requestIfNoneMatch("/batch/project?key=foo&preview=true", null);
   }
 
   @Test
   public void passProfileParameter() {
     taskProperties.properties().put(ModuleQProfiles.SONAR_PROFILE_PROP, "my-profile");
     loader.load(reactor, taskProperties);
-    verify(serverClient).request("/batch/project?key=foo&profile=my-profile&preview=false");
+    verify(serverClient).requestIfNoneMatch("/batch/project?key=foo&profile=my-profile&preview=false", null);
+  }
+
+  @Test
+  public void reuseLocalCopyIfNotModified() {
+    String json = "{\"settingsByModule\":{\"foo\":{\"sonar.foo\":\"bar\"}}}";
+    when(serverClient.requestIfNoneMatch("/batch/project?key=foo&preview=false", null)).thenReturn(json);
+    loader.load(reactor, taskProperties);
+
+    String etag = DefaultProjectReferentialsLoader.etag(json);
+    when(serverClient.requestIfNoneMatch("/batch/project?key=foo&preview=false", etag)).thenReturn(null);
+    assertThat(loader.load(reactor, taskProperties).settings("foo")).includes(entry("sonar.foo", "bar"));
+    verify(serverClient).requestIfNoneMatch("/batch/project?key=foo&preview=false", etag);
+  }
+
+  @Test
+  public void neverStoreSecuredSettings() {
+    String json = "{\"settingsByModule\":{\"foo\":{\"sonar.foo.secured\":\"secret\"}}}";
+    when(serverClient.requestIfNoneMatch("/batch/project?key=foo&preview=false", null)).thenReturn(json);
+    loader.load(reactor, taskProperties);
+    loader.load(reactor, taskProperties);
+
+    verify(serverClient, times(2)).requestIfNoneMatch("/batch/project?key=foo&preview=false", null);
+  }
+
+  @Test
+  public void storeSettingsWhoseValueMentionsSecured() {
+    String json = "{\"settingsByModule\":{\"foo\":{\"sonar.foo\":\"bar.secured\"}}}";
+    when(serverClient.requestIfNoneMatch("/batch/project?key=foo&preview=false", null)).thenReturn(json);
+    loader.load(reactor, taskProperties);
+
+    String etag = DefaultProjectReferentialsLoader.etag(json);
+    when(serverClient.requestIfNoneMatch("/batch/project?key=foo&preview=false", etag)).thenReturn(null);
+    assertThat(loader.load(reactor, taskProperties).settings("foo")).includes(entry("sonar.foo", "bar.secured"));
   }
 
 }
@@ -37,7 +37,10 @@ import java.net.URISyntaxException;
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static java.util.Arrays.asList;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
@@ -69,6 +72,49 @@ public class LastSnapshotsTest {
     verifyZeroInteractions(server);
   }
 
+  @Test
+  public void should_prefetch_sources_of_last_snapshots() {
+    db.prepareDbUnit(getClass(), "last_snapshot.xml");
+    SnapshotSourceDao dao = spy(new SnapshotSourceDao(db.myBatis()));
+    ServerClient server = mock(ServerClient.class);
+    LastSnapshots lastSnapshots = new LastSnapshots(mode, dao, server);
+
+    lastSnapshots.prefetchSources(asList(newFile(), newFileWithSpace()));
+
+    assertThat(lastSnapshots.getSource(newFile())).isEqualTo("this is bar");
+    assertThat(lastSnapshots.getSource(newFileWithSpace())).isEqualTo("");
+    verify(dao, never()).selectSnapshotSourceByComponentKey(anyString());
+
+    // prefetched sources are released once requested
+    assertThat(lastSnapshots.getSource(newFile())).isEqualTo("this is bar");
+    verify(dao).selectSnapshotSourceByComponentKey("myproject:org/foo/Bar.c");
+    verifyZeroInteractions(server);
+  }
+
+  @Test
+  public void should_drop_sources_of_previous_prefetch() {
+    db.prepareDbUnit(getClass(), "last_snapshot.xml");
+    SnapshotSourceDao dao = spy(new SnapshotSourceDao(db.myBatis()));
+    LastSnapshots lastSnapshots = new LastSnapshots(mode, dao, mock(ServerClient.class));
+
+    lastSnapshots.prefetchSources(asList(newFile()));
+    lastSnapshots.prefetchSources(asList(newFileWithSpace()));
+
+    assertThat(lastSnapshots.getSource(newFile())).isEqualTo("this is bar");
+    verify(dao).selectSnapshotSourceByComponentKey("myproject:org/foo/Bar.c");
+  }
+
+  @Test
+  public void should_not_prefetch_sources_if_preview_mode() {
+    SnapshotSourceDao dao = mock(SnapshotSourceDao.class);
+    when(mode.isPreview()).thenReturn(true);
+    LastSnapshots lastSnapshots = new LastSnapshots(mode, dao, mock(ServerClient.class));
+
+    lastSnapshots.prefetchSources(asList(newFile()));
+
+    verifyZeroInteractions(dao);
+  }
+
   @Test
   public void should_return_empty_source_if_no_last_snapshot() {
     db.prepareDbUnit(getClass(), "no_last_snapshot.xml");
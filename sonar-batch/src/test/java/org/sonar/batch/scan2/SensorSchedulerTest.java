@@ -0,0 +1,156 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scan2;
+
+import org.junit.Test;
+import org.sonar.api.batch.sensor.Sensor;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.SensorDescriptor;
+import org.sonar.api.batch.sensor.internal.DefaultSensorDescriptor;
+import org.sonar.api.measures.CoreMetrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
+import static org.mockito.Mockito.mock;
+
+public class SensorSchedulerTest {
+
+  List<String> executions = Collections.synchronizedList(new ArrayList<String>());
+  Map<Sensor, DefaultSensorDescriptor> sensors = new LinkedHashMap<Sensor, DefaultSensorDescriptor>();
+  SensorContext context = mock(SensorContext.class);
+
+  @Test
+  public void keep_initial_order() {
+    add("A", new DefaultSensorDescriptor());
+    add("B", new DefaultSensorDescriptor());
+    add("C", new DefaultSensorDescriptor());
+
+    new SensorScheduler(4).execute(sensors, context);
+
+    assertThat(executions).containsExactly("A", "B", "C");
+  }
+
+  @Test
+  public void execute_providers_first() {
+    add("A", new DefaultSensorDescriptor().dependsOn(CoreMetrics.NCLOC));
+    add("B", new DefaultSensorDescriptor().provides(CoreMetrics.NCLOC));
+
+    new SensorScheduler(4).execute(sensors, context);
+
+    assertThat(executions).containsExactly("B", "A");
+  }
+
+  @Test
+  public void execute_thread_safe_sensors_concurrently() {
+    final CyclicBarrier barrier = new CyclicBarrier(2);
+    Runnable waitForOtherSensor = new Runnable() {
+      @Override
+      public void run() {
+        try {
+          barrier.await(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+          throw new IllegalStateException("Sensors are not executed concurrently", e);
+        }
+      }
+    };
+    add("A", new DefaultSensorDescriptor().threadSafe(), waitForOtherSensor);
+    add("B", new DefaultSensorDescriptor().threadSafe(), waitForOtherSensor);
+    add("C", new DefaultSensorDescriptor().dependsOn(CoreMetrics.NCLOC));
+    add("D", new DefaultSensorDescriptor().threadSafe().provides(CoreMetrics.NCLOC));
+
+    new SensorScheduler(2).execute(sensors, context);
+
+    assertThat(executions).hasSize(4);
+    assertThat(executions.indexOf("D")).isLessThan(executions.indexOf("C"));
+  }
+
+  @Test
+  public void execute_on_calling_thread_if_single_thread() {
+    final Thread callingThread = Thread.currentThread();
+    add("A", new DefaultSensorDescriptor().threadSafe(), new Runnable() {
+      @Override
+      public void run() {
+        assertThat(Thread.currentThread()).isSameAs(callingThread);
+      }
+    });
+
+    new SensorScheduler(1).execute(sensors, context);
+
+    assertThat(executions).containsExactly("A");
+  }
+
+  @Test
+  public void do_not_execute_dependents_of_failed_sensor() {
+    add("A", new DefaultSensorDescriptor().threadSafe().provides(CoreMetrics.NCLOC), new Runnable() {
+      @Override
+      public void run() {
+        throw new IllegalArgumentException("Fail");
+      }
+    });
+    add("B", new DefaultSensorDescriptor().dependsOn(CoreMetrics.NCLOC));
+
+    try {
+      new SensorScheduler(2).execute(sensors, context);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("Fail");
+      assertThat(executions).isEmpty();
+    }
+  }
+
+  @Test
+  public void break_dependency_cycles() {
+    add("A", new DefaultSensorDescriptor().dependsOn(CoreMetrics.LINES).provides(CoreMetrics.NCLOC));
+    add("B", new DefaultSensorDescriptor().dependsOn(CoreMetrics.NCLOC).provides(CoreMetrics.LINES));
+
+    new SensorScheduler(2).execute(sensors, context);
+
+    assertThat(executions).containsExactly("A", "B");
+  }
+
+  private void add(String name, DefaultSensorDescriptor descriptor) {
+    add(name, descriptor, null);
+  }
+
+  private void add(final String name, DefaultSensorDescriptor descriptor, final Runnable action) {
+    descriptor.name(name);
+    sensors.put(new Sensor() {
+      @Override
+      public void describe(SensorDescriptor descriptor) {
+      }
+
+      @Override
+      public void execute(SensorContext context) {
+        if (action != null) {
+          action.run();
+        }
+        executions.add(name);
+      }
+    }, descriptor);
+  }
+}
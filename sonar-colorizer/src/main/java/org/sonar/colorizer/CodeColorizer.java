@@ -19,14 +19,49 @@
  */
 package org.sonar.colorizer;
 
+import com.google.common.collect.ImmutableSet;
+import org.sonar.channel.CodeReader;
+
 import javax.annotation.Nullable;
 
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
+/**
+ * Instances are expected to be shared. The {@link NotThreadSafeTokenizer}s are cloned before each use, except
+ * the built-in tokenizers that keep no state related to a source : each thread clones them once and reuses its
+ * copies from one call to another.
+ */
 public class CodeColorizer {
 
+  /**
+   * Exact classes of the built-in tokenizers that can be reused to colorize several sources. Subclasses, for
+   * example defined by plugins, may keep state related to a source, so they are not reused.
+   */
+  private static final Set<Class<?>> REUSABLE_TOKENIZERS = ImmutableSet.<Class<?>>of(KeywordsTokenizer.class, CaseInsensitiveKeywordsTokenizer.class,
+    RegexpTokenizer.class);
+
+  private static final CodeColorizer JAVA = new CodeColorizer(Format.JAVA);
+  private static final CodeColorizer GROOVY = new CodeColorizer(Format.GROOVY);
+
   private List<Tokenizer> tokenizers = null;
+  private final ThreadLocal<List<Tokenizer>> pipeline = new ThreadLocal<List<Tokenizer>>() {
+    @Override
+    protected List<Tokenizer> initialValue() {
+      List<Tokenizer> result = new ArrayList<Tokenizer>(tokenizers.size());
+      for (Tokenizer tokenizer : tokenizers) {
+        if (REUSABLE_TOKENIZERS.contains(tokenizer.getClass())) {
+          result.add(new ThreadConfinedTokenizer(((NotThreadSafeTokenizer) tokenizer).clone()));
+        } else {
+          // other NotThreadSafeTokenizers are cloned by TokenizerDispatcher before each use
+          result.add(tokenizer);
+        }
+      }
+      return result;
+    }
+  };
 
   public CodeColorizer(List<Tokenizer> tokenizers) {
     this.tokenizers = tokenizers;
@@ -42,15 +77,27 @@ public class CodeColorizer {
 
   public String toHtml(Reader code, @Nullable HtmlOptions options) {
     HtmlOptions opts = options == null ? HtmlOptions.DEFAULT : options;
-    return new HtmlRenderer(opts).render(code, tokenizers);
+    return new HtmlRenderer(opts).render(code, pipeline.get());
+  }
+
+  /**
+   * Writes the lines <code>fromLine</code> to <code>toLine</code> (1-based, inclusive), with syntax highlighting only.
+   * A token is written with the line it starts on, so a token starting before <code>fromLine</code> is not written,
+   * even partially. Tokenizers are expected to end their tokens at the end of lines, as the built-in ones do.
+   *
+   * @see HtmlRenderer#render(Reader, Appendable, List, int, int)
+   * @since 5.0
+   */
+  public void toHtml(Reader code, Appendable output, int fromLine, int toLine) {
+    new HtmlRenderer(HtmlOptions.ONLY_SYNTAX).render(code, output, pipeline.get(), fromLine, toLine);
   }
 
   public static String javaToHtml(Reader code, HtmlOptions options) {
-    return new CodeColorizer(Format.JAVA).toHtml(code, options);
+    return JAVA.toHtml(code, options);
   }
 
   public static String groovyToHtml(Reader code, HtmlOptions options) {
-    return new CodeColorizer(Format.GROOVY).toHtml(code, options);
+    return GROOVY.toHtml(code, options);
   }
 
   public static String getCss() {
@@ -70,4 +117,21 @@ public class CodeColorizer {
       return tokenizers;
     }
   }
+
+  /**
+   * Copy of a reusable {@link NotThreadSafeTokenizer} owned by a single thread, so that it's not cloned again
+   * by {@link TokenizerDispatcher}.
+   */
+  private static class ThreadConfinedTokenizer extends Tokenizer {
+    private final NotThreadSafeTokenizer delegate;
+
+    ThreadConfinedTokenizer(NotThreadSafeTokenizer delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public boolean consume(CodeReader code, HtmlCodeBuilder output) {
+      return delegate.consume(code, output);
+    }
+  }
 }
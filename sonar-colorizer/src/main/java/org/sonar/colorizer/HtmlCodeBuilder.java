@@ -41,13 +41,13 @@ public class HtmlCodeBuilder implements Appendable {
   @Override
   public Appendable append(char c) {
     if (c == '<') {
-      colorizedCode.append("&lt;");
+      write("&lt;");
     } else if (c == '>') {
-      colorizedCode.append("&gt;");
+      write("&gt;");
     } else if (c == '&') {
-      colorizedCode.append("&amp;");
+      write("&amp;");
     } else {
-      colorizedCode.append(c);
+      write(c);
     }
     return this;
   }
@@ -61,7 +61,24 @@ public class HtmlCodeBuilder implements Appendable {
   }
 
   public void appendWithoutTransforming(String htmlTag) {
-    colorizedCode.append(htmlTag);
+    write(htmlTag);
+  }
+
+  void write(String html) {
+    colorizedCode.append(html);
+  }
+
+  void write(char c) {
+    colorizedCode.append(c);
+  }
+
+  /**
+   * Called by {@link TokenizerDispatcher} before each token with the line it starts on.
+   * Colorization stops as soon as false is returned.
+   * @since 5.0
+   */
+  boolean acceptLine(int line) {
+    return true;
   }
 
   @Override
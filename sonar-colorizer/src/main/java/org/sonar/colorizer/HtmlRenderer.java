@@ -23,6 +23,7 @@ import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.google.common.base.Preconditions;
 import org.sonar.channel.Channel;
 import org.sonar.channel.CodeReader;
 
@@ -62,4 +63,24 @@ public class HtmlRenderer extends Renderer {
       throw new SynhtaxHighlightingException("Can not render code", e);
     }
   }
+
+  /**
+   * Writes the colorized lines <code>fromLine</code> to <code>toLine</code> (1-based, inclusive) to <code>output</code>,
+   * line breaks included. Lines after <code>toLine</code> are not colorized. HTML tables are not supported.
+   * <p/>
+   * A token is written with the line it starts on : a token starting before <code>fromLine</code> is not written, even
+   * partially, and a token starting on <code>toLine</code> is written entirely. Tokenizers are expected to end their
+   * tokens at the end of lines, as the built-in ones do.
+   *
+   * @since 5.0
+   */
+  public void render(Reader code, Appendable output, List<? extends Channel<HtmlCodeBuilder>> tokenizers, int fromLine, int toLine) {
+    Preconditions.checkState(options == null || !options.isGenerateTable(), "Ranges of lines can not be rendered as HTML tables");
+    try {
+      List<Channel<HtmlCodeBuilder>> allTokenizers = new ArrayList<Channel<HtmlCodeBuilder>>(tokenizers);
+      new TokenizerDispatcher(allTokenizers).colorize(new CodeReader(code), new LineRangeCodeBuilder(output, fromLine, toLine));
+    } catch (Exception e) {
+      throw new SynhtaxHighlightingException("Can not render code", e);
+    }
+  }
 }
@@ -46,10 +46,14 @@ public class KeywordsTokenizer extends NotThreadSafeTokenizer {
   }
 
   public KeywordsTokenizer(String tagBefore, String tagAfter, Set<String> keywords, String regex) {
+    this(tagBefore, tagAfter, keywords, Pattern.compile(regex));
+  }
+
+  private KeywordsTokenizer(String tagBefore, String tagAfter, Set<String> keywords, Pattern pattern) {
     this.tagBefore = tagBefore;
     this.tagAfter = tagAfter;
     this.keywords = keywords;
-    this.matcher = Pattern.compile(regex).matcher("");
+    this.matcher = pattern.matcher("");
   }
 
   public KeywordsTokenizer(String tagBefore, String tagAfter, String... keywords) {
@@ -90,7 +94,7 @@ public class KeywordsTokenizer extends NotThreadSafeTokenizer {
 
   @Override
   public KeywordsTokenizer clone() {
-    KeywordsTokenizer clone = new KeywordsTokenizer(tagBefore, tagAfter, keywords, matcher.pattern().pattern());
+    KeywordsTokenizer clone = new KeywordsTokenizer(tagBefore, tagAfter, keywords, matcher.pattern());
     clone.caseInsensitive = caseInsensitive;
     return clone;
   }
@@ -0,0 +1,70 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.colorizer;
+
+import java.io.IOException;
+
+/**
+ * Writes the colorized code of a range of lines to an {@link Appendable}. Lines are 1-based and
+ * a token is written with the line it starts on.
+ *
+ * @since 5.0
+ */
+class LineRangeCodeBuilder extends HtmlCodeBuilder {
+
+  private final Appendable output;
+  private final int fromLine;
+  private final int toLine;
+  private boolean inRange = false;
+
+  LineRangeCodeBuilder(Appendable output, int fromLine, int toLine) {
+    this.output = output;
+    this.fromLine = fromLine;
+    this.toLine = toLine;
+  }
+
+  @Override
+  boolean acceptLine(int line) {
+    inRange = line >= fromLine && line <= toLine;
+    return line <= toLine;
+  }
+
+  @Override
+  void write(String html) {
+    if (inRange) {
+      try {
+        output.append(html);
+      } catch (IOException e) {
+        throw new SynhtaxHighlightingException("Can not write colorized code", e);
+      }
+    }
+  }
+
+  @Override
+  void write(char c) {
+    if (inRange) {
+      try {
+        output.append(c);
+      } catch (IOException e) {
+        throw new SynhtaxHighlightingException("Can not write colorized code", e);
+      }
+    }
+  }
+}
@@ -45,7 +45,7 @@ public class TokenizerDispatcher {
   public final void colorize(CodeReader code, HtmlCodeBuilder colorizedCode) {
     cloneNotThreadSafeTokenizers();
     nextChar:
-    while (code.peek() != -1) {
+    while (code.peek() != -1 && colorizedCode.acceptLine(code.getLinePosition())) {
       for (Channel<HtmlCodeBuilder> codeTokenizer : tokenizers) {
         if (codeTokenizer.consume(code, colorizedCode)) {
           continue nextChar;
@@ -0,0 +1,96 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.colorizer;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the colorization of Java and Groovy sources by shared colorizers, which reuse the tokenizers
+ * cloned for the current thread, with the previous usage of a new colorizer per source. It's not executed
+ * by unit tests. Run it with the main method from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CodeColorizerBenchmark {
+
+  CodeColorizer javaColorizer;
+  CodeColorizer groovyColorizer;
+  String java;
+  String groovy;
+
+  @Setup
+  public void setUp() throws IOException {
+    javaColorizer = new CodeColorizer(CodeColorizer.Format.JAVA);
+    groovyColorizer = new CodeColorizer(CodeColorizer.Format.GROOVY);
+    java = IOUtils.toString(getClass().getResourceAsStream("/org/sonar/colorizer/samples/Sample.java"));
+    groovy = IOUtils.toString(getClass().getResourceAsStream("/org/sonar/colorizer/samples/Sample.groovy"));
+  }
+
+  @Benchmark
+  public String java() {
+    return javaColorizer.toHtml(new StringReader(java), HtmlOptions.ONLY_SYNTAX);
+  }
+
+  @Benchmark
+  public String javaWithNewColorizer() {
+    return new CodeColorizer(CodeColorizer.Format.JAVA).toHtml(new StringReader(java), HtmlOptions.ONLY_SYNTAX);
+  }
+
+  @Benchmark
+  public String javaRangeOfLines() {
+    StringBuilder html = new StringBuilder();
+    javaColorizer.toHtml(new StringReader(java), html, 10, 20);
+    return html.toString();
+  }
+
+  @Benchmark
+  public String groovy() {
+    return groovyColorizer.toHtml(new StringReader(groovy), HtmlOptions.ONLY_SYNTAX);
+  }
+
+  @Benchmark
+  public String groovyWithNewColorizer() {
+    return new CodeColorizer(CodeColorizer.Format.GROOVY).toHtml(new StringReader(groovy), HtmlOptions.ONLY_SYNTAX);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+      .include(CodeColorizerBenchmark.class.getSimpleName())
+      .warmupIterations(5)
+      .measurementIterations(10)
+      .forks(1)
+      .build()).run();
+  }
+}
@@ -21,17 +21,20 @@ package org.sonar.colorizer;
 
 import org.apache.commons.io.IOUtils;
 import org.junit.Test;
+import org.sonar.channel.CodeReader;
 
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.fest.assertions.Assertions.assertThat;
 
@@ -78,6 +81,29 @@ public class CodeColorizerTest {
     assertContains(html, "<pre><span class=\"k\">class</span> Greet {</pre>");
   }
 
+  @Test
+  public void rangeOfLinesToHtml() throws IOException {
+    CodeColorizer colorizer = new CodeColorizer(CodeColorizer.Format.JAVA);
+    String[] lines = colorizer.toHtml(readFile("/org/sonar/colorizer/samples/Sample.java"), HtmlOptions.ONLY_SYNTAX).split("\n");
+    StringBuilder html = new StringBuilder();
+
+    colorizer.toHtml(readFile("/org/sonar/colorizer/samples/Sample.java"), html, 8, 10);
+
+    assertThat(html.toString()).isEqualTo(lines[7] + "\n" + lines[8] + "\n" + lines[9] + "\n");
+    assertThat(lines[7]).isEqualTo("<span class=\"cppd\"> * NOT javadoc, for example license header</span>");
+  }
+
+  @Test
+  public void cloneTokenizersOfPluginsBeforeEachUse() {
+    AtomicInteger clones = new AtomicInteger();
+    CodeColorizer colorizer = new CodeColorizer(Arrays.<Tokenizer>asList(new PluginTokenizer(clones)));
+
+    colorizer.toHtml(new StringReader("first"), HtmlOptions.ONLY_SYNTAX);
+    colorizer.toHtml(new StringReader("second"), HtmlOptions.ONLY_SYNTAX);
+
+    assertThat(clones.get()).isEqualTo(2);
+  }
+
   @Test
   public void getCss() {
     assertThat(CodeColorizer.getCss().length()).isGreaterThan(100);
@@ -159,4 +185,26 @@ public class CodeColorizerTest {
       assertThat(html).contains(string);
     }
   }
+
+  /**
+   * Tokenizers defined by plugins may keep state related to a source
+   */
+  private static class PluginTokenizer extends NotThreadSafeTokenizer {
+    private final AtomicInteger clones;
+
+    PluginTokenizer(AtomicInteger clones) {
+      this.clones = clones;
+    }
+
+    @Override
+    public boolean consume(CodeReader code, HtmlCodeBuilder output) {
+      return false;
+    }
+
+    @Override
+    public NotThreadSafeTokenizer clone() {
+      clones.incrementAndGet();
+      return new PluginTokenizer(clones);
+    }
+  }
 }
@@ -21,6 +21,7 @@ package org.sonar.colorizer;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.Test;
+import org.sonar.channel.CodeReader;
 
 import java.io.File;
 import java.io.FileReader;
@@ -29,6 +30,7 @@ import java.io.StringReader;
 import java.util.Arrays;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
 
 public class HtmlRendererTest {
 
@@ -67,4 +69,47 @@ public class HtmlRendererTest {
     assertThat(html).contains("</html>");
   }
 
+  @Test
+  public void renderRangeOfLines() {
+    HtmlRenderer htmlRenderer = new HtmlRenderer(HtmlOptions.ONLY_SYNTAX);
+    StringBuilder html = new StringBuilder();
+
+    htmlRenderer.render(new StringReader("package foo;\r\n/* a\r\n b */ public class Hello {\n}\n"), html,
+      Arrays.asList(new MultilinesDocTokenizer("/*", "*/", "<c>", "</c>"), javaKeywordTokenizer), 2, 3);
+
+    assertThat(html.toString()).isEqualTo("<c>/* a</c>\r\n<c> b */</c> <span class='k'>public</span> <span class='k'>class</span> Hello {\n");
+  }
+
+  @Test
+  public void doNotColorizeLinesAfterRange() {
+    NotThreadSafeTokenizer failAfterSecondLine = new NotThreadSafeTokenizer() {
+      @Override
+      public boolean consume(CodeReader code, HtmlCodeBuilder output) {
+        if (code.getLinePosition() > 2) {
+          throw new IllegalStateException("Line " + code.getLinePosition() + " must not be colorized");
+        }
+        return false;
+      }
+
+      @Override
+      public NotThreadSafeTokenizer clone() {
+        return this;
+      }
+    };
+    StringBuilder html = new StringBuilder();
+
+    new HtmlRenderer(HtmlOptions.ONLY_SYNTAX).render(new StringReader("a<b\nc\nd\n"), html, Arrays.asList(failAfterSecondLine), 1, 2);
+
+    assertThat(html.toString()).isEqualTo("a&lt;b\nc\n");
+  }
+
+  @Test
+  public void failToRenderRangeOfLinesAsTable() {
+    try {
+      new HtmlRenderer().render(new StringReader("foo"), new StringBuilder(), Arrays.asList(javaKeywordTokenizer), 1, 2);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Ranges of lines can not be rendered as HTML tables");
+    }
+  }
 }
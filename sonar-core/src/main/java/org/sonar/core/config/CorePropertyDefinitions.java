@@ -22,6 +22,7 @@ package org.sonar.core.config;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import org.sonar.api.CoreProperties;
+import org.sonar.api.PropertyType;
 import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.resources.Qualifiers;
 
@@ -100,6 +101,16 @@ public class CorePropertyDefinitions {
         .onlyOnQualifiers(Qualifiers.PROJECT)
         .category(CoreProperties.CATEGORY_GENERAL)
         .subCategory(CoreProperties.SUBCATEGORY_DIFFERENTIAL_VIEWS)
+        .build(),
+
+      PropertyDefinition.builder(CoreProperties.DESIGN_LAZY_DSM_KEY)
+        .name("Compute dependency matrices on demand")
+        .description("When enabled, the Dependency Structure Matrices of directories and modules are not stored during analysis. " +
+          "They are computed by the server from the dependencies when the design page is displayed.")
+        .type(PropertyType.BOOLEAN)
+        .defaultValue(String.valueOf(false))
+        .onQualifiers(Qualifiers.PROJECT)
+        .category(CoreProperties.CATEGORY_GENERAL)
         .build()
       ));
     return defs;
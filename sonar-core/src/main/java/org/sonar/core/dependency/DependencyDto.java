@@ -23,7 +23,10 @@ public final class DependencyDto {
   private Long id;
   private Long fromSnapshotId;
   private Long toSnapshotId;
+  private Long fromResourceId;
+  private Long toResourceId;
   private String usage;
+  private Integer weight;
 
   public Long getId() {
     return id;
@@ -52,6 +55,24 @@ public final class DependencyDto {
     return this;
   }
 
+  public Long getFromResourceId() {
+    return fromResourceId;
+  }
+
+  public DependencyDto setFromResourceId(Long fromResourceId) {
+    this.fromResourceId = fromResourceId;
+    return this;
+  }
+
+  public Long getToResourceId() {
+    return toResourceId;
+  }
+
+  public DependencyDto setToResourceId(Long toResourceId) {
+    this.toResourceId = toResourceId;
+    return this;
+  }
+
   public String getUsage() {
     return usage;
   }
@@ -60,4 +81,13 @@ public final class DependencyDto {
     this.usage = usage;
     return this;
   }
+
+  public Integer getWeight() {
+    return weight;
+  }
+
+  public DependencyDto setWeight(Integer weight) {
+    this.weight = weight;
+    return this;
+  }
 }
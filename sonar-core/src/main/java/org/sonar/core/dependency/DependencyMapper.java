@@ -20,7 +20,22 @@
 package org.sonar.core.dependency;
 
 import org.apache.ibatis.session.ResultHandler;
+import org.sonar.core.resource.ResourceDto;
+
+import java.util.List;
 
 public interface DependencyMapper {
   void selectAll(ResultHandler handler);
+
+  /**
+   * Components of the children snapshots of the given snapshot, ordered by id.
+   * @since 5.0
+   */
+  List<ResourceDto> selectChildrenComponents(long parentSnapshotId);
+
+  /**
+   * Dependencies between the children snapshots of the given snapshot.
+   * @since 5.0
+   */
+  List<DependencyDto> selectBetweenChildren(long parentSnapshotId);
 }
@@ -40,9 +40,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.text.DateFormat;
 import java.text.DecimalFormat;
-import java.text.MessageFormat;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class DefaultI18n implements I18n, ServerExtension, BatchExtension, Startable {
 
@@ -50,9 +51,21 @@ public class DefaultI18n implements I18n, ServerExtension, BatchExtension, Start
 
   public static final String BUNDLE_PACKAGE = "org.sonar.l10n.";
 
+  // maximum number of locales with cached message tables
+  static final int MAX_LOCALES = 50;
+  // maximum number of cached files, see messageFromFile()
+  static final int MAX_FILES = 500;
+
   private PluginRepository pluginRepository;
   private ClassLoader classloader;
   private Map<String, String> propertyToBundles;
+  private final ConcurrentMap<Locale, MessageTable> tablesByLocale = new ConcurrentHashMap<Locale, MessageTable>();
+  private final Map<String, String> fileMessages = new LinkedHashMap<String, String>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+      return size() > MAX_FILES;
+    }
+  };
   private final ResourceBundle.Control control;
   private final System2 system2;
 
@@ -95,6 +108,11 @@ public class DefaultI18n implements I18n, ServerExtension, BatchExtension, Start
       }
     }
     LOG.debug(String.format("Loaded %d properties from l10n bundles", propertyToBundles.size()));
+    tablesByLocale.clear();
+    synchronized (fileMessages) {
+      fileMessages.clear();
+    }
+    messageTable(Locale.ENGLISH);
   }
 
   private void addPlugin(String pluginKey) {
@@ -115,25 +133,49 @@ public class DefaultI18n implements I18n, ServerExtension, BatchExtension, Start
   public void stop() {
     classloader = null;
     propertyToBundles = null;
+    tablesByLocale.clear();
+    synchronized (fileMessages) {
+      fileMessages.clear();
+    }
   }
 
   @Override
   @CheckForNull
   public String message(Locale locale, String key, @Nullable String defaultValue, Object... parameters) {
+    MessageTable table = messageTable(locale);
+    String value = table != null ? table.message(key, parameters) : messageFromBundle(locale, key, parameters);
+    return value != null ? value : MessageTable.format(defaultValue, parameters);
+  }
+
+  /**
+   * Tables are built on the first request of each locale. Beyond {@link #MAX_LOCALES} locales,
+   * no table is built and messages are looked up in bundles.
+   */
+  @VisibleForTesting
+  @CheckForNull
+  MessageTable messageTable(Locale locale) {
+    MessageTable table = tablesByLocale.get(locale);
+    if (table == null && tablesByLocale.size() < MAX_LOCALES) {
+      table = MessageTable.build(locale, propertyToBundles, classloader, control);
+      MessageTable existing = tablesByLocale.putIfAbsent(locale, table);
+      table = existing != null ? existing : table;
+    }
+    return table;
+  }
+
+  @CheckForNull
+  private String messageFromBundle(Locale locale, String key, Object... parameters) {
     String bundleKey = propertyToBundles.get(key);
-    String value = null;
-    if (bundleKey != null) {
-      try {
-        ResourceBundle resourceBundle = ResourceBundle.getBundle(bundleKey, locale, classloader, control);
-        value = resourceBundle.getString(key);
-      } catch (MissingResourceException e1) {
-        // ignore
-      }
+    if (bundleKey == null) {
+      return null;
     }
-    if (value == null) {
-      value = defaultValue;
+    try {
+      ResourceBundle resourceBundle = ResourceBundle.getBundle(bundleKey, locale, classloader, control);
+      return MessageTable.format(resourceBundle.getString(key), parameters);
+    } catch (MissingResourceException e) {
+      // ignore
+      return null;
     }
-    return formatMessage(value, parameters);
   }
 
   @Override
@@ -180,7 +222,7 @@ public class DefaultI18n implements I18n, ServerExtension, BatchExtension, Start
 
   /**
    * Only the given locale is searched. Contrary to java.util.ResourceBundle, no strategy for locating the bundle is implemented in
-   * this method.
+   * this method. The last {@link #MAX_FILES} loaded files are cached.
    */
   String messageFromFile(Locale locale, String filename, String relatedProperty) {
     String result = null;
@@ -195,10 +237,18 @@ public class DefaultI18n implements I18n, ServerExtension, BatchExtension, Start
       filePath += "_" + locale.getLanguage();
     }
     filePath += "/" + filename;
+    synchronized (fileMessages) {
+      if (fileMessages.containsKey(filePath)) {
+        return fileMessages.get(filePath);
+      }
+    }
     InputStream input = classloader.getResourceAsStream(filePath);
     if (input != null) {
       result = readInputStream(filePath, input);
     }
+    synchronized (fileMessages) {
+      fileMessages.put(filePath, result);
+    }
     return result;
   }
 
@@ -218,14 +268,6 @@ public class DefaultI18n implements I18n, ServerExtension, BatchExtension, Start
     return propertyToBundles.keySet();
   }
 
-  @CheckForNull
-  private String formatMessage(@Nullable String message, Object... parameters) {
-    if (message == null || parameters.length == 0) {
-      return message;
-    }
-    return MessageFormat.format(message.replaceAll("'", "''"), parameters);
-  }
-
   ClassLoader getBundleClassLoader() {
     return classloader;
   }
@@ -0,0 +1,136 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.i18n;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import org.apache.commons.lang.StringUtils;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.text.MessageFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+
+/**
+ * Immutable table of the messages of a locale, built from the l10n bundles of plugins.
+ * Formats of parameterized messages are compiled on first use, then shared.
+ *
+ * @since 5.0
+ */
+class MessageTable {
+
+  private final Map<String, Message> messagesByKey;
+
+  private MessageTable(Map<String, Message> messagesByKey) {
+    this.messagesByKey = messagesByKey;
+  }
+
+  /**
+   * @param propertyToBundles the bundle declaring each property, as loaded in English
+   */
+  static MessageTable build(Locale locale, Map<String, String> propertyToBundles, ClassLoader classloader, ResourceBundle.Control control) {
+    Map<String, ResourceBundle> bundles = Maps.newHashMap();
+    ImmutableMap.Builder<String, Message> messages = ImmutableMap.builder();
+    for (Map.Entry<String, String> entry : propertyToBundles.entrySet()) {
+      String bundleKey = entry.getValue();
+      ResourceBundle bundle;
+      if (bundles.containsKey(bundleKey)) {
+        bundle = bundles.get(bundleKey);
+      } else {
+        bundle = loadBundle(bundleKey, locale, classloader, control);
+        bundles.put(bundleKey, bundle);
+      }
+      if (bundle != null) {
+        try {
+          messages.put(entry.getKey(), new Message(bundle.getString(entry.getKey())));
+        } catch (MissingResourceException e) {
+          // ignore
+        }
+      }
+    }
+    return new MessageTable(messages.build());
+  }
+
+  @CheckForNull
+  private static ResourceBundle loadBundle(String bundleKey, Locale locale, ClassLoader classloader, ResourceBundle.Control control) {
+    try {
+      return ResourceBundle.getBundle(bundleKey, locale, classloader, control);
+    } catch (MissingResourceException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return the formatted message, or null if the key is unknown
+   */
+  @CheckForNull
+  String message(String key, Object... parameters) {
+    Message message = messagesByKey.get(key);
+    return message != null ? message.format(parameters) : null;
+  }
+
+  int size() {
+    return messagesByKey.size();
+  }
+
+  /**
+   * Same as {@link MessageFormat#format(String, Object...)}, except that single quotes are not considered
+   * as escape characters.
+   */
+  @CheckForNull
+  static String format(@Nullable String message, Object... parameters) {
+    if (message == null || parameters.length == 0) {
+      return message;
+    }
+    return compile(message).format(parameters);
+  }
+
+  private static MessageFormat compile(String message) {
+    return new MessageFormat(StringUtils.replace(message, "'", "''"));
+  }
+
+  private static class Message {
+    private final String value;
+    private volatile MessageFormat format;
+
+    Message(String value) {
+      this.value = value;
+    }
+
+    String format(Object... parameters) {
+      if (parameters.length == 0) {
+        return value;
+      }
+      MessageFormat messageFormat = format;
+      if (messageFormat == null) {
+        messageFormat = compile(value);
+        format = messageFormat;
+      }
+      // MessageFormat and its sub-formats are not thread-safe
+      synchronized (messageFormat) {
+        return messageFormat.format(parameters);
+      }
+    }
+  }
+}
@@ -32,6 +32,8 @@ public class MeasureDto extends Dto<MeasureKey>{
 
   private Long id;
 
+  private Long snapshotId;
+
   private String metricKey;
 
   private String componentKey;
@@ -57,6 +59,16 @@ public class MeasureDto extends Dto<MeasureKey>{
     return this;
   }
 
+  @CheckForNull
+  public Long getSnapshotId() {
+    return snapshotId;
+  }
+
+  public MeasureDto setSnapshotId(@Nullable Long snapshotId) {
+    this.snapshotId = snapshotId;
+    return this;
+  }
+
   private MeasureDto setMetricKey(String metricKey) {
     this.metricKey = metricKey;
     return this;
@@ -23,6 +23,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.SetMultimap;
 import org.slf4j.Logger;
@@ -36,12 +37,15 @@ import org.sonar.core.notification.db.NotificationQueueDao;
 import org.sonar.core.notification.db.NotificationQueueDto;
 import org.sonar.core.properties.PropertiesDao;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
 import java.io.IOException;
 import java.io.InvalidClassException;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @since 2.10
@@ -96,21 +100,45 @@ public class DefaultNotificationManager implements NotificationManager {
   /**
    * Give the notification queue so that it can be processed
    */
+  @CheckForNull
   public Notification getFromQueue() {
-    int batchSize = 1;
-    List<NotificationQueueDto> notificationDtos = notificationQueueDao.findOldest(batchSize);
+    List<NotificationQueueDto> notificationDtos = dequeue(1);
     if (notificationDtos.isEmpty()) {
       return null;
     }
-    notificationQueueDao.delete(notificationDtos);
+    return convertToNotification(notificationDtos.get(0));
+  }
 
-    return convertToNotification(notificationDtos);
+  /**
+   * Remove at most <code>batchSize</code> of the oldest notifications from the queue so that they can be processed.
+   * Notifications that can't be read are ignored, so the returned list can be empty even if the queue is not.
+   *
+   * @since 5.0
+   */
+  public List<Notification> getFromQueue(int batchSize) {
+    List<NotificationQueueDto> notificationDtos = dequeue(batchSize);
+    List<Notification> notifications = Lists.newArrayListWithCapacity(notificationDtos.size());
+    for (NotificationQueueDto notificationDto : notificationDtos) {
+      Notification notification = convertToNotification(notificationDto);
+      if (notification != null) {
+        notifications.add(notification);
+      }
+    }
+    return notifications;
   }
 
-  private Notification convertToNotification(List<NotificationQueueDto> notifications) {
+  private List<NotificationQueueDto> dequeue(int batchSize) {
+    List<NotificationQueueDto> notificationDtos = notificationQueueDao.findOldest(batchSize);
+    if (!notificationDtos.isEmpty()) {
+      notificationQueueDao.delete(notificationDtos);
+    }
+    return notificationDtos;
+  }
+
+  @CheckForNull
+  private Notification convertToNotification(NotificationQueueDto notification) {
     try {
-      // If batchSize is increased then we should return a list instead of a single element
-      return notifications.get(0).toNotification();
+      return notification.toNotification();
     } catch (InvalidClassException e) {
       // SONAR-4739
       if (!alreadyLoggedDeserializationIssue) {
@@ -163,8 +191,20 @@ public class DefaultNotificationManager implements NotificationManager {
     String dispatcherKey = dispatcher.getKey();
 
     SetMultimap<String, NotificationChannel> recipients = HashMultimap.create();
+    if (notificationChannels.length == 0) {
+      return recipients;
+    }
+    Map<String, NotificationChannel> channelsByKey = Maps.newHashMap();
     for (NotificationChannel channel : notificationChannels) {
-      addUsersToRecipientListForChannel(propertiesDao.findNotificationSubscribers(dispatcherKey, channel.getKey(), componentKey), recipients, channel);
+      channelsByKey.put(channel.getKey(), channel);
+    }
+    // subscribers of all channels are loaded at once
+    Multimap<String, String> loginsByChannelKey = propertiesDao.findNotificationSubscribers(dispatcherKey, channelsByKey.keySet(), componentKey);
+    for (Map.Entry<String, Collection<String>> entry : loginsByChannelKey.asMap().entrySet()) {
+      NotificationChannel channel = channelsByKey.get(entry.getKey());
+      if (channel != null) {
+        addUsersToRecipientListForChannel(entry.getValue(), recipients, channel);
+      }
     }
 
     return recipients;
@@ -175,7 +215,7 @@ public class DefaultNotificationManager implements NotificationManager {
     return Arrays.asList(notificationChannels);
   }
 
-  private void addUsersToRecipientListForChannel(List<String> users, SetMultimap<String, NotificationChannel> recipients, NotificationChannel channel) {
+  private void addUsersToRecipientListForChannel(Collection<String> users, SetMultimap<String, NotificationChannel> recipients, NotificationChannel channel) {
     for (String username : users) {
       recipients.put(username, channel);
     }
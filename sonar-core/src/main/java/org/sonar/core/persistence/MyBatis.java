@@ -58,6 +58,7 @@ import org.sonar.core.notification.db.NotificationQueueMapper;
 import org.sonar.core.permission.*;
 import org.sonar.core.persistence.migration.v44.Migration44Mapper;
 import org.sonar.core.persistence.migration.v45.Migration45Mapper;
+import org.sonar.core.properties.NotificationSubscriberDto;
 import org.sonar.core.properties.PropertiesMapper;
 import org.sonar.core.properties.PropertyDto;
 import org.sonar.core.purge.PurgeMapper;
@@ -121,6 +122,7 @@ public class MyBatis implements BatchComponent, ServerComponent {
     loadAlias(conf, "LoadedTemplate", LoadedTemplateDto.class);
     loadAlias(conf, "MeasureFilter", MeasureFilterDto.class);
     loadAlias(conf, "NotificationQueue", NotificationQueueDto.class);
+    loadAlias(conf, "NotificationSubscriber", NotificationSubscriberDto.class);
     loadAlias(conf, "Property", PropertyDto.class);
     loadAlias(conf, "PurgeableSnapshot", PurgeableSnapshotDto.class);
     loadAlias(conf, "QualityGate", QualityGateDto.class);
@@ -20,6 +20,7 @@
 package org.sonar.core.persistence;
 
 import org.apache.commons.dbcp.BasicDataSource;
+import org.apache.commons.io.FileUtils;
 import org.sonar.api.ServerComponent;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.utils.SonarException;
@@ -32,6 +33,7 @@ import javax.annotation.Nullable;
 import javax.sql.DataSource;
 
 import java.io.File;
+import java.io.IOException;
 import java.sql.SQLException;
 
 public class PreviewDatabaseFactory implements ServerComponent {
@@ -51,16 +53,35 @@ public class PreviewDatabaseFactory implements ServerComponent {
     this.profiling = profiling;
   }
 
-  public File createNewDatabaseForDryRun(Long projectId, File destFolder, String dbFileName) {
+  public File createNewDatabaseForDryRun(@Nullable Long projectId, File destFolder, String dbFileName) {
+    return createNewDatabaseForDryRun(projectId, null, destFolder, dbFileName);
+  }
+
+  /**
+   * @param globalDbFile if not null, then this database, which already contains the data shared by all
+   *                     projects (see {@link #createNewDatabaseForDryRun(Long, java.io.File, String)} with a null project),
+   *                     is copied and only project data are loaded from the SonarQube database.
+   * @since 5.0
+   */
+  public File createNewDatabaseForDryRun(@Nullable Long projectId, @Nullable File globalDbFile, File destFolder, String dbFileName) {
     StopWatch watch = profiling.start("previewdb", Level.BASIC);
 
     String h2Name = destFolder.getAbsolutePath() + File.separator + dbFileName;
 
     try {
       DataSource source = database.getDataSource();
-      BasicDataSource destination = create(DIALECT, DRIVER, USER, PASSWORD, URL + h2Name + ";LOG=0;CACHE_SIZE=65536;LOCK_MODE=0;UNDO_LOG=0");
-
-      copy(source, destination, projectId);
+      String url = URL + h2Name + ";LOG=0;CACHE_SIZE=65536;LOCK_MODE=0;UNDO_LOG=0";
+      BasicDataSource destination;
+      if (globalDbFile == null) {
+        destination = create(DIALECT, DRIVER, USER, PASSWORD, url);
+        copyGlobalTables(source, destination);
+      } else {
+        FileUtils.copyFile(globalDbFile, new File(h2Name + H2_FILE_SUFFIX));
+        destination = new DbTemplate(profiling).dataSource(DRIVER, USER, PASSWORD, url);
+      }
+      if (projectId != null) {
+        copyProjectTables(source, destination, projectId);
+      }
       close(destination);
 
       File dbFile = new File(h2Name + H2_FILE_SUFFIX);
@@ -78,13 +99,14 @@ public class PreviewDatabaseFactory implements ServerComponent {
 
     } catch (SQLException e) {
       throw new SonarException("Unable to create database for DryRun", e);
+    } catch (IOException e) {
+      throw new SonarException("Unable to create database for DryRun", e);
     }
 
   }
 
-  private void copy(DataSource source, DataSource dest, @Nullable Long projectId) {
-    DbTemplate template = new DbTemplate(profiling);
-    template
+  private void copyGlobalTables(DataSource source, DataSource dest) {
+    new DbTemplate(profiling)
       .copyTable(source, dest, "characteristics")
       .copyTable(source, dest, "permission_templates")
       .copyTable(source, dest, "perm_templates_users")
@@ -92,52 +114,54 @@ public class PreviewDatabaseFactory implements ServerComponent {
       .copyTable(source, dest, "rules")
       .copyTable(source, dest, "rules_parameters")
       .copyTableColumns(source, dest, "users", new String[] {"id", "login", "name", "active"});
-    if (projectId != null) {
-      template.copyTable(source, dest, "projects", projectQuery(projectId, false));
-
-      template.copyTable(source, dest, "events", "SELECT * FROM events WHERE resource_id=" + projectId);
-
-      StringBuilder snapshotQuery = new StringBuilder()
-        // All snapshots of root_project for alerts on differential periods
-        .append("SELECT * FROM snapshots WHERE project_id=")
-        .append(projectId)
-        // Plus all last snapshots of all modules having hash data for partial analysis
-        .append(" UNION SELECT snap.* FROM snapshots snap")
-        .append(" INNER JOIN (")
-        .append(projectQuery(projectId, true))
-        .append(") res")
-        .append(" ON snap.project_id=res.id")
-        .append(" INNER JOIN snapshot_data data")
-        .append(" ON snap.id=data.snapshot_id")
-        .append(" AND data.data_type='").append(SnapshotDataTypes.FILE_HASHES).append("'")
-        .append(" AND snap.islast=").append(database.getDialect().getTrueSqlValue());
-      template.copyTable(source, dest, "snapshots", snapshotQuery.toString());
-
-      StringBuilder snapshotDataQuery = new StringBuilder()
-        .append("SELECT data.* FROM snapshot_data data")
-        .append(" INNER JOIN snapshots s")
-        .append(" ON s.id=data.snapshot_id")
-        .append(" AND s.islast=").append(database.getDialect().getTrueSqlValue())
-        .append(" INNER JOIN (")
-        .append(projectQuery(projectId, true))
-        .append(") res")
-        .append(" ON data.resource_id=res.id")
-        .append(" AND data.data_type='").append(SnapshotDataTypes.FILE_HASHES).append("'");
-      template.copyTable(source, dest, "snapshot_data", snapshotDataQuery.toString());
-
-      // All measures of snapshots of root project for alerts on differential periods
-      template.copyTable(source, dest, "project_measures", "SELECT m.* FROM project_measures m INNER JOIN snapshots s on m.snapshot_id=s.id "
-        + "WHERE s.project_id=" + projectId);
-
-      StringBuilder issueQuery = new StringBuilder()
-        .append("SELECT issues.* FROM issues")
-        .append(" INNER JOIN (")
-        .append(projectQuery(projectId, true))
-        .append(") resources")
-        .append(" ON issues.component_id=resources.id")
-        .append(" AND status <> '").append(Issue.STATUS_CLOSED).append("'");
-      template.copyTable(source, dest, "issues", issueQuery.toString());
-    }
+  }
+
+  private void copyProjectTables(DataSource source, DataSource dest, Long projectId) {
+    DbTemplate template = new DbTemplate(profiling);
+    template.copyTable(source, dest, "projects", projectQuery(projectId, false));
+
+    template.copyTable(source, dest, "events", "SELECT * FROM events WHERE resource_id=" + projectId);
+
+    StringBuilder snapshotQuery = new StringBuilder()
+      // All snapshots of root_project for alerts on differential periods
+      .append("SELECT * FROM snapshots WHERE project_id=")
+      .append(projectId)
+      // Plus all last snapshots of all modules having hash data for partial analysis
+      .append(" UNION SELECT snap.* FROM snapshots snap")
+      .append(" INNER JOIN (")
+      .append(projectQuery(projectId, true))
+      .append(") res")
+      .append(" ON snap.project_id=res.id")
+      .append(" INNER JOIN snapshot_data data")
+      .append(" ON snap.id=data.snapshot_id")
+      .append(" AND data.data_type='").append(SnapshotDataTypes.FILE_HASHES).append("'")
+      .append(" AND snap.islast=").append(database.getDialect().getTrueSqlValue());
+    template.copyTable(source, dest, "snapshots", snapshotQuery.toString());
+
+    StringBuilder snapshotDataQuery = new StringBuilder()
+      .append("SELECT data.* FROM snapshot_data data")
+      .append(" INNER JOIN snapshots s")
+      .append(" ON s.id=data.snapshot_id")
+      .append(" AND s.islast=").append(database.getDialect().getTrueSqlValue())
+      .append(" INNER JOIN (")
+      .append(projectQuery(projectId, true))
+      .append(") res")
+      .append(" ON data.resource_id=res.id")
+      .append(" AND data.data_type='").append(SnapshotDataTypes.FILE_HASHES).append("'");
+    template.copyTable(source, dest, "snapshot_data", snapshotDataQuery.toString());
+
+    // All measures of snapshots of root project for alerts on differential periods
+    template.copyTable(source, dest, "project_measures", "SELECT m.* FROM project_measures m INNER JOIN snapshots s on m.snapshot_id=s.id "
+      + "WHERE s.project_id=" + projectId);
+
+    StringBuilder issueQuery = new StringBuilder()
+      .append("SELECT issues.* FROM issues")
+      .append(" INNER JOIN (")
+      .append(projectQuery(projectId, true))
+      .append(") resources")
+      .append(" ON issues.component_id=resources.id")
+      .append(" AND status <> '").append(Issue.STATUS_CLOSED).append("'");
+    template.copyTable(source, dest, "issues", issueQuery.toString());
   }
 
   private String projectQuery(Long projectId, boolean returnOnlyIds) {
@@ -21,6 +21,7 @@ package org.sonar.core.persistence.profiling;
 
 import org.apache.commons.dbcp.BasicDataSource;
 import org.sonar.api.config.Settings;
+import org.sonar.core.profiling.MetricsRegistry;
 import org.sonar.core.profiling.Profiling;
 
 /**
@@ -34,8 +35,9 @@ public final class PersistenceProfiling {
 
   public static BasicDataSource addProfilingIfNeeded(BasicDataSource datasource, Settings settings) {
     Profiling.Level level = Profiling.Level.fromConfigString(settings.getString(Profiling.CONFIG_PROFILING_LEVEL));
-    if (level == Profiling.Level.FULL) {
-      return new ProfilingDataSource(datasource);
+    boolean logging = level == Profiling.Level.FULL;
+    if (logging || settings.getBoolean(MetricsRegistry.ENABLED_PROPERTY)) {
+      return new ProfilingDataSource(datasource, logging);
     }
     return datasource;
   }
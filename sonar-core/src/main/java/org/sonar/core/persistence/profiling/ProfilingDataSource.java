@@ -30,9 +30,18 @@ import java.util.Collection;
 class ProfilingDataSource extends BasicDataSource {
 
   private final BasicDataSource delegate;
+  private final SqlProfiling profiling;
 
   public ProfilingDataSource(BasicDataSource delegate) {
+    this(delegate, true);
+  }
+
+  /**
+   * @param logging true if requests are logged, else only the metrics of requests are recorded
+   */
+  public ProfilingDataSource(BasicDataSource delegate, boolean logging) {
     this.delegate = delegate;
+    this.profiling = new SqlProfiling(logging);
   }
 
   @Override
@@ -308,13 +317,13 @@ class ProfilingDataSource extends BasicDataSource {
   @Override
   public Connection getConnection() throws SQLException {
     return (Connection) Proxy.newProxyInstance(this.getClass().getClassLoader(), new Class[] { Connection.class },
-        new ProfilingConnectionHandler(delegate.getConnection()));
+        new ProfilingConnectionHandler(delegate.getConnection(), profiling));
   }
 
   @Override
   public Connection getConnection(String user, String pass) throws SQLException {
     return (Connection) Proxy.newProxyInstance(this.getClass().getClassLoader(), new Class[] { Connection.class },
-        new ProfilingConnectionHandler(delegate.getConnection(user, pass)));
+        new ProfilingConnectionHandler(delegate.getConnection(user, pass), profiling));
   }
 
   @Override
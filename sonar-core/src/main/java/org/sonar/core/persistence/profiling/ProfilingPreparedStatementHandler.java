@@ -33,14 +33,15 @@ class ProfilingPreparedStatementHandler implements InvocationHandler {
   private static final String PARAM_PREFIX = "<";
   private static final String PARAM_SUFFIX = ">";
   private static final String PARAM_SEPARATOR = ", ";
-  private static final SqlProfiling PROFILING = new SqlProfiling();
 
   private final PreparedStatement statement;
+  private final SqlProfiling profiling;
   private final List<Object> arguments;
   private final String sql;
 
-  ProfilingPreparedStatementHandler(PreparedStatement statement, String sql) {
+  ProfilingPreparedStatementHandler(PreparedStatement statement, String sql, SqlProfiling profiling) {
     this.statement = statement;
+    this.profiling = profiling;
     this.sql = sql;
     this.arguments = Lists.newArrayList();
     for (int argCount = 0; argCount < StringUtils.countMatches(sql, "?"); argCount ++) {
@@ -51,19 +52,23 @@ class ProfilingPreparedStatementHandler implements InvocationHandler {
   @Override
   public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
     if (method.getName().startsWith("execute")) {
-      StopWatch watch = PROFILING.start();
+      StopWatch watch = profiling.start();
+      long timer = profiling.startTimer();
       Object result = null;
       try {
         result = InvocationUtils.invokeQuietly(statement, method, args);
       } finally {
-        StringBuilder sqlBuilder = new StringBuilder().append(sql);
-        if (!arguments.isEmpty()) {
-          sqlBuilder.append(" - parameters are: ");
-          for (Object arg: arguments) {
-            sqlBuilder.append(PARAM_PREFIX).append(arg).append(PARAM_SUFFIX).append(PARAM_SEPARATOR);
+        if (profiling.isLogging()) {
+          StringBuilder sqlBuilder = new StringBuilder().append(sql);
+          if (!arguments.isEmpty()) {
+            sqlBuilder.append(" - parameters are: ");
+            for (Object arg: arguments) {
+              sqlBuilder.append(PARAM_PREFIX).append(arg).append(PARAM_SUFFIX).append(PARAM_SEPARATOR);
+            }
           }
+          profiling.stop(watch, StringUtils.removeEnd(sqlBuilder.toString(), PARAM_SEPARATOR));
         }
-        PROFILING.stop(watch, StringUtils.removeEnd(sqlBuilder.toString(), PARAM_SEPARATOR));
+        profiling.stopTimer(timer, sql);
       }
       return result;
     } else if (method.getName().startsWith("set") && args.length > 1) {
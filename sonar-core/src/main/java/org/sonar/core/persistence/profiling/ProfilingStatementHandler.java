@@ -27,23 +27,30 @@ import java.sql.Statement;
 
 class ProfilingStatementHandler implements InvocationHandler {
 
-  private static final SqlProfiling PROFILING = new SqlProfiling();
+  private static final String BATCH = "batch";
 
   private final Statement statement;
+  private final SqlProfiling profiling;
 
-  ProfilingStatementHandler(Statement statement) {
+  ProfilingStatementHandler(Statement statement, SqlProfiling profiling) {
     this.statement = statement;
+    this.profiling = profiling;
   }
 
   @Override
   public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
     if (method.getName().startsWith("execute")) {
-      StopWatch watch = PROFILING.start();
+      StopWatch watch = profiling.start();
+      long timer = profiling.startTimer();
       Object result = null;
       try {
         result = InvocationUtils.invokeQuietly(statement, method, args);
       } finally {
-        PROFILING.stop(watch, (String) args[0]);
+        String sql = args != null && args.length > 0 ? (String) args[0] : BATCH;
+        if (profiling.isLogging()) {
+          profiling.stop(watch, sql);
+        }
+        profiling.stopTimer(timer, sql);
       }
       return result;
     } else {
@@ -19,26 +19,73 @@
  */
 package org.sonar.core.persistence.profiling;
 
+import com.google.common.collect.Maps;
+import org.apache.commons.lang.StringUtils;
 import org.sonar.api.config.Settings;
+import org.sonar.core.profiling.MetricsRegistry;
 import org.sonar.core.profiling.Profiling;
 import org.sonar.core.profiling.Profiling.Level;
 import org.sonar.core.profiling.StopWatch;
 
+import java.util.Map;
+
 class SqlProfiling {
 
+  static final String METRIC = "sql";
+  private static final int MAX_METRIC_LENGTH = 200;
+  private static final int MAX_METRIC_NAMES = 1000;
+
   private final Profiling profiling;
+  private final boolean logging;
+  private final MetricsRegistry metrics;
+  private final Map<String, String> metricNames = Maps.newConcurrentMap();
+
+  SqlProfiling(boolean logging) {
+    this(logging, MetricsRegistry.get());
+  }
 
-  SqlProfiling() {
+  SqlProfiling(boolean logging, MetricsRegistry metrics) {
     Settings settings = new Settings();
-    settings.setProperty(Profiling.CONFIG_PROFILING_LEVEL, Profiling.Level.FULL.toString());
-    profiling = new Profiling(settings);
+    settings.setProperty(Profiling.CONFIG_PROFILING_LEVEL, logging ? Profiling.Level.FULL.toString() : Profiling.Level.NONE.toString());
+    this.profiling = new Profiling(settings);
+    this.logging = logging;
+    this.metrics = metrics;
+  }
+
+  boolean isLogging() {
+    return logging;
   }
 
   StopWatch start() {
     return profiling.start("sql", Level.FULL);
   }
 
+  long startTimer() {
+    return metrics.startTimer();
+  }
+
   void stop(StopWatch watch, String sql) {
     watch.stop(String.format("Executed SQL: %s", sql.replaceAll("\\s+", " ")));
   }
+
+  /**
+   * Records the duration of the request in the global histogram and in the histogram of the request
+   */
+  void stopTimer(long timer, String sql) {
+    long duration = metrics.stopTimer(METRIC, timer);
+    if (duration >= 0L) {
+      metrics.record(metricName(sql), duration);
+    }
+  }
+
+  private String metricName(String sql) {
+    String name = metricNames.get(sql);
+    if (name == null) {
+      name = METRIC + ": " + StringUtils.abbreviate(sql.replaceAll("\\s+", " ").trim(), MAX_METRIC_LENGTH);
+      if (metricNames.size() < MAX_METRIC_NAMES) {
+        metricNames.put(sql, name);
+      }
+    }
+    return name;
+  }
 }
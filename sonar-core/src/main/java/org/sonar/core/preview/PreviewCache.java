@@ -71,7 +71,20 @@ public class PreviewCache implements ServerExtension {
     this.previewDatabaseFactory = previewDatabaseFactory;
   }
 
+  /**
+   * @deprecated since 5.0 the whole database is loaded in memory. Use {@link #getDatabaseFileForPreview(Long)}.
+   */
+  @Deprecated
   public byte[] getDatabaseForPreview(@Nullable Long projectId) {
+    return fileToByte(getDatabaseFileForPreview(projectId));
+  }
+
+  /**
+   * Cached database file, to be streamed without being loaded in memory. The file is kept until the database is regenerated
+   * twice, so that it can still be read after a first regeneration.
+   * @since 5.0
+   */
+  public File getDatabaseFileForPreview(@Nullable Long projectId) {
     long notNullProjectId = projectId != null ? projectId.longValue() : 0L;
     ReadWriteLock rwl = getLock(notNullProjectId);
     try {
@@ -91,8 +104,7 @@ public class PreviewCache implements ServerExtension {
         // unlock write, still hold read
         rwl.writeLock().unlock();
       }
-      File dbFile = new File(getCacheLocation(projectId), lastTimestampPerProject.get(notNullProjectId) + PreviewDatabaseFactory.H2_FILE_SUFFIX);
-      return fileToByte(dbFile);
+      return new File(getCacheLocation(projectId), lastTimestampPerProject.get(notNullProjectId) + PreviewDatabaseFactory.H2_FILE_SUFFIX);
     } finally {
       rwl.readLock().unlock();
     }
@@ -120,12 +132,58 @@ public class PreviewCache implements ServerExtension {
       LOG.debug("Generate new preview database for new project");
     }
     long notNullProjectId = projectId != null ? projectId.longValue() : 0L;
+    Long previousTimestamp = lastTimestampPerProject.get(notNullProjectId);
     long newTimestamp = System.currentTimeMillis();
     File cacheLocation = getCacheLocation(projectId);
-    FileUtils.deleteQuietly(cacheLocation);
-    File dbFile = previewDatabaseFactory.createNewDatabaseForDryRun(projectId, cacheLocation, String.valueOf(newTimestamp));
+    File dbFile;
+    if (projectId == null) {
+      dbFile = previewDatabaseFactory.createNewDatabaseForDryRun(null, null, cacheLocation, String.valueOf(newTimestamp));
+    } else {
+      dbFile = generateNewProjectDB(projectId, cacheLocation, newTimestamp);
+    }
     LOG.debug("Cached DB at {}", dbFile);
     lastTimestampPerProject.put(notNullProjectId, newTimestamp);
+    deleteOldFiles(cacheLocation, newTimestamp, previousTimestamp);
+  }
+
+  /**
+   * Project databases are built upon a copy of the global database, so that global tables are not
+   * loaded again from the SonarQube database for each project. Global lock is always acquired after project lock.
+   */
+  private File generateNewProjectDB(Long projectId, File cacheLocation, long newTimestamp) {
+    ReadWriteLock globalLock = getLock(0L);
+    File globalDbFile = getDatabaseFileForPreview(null);
+    try {
+      globalLock.readLock().lock();
+      if (!globalDbFile.exists()) {
+        // global database has been regenerated in the meantime
+        globalDbFile = null;
+      }
+      return previewDatabaseFactory.createNewDatabaseForDryRun(projectId, globalDbFile, cacheLocation, String.valueOf(newTimestamp));
+    } finally {
+      globalLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Databases older than the previous one are removed once the new one is available. The previous database is kept
+   * because its file may have been returned by {@link #getDatabaseFileForPreview(Long)} just before the regeneration,
+   * and not be streamed yet. Deletion of files that are still open is retried on next generation.
+   */
+  private void deleteOldFiles(File cacheLocation, long newTimestamp, @Nullable Long previousTimestamp) {
+    File[] files = cacheLocation.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        String name = file.getName();
+        if (!isFileOf(name, newTimestamp) && (previousTimestamp == null || !isFileOf(name, previousTimestamp))) {
+          FileUtils.deleteQuietly(file);
+        }
+      }
+    }
+  }
+
+  private static boolean isFileOf(String filename, long timestamp) {
+    return filename.startsWith(timestamp + ".");
   }
 
   private byte[] fileToByte(File dbFile) {
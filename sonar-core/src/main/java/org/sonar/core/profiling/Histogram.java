@@ -0,0 +1,121 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.profiling;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution of positive values, usually durations in microseconds. As in HdrHistogram, values are counted in
+ * log-linear buckets : each power of two is split into {@link #SUB_BUCKETS} buckets, so the relative error
+ * of percentiles is lower than 1/{@link #SUB_BUCKETS}. Recording a value is lock-free and does not allocate.
+ *
+ * @since 5.0
+ */
+public class Histogram {
+
+  static final int SUB_BUCKET_BITS = 4;
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+  private final AtomicLong max = new AtomicLong(0L);
+
+  public void record(long value) {
+    long v = Math.max(value, 0L);
+    counts.incrementAndGet(bucket(v));
+    count.incrementAndGet();
+    sum.addAndGet(v);
+    long currentMin = min.get();
+    while (v < currentMin && !min.compareAndSet(currentMin, v)) {
+      currentMin = min.get();
+    }
+    long currentMax = max.get();
+    while (v > currentMax && !max.compareAndSet(currentMax, v)) {
+      currentMax = max.get();
+    }
+  }
+
+  public long count() {
+    return count.get();
+  }
+
+  public long min() {
+    return count.get() == 0L ? 0L : min.get();
+  }
+
+  public long max() {
+    return max.get();
+  }
+
+  public double mean() {
+    long c = count.get();
+    return c == 0L ? 0.0 : (double) sum.get() / c;
+  }
+
+  /**
+   * @param percentile between 0 and 100
+   * @return the highest value of the bucket containing the percentile, or 0 if no values are recorded
+   */
+  public long percentile(double percentile) {
+    long total = count.get();
+    if (total == 0L) {
+      return 0L;
+    }
+    long rank = Math.max(1L, (long) Math.ceil(total * Math.min(percentile, 100.0) / 100.0));
+    long cumulated = 0L;
+    for (int index = 0; index < BUCKETS; index++) {
+      cumulated += counts.get(index);
+      if (cumulated >= rank) {
+        return Math.min(highestValue(index), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  static int bucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+    return (shift + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  static long lowestValue(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    long subBucket = bucket % SUB_BUCKETS;
+    return (SUB_BUCKETS + subBucket) << shift;
+  }
+
+  static long highestValue(int bucket) {
+    if (bucket + 1 >= BUCKETS) {
+      return Long.MAX_VALUE;
+    }
+    return lowestValue(bucket + 1) - 1;
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.profiling;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process registry of counters, gauges and latency histograms. It is shared by the components that can't be
+ * injected, like servlet filters or JDBC proxies, hence the singleton. Recording does nothing as long as the registry
+ * is not enabled.
+ * <p/>
+ * The number of metrics of each type is limited to {@link #MAX_METRICS}. Values of the other metrics are
+ * aggregated in the metric {@link #OTHERS}.
+ *
+ * @since 5.0
+ */
+public class MetricsRegistry {
+
+  public static final String ENABLED_PROPERTY = "sonar.metrics.enabled";
+  static final int MAX_METRICS = 1000;
+  static final String OTHERS = "others";
+  private static final long STOPPED = Long.MIN_VALUE;
+
+  private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+  private volatile boolean enabled = false;
+  private final ConcurrentMap<String, AtomicLong> counters = Maps.newConcurrentMap();
+  private final ConcurrentMap<String, Gauge> gauges = Maps.newConcurrentMap();
+  private final ConcurrentMap<String, Histogram> histograms = Maps.newConcurrentMap();
+
+  @VisibleForTesting
+  public MetricsRegistry() {
+    // use get() out of tests
+  }
+
+  public static MetricsRegistry get() {
+    return INSTANCE;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public MetricsRegistry setEnabled(boolean b) {
+    this.enabled = b;
+    return this;
+  }
+
+  public void increment(String name) {
+    if (enabled) {
+      counter(name).incrementAndGet();
+    }
+  }
+
+  public void register(String name, Gauge gauge) {
+    gauges.put(name, gauge);
+  }
+
+  public void unregister(String name) {
+    gauges.remove(name);
+  }
+
+  /**
+   * Records a value, usually a duration in microseconds
+   */
+  public void record(String name, long value) {
+    if (enabled) {
+      histogram(name).record(value);
+    }
+  }
+
+  /**
+   * @return the value to be passed to {@link #stopTimer(String, long)}
+   */
+  public long startTimer() {
+    return enabled ? System.nanoTime() : STOPPED;
+  }
+
+  /**
+   * Records the duration in microseconds since {@link #startTimer()}
+   *
+   * @return the recorded duration, or -1 if the registry is disabled
+   */
+  public long stopTimer(String name, long startValue) {
+    if (startValue != STOPPED && enabled) {
+      long duration = (System.nanoTime() - startValue) / 1000L;
+      histogram(name).record(duration);
+      return duration;
+    }
+    return -1L;
+  }
+
+  public SortedMap<String, Long> counters() {
+    SortedMap<String, Long> result = Maps.newTreeMap();
+    for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().get());
+    }
+    return result;
+  }
+
+  public SortedMap<String, Long> gauges() {
+    SortedMap<String, Long> result = Maps.newTreeMap();
+    for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().value());
+    }
+    return result;
+  }
+
+  public SortedMap<String, Histogram> histograms() {
+    return ImmutableSortedMap.copyOf(histograms);
+  }
+
+  public void reset() {
+    counters.clear();
+    histograms.clear();
+  }
+
+  private AtomicLong counter(String name) {
+    AtomicLong counter = counters.get(name);
+    if (counter == null) {
+      String key = counters.size() < MAX_METRICS ? name : OTHERS;
+      counters.putIfAbsent(key, new AtomicLong());
+      counter = counters.get(key);
+    }
+    return counter;
+  }
+
+  private Histogram histogram(String name) {
+    Histogram histogram = histograms.get(name);
+    if (histogram == null) {
+      String key = histograms.size() < MAX_METRICS ? name : OTHERS;
+      histograms.putIfAbsent(key, new Histogram());
+      histogram = histograms.get(key);
+    }
+    return histogram;
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.properties;
+
+/**
+ * Login of a user subscribed to a notification, with the key of the related property
+ * ("notification.[dispatcher].[channel]").
+ *
+ * @since 5.0
+ */
+public class NotificationSubscriberDto {
+
+  private String login;
+  private String propertyKey;
+
+  public String getLogin() {
+    return login;
+  }
+
+  public NotificationSubscriberDto setLogin(String login) {
+    this.login = login;
+    return this;
+  }
+
+  public String getPropertyKey() {
+    return propertyKey;
+  }
+
+  public NotificationSubscriberDto setPropertyKey(String propertyKey) {
+    this.propertyKey = propertyKey;
+    return this;
+  }
+}
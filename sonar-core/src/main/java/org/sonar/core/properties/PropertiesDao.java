@@ -21,6 +21,10 @@ package org.sonar.core.properties;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
 import org.apache.commons.lang.StringUtils;
 import org.apache.ibatis.session.SqlSession;
 import org.sonar.api.BatchComponent;
@@ -31,6 +35,7 @@ import org.sonar.core.persistence.MyBatis;
 
 import javax.annotation.Nullable;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -72,6 +77,34 @@ public class PropertiesDao implements BatchComponent, ServerComponent, DaoCompon
     }
   }
 
+  /**
+   * Same as {@link #findNotificationSubscribers(String, String, String)} but for all the given channels at once.
+   *
+   * @return logins of subscribers, grouped by channel key
+   */
+  public Multimap<String, String> findNotificationSubscribers(String notificationDispatcherKey, Collection<String> notificationChannelKeys,
+    @Nullable String componentKey) {
+    Multimap<String, String> loginsByChannelKey = HashMultimap.create();
+    if (notificationChannelKeys.isEmpty()) {
+      return loginsByChannelKey;
+    }
+    String propertyKeyPrefix = NOTIFICATION_PREFIX + notificationDispatcherKey + ".";
+    List<String> propertyKeys = Lists.newArrayList();
+    for (String channelKey : notificationChannelKeys) {
+      propertyKeys.add(propertyKeyPrefix + channelKey);
+    }
+    SqlSession session = mybatis.openSession(false);
+    PropertiesMapper mapper = session.getMapper(PropertiesMapper.class);
+    try {
+      for (NotificationSubscriberDto subscriber : mapper.findNotificationSubscribersOfProperties(propertyKeys, componentKey)) {
+        loginsByChannelKey.put(StringUtils.removeStart(subscriber.getPropertyKey(), propertyKeyPrefix), subscriber.getLogin());
+      }
+      return loginsByChannelKey;
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
   public List<PropertyDto> selectGlobalProperties() {
     SqlSession session = mybatis.openSession(false);
     try {
@@ -108,6 +141,22 @@ public class PropertiesDao implements BatchComponent, ServerComponent, DaoCompon
     }
   }
 
+  /**
+   * Properties of the given components, grouped by component id. Properties of users are excluded.
+   *
+   * @since 5.0
+   */
+  public Multimap<Long, PropertyDto> selectProjectPropertiesByResourceIds(Collection<Long> resourceIds, SqlSession session) {
+    Multimap<Long, PropertyDto> propertiesByResourceId = ArrayListMultimap.create();
+    PropertiesMapper mapper = session.getMapper(PropertiesMapper.class);
+    for (List<Long> partition : Lists.partition(Lists.newArrayList(resourceIds), 1000)) {
+      for (PropertyDto property : mapper.selectProjectPropertiesByResourceIds(partition)) {
+        propertiesByResourceId.put(property.getResourceId(), property);
+      }
+    }
+    return propertiesByResourceId;
+  }
+
   public PropertyDto selectProjectProperty(long resourceId, String propertyKey) {
     SqlSession session = mybatis.openSession(false);
     PropertiesMapper mapper = session.getMapper(PropertiesMapper.class);
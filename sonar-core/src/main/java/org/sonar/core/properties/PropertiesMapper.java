@@ -31,10 +31,15 @@ public interface PropertiesMapper {
 
   List<String> findNotificationSubscribers(@Param("propKey") String propertyKey, @Nullable @Param("componentKey") String componentKey);
 
+  List<NotificationSubscriberDto> findNotificationSubscribersOfProperties(@Param("propKeys") List<String> propertyKeys,
+    @Nullable @Param("componentKey") String componentKey);
+
   List<PropertyDto> selectGlobalProperties();
 
   List<PropertyDto> selectProjectProperties(String resourceKey);
 
+  List<PropertyDto> selectProjectPropertiesByResourceIds(@Param("resourceIds") List<Long> resourceIds);
+
   List<PropertyDto> selectSetOfResourceProperties(@Param("rId") Long projectId, @Param("propKeys") List<String> propertyKeys);
 
   PropertyDto selectByKey(PropertyDto key);
@@ -31,4 +31,11 @@ public interface SnapshotDataTypes {
    * @since 4.0
    */
   String FILE_HASHES = "file_hashes";
+
+  /**
+   * Source, SCM, coverage and highlighting data of a file, grouped by line in a compressed binary format
+   * encoded in Base64. See {@link SourceLinesEncoder}.
+   * @since 5.0
+   */
+  String SOURCE_LINES = "source_lines";
 }
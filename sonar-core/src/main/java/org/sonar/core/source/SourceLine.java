@@ -0,0 +1,139 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.source;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+/**
+ * Data of a single line of a file, as stored by {@link SourceLinesEncoder}. Offsets of syntax
+ * highlighting and symbols are relative to the beginning of the line.
+ *
+ * @since 5.0
+ */
+public class SourceLine {
+
+  private final int line;
+  private String source = "";
+  private String scmAuthor;
+  private String scmDate;
+  private Integer lineHits;
+  private Integer conditions;
+  private Integer coveredConditions;
+  private String highlighting;
+  private String symbols;
+
+  public SourceLine(int line) {
+    this.line = line;
+  }
+
+  public int getLine() {
+    return line;
+  }
+
+  public String getSource() {
+    return source;
+  }
+
+  public SourceLine setSource(String source) {
+    this.source = source;
+    return this;
+  }
+
+  @CheckForNull
+  public String getScmAuthor() {
+    return scmAuthor;
+  }
+
+  public SourceLine setScmAuthor(@Nullable String scmAuthor) {
+    this.scmAuthor = scmAuthor;
+    return this;
+  }
+
+  /**
+   * Date-time as formatted in the measure {@link org.sonar.api.measures.CoreMetrics#SCM_LAST_COMMIT_DATETIMES_BY_LINE}
+   */
+  @CheckForNull
+  public String getScmDate() {
+    return scmDate;
+  }
+
+  public SourceLine setScmDate(@Nullable String scmDate) {
+    this.scmDate = scmDate;
+    return this;
+  }
+
+  @CheckForNull
+  public Integer getLineHits() {
+    return lineHits;
+  }
+
+  public SourceLine setLineHits(@Nullable Integer lineHits) {
+    this.lineHits = lineHits;
+    return this;
+  }
+
+  @CheckForNull
+  public Integer getConditions() {
+    return conditions;
+  }
+
+  public SourceLine setConditions(@Nullable Integer conditions) {
+    this.conditions = conditions;
+    return this;
+  }
+
+  @CheckForNull
+  public Integer getCoveredConditions() {
+    return coveredConditions;
+  }
+
+  public SourceLine setCoveredConditions(@Nullable Integer coveredConditions) {
+    this.coveredConditions = coveredConditions;
+    return this;
+  }
+
+  /**
+   * Syntax highlighting rules of the line, formatted as "startOffset,endOffset,cssClass;"
+   */
+  @CheckForNull
+  public String getHighlighting() {
+    return highlighting;
+  }
+
+  public SourceLine setHighlighting(@Nullable String highlighting) {
+    this.highlighting = highlighting;
+    return this;
+  }
+
+  /**
+   * Symbol occurrences of the line, formatted as "startOffset,endOffset,symbolId;". The symbol id is
+   * the offset of the symbol declaration in the file.
+   */
+  @CheckForNull
+  public String getSymbols() {
+    return symbols;
+  }
+
+  public SourceLine setSymbols(@Nullable String symbols) {
+    this.symbols = symbols;
+    return this;
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.source;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import org.apache.commons.codec.binary.Base64;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads the data written by {@link SourceLinesEncoder}. Only the blocks containing the requested
+ * lines are uncompressed.
+ *
+ * @since 5.0
+ */
+public class SourceLinesDecoder {
+
+  static final Charset CHARSET = Charsets.UTF_8;
+
+  private final byte[] data;
+  private final int lineCount;
+  private final int linesPerBlock;
+  private final int[] blockOffsets;
+  private final int[] blockSizes;
+
+  public SourceLinesDecoder(byte[] data) {
+    this.data = data;
+    try {
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+      byte version = input.readByte();
+      if (version != SourceLinesEncoder.VERSION) {
+        throw new IllegalStateException("Unsupported version of source lines: " + version);
+      }
+      lineCount = input.readInt();
+      linesPerBlock = input.readInt();
+      int blockCount = input.readInt();
+      blockSizes = new int[blockCount];
+      blockOffsets = new int[blockCount];
+      for (int block = 0; block < blockCount; block++) {
+        blockSizes[block] = input.readInt();
+      }
+      // version, line count, lines per block, block count and block sizes
+      int offset = 1 + 4 + 4 + 4 + 4 * blockCount;
+      for (int block = 0; block < blockCount; block++) {
+        blockOffsets[block] = offset;
+        offset += blockSizes[block];
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read header of source lines", e);
+    }
+  }
+
+  public static SourceLinesDecoder fromString(String base64) {
+    return new SourceLinesDecoder(Base64.decodeBase64(base64));
+  }
+
+  public int lineCount() {
+    return lineCount;
+  }
+
+  /**
+   * @param from first line, starting from 1. If null, then lines are returned from the beginning of the file.
+   * @param to last line, inclusive. If null, then lines are returned until the end of the file.
+   */
+  public List<SourceLine> decode(@Nullable Integer from, @Nullable Integer to) {
+    int first = from == null ? 1 : Math.max(1, from);
+    int last = to == null ? lineCount : Math.min(lineCount, to);
+    if (first > last) {
+      return Collections.emptyList();
+    }
+    List<SourceLine> result = Lists.newArrayListWithCapacity(last - first + 1);
+    try {
+      for (int block = (first - 1) / linesPerBlock; block <= (last - 1) / linesPerBlock; block++) {
+        decodeBlock(block, first, last, result);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read source lines", e);
+    }
+    return result;
+  }
+
+  private void decodeBlock(int block, int first, int last, List<SourceLine> result) throws IOException {
+    DataInputStream input = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data, blockOffsets[block], blockSizes[block])));
+    try {
+      int line = block * linesPerBlock + 1;
+      int blockLast = Math.min(last, (block + 1) * linesPerBlock);
+      while (line <= blockLast) {
+        SourceLine sourceLine = new SourceLine(line)
+          .setSource(readString(input))
+          .setScmAuthor(readString(input))
+          .setScmDate(readString(input))
+          .setLineHits(readInt(input))
+          .setConditions(readInt(input))
+          .setCoveredConditions(readInt(input))
+          .setHighlighting(readString(input))
+          .setSymbols(readString(input));
+        if (line >= first) {
+          result.add(sourceLine);
+        }
+        line++;
+      }
+    } finally {
+      input.close();
+    }
+  }
+
+  @CheckForNull
+  private static String readString(DataInputStream input) throws IOException {
+    int length = input.readInt();
+    if (length == SourceLinesEncoder.NULL_VALUE) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    input.readFully(bytes);
+    return new String(bytes, CHARSET);
+  }
+
+  @CheckForNull
+  private static Integer readInt(DataInputStream input) throws IOException {
+    int i = input.readInt();
+    return i == SourceLinesEncoder.NULL_VALUE ? null : i;
+  }
+}
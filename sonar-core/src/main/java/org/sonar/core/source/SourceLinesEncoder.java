@@ -0,0 +1,294 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.source;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.utils.IntKeyValues;
+import org.sonar.api.utils.KeyValueFormat;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Groups all the line-oriented data of a file in a single compact blob, so that a range of lines
+ * can be read without parsing the whole file. Format is :
+ * <ul>
+ *   <li>header : version (byte), number of lines (int), lines per block (int), number of blocks (int),
+ *   then the size of each block (int)</li>
+ *   <li>blocks of {@link #LINES_PER_BLOCK} lines, each of them being compressed with Deflate</li>
+ * </ul>
+ * Read by {@link SourceLinesDecoder}.
+ *
+ * @since 5.0
+ */
+public class SourceLinesEncoder {
+
+  static final byte VERSION = 3;
+  static final int LINES_PER_BLOCK = 100;
+  static final int NULL_VALUE = -1;
+
+  private final List<SourceLine> lines = Lists.newArrayList();
+  private final int[] lineStartOffsets;
+
+  public SourceLinesEncoder(String source) {
+    List<Integer> starts = Lists.newArrayList();
+    int lineStart = 0;
+    int length = source.length();
+    int i = 0;
+    while (i < length) {
+      char c = source.charAt(i);
+      if (c == '\n' || c == '\r') {
+        addLine(source.substring(lineStart, i));
+        starts.add(lineStart);
+        if (c == '\r' && i + 1 < length && source.charAt(i + 1) == '\n') {
+          i++;
+        }
+        lineStart = i + 1;
+      }
+      i++;
+    }
+    addLine(source.substring(lineStart));
+    starts.add(lineStart);
+
+    lineStartOffsets = new int[starts.size()];
+    for (int index = 0; index < lineStartOffsets.length; index++) {
+      lineStartOffsets[index] = starts.get(index);
+    }
+  }
+
+  private void addLine(String source) {
+    lines.add(new SourceLine(lines.size() + 1).setSource(source));
+  }
+
+  public int lineCount() {
+    return lines.size();
+  }
+
+  public SourceLinesEncoder setScmAuthors(@Nullable String data) {
+    for (Map.Entry<Integer, String> entry : parseIntString(data).entrySet()) {
+      SourceLine line = line(entry.getKey());
+      if (line != null) {
+        line.setScmAuthor(entry.getValue());
+      }
+    }
+    return this;
+  }
+
+  public SourceLinesEncoder setScmDates(@Nullable String data) {
+    for (Map.Entry<Integer, String> entry : parseIntString(data).entrySet()) {
+      SourceLine line = line(entry.getKey());
+      if (line != null) {
+        line.setScmDate(entry.getValue());
+      }
+    }
+    return this;
+  }
+
+  public SourceLinesEncoder setLineHits(@Nullable String data) {
+    IntKeyValues values = KeyValueFormat.parseIntIntValues(data);
+    for (int index = 0; index < values.size(); index++) {
+      SourceLine line = line(values.keyAt(index));
+      if (line != null) {
+        line.setLineHits(values.intValueAt(index));
+      }
+    }
+    return this;
+  }
+
+  public SourceLinesEncoder setConditions(@Nullable String data) {
+    IntKeyValues values = KeyValueFormat.parseIntIntValues(data);
+    for (int index = 0; index < values.size(); index++) {
+      SourceLine line = line(values.keyAt(index));
+      if (line != null) {
+        line.setConditions(values.intValueAt(index));
+      }
+    }
+    return this;
+  }
+
+  public SourceLinesEncoder setCoveredConditions(@Nullable String data) {
+    IntKeyValues values = KeyValueFormat.parseIntIntValues(data);
+    for (int index = 0; index < values.size(); index++) {
+      SourceLine line = line(values.keyAt(index));
+      if (line != null) {
+        line.setCoveredConditions(values.intValueAt(index));
+      }
+    }
+    return this;
+  }
+
+  /**
+   * @param data rules "startOffset,endOffset,cssClass;" where offsets are relative to the beginning of the file.
+   *             Rules spanning several lines are split.
+   */
+  public SourceLinesEncoder setSyntaxHighlighting(@Nullable String data) {
+    if (StringUtils.isEmpty(data)) {
+      return this;
+    }
+    StringBuilder[] rulesByLine = new StringBuilder[lines.size()];
+    for (String rule : StringUtils.split(data, ';')) {
+      String[] fields = StringUtils.split(rule, ',');
+      int start = Integer.parseInt(fields[0]);
+      int end = Integer.parseInt(fields[1]);
+      for (int index = lineIndex(start); index < lines.size() && lineStartOffsets[index] < end; index++) {
+        int lineStart = lineStartOffsets[index];
+        int localStart = Math.max(start, lineStart) - lineStart;
+        int localEnd = Math.min(end - lineStart, lines.get(index).getSource().length());
+        if (localEnd > localStart) {
+          append(rulesByLine, index, localStart, localEnd, fields[2]);
+        }
+      }
+    }
+    for (int index = 0; index < rulesByLine.length; index++) {
+      if (rulesByLine[index] != null) {
+        lines.get(index).setHighlighting(rulesByLine[index].toString());
+      }
+    }
+    return this;
+  }
+
+  /**
+   * @param data symbols "declarationStartOffset,declarationEndOffset,occurrenceOffset1,occurrenceOffset2...;"
+   *             where offsets are relative to the beginning of the file.
+   */
+  public SourceLinesEncoder setSymbols(@Nullable String data) {
+    if (StringUtils.isEmpty(data)) {
+      return this;
+    }
+    StringBuilder[] symbolsByLine = new StringBuilder[lines.size()];
+    for (String symbol : StringUtils.split(data, ';')) {
+      String[] fields = StringUtils.split(symbol, ',');
+      String declarationStart = fields[0];
+      int symbolLength = Integer.parseInt(fields[1]) - Integer.parseInt(declarationStart);
+      for (String occurrence : Arrays.copyOfRange(fields, 2, fields.length)) {
+        int start = Integer.parseInt(occurrence);
+        int index = lineIndex(start);
+        int localStart = start - lineStartOffsets[index];
+        append(symbolsByLine, index, localStart, localStart + symbolLength, declarationStart);
+      }
+    }
+    for (int index = 0; index < symbolsByLine.length; index++) {
+      if (symbolsByLine[index] != null) {
+        lines.get(index).setSymbols(symbolsByLine[index].toString());
+      }
+    }
+    return this;
+  }
+
+  public byte[] encode() {
+    try {
+      int blockCount = (lines.size() + LINES_PER_BLOCK - 1) / LINES_PER_BLOCK;
+      List<byte[]> blocks = Lists.newArrayListWithCapacity(blockCount);
+      for (int block = 0; block < blockCount; block++) {
+        blocks.add(encodeBlock(lines.subList(block * LINES_PER_BLOCK, Math.min(lines.size(), (block + 1) * LINES_PER_BLOCK))));
+      }
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(bytes);
+      output.writeByte(VERSION);
+      output.writeInt(lines.size());
+      output.writeInt(LINES_PER_BLOCK);
+      output.writeInt(blockCount);
+      for (byte[] block : blocks) {
+        output.writeInt(block.length);
+      }
+      for (byte[] block : blocks) {
+        output.write(block);
+      }
+      output.close();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to encode source lines", e);
+    }
+  }
+
+  /**
+   * Base64 version of {@link #encode()}, to be stored in a text column
+   */
+  public String encodeToString() {
+    return Base64.encodeBase64String(encode());
+  }
+
+  private static byte[] encodeBlock(List<SourceLine> blockLines) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(new DeflaterOutputStream(bytes));
+    for (SourceLine line : blockLines) {
+      writeString(output, line.getSource());
+      writeString(output, line.getScmAuthor());
+      writeString(output, line.getScmDate());
+      writeInt(output, line.getLineHits());
+      writeInt(output, line.getConditions());
+      writeInt(output, line.getCoveredConditions());
+      writeString(output, line.getHighlighting());
+      writeString(output, line.getSymbols());
+    }
+    output.close();
+    return bytes.toByteArray();
+  }
+
+  private static void writeString(DataOutputStream output, @Nullable String s) throws IOException {
+    if (s == null) {
+      output.writeInt(NULL_VALUE);
+    } else {
+      byte[] bytes = s.getBytes(SourceLinesDecoder.CHARSET);
+      output.writeInt(bytes.length);
+      output.write(bytes);
+    }
+  }
+
+  private static void writeInt(DataOutputStream output, @Nullable Integer i) throws IOException {
+    output.writeInt(i == null ? NULL_VALUE : i);
+  }
+
+  @CheckForNull
+  private SourceLine line(int line) {
+    if (line >= 1 && line <= lines.size()) {
+      return lines.get(line - 1);
+    }
+    return null;
+  }
+
+  private int lineIndex(int offset) {
+    int index = Arrays.binarySearch(lineStartOffsets, offset);
+    return index >= 0 ? index : Math.max(0, -index - 2);
+  }
+
+  private static void append(StringBuilder[] entriesByLine, int index, int start, int end, String value) {
+    if (entriesByLine[index] == null) {
+      entriesByLine[index] = new StringBuilder();
+    }
+    entriesByLine[index].append(start).append(',').append(end).append(',').append(value).append(';');
+  }
+
+  private static Map<Integer, String> parseIntString(@Nullable String data) {
+    return data == null ? Collections.<Integer, String>emptyMap() : KeyValueFormat.parseIntString(data);
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.source.db;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import org.apache.commons.codec.binary.Base64;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Format of the column snapshot_sources.data. Large sources are stored gzipped and Base64-encoded,
+ * with the prefix {@link #GZIP_PREFIX}. Other values, including the ones stored by previous
+ * versions, are the plain source.
+ * @since 5.0
+ */
+public final class SnapshotSourceCodec {
+
+  static final String GZIP_PREFIX = "#sonar-gzip:";
+
+  /**
+   * Sources smaller than this number of characters are not worth being compressed
+   */
+  static final int MIN_COMPRESSED_LENGTH = 512;
+
+  private SnapshotSourceCodec() {
+    // only static methods
+  }
+
+  @CheckForNull
+  public static String encode(@Nullable String source) {
+    if (source == null || (source.length() < MIN_COMPRESSED_LENGTH && !source.startsWith(GZIP_PREFIX))) {
+      return source;
+    }
+    String compressed = GZIP_PREFIX + Base64.encodeBase64String(gzip(source));
+    // a plain source starting with the prefix must be compressed to be decoded as is
+    return compressed.length() < source.length() || source.startsWith(GZIP_PREFIX) ? compressed : source;
+  }
+
+  @CheckForNull
+  public static String decode(@Nullable String data) {
+    if (data == null || !data.startsWith(GZIP_PREFIX)) {
+      return data;
+    }
+    return gunzip(Base64.decodeBase64(data.substring(GZIP_PREFIX.length())));
+  }
+
+  private static byte[] gzip(String source) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(source.length() / 4);
+      GZIPOutputStream output = new GZIPOutputStream(bytes);
+      output.write(source.getBytes(Charsets.UTF_8));
+      output.close();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to compress source", e);
+    }
+  }
+
+  private static String gunzip(byte[] bytes) {
+    try {
+      GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(bytes));
+      try {
+        return new String(ByteStreams.toByteArray(input), Charsets.UTF_8);
+      } finally {
+        input.close();
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to decompress source", e);
+    }
+  }
+}
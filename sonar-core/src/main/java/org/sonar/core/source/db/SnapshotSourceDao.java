@@ -20,13 +20,20 @@
 
 package org.sonar.core.source.db;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.ibatis.session.SqlSession;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.ServerComponent;
+import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 
 import javax.annotation.CheckForNull;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
 /**
  * @since 3.6
  */
@@ -43,18 +50,26 @@ public class SnapshotSourceDao implements BatchComponent, ServerComponent {
     SqlSession session = mybatis.openSession(false);
 
     try {
-      SnapshotSourceMapper mapper = session.getMapper(SnapshotSourceMapper.class);
-      return mapper.selectSnapshotSource(snapshotId);
+      return selectSnapshotSource(snapshotId, session);
 
     } finally {
       MyBatis.closeQuietly(session);
     }
   }
 
+  /**
+   * @since 5.0
+   */
+  @CheckForNull
+  public String selectSnapshotSource(long snapshotId, SqlSession session) {
+    SnapshotSourceMapper mapper = session.getMapper(SnapshotSourceMapper.class);
+    return SnapshotSourceCodec.decode(mapper.selectSnapshotSource(snapshotId));
+  }
+
   @CheckForNull
   public String selectSnapshotSourceByComponentKey(String componentKey, SqlSession session) {
     SnapshotSourceMapper mapper = session.getMapper(SnapshotSourceMapper.class);
-    return mapper.selectSnapshotSourceByComponentKey(componentKey);
+    return SnapshotSourceCodec.decode(mapper.selectSnapshotSourceByComponentKey(componentKey));
   }
 
   @CheckForNull
@@ -67,14 +82,64 @@ public class SnapshotSourceDao implements BatchComponent, ServerComponent {
     }
   }
 
+  /**
+   * Last sources of the given components, by component key. Components without source are not returned.
+   * @since 5.0
+   */
+  public Map<String, String> selectSnapshotSourcesByComponentKeys(Collection<String> componentKeys) {
+    Map<String, String> sources = Maps.newHashMap();
+    if (componentKeys.isEmpty()) {
+      return sources;
+    }
+    SqlSession session = mybatis.openSession(false);
+    try {
+      SnapshotSourceMapper mapper = session.getMapper(SnapshotSourceMapper.class);
+      List<List<String>> partitions = Lists.partition(Lists.newArrayList(componentKeys), 1000);
+      for (List<String> partition : partitions) {
+        for (SnapshotSourceDto dto : mapper.selectSnapshotSourcesByComponentKeys(partition)) {
+          sources.put(dto.getComponentKey(), SnapshotSourceCodec.decode(dto.getData()));
+        }
+      }
+      return sources;
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
   public void insert(SnapshotSourceDto dto) {
     SqlSession session = mybatis.openSession(false);
     try {
-      session.getMapper(SnapshotSourceMapper.class).insert(dto);
+      session.getMapper(SnapshotSourceMapper.class).insert(encode(dto));
       session.commit();
     } finally {
       MyBatis.closeQuietly(session);
     }
   }
 
+  /**
+   * Inserts the sources through JDBC batches
+   * @since 5.0
+   */
+  public void insert(Collection<SnapshotSourceDto> dtos) {
+    if (dtos.isEmpty()) {
+      return;
+    }
+    DbSession session = mybatis.openSession(true);
+    try {
+      SnapshotSourceMapper mapper = session.getMapper(SnapshotSourceMapper.class);
+      for (SnapshotSourceDto dto : dtos) {
+        mapper.insert(encode(dto));
+      }
+      session.commit();
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  private static SnapshotSourceDto encode(SnapshotSourceDto dto) {
+    return new SnapshotSourceDto()
+      .setSnapshotId(dto.getSnapshotId())
+      .setData(SnapshotSourceCodec.encode(dto.getData()));
+  }
+
 }
@@ -23,6 +23,7 @@ public class SnapshotSourceDto {
   private Long id;
   private Long snapshotId;
   private String data;
+  private String componentKey;
 
   public Long getId() {
     return id;
@@ -50,4 +51,17 @@ public class SnapshotSourceDto {
     this.data = data;
     return this;
   }
+
+  /**
+   * Only loaded by {@link SnapshotSourceDao#selectSnapshotSourcesByComponentKeys(java.util.Collection)}
+   * @since 5.0
+   */
+  public String getComponentKey() {
+    return componentKey;
+  }
+
+  public SnapshotSourceDto setComponentKey(String componentKey) {
+    this.componentKey = componentKey;
+    return this;
+  }
 }
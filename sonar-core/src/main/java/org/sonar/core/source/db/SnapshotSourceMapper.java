@@ -20,8 +20,12 @@
 
 package org.sonar.core.source.db;
 
+import org.apache.ibatis.annotations.Param;
+
 import javax.annotation.CheckForNull;
 
+import java.util.List;
+
 /**
  * @since 3.6
  */
@@ -33,5 +37,7 @@ public interface SnapshotSourceMapper {
   @CheckForNull
   String selectSnapshotSourceByComponentKey(String componentKey);
 
+  List<SnapshotSourceDto> selectSnapshotSourcesByComponentKeys(@Param("componentKeys") List<String> componentKeys);
+
   void insert(SnapshotSourceDto dto);
 }
@@ -26,6 +26,7 @@ import org.apache.ibatis.session.SqlSession;
 import org.junit.Test;
 import org.sonar.core.persistence.AbstractDaoTestCase;
 import org.sonar.core.persistence.MyBatis;
+import org.sonar.core.resource.ResourceDto;
 
 import java.util.List;
 
@@ -57,4 +58,31 @@ public class DependencyMapperTest extends AbstractDaoTestCase {
     assertThat(dep.getToSnapshotId()).isEqualTo(1001L);
     assertThat(dep.getUsage()).isEqualTo("compile");
   }
+
+  @Test
+  public void select_children_and_dependencies_between_them() {
+    setupData("children");
+
+    SqlSession session = getMyBatis().openSession();
+    try {
+      DependencyMapper mapper = session.getMapper(DependencyMapper.class);
+
+      List<ResourceDto> children = mapper.selectChildrenComponents(10L);
+      assertThat(children).hasSize(2);
+      assertThat(children.get(0).getId()).isEqualTo(2L);
+      assertThat(children.get(0).getName()).isEqualTo("Action.java");
+      assertThat(children.get(0).getQualifier()).isEqualTo("FIL");
+      assertThat(children.get(1).getId()).isEqualTo(3L);
+
+      List<DependencyDto> dependencies = mapper.selectBetweenChildren(10L);
+      assertThat(dependencies).hasSize(1);
+      DependencyDto dep = dependencies.get(0);
+      assertThat(dep.getId()).isEqualTo(1L);
+      assertThat(dep.getFromResourceId()).isEqualTo(2L);
+      assertThat(dep.getToResourceId()).isEqualTo(3L);
+      assertThat(dep.getWeight()).isEqualTo(3);
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
 }
@@ -0,0 +1,99 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.i18n;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.platform.PluginRepository;
+
+import java.text.MessageFormat;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Compares the message tables of {@link DefaultI18n} with the previous implementation, which looked up
+ * the resource bundle and compiled the format on each call. It's not executed by unit tests. Run it with
+ * the main method from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DefaultI18nBenchmark {
+
+  private static final String BUNDLE = DefaultI18n.BUNDLE_PACKAGE + "core";
+
+  DefaultI18n i18n;
+  ClassLoader classloader;
+  ResourceBundle.Control control;
+
+  @Setup
+  public void setUp() {
+    classloader = getClass().getClassLoader();
+    i18n = new DefaultI18n(mock(PluginRepository.class));
+    i18n.doStart(classloader);
+    control = new ResourceBundle.Control() {
+      @Override
+      public Locale getFallbackLocale(String baseName, Locale locale) {
+        return locale.equals(Locale.ENGLISH) ? null : Locale.ENGLISH;
+      }
+    };
+  }
+
+  @Benchmark
+  public String message() {
+    return i18n.message(Locale.FRENCH, "any", null);
+  }
+
+  @Benchmark
+  public String bundleLookup() {
+    return ResourceBundle.getBundle(BUNDLE, Locale.FRENCH, classloader, control).getString("any");
+  }
+
+  @Benchmark
+  public String messageWithParameters() {
+    return i18n.message(Locale.ENGLISH, "name_too_long_x", null, "10");
+  }
+
+  @Benchmark
+  public String bundleLookupAndFormat() {
+    String value = ResourceBundle.getBundle(BUNDLE, Locale.ENGLISH, classloader, control).getString("name_too_long_x");
+    return MessageFormat.format(value.replaceAll("'", "''"), "10");
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+      .include(DefaultI18nBenchmark.class.getSimpleName())
+      .warmupIterations(5)
+      .measurementIterations(10)
+      .forks(1)
+      .build()).run();
+  }
+}
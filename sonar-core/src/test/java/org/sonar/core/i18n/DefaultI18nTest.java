@@ -29,11 +29,13 @@ import org.sonar.api.platform.PluginRepository;
 import org.sonar.api.utils.DateUtils;
 import org.sonar.api.utils.System2;
 
+import java.io.InputStream;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -133,6 +135,39 @@ public class DefaultI18nTest {
     assertThat(manager.message(Locale.ENGLISH, "name_too_long_x", null, "10")).isEqualTo("Name is too long (maximum is 10 characters)");
   }
 
+  @Test
+  public void do_not_consider_quotes_as_escape_characters() {
+    assertThat(manager.message(Locale.ENGLISH, "unknown", "It's {0}", "done")).isEqualTo("It's done");
+  }
+
+  @Test
+  public void format_message_with_parameters_several_times() {
+    assertThat(manager.message(Locale.ENGLISH, "name_too_long_x", null, "10")).isEqualTo("Name is too long (maximum is 10 characters)");
+    assertThat(manager.message(Locale.ENGLISH, "name_too_long_x", null, "20")).isEqualTo("Name is too long (maximum is 20 characters)");
+    assertThat(manager.message(Locale.ENGLISH, "name_too_long_x", null)).isEqualTo("Name is too long (maximum is {0} characters)");
+  }
+
+  @Test
+  public void keep_message_tables_by_locale() {
+    MessageTable french = manager.messageTable(Locale.FRENCH);
+
+    assertThat(manager.messageTable(Locale.FRENCH)).isSameAs(french);
+    assertThat(manager.messageTable(Locale.ENGLISH)).isNotSameAs(french);
+    assertThat(french.size()).isEqualTo(manager.getPropertyKeys().size());
+  }
+
+  @Test
+  public void do_not_build_message_tables_of_too_many_locales() {
+    for (int i = 0; i < DefaultI18n.MAX_LOCALES; i++) {
+      manager.messageTable(new Locale("l" + i));
+    }
+    Locale locale = new Locale("fr", "BE");
+    assertThat(manager.messageTable(locale)).isNull();
+    assertThat(manager.message(locale, "any", null)).isEqualTo("Tous");
+    assertThat(manager.message(locale, "assignee", null)).isEqualTo("Assignee");
+    assertThat(manager.message(locale, "unknown", "It's {0}", "done")).isEqualTo("It's done");
+  }
+
   @Test
   public void use_default_locale_if_missing_value_in_localized_bundle() {
     assertThat(manager.message(Locale.FRENCH, "assignee", null)).isEqualTo("Assignee");
@@ -145,6 +180,27 @@ public class DefaultI18nTest {
     assertThat(html).isNull();
   }
 
+  @Test
+  public void load_file_once() {
+    final AtomicInteger loads = new AtomicInteger();
+    ClassLoader classloader = new ClassLoader(getClass().getClassLoader()) {
+      @Override
+      public InputStream getResourceAsStream(String name) {
+        if (name.endsWith(".html")) {
+          loads.incrementAndGet();
+        }
+        return super.getResourceAsStream(name);
+      }
+    };
+    manager.doStart(classloader);
+
+    assertThat(manager.messageFromFile(Locale.ENGLISH, "rule1.html", "checkstyle.rule1.name")).contains("Description of rule one");
+    assertThat(manager.messageFromFile(Locale.ENGLISH, "rule1.html", "checkstyle.rule1.name")).contains("Description of rule one");
+    assertThat(manager.messageFromFile(Locale.ENGLISH, "UnknownRule.html", "checkstyle.rule1.name")).isNull();
+    assertThat(manager.messageFromFile(Locale.ENGLISH, "UnknownRule.html", "checkstyle.rule1.name")).isNull();
+    assertThat(loads.get()).isEqualTo(2);
+  }
+
   @Test
   public void return_null_if_rule_not_internationalized() {
     String html = manager.messageFromFile(Locale.ENGLISH, "UnknownRule.html", "foo.rule1.name");
@@ -19,8 +19,10 @@
  */
 package org.sonar.core.notification;
 
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InOrder;
@@ -109,6 +111,35 @@ public class DefaultNotificationManagerTest extends AbstractDbUnitTestCase {
     inOrder.verify(notificationQueueDao).delete(dtos);
   }
 
+  @Test
+  public void shouldGetBatchFromQueueAndDelete() throws Exception {
+    NotificationQueueDto dto1 = NotificationQueueDto.toNotificationQueueDto(new Notification("test1"));
+    NotificationQueueDto dto2 = NotificationQueueDto.toNotificationQueueDto(new Notification("test2"));
+    List<NotificationQueueDto> dtos = Arrays.asList(dto1, dto2);
+    when(notificationQueueDao.findOldest(10)).thenReturn(dtos);
+
+    List<Notification> notifications = manager.getFromQueue(10);
+    assertThat(notifications).hasSize(2);
+    assertThat(notifications.get(0).getType()).isEqualTo("test1");
+    assertThat(notifications.get(1).getType()).isEqualTo("test2");
+
+    InOrder inOrder = inOrder(notificationQueueDao);
+    inOrder.verify(notificationQueueDao).findOldest(10);
+    inOrder.verify(notificationQueueDao).delete(dtos);
+  }
+
+  @Test
+  public void shouldIgnoreUnreadableNotificationsOfBatch() throws Exception {
+    NotificationQueueDto dto1 = mock(NotificationQueueDto.class);
+    when(dto1.toNotification()).thenThrow(new InvalidClassException("Pouet"));
+    NotificationQueueDto dto2 = NotificationQueueDto.toNotificationQueueDto(new Notification("test2"));
+    when(notificationQueueDao.findOldest(10)).thenReturn(Arrays.asList(dto1, dto2));
+
+    List<Notification> notifications = manager.getFromQueue(10);
+    assertThat(notifications).hasSize(1);
+    assertThat(notifications.get(0).getType()).isEqualTo("test2");
+  }
+
   // SONAR-4739
   @Test
   public void shouldNotFailWhenUnableToDeserialize() throws Exception {
@@ -167,8 +198,10 @@ public class DefaultNotificationManagerTest extends AbstractDbUnitTestCase {
 
   @Test
   public void findNotificationSubscribers() {
-    when(propertiesDao.findNotificationSubscribers("NewViolations", "Email", "struts")).thenReturn(Lists.newArrayList("user1", "user2"));
-    when(propertiesDao.findNotificationSubscribers("NewViolations", "Twitter", "struts")).thenReturn(Lists.newArrayList("user2"));
+    Multimap<String, String> loginsByChannel = HashMultimap.create();
+    loginsByChannel.putAll("Email", Arrays.asList("user1", "user2"));
+    loginsByChannel.put("Twitter", "user2");
+    when(propertiesDao.findNotificationSubscribers("NewViolations", Sets.newHashSet("Email", "Twitter"), "struts")).thenReturn(loginsByChannel);
 
     Multimap<String, NotificationChannel> multiMap = manager.findNotificationSubscribers(dispatcher, "struts");
     assertThat(multiMap.entries()).hasSize(3);
@@ -91,6 +91,21 @@ public class PreviewDatabaseFactoryTest extends AbstractDaoTestCase {
     assertThat(countRows("events")).isEqualTo(2);
   }
 
+  @Test
+  public void should_create_project_database_from_global_database() throws Exception {
+    setupData("should_create_database");
+
+    File globalDb = localDatabaseFactory.createNewDatabaseForDryRun(null, temporaryFolder.newFolder(), "global");
+    File projectDb = localDatabaseFactory.createNewDatabaseForDryRun(123L, globalDb, temporaryFolder.newFolder(), "foo");
+    dataSource = createDatabase(FileUtils.readFileToByteArray(projectDb));
+
+    assertThat(countRows("users")).isEqualTo(3);
+    assertThat(countRows("projects")).isEqualTo(1);
+    assertThat(countRows("events")).isEqualTo(2);
+    // global database is not modified
+    assertThat(globalDb).exists();
+  }
+
   @Test
   public void should_create_database_with_issues() throws Exception {
     setupData("should_create_database_with_issues");
@@ -87,10 +87,10 @@ public class PreviewCacheTest {
 
   @Test
   public void test_getDatabaseForDryRun_on_new_project() throws Exception {
-    when(dryRunDatabaseFactory.createNewDatabaseForDryRun(isNull(Long.class), any(File.class), anyString())).thenAnswer(new Answer<File>() {
+    when(dryRunDatabaseFactory.createNewDatabaseForDryRun(isNull(Long.class), isNull(File.class), any(File.class), anyString())).thenAnswer(new Answer<File>() {
       public File answer(InvocationOnMock invocation) throws IOException {
         Object[] args = invocation.getArguments();
-        File dbFile = new File(new File(dryRunCacheLocation, "default"), (String) args[2] + ".h2.db");
+        File dbFile = new File(new File(dryRunCacheLocation, "default"), (String) args[3] + ".h2.db");
         FileUtils.write(dbFile, "fake db content");
         return dbFile;
       }
@@ -101,36 +101,59 @@ public class PreviewCacheTest {
     dbContent = dryRunCache.getDatabaseForPreview(null);
     assertThat(new String(dbContent)).isEqualTo("fake db content");
 
-    verify(dryRunDatabaseFactory, times(1)).createNewDatabaseForDryRun(anyLong(), any(File.class), anyString());
+    verify(dryRunDatabaseFactory, times(1)).createNewDatabaseForDryRun(anyLong(), any(File.class), any(File.class), anyString());
   }
 
   @Test
   public void test_getDatabaseForDryRun_on_existing_project() throws Exception {
-    when(dryRunDatabaseFactory.createNewDatabaseForDryRun(eq(123L), any(File.class), anyString())).thenAnswer(new Answer<File>() {
+    when(dryRunDatabaseFactory.createNewDatabaseForDryRun(eq(123L), any(File.class), any(File.class), anyString())).thenAnswer(new Answer<File>() {
       public File answer(InvocationOnMock invocation) throws IOException {
         Object[] args = invocation.getArguments();
-        File dbFile = new File(new File(dryRunCacheLocation, "123"), (String) args[2] + ".h2.db");
+        File dbFile = new File(new File(dryRunCacheLocation, "123"), (String) args[3] + ".h2.db");
         FileUtils.write(dbFile, "fake db content");
         return dbFile;
       }
     });
     when(resourceDao.getRootProjectByComponentId(123L)).thenReturn(new ResourceDto().setId(123L));
+    mockGlobalDatabase();
     byte[] dbContent = dryRunCache.getDatabaseForPreview(123L);
     assertThat(new String(dbContent)).isEqualTo("fake db content");
 
     dbContent = dryRunCache.getDatabaseForPreview(123L);
     assertThat(new String(dbContent)).isEqualTo("fake db content");
 
-    verify(dryRunDatabaseFactory, times(1)).createNewDatabaseForDryRun(anyLong(), any(File.class), anyString());
+    verify(dryRunDatabaseFactory, times(1)).createNewDatabaseForDryRun(eq(123L), any(File.class), any(File.class), anyString());
+  }
+
+  @Test
+  public void project_database_is_created_from_global_database() throws Exception {
+    when(dryRunDatabaseFactory.createNewDatabaseForDryRun(eq(123L), any(File.class), any(File.class), anyString())).thenAnswer(new Answer<File>() {
+      public File answer(InvocationOnMock invocation) throws IOException {
+        Object[] args = invocation.getArguments();
+        File dbFile = new File(new File(dryRunCacheLocation, "123"), (String) args[3] + ".h2.db");
+        FileUtils.write(dbFile, "fake db content");
+        return dbFile;
+      }
+    });
+    when(resourceDao.getRootProjectByComponentId(123L)).thenReturn(new ResourceDto().setId(123L));
+    mockGlobalDatabase();
+
+    File dbFile = dryRunCache.getDatabaseFileForPreview(123L);
+    assertThat(dbFile).exists();
+
+    ArgumentCaptor<File> globalDbFile = ArgumentCaptor.forClass(File.class);
+    verify(dryRunDatabaseFactory).createNewDatabaseForDryRun(eq(123L), globalDbFile.capture(), any(File.class), anyString());
+    assertThat(globalDbFile.getValue()).isEqualTo(dryRunCache.getDatabaseFileForPreview(null));
+    verify(dryRunDatabaseFactory, times(1)).createNewDatabaseForDryRun(isNull(Long.class), isNull(File.class), any(File.class), anyString());
   }
 
   @Test
   public void test_getDatabaseForDryRun_global_invalidation() throws Exception {
-    when(dryRunDatabaseFactory.createNewDatabaseForDryRun(isNull(Long.class), any(File.class), anyString()))
+    when(dryRunDatabaseFactory.createNewDatabaseForDryRun(isNull(Long.class), isNull(File.class), any(File.class), anyString()))
       .thenAnswer(new Answer<File>() {
         public File answer(InvocationOnMock invocation) throws IOException {
           Object[] args = invocation.getArguments();
-          File dbFile = new File(new File(dryRunCacheLocation, "default"), (String) args[2] + ".h2.db");
+          File dbFile = new File(new File(dryRunCacheLocation, "default"), (String) args[3] + ".h2.db");
           FileUtils.write(dbFile, "fake db content 1");
           return dbFile;
         }
@@ -138,7 +161,7 @@ public class PreviewCacheTest {
       .thenAnswer(new Answer<File>() {
         public File answer(InvocationOnMock invocation) throws IOException {
           Object[] args = invocation.getArguments();
-          File dbFile = new File(new File(dryRunCacheLocation, "default"), (String) args[2] + ".h2.db");
+          File dbFile = new File(new File(dryRunCacheLocation, "default"), (String) args[3] + ".h2.db");
           FileUtils.write(dbFile, "fake db content 2");
           return dbFile;
         }
@@ -153,16 +176,16 @@ public class PreviewCacheTest {
     dbContent = dryRunCache.getDatabaseForPreview(null);
     assertThat(new String(dbContent)).isEqualTo("fake db content 2");
 
-    verify(dryRunDatabaseFactory, times(2)).createNewDatabaseForDryRun(anyLong(), any(File.class), anyString());
+    verify(dryRunDatabaseFactory, times(2)).createNewDatabaseForDryRun(anyLong(), any(File.class), any(File.class), anyString());
   }
 
   @Test
   public void test_getDatabaseForDryRun_project_invalidation() throws Exception {
-    when(dryRunDatabaseFactory.createNewDatabaseForDryRun(eq(123L), any(File.class), anyString()))
+    when(dryRunDatabaseFactory.createNewDatabaseForDryRun(eq(123L), any(File.class), any(File.class), anyString()))
       .thenAnswer(new Answer<File>() {
         public File answer(InvocationOnMock invocation) throws IOException {
           Object[] args = invocation.getArguments();
-          File dbFile = new File(new File(dryRunCacheLocation, "123"), (String) args[2] + ".h2.db");
+          File dbFile = new File(new File(dryRunCacheLocation, "123"), (String) args[3] + ".h2.db");
           FileUtils.write(dbFile, "fake db content 1");
           return dbFile;
         }
@@ -170,24 +193,45 @@ public class PreviewCacheTest {
       .thenAnswer(new Answer<File>() {
         public File answer(InvocationOnMock invocation) throws IOException {
           Object[] args = invocation.getArguments();
-          File dbFile = new File(new File(dryRunCacheLocation, "123"), (String) args[2] + ".h2.db");
+          File dbFile = new File(new File(dryRunCacheLocation, "123"), (String) args[3] + ".h2.db");
           FileUtils.write(dbFile, "fake db content 2");
           return dbFile;
         }
+      })
+      .thenAnswer(new Answer<File>() {
+        public File answer(InvocationOnMock invocation) throws IOException {
+          Object[] args = invocation.getArguments();
+          File dbFile = new File(new File(dryRunCacheLocation, "123"), (String) args[3] + ".h2.db");
+          FileUtils.write(dbFile, "fake db content 3");
+          return dbFile;
+        }
       });
     when(resourceDao.getRootProjectByComponentId(123L)).thenReturn(new ResourceDto().setId(123L));
+    mockGlobalDatabase();
 
-    byte[] dbContent = dryRunCache.getDatabaseForPreview(123L);
-    assertThat(new String(dbContent)).isEqualTo("fake db content 1");
+    File firstDbFile = dryRunCache.getDatabaseFileForPreview(123L);
+    assertThat(FileUtils.readFileToString(firstDbFile)).isEqualTo("fake db content 1");
 
     // Emulate invalidation of cache
     Thread.sleep(100);
     when(propertiesDao.selectProjectProperty(123L, PreviewCache.SONAR_PREVIEW_CACHE_LAST_UPDATE_KEY)).thenReturn(new PropertyDto().setValue("" + System.currentTimeMillis()));
 
-    dbContent = dryRunCache.getDatabaseForPreview(123L);
+    byte[] dbContent = dryRunCache.getDatabaseForPreview(123L);
     assertThat(new String(dbContent)).isEqualTo("fake db content 2");
+    // previous database can still be streamed
+    assertThat(firstDbFile).exists();
+    assertThat(new File(dryRunCacheLocation, "123").listFiles()).hasSize(2);
 
-    verify(dryRunDatabaseFactory, times(2)).createNewDatabaseForDryRun(anyLong(), any(File.class), anyString());
+    Thread.sleep(100);
+    when(propertiesDao.selectProjectProperty(123L, PreviewCache.SONAR_PREVIEW_CACHE_LAST_UPDATE_KEY)).thenReturn(new PropertyDto().setValue("" + System.currentTimeMillis()));
+
+    dbContent = dryRunCache.getDatabaseForPreview(123L);
+    assertThat(new String(dbContent)).isEqualTo("fake db content 3");
+
+    verify(dryRunDatabaseFactory, times(3)).createNewDatabaseForDryRun(eq(123L), any(File.class), any(File.class), anyString());
+    // databases older than the previous one are removed
+    assertThat(firstDbFile).doesNotExist();
+    assertThat(new File(dryRunCacheLocation, "123").listFiles()).hasSize(2);
   }
 
   @Test
@@ -236,4 +280,15 @@ public class PreviewCacheTest {
         .setValue(anyString())
         .setResourceId(456L));
   }
+
+  private void mockGlobalDatabase() {
+    when(dryRunDatabaseFactory.createNewDatabaseForDryRun(isNull(Long.class), isNull(File.class), any(File.class), anyString())).thenAnswer(new Answer<File>() {
+      public File answer(InvocationOnMock invocation) throws IOException {
+        Object[] args = invocation.getArguments();
+        File dbFile = new File(new File(dryRunCacheLocation, "default"), (String) args[3] + ".h2.db");
+        FileUtils.write(dbFile, "fake global db content");
+        return dbFile;
+      }
+    });
+  }
 }
@@ -0,0 +1,82 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.profiling;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class HistogramTest {
+
+  @Test
+  public void empty_histogram() {
+    Histogram histogram = new Histogram();
+
+    assertThat(histogram.count()).isEqualTo(0L);
+    assertThat(histogram.min()).isEqualTo(0L);
+    assertThat(histogram.max()).isEqualTo(0L);
+    assertThat(histogram.mean()).isEqualTo(0.0);
+    assertThat(histogram.percentile(99.0)).isEqualTo(0L);
+  }
+
+  @Test
+  public void record_values() {
+    Histogram histogram = new Histogram();
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i);
+    }
+
+    assertThat(histogram.count()).isEqualTo(100L);
+    assertThat(histogram.min()).isEqualTo(1L);
+    assertThat(histogram.max()).isEqualTo(100L);
+    assertThat(histogram.mean()).isEqualTo(50.5);
+    assertThat(histogram.percentile(100.0)).isEqualTo(100L);
+  }
+
+  @Test
+  public void percentiles_are_accurate_to_one_sixteenth() {
+    Histogram histogram = new Histogram();
+    for (int i = 1; i <= 10000; i++) {
+      histogram.record(i * 10L);
+    }
+
+    assertThat(histogram.percentile(50.0)).isGreaterThanOrEqualTo(50000L).isLessThanOrEqualTo(50000L + 50000L / 16);
+    assertThat(histogram.percentile(90.0)).isGreaterThanOrEqualTo(90000L).isLessThanOrEqualTo(90000L + 90000L / 16);
+    assertThat(histogram.percentile(99.0)).isGreaterThanOrEqualTo(99000L).isLessThanOrEqualTo(100000L);
+  }
+
+  @Test
+  public void negative_values_are_recorded_as_zero() {
+    Histogram histogram = new Histogram();
+    histogram.record(-5L);
+
+    assertThat(histogram.min()).isEqualTo(0L);
+    assertThat(histogram.percentile(50.0)).isEqualTo(0L);
+  }
+
+  @Test
+  public void buckets_cover_contiguous_ranges() {
+    for (int bucket = 0; bucket < 200; bucket++) {
+      assertThat(Histogram.bucket(Histogram.lowestValue(bucket))).isEqualTo(bucket);
+      assertThat(Histogram.bucket(Histogram.highestValue(bucket))).isEqualTo(bucket);
+    }
+    assertThat(Histogram.bucket(Long.MAX_VALUE)).isGreaterThan(Histogram.bucket(1L << 40));
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.profiling;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class MetricsRegistryTest {
+
+  MetricsRegistry registry = new MetricsRegistry();
+
+  @Test
+  public void do_nothing_if_disabled() {
+    registry.increment("foo");
+    registry.record("bar", 12L);
+    long timer = registry.startTimer();
+
+    assertThat(registry.stopTimer("baz", timer)).isEqualTo(-1L);
+    assertThat(registry.counters()).isEmpty();
+    assertThat(registry.histograms()).isEmpty();
+  }
+
+  @Test
+  public void increment_counters() {
+    registry.setEnabled(true);
+    registry.increment("foo");
+    registry.increment("foo");
+    registry.increment("bar");
+
+    assertThat(registry.counters()).hasSize(2);
+    assertThat(registry.counters().get("foo")).isEqualTo(2L);
+    assertThat(registry.counters().get("bar")).isEqualTo(1L);
+  }
+
+  @Test
+  public void record_durations() {
+    registry.setEnabled(true);
+    long timer = registry.startTimer();
+    long duration = registry.stopTimer("foo", timer);
+    registry.record("foo", 30L);
+
+    assertThat(duration).isGreaterThanOrEqualTo(0L);
+    assertThat(registry.histograms().get("foo").count()).isEqualTo(2L);
+    assertThat(registry.histograms().get("foo").max()).isGreaterThanOrEqualTo(30L);
+  }
+
+  @Test
+  public void timer_started_while_disabled_is_not_recorded() {
+    long timer = registry.startTimer();
+    registry.setEnabled(true);
+
+    assertThat(registry.stopTimer("foo", timer)).isEqualTo(-1L);
+    assertThat(registry.histograms()).isEmpty();
+  }
+
+  @Test
+  public void read_gauges() {
+    registry.register("foo", new Gauge() {
+      @Override
+      public long value() {
+        return 42L;
+      }
+    });
+    assertThat(registry.gauges().get("foo")).isEqualTo(42L);
+
+    registry.unregister("foo");
+    assertThat(registry.gauges()).isEmpty();
+  }
+
+  @Test
+  public void group_metrics_when_too_many() {
+    registry.setEnabled(true);
+    for (int i = 0; i < MetricsRegistry.MAX_METRICS + 10; i++) {
+      registry.increment("counter" + i);
+      registry.record("histogram" + i, 1L);
+    }
+
+    assertThat(registry.counters()).hasSize(MetricsRegistry.MAX_METRICS + 1);
+    assertThat(registry.counters().get(MetricsRegistry.OTHERS)).isEqualTo(10L);
+    assertThat(registry.histograms()).hasSize(MetricsRegistry.MAX_METRICS + 1);
+    assertThat(registry.histograms().get(MetricsRegistry.OTHERS).count()).isEqualTo(10L);
+  }
+
+  @Test
+  public void reset() {
+    registry.setEnabled(true);
+    registry.increment("foo");
+    registry.record("bar", 1L);
+
+    registry.reset();
+
+    assertThat(registry.counters()).isEmpty();
+    assertThat(registry.histograms()).isEmpty();
+  }
+
+  @Test
+  public void singleton() {
+    assertThat(MetricsRegistry.get()).isSameAs(MetricsRegistry.get());
+  }
+}
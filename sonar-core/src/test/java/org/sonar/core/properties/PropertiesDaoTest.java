@@ -20,6 +20,7 @@
 package org.sonar.core.properties;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Multimap;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -28,6 +29,7 @@ import org.junit.rules.ExpectedException;
 import org.sonar.core.persistence.AbstractDaoTestCase;
 import org.sonar.core.persistence.DbSession;
 
+import java.util.Arrays;
 import java.util.List;
 
 import static org.fest.assertions.Assertions.assertThat;
@@ -104,6 +106,22 @@ public class PropertiesDaoTest extends AbstractDaoTestCase {
     assertThat(users).containsOnly("eric", "simon");
   }
 
+  @Test
+  public void findNotificationSubscribers_of_several_channels() {
+    setupData("findNotificationSubscribers");
+
+    Multimap<String, String> loginsByChannel = dao.findNotificationSubscribers("DispatcherWithGlobalAndProjectSubscribers",
+      Arrays.asList("Email", "Twitter"), "org.apache:struts");
+    assertThat(loginsByChannel.keySet()).containsOnly("Email");
+    assertThat(loginsByChannel.get("Email")).containsOnly("eric", "simon");
+
+    loginsByChannel = dao.findNotificationSubscribers("DispatcherWithGlobalAndProjectSubscribers", Arrays.asList("Email"), null);
+    assertThat(loginsByChannel.get("Email")).containsOnly("simon");
+
+    loginsByChannel = dao.findNotificationSubscribers("NotSexyDispatcher", Arrays.asList("Email"), "org.apache:struts");
+    assertThat(loginsByChannel.isEmpty()).isTrue();
+  }
+
   @Test
   public void selectGlobalProperties() {
     setupData("selectGlobalProperties");
@@ -143,6 +161,17 @@ public class PropertiesDaoTest extends AbstractDaoTestCase {
     assertThat(first.getValue(), is("one"));
   }
 
+  @Test
+  public void select_project_properties_by_resource_ids() {
+    setupData("selectProjectProperties");
+    Multimap<Long, PropertyDto> properties = dao.selectProjectPropertiesByResourceIds(Arrays.asList(10L, 11L, 13L), session);
+
+    // user properties are excluded
+    assertThat(properties.size(), is(2));
+    assertThat(properties.get(10L).iterator().next().getKey(), is("struts.one"));
+    assertThat(properties.get(11L).iterator().next().getValue(), is("two"));
+  }
+
   @Test
   public void selectProjectProperty() {
     setupData("selectProjectProperties");
@@ -0,0 +1,107 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.source;
+
+import com.google.common.base.Strings;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class SourceLinesEncoderTest {
+
+  @Test
+  public void encode_and_decode_all_lines() throws Exception {
+    String data = new SourceLinesEncoder("package foo;\r\n\nclass Foo {\r}")
+      .setScmAuthors("1=julien;4=simon")
+      .setScmDates("1=2014-01-01T00:00:00+0100;4=2014-02-01T00:00:00+0100")
+      .setLineHits("4=3")
+      .setConditions("4=2")
+      .setCoveredConditions("4=1")
+      .encodeToString();
+
+    SourceLinesDecoder decoder = SourceLinesDecoder.fromString(data);
+    assertThat(decoder.lineCount()).isEqualTo(4);
+
+    List<SourceLine> lines = decoder.decode(null, null);
+    assertThat(lines).hasSize(4);
+    assertThat(lines.get(0).getLine()).isEqualTo(1);
+    assertThat(lines.get(0).getSource()).isEqualTo("package foo;");
+    assertThat(lines.get(0).getScmAuthor()).isEqualTo("julien");
+    assertThat(lines.get(0).getLineHits()).isNull();
+    assertThat(lines.get(1).getSource()).isEmpty();
+    assertThat(lines.get(1).getScmAuthor()).isNull();
+    assertThat(lines.get(2).getSource()).isEqualTo("class Foo {");
+    assertThat(lines.get(3).getSource()).isEqualTo("}");
+    assertThat(lines.get(3).getScmDate()).isEqualTo("2014-02-01T00:00:00+0100");
+    assertThat(lines.get(3).getLineHits()).isEqualTo(3);
+    assertThat(lines.get(3).getConditions()).isEqualTo(2);
+    assertThat(lines.get(3).getCoveredConditions()).isEqualTo(1);
+  }
+
+  @Test
+  public void decode_range_of_lines() throws Exception {
+    StringBuilder source = new StringBuilder();
+    for (int i = 1; i <= 1000; i++) {
+      source.append("line ").append(i).append("\n");
+    }
+    byte[] data = new SourceLinesEncoder(source.toString()).setLineHits("150=1;250=2").encode();
+
+    SourceLinesDecoder decoder = new SourceLinesDecoder(data);
+    // last line is empty
+    assertThat(decoder.lineCount()).isEqualTo(1001);
+
+    List<SourceLine> lines = decoder.decode(150, 250);
+    assertThat(lines).hasSize(101);
+    assertThat(lines.get(0).getLine()).isEqualTo(150);
+    assertThat(lines.get(0).getSource()).isEqualTo("line 150");
+    assertThat(lines.get(0).getLineHits()).isEqualTo(1);
+    assertThat(lines.get(100).getSource()).isEqualTo("line 250");
+    assertThat(lines.get(100).getLineHits()).isEqualTo(2);
+
+    assertThat(decoder.decode(1000, 5000)).hasSize(2);
+    assertThat(decoder.decode(2000, 3000)).isEmpty();
+  }
+
+  @Test
+  public void split_highlighting_by_line() throws Exception {
+    // comment on lines 1 and 2, keyword on line 3
+    String source = "/* a\n b */\nclass A {}";
+    String data = new SourceLinesEncoder(source)
+      .setSyntaxHighlighting("0,10,cppd;11,16,k;")
+      .setSymbols("17,18,17;")
+      .encodeToString();
+
+    List<SourceLine> lines = SourceLinesDecoder.fromString(data).decode(null, null);
+    assertThat(lines.get(0).getHighlighting()).isEqualTo("0,4,cppd;");
+    assertThat(lines.get(1).getHighlighting()).isEqualTo("0,5,cppd;");
+    assertThat(lines.get(2).getHighlighting()).isEqualTo("0,5,k;");
+    assertThat(lines.get(2).getSymbols()).isEqualTo("6,7,17;");
+    assertThat(lines.get(0).getSymbols()).isNull();
+  }
+
+  @Test
+  public void support_long_lines() throws Exception {
+    String longLine = Strings.repeat("a", 100000);
+    List<SourceLine> lines = SourceLinesDecoder.fromString(new SourceLinesEncoder(longLine).encodeToString()).decode(1, 1);
+    assertThat(lines.get(0).getSource()).isEqualTo(longLine);
+  }
+}
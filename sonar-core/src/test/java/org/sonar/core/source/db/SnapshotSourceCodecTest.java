@@ -0,0 +1,62 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.source.db;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class SnapshotSourceCodecTest {
+
+  @Test
+  public void do_not_compress_small_sources() throws Exception {
+    assertThat(SnapshotSourceCodec.encode("class Foo {}")).isEqualTo("class Foo {}");
+    assertThat(SnapshotSourceCodec.encode("")).isEqualTo("");
+    assertThat(SnapshotSourceCodec.encode(null)).isNull();
+  }
+
+  @Test
+  public void compress_large_sources() throws Exception {
+    String source = StringUtils.repeat("public void foo() {\n  // l\u00e9gal\n}\n", 100);
+
+    String data = SnapshotSourceCodec.encode(source);
+
+    assertThat(data).startsWith(SnapshotSourceCodec.GZIP_PREFIX);
+    assertThat(data.length()).isLessThan(source.length() / 4);
+    assertThat(SnapshotSourceCodec.decode(data)).isEqualTo(source);
+  }
+
+  @Test
+  public void always_compress_sources_starting_with_prefix() throws Exception {
+    String source = SnapshotSourceCodec.GZIP_PREFIX + "foo";
+
+    String data = SnapshotSourceCodec.encode(source);
+
+    assertThat(data).isNotEqualTo(source);
+    assertThat(SnapshotSourceCodec.decode(data)).isEqualTo(source);
+  }
+
+  @Test
+  public void decode_plain_sources() throws Exception {
+    assertThat(SnapshotSourceCodec.decode("class Foo {}")).isEqualTo("class Foo {}");
+    assertThat(SnapshotSourceCodec.decode(null)).isNull();
+  }
+}
@@ -20,10 +20,17 @@
 
 package org.sonar.core.source.db;
 
+import org.apache.commons.lang.StringUtils;
+import org.apache.ibatis.session.SqlSession;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.core.persistence.AbstractDaoTestCase;
+import org.sonar.core.persistence.MyBatis;
 
+import java.util.Collections;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
 import static org.fest.assertions.Assertions.assertThat;
 
 public class SnapshotSourceDaoTest extends AbstractDaoTestCase {
@@ -50,6 +57,15 @@ public class SnapshotSourceDaoTest extends AbstractDaoTestCase {
     assertThat(snapshotSource).isEqualTo("public class Foo {public Foo(){}}");
   }
 
+  @Test
+  public void select_snapshot_sources_by_component_keys() throws Exception {
+    Map<String, String> sources = dao.selectSnapshotSourcesByComponentKeys(asList("org.apache.struts:struts:Dispatcher", "org.apache.struts:struts:Unknown"));
+
+    assertThat(sources).hasSize(1);
+    assertThat(sources.get("org.apache.struts:struts:Dispatcher")).isEqualTo("public class Foo {public Foo(){}}");
+    assertThat(dao.selectSnapshotSourcesByComponentKeys(Collections.<String>emptyList())).isEmpty();
+  }
+
   @Test
   public void insert() throws Exception {
     dao.insert(new SnapshotSourceDto().setId(102L).setData("bar").setSnapshotId(11L));
@@ -57,4 +73,22 @@ public class SnapshotSourceDaoTest extends AbstractDaoTestCase {
     checkTable("insert", "snapshot_sources");
   }
 
+  @Test
+  public void insert_by_batch_and_decompress_on_select() throws Exception {
+    String largeSource = StringUtils.repeat("public class Foo {}\n", 100);
+    dao.insert(asList(new SnapshotSourceDto().setData(largeSource).setSnapshotId(12L), new SnapshotSourceDto().setData("bar").setSnapshotId(13L)));
+
+    assertThat(dao.selectSnapshotSource(12L)).isEqualTo(largeSource);
+    assertThat(dao.selectSnapshotSource(13L)).isEqualTo("bar");
+
+    SqlSession session = getMyBatis().openSession(false);
+    try {
+      String storedData = session.getMapper(SnapshotSourceMapper.class).selectSnapshotSource(12L);
+      assertThat(storedData).startsWith(SnapshotSourceCodec.GZIP_PREFIX);
+      assertThat(storedData.length()).isLessThan(largeSource.length());
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
 }
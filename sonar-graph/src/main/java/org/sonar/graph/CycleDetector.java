@@ -20,16 +20,27 @@
 package org.sonar.graph;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+/**
+ * Depth-first search of the cycles of a graph. The search runs on the {@link IndexedGraph} of the vertices and only
+ * follows the edges that stay within a strongly connected component, as the other edges can't be part of a cycle.
+ */
 public class CycleDetector<V> {
 
-  private Set<V> vertices;
-  private DirectedGraphAccessor<V, ? extends Edge> graph;
-  private Set<V> analyzedVertices;
+  private IndexedGraph<V> graph;
+  private int[] componentByVertex;
+  private boolean[] analyzedVertices;
+  private boolean[] tmpAnalyzedVertices;
+  private int[] tmpAnalyzedList;
+  private int tmpAnalyzedSize;
+  private int[] pathEdges;
+  private int[] pathIndexByVertex;
+  private int pathSize;
   private Set<Cycle> cycles = new HashSet<Cycle>();
   private Set<Edge> edgesToExclude;
   private long searchCyclesCalls = 0;
@@ -53,13 +64,25 @@ public class CycleDetector<V> {
     init(graph, graph.getVertices(), edgesToExclude);
   }
 
+  CycleDetector(IndexedGraph<V> graph, Set<Edge> edgesToExclude) {
+    init(graph, edgesToExclude);
+  }
+
   private void init(DirectedGraphAccessor<V, ? extends Edge> graph, Collection<V> vertices, Set<Edge> edgesToExclude) {
+    init(new IndexedGraph<V>(graph, new HashSet<V>(vertices)), edgesToExclude);
+  }
+
+  private void init(IndexedGraph<V> graph, Set<Edge> edgesToExclude) {
     this.graph = graph;
-    this.vertices = new HashSet<V>(vertices);
-    this.analyzedVertices = new HashSet<V>();
     this.edgesToExclude = edgesToExclude;
+    int size = graph.size();
+    this.analyzedVertices = new boolean[size];
+    this.tmpAnalyzedVertices = new boolean[size];
+    this.tmpAnalyzedList = new int[size];
+    this.pathEdges = new int[size];
+    this.pathIndexByVertex = new int[size];
+    Arrays.fill(pathIndexByVertex, -1);
   }
-
   public Set<Cycle> detectCycles() {
     run();
     return getCycles();
@@ -84,12 +107,16 @@ public class CycleDetector<V> {
     if (!cycles.isEmpty()) {
       throw new IllegalStateException("Cycle detection can't be executed twice on the same CycleDetector object.");
     }
+    componentByVertex = graph.stronglyConnectedComponents(edgesToExclude);
     try {
-      for (V vertex : vertices) {
-        if (maxSearchDepthActivated || !analyzedVertices.contains(vertex)) {
-          Set<V> tmpAnalyzedVertices = new HashSet<V>();
-          searchCycles(vertex, new ArrayList<V>(), tmpAnalyzedVertices);
-          analyzedVertices.addAll(tmpAnalyzedVertices);
+      for (int vertex = 0; vertex < graph.size(); vertex++) {
+        if (maxSearchDepthActivated || !analyzedVertices[vertex]) {
+          searchCycles(vertex);
+          for (int i = 0; i < tmpAnalyzedSize; i++) {
+            analyzedVertices[tmpAnalyzedList[i]] = true;
+            tmpAnalyzedVertices[tmpAnalyzedList[i]] = false;
+          }
+          tmpAnalyzedSize = 0;
         }
       }
     } catch (MaximumCyclesToFoundException e) {
@@ -97,40 +124,39 @@ public class CycleDetector<V> {
     }
   }
 
-  private void searchCycles(V fromVertex, List<V> path, Set<V> tmpAnalyzedVertices) {
+  private void searchCycles(int fromVertex) {
     searchCyclesCalls++;
-    path.add(fromVertex);
-    tmpAnalyzedVertices.add(fromVertex);
-    for (Edge<V> edge : graph.getOutgoingEdges(fromVertex)) {
-      V toVertex = edge.getTo();
-      if (!edgesToExclude.contains(edge) && vertices.contains(toVertex)
-          && (maxSearchDepthActivated || !analyzedVertices.contains(toVertex))) {
-        if (path.contains(toVertex)) {
-          path.add(toVertex);
-          List<V> cyclePath = path.subList(path.indexOf(toVertex), path.size());
-          Cycle cycle = convertListOfVerticesToCycle(cyclePath);
-          cycles.add(cycle);
+    pathIndexByVertex[fromVertex] = pathSize;
+    pathSize++;
+    if (!tmpAnalyzedVertices[fromVertex]) {
+      tmpAnalyzedVertices[fromVertex] = true;
+      tmpAnalyzedList[tmpAnalyzedSize++] = fromVertex;
+    }
+    for (int e = graph.firstEdge(fromVertex); e < graph.lastEdge(fromVertex); e++) {
+      int toVertex = graph.target(e);
+      if (componentByVertex[toVertex] == componentByVertex[fromVertex] && !edgesToExclude.contains(graph.edge(e))
+        && (maxSearchDepthActivated || !analyzedVertices[toVertex])) {
+        pathEdges[pathSize - 1] = e;
+        int cycleStart = pathIndexByVertex[toVertex];
+        if (cycleStart >= 0) {
+          cycles.add(convertPathToCycle(cycleStart));
 
           if (cycles.size() >= maxCyclesToFound) {
             throw new MaximumCyclesToFoundException();
           }
-          path.remove(path.size() - 1);
-        } else if (!maxSearchDepthActivated || (maxSearchDepthActivated && path.size() < maxSearchDepth)) {
-          searchCycles(toVertex, path, tmpAnalyzedVertices);
+        } else if (!maxSearchDepthActivated || pathSize < maxSearchDepth) {
+          searchCycles(toVertex);
         }
       }
     }
-    path.remove(path.size() - 1);
+    pathSize--;
+    pathIndexByVertex[fromVertex] = -1;
   }
 
-  private Cycle convertListOfVerticesToCycle(List<V> vertices) {
-    List<Edge> edges = new ArrayList<Edge>();
-    V firstVertex = vertices.get(0);
-    V from = firstVertex;
-    for (int index = 1; index < vertices.size(); index++) {
-      V to = vertices.get(index);
-      edges.add(graph.getEdge(from, to));
-      from = to;
+  private Cycle convertPathToCycle(int cycleStart) {
+    List<Edge> edges = new ArrayList<Edge>(pathSize - cycleStart);
+    for (int index = cycleStart; index < pathSize; index++) {
+      edges.add(graph.edge(pathEdges[index]));
     }
     return new Cycle(edges);
   }
@@ -19,23 +19,40 @@
  */
 package org.sonar.graph;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Set;
 
+/**
+ * Dependency Structure Matrix. Only the cells of existing edges are stored : rows and columns are indexed
+ * by vertex, and a permutation only swaps the positions of two vertices.
+ */
 public class Dsm<V> {
 
+  private static final DsmCell EMPTY_CELL = new DsmCell(null, false);
+
   private V[] vertices;
-  private DsmCell[][] cells;
   private int dimension;
-  private DirectedGraphAccessor<V, ? extends Edge<V>> graph;
+
+  // position in the matrix of each vertex of the indexed graph, and the reverse
+  private int[] positionByVertex;
+  private int[] vertexByPosition;
+
+  // outgoing edges of each vertex, sorted by target vertex
+  private int[] outgoingOffsets;
+  private int[] outgoingTargets;
+  private DsmCell[] outgoingCells;
+
+  // incoming edges of each vertex, sorted by source vertex
+  private int[] incomingOffsets;
+  private int[] incomingSources;
+  private DsmCell[] incomingCells;
 
   public Dsm(DirectedGraphAccessor<V, ? extends Edge<V>> graph, Collection<V> vertices, Set<Edge> feedbackEdges) {
-    this.graph = graph;
     this.dimension = vertices.size();
-    this.cells = new DsmCell[dimension][dimension];
     initVertices(vertices);
-    initCells(feedbackEdges);
+    initCells(new IndexedGraph<V>(graph, vertices), feedbackEdges);
   }
 
   public Dsm(DirectedGraphAccessor<V, ? extends Edge<V>> acyclicGraph, Set<Edge> feedbackEdges) {
@@ -46,25 +63,50 @@ public class Dsm<V> {
     this(acyclicGraph, acyclicGraph.getVertices(), Collections.<Edge>emptySet());
   }
 
-  private void initCells(Set<Edge> feedbackEdges) {
-    for (int x = 0; x < dimension; x++) {
-      for (int y = 0; y < dimension; y++) {
-        V from = vertices[x];
-        V to = vertices[y];
+  private void initCells(IndexedGraph<V> graph, Set<Edge> feedbackEdges) {
+    DsmCell[] cellByEdge = new DsmCell[graph.edgeCount()];
+    for (int e = 0; e < cellByEdge.length; e++) {
+      Edge edge = graph.edge(e);
+      cellByEdge[e] = new DsmCell(edge, feedbackEdges.contains(edge));
+    }
+
+    int[][] incoming = graph.incoming();
+    incomingOffsets = incoming[0];
+    incomingSources = incoming[1];
+    incomingCells = new DsmCell[cellByEdge.length];
+    for (int i = 0; i < incomingCells.length; i++) {
+      incomingCells[i] = cellByEdge[incoming[2][i]];
+    }
 
-        Edge<V> edge = graph.getEdge(from, to);
-        boolean isFeedbackEdge = edge != null && feedbackEdges.contains(edge);
-        DsmCell cell = new DsmCell(edge, isFeedbackEdge);
-        cells[x][y] = cell;
+    // transposing the incoming edges, which are sorted by source, sorts the outgoing edges by target
+    outgoingOffsets = new int[dimension + 1];
+    for (int source : incomingSources) {
+      outgoingOffsets[source + 1]++;
+    }
+    for (int i = 0; i < dimension; i++) {
+      outgoingOffsets[i + 1] += outgoingOffsets[i];
+    }
+    int[] cursors = Arrays.copyOf(outgoingOffsets, dimension);
+    outgoingTargets = new int[incomingSources.length];
+    outgoingCells = new DsmCell[incomingSources.length];
+    for (int to = 0; to < dimension; to++) {
+      for (int i = incomingOffsets[to]; i < incomingOffsets[to + 1]; i++) {
+        int slot = cursors[incomingSources[i]]++;
+        outgoingTargets[slot] = to;
+        outgoingCells[slot] = incomingCells[i];
       }
     }
   }
 
   private void initVertices(Collection<V> verticesCol) {
     this.vertices = (V[]) new Object[dimension];
+    this.positionByVertex = new int[dimension];
+    this.vertexByPosition = new int[dimension];
     int i = 0;
     for (V vertex : verticesCol) {
       vertices[i] = vertex;
+      positionByVertex[i] = i;
+      vertexByPosition[i] = i;
       i++;
     }
   }
@@ -81,8 +123,6 @@ public class Dsm<V> {
     if (fromIndex != toIndex) {
       checkIndicesBoudaries(fromIndex, toIndex);
       permuteVertice(fromIndex, toIndex);
-      permuteColumns(fromIndex, toIndex);
-      permuteRows(fromIndex, toIndex);
     }
   }
 
@@ -104,32 +144,21 @@ public class Dsm<V> {
     V toVertex = vertices[toIndex];
     vertices[fromIndex] = toVertex;
     vertices[toIndex] = fromVertex;
-  }
 
-  private void permuteRows(int fromYIndex, int toYIndex) {
-    for (int x = 0; x < dimension; x++) {
-      permuteCells(x, fromYIndex, x, toYIndex);
-    }
-  }
-
-  private void permuteColumns(int fromXIndex, int toXIndex) {
-    for (int y = 0; y < dimension; y++) {
-      permuteCells(fromXIndex, y, toXIndex, y);
-    }
-  }
-
-  private void permuteCells(int fromXIndex, int fromYIndex, int toXIndex, int toYIndex) {
-    DsmCell fromCell = cells[fromXIndex][fromYIndex];
-    DsmCell toCell = cells[toXIndex][toYIndex];
-    cells[toXIndex][toYIndex] = fromCell;
-    cells[fromXIndex][fromYIndex] = toCell;
+    int from = vertexByPosition[fromIndex];
+    int to = vertexByPosition[toIndex];
+    vertexByPosition[fromIndex] = to;
+    vertexByPosition[toIndex] = from;
+    positionByVertex[from] = toIndex;
+    positionByVertex[to] = fromIndex;
   }
 
   public int getNumberOfIncomingEdges(int y, int from, int to) {
+    int vertex = vertexByPosition[y];
     int incomingEdges = 0;
-    for (int x = from; x <= to; x++) {
-      DsmCell cell = cells[x][y];
-      if (cell.getWeight() != 0 && !cell.isFeedbackEdge()) {
+    for (int i = incomingOffsets[vertex]; i < incomingOffsets[vertex + 1]; i++) {
+      int x = positionByVertex[incomingSources[i]];
+      if (x >= from && x <= to && isDependency(incomingCells[i])) {
         incomingEdges++;
       }
     }
@@ -137,18 +166,26 @@ public class Dsm<V> {
   }
 
   public int getNumberOfOutgoingEdges(int x, int from, int to) {
+    int vertex = vertexByPosition[x];
     int outgoingEdges = 0;
-    for (int y = from; y <= to; y++) {
-      DsmCell cell = cells[x][y];
-      if (cell.getWeight() != 0 && !cell.isFeedbackEdge()) {
+    for (int i = outgoingOffsets[vertex]; i < outgoingOffsets[vertex + 1]; i++) {
+      int y = positionByVertex[outgoingTargets[i]];
+      if (y >= from && y <= to && isDependency(outgoingCells[i])) {
         outgoingEdges++;
       }
     }
     return outgoingEdges;
   }
 
+  private static boolean isDependency(DsmCell cell) {
+    return cell.getWeight() != 0 && !cell.isFeedbackEdge();
+  }
+
   public DsmCell getCell(int x, int y) {
-    return cells[x][y];
+    int from = vertexByPosition[x];
+    int to = vertexByPosition[y];
+    int i = Arrays.binarySearch(outgoingTargets, outgoingOffsets[from], outgoingOffsets[from + 1], to);
+    return i >= 0 ? outgoingCells[i] : EMPTY_CELL;
   }
 
   public V[] getVertices() {
@@ -39,8 +39,10 @@ public class IncrementalCyclesAndFESSolver<V> {
   public IncrementalCyclesAndFESSolver(DirectedGraphAccessor<V, ? extends Edge> graph, Collection<V> vertices, int maxSearchDepthAtFirst,
       int maxCyclesToFoundByIteration) {
 
+    // the graph is indexed once and shared by all the iterations
+    IndexedGraph<V> indexedGraph = new IndexedGraph<V>(graph, new HashSet<V>(vertices));
     iterations++;
-    CycleDetector<V> cycleDetector = new CycleDetector<V>(graph, vertices);
+    CycleDetector<V> cycleDetector = new CycleDetector<V>(indexedGraph, new HashSet<Edge>());
     cycleDetector.detectCyclesWithMaxSearchDepth(maxSearchDepthAtFirst);
     searchCyclesCalls += cycleDetector.getSearchCyclesCalls();
     cycles.addAll(cycleDetector.getCycles());
@@ -49,7 +51,7 @@ public class IncrementalCyclesAndFESSolver<V> {
 
     do {
       iterations++;
-      cycleDetector = new CycleDetector<V>(graph, vertices, edgesToExclude);
+      cycleDetector = new CycleDetector<V>(indexedGraph, edgesToExclude);
       cycleDetector.detectCyclesWithUpperLimit(maxCyclesToFoundByIteration);
       searchCyclesCalls += cycleDetector.getSearchCyclesCalls();
       cycles.addAll(cycleDetector.getCycles());
@@ -0,0 +1,203 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.graph;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable view of a {@link DirectedGraphAccessor} restricted to a set of vertices, where vertices are
+ * identified by their index and the adjacency is stored in compressed sparse rows : the outgoing edges
+ * of the vertex i are the edges <code>offsets[i]</code> to <code>offsets[i + 1] - 1</code>, in the order
+ * of {@link DirectedGraphAccessor#getOutgoingEdges(Object)}.
+ *
+ * @since 5.0
+ */
+class IndexedGraph<V> {
+
+  private final Object[] vertices;
+  private final Map<V, Integer> indexByVertex;
+  private final int[] offsets;
+  private final int[] targets;
+  private final Edge[] edges;
+
+  IndexedGraph(DirectedGraphAccessor<V, ? extends Edge> graph, Collection<V> vertices) {
+    this.vertices = vertices.toArray();
+    this.indexByVertex = new HashMap<V, Integer>(this.vertices.length * 2);
+    for (int i = 0; i < this.vertices.length; i++) {
+      indexByVertex.put((V) this.vertices[i], i);
+    }
+
+    offsets = new int[this.vertices.length + 1];
+    int[] tmpTargets = new int[16];
+    Edge[] tmpEdges = new Edge[16];
+    int size = 0;
+    for (int from = 0; from < this.vertices.length; from++) {
+      offsets[from] = size;
+      for (Edge edge : graph.getOutgoingEdges((V) this.vertices[from])) {
+        Integer to = indexByVertex.get(edge.getTo());
+        if (to != null) {
+          if (size == tmpTargets.length) {
+            tmpTargets = Arrays.copyOf(tmpTargets, size * 2);
+            tmpEdges = Arrays.copyOf(tmpEdges, size * 2);
+          }
+          tmpTargets[size] = to;
+          tmpEdges[size] = edge;
+          size++;
+        }
+      }
+    }
+    offsets[this.vertices.length] = size;
+    targets = Arrays.copyOf(tmpTargets, size);
+    edges = Arrays.copyOf(tmpEdges, size);
+  }
+
+  int size() {
+    return vertices.length;
+  }
+
+  V vertex(int index) {
+    return (V) vertices[index];
+  }
+
+  Integer index(V vertex) {
+    return indexByVertex.get(vertex);
+  }
+
+  int edgeCount() {
+    return edges.length;
+  }
+
+  int firstEdge(int from) {
+    return offsets[from];
+  }
+
+  int lastEdge(int from) {
+    return offsets[from + 1];
+  }
+
+  int target(int edgeIndex) {
+    return targets[edgeIndex];
+  }
+
+  Edge edge(int edgeIndex) {
+    return edges[edgeIndex];
+  }
+
+  /**
+   * Rows of the transposed adjacency, sorted by source index : <code>result[0]</code> are the offsets,
+   * <code>result[1]</code> the sources and <code>result[2]</code> the edge indices.
+   */
+  int[][] incoming() {
+    int[] inOffsets = new int[vertices.length + 1];
+    for (int target : targets) {
+      inOffsets[target + 1]++;
+    }
+    for (int i = 0; i < vertices.length; i++) {
+      inOffsets[i + 1] += inOffsets[i];
+    }
+    int[] cursors = Arrays.copyOf(inOffsets, vertices.length);
+    int[] sources = new int[targets.length];
+    int[] edgeIndices = new int[targets.length];
+    for (int from = 0; from < vertices.length; from++) {
+      for (int e = offsets[from]; e < offsets[from + 1]; e++) {
+        int slot = cursors[targets[e]]++;
+        sources[slot] = from;
+        edgeIndices[slot] = e;
+      }
+    }
+    return new int[][] {inOffsets, sources, edgeIndices};
+  }
+
+  /**
+   * Strongly connected components (Tarjan) of the graph without the excluded edges. Two vertices belong
+   * to the same component if and only if they have the same value in the returned array. A cycle never
+   * leaves a component.
+   */
+  int[] stronglyConnectedComponents(Set<Edge> edgesToExclude) {
+    int n = vertices.length;
+    int[] order = new int[n];
+    Arrays.fill(order, -1);
+    int[] lowLink = new int[n];
+    int[] components = new int[n];
+    boolean[] onStack = new boolean[n];
+    int[] stack = new int[n];
+    int stackSize = 0;
+    int[] callStack = new int[n];
+    int[] nextEdge = new int[n];
+    int counter = 0;
+    int componentCount = 0;
+
+    for (int root = 0; root < n; root++) {
+      if (order[root] != -1) {
+        continue;
+      }
+      int callDepth = 0;
+      callStack[callDepth++] = root;
+      order[root] = counter;
+      lowLink[root] = counter;
+      counter++;
+      stack[stackSize++] = root;
+      onStack[root] = true;
+      nextEdge[root] = offsets[root];
+
+      while (callDepth > 0) {
+        int v = callStack[callDepth - 1];
+        if (nextEdge[v] < offsets[v + 1]) {
+          int e = nextEdge[v]++;
+          if (edgesToExclude.contains(edges[e])) {
+            continue;
+          }
+          int w = targets[e];
+          if (order[w] == -1) {
+            order[w] = counter;
+            lowLink[w] = counter;
+            counter++;
+            stack[stackSize++] = w;
+            onStack[w] = true;
+            nextEdge[w] = offsets[w];
+            callStack[callDepth++] = w;
+          } else if (onStack[w]) {
+            lowLink[v] = Math.min(lowLink[v], order[w]);
+          }
+        } else {
+          callDepth--;
+          if (callDepth > 0) {
+            int parent = callStack[callDepth - 1];
+            lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+          }
+          if (lowLink[v] == order[v]) {
+            int w;
+            do {
+              w = stack[--stackSize];
+              onStack[w] = false;
+              components[w] = componentCount;
+            } while (w != v);
+            componentCount++;
+          }
+        }
+      }
+    }
+    return components;
+  }
+}
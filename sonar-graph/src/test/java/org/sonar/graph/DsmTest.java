@@ -24,8 +24,11 @@ import org.junit.Test;
 import org.sonar.graph.Dsm;
 import org.sonar.graph.DsmScanner;
 
+import java.util.Random;
+
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 
 public class DsmTest {
@@ -74,4 +77,37 @@ public class DsmTest {
     assertThat(dsm.getNumberOfIncomingEdges(0, 0, 4), equalTo(1));
     assertThat(dsm.getNumberOfIncomingEdges(4, 0, 4), equalTo(0));
   }
+
+  @Test
+  public void cellsAndEdgeCountsMatchGraphAfterPermutations() {
+    Random random = new Random(42);
+    DirectedGraph<String, StringEdge> graph = DirectedGraph.createStringDirectedGraph();
+    for (int i = 0; i < 40; i++) {
+      graph.addVertex("V" + i);
+    }
+    for (int i = 0; i < 200; i++) {
+      String from = "V" + random.nextInt(40);
+      String to = "V" + random.nextInt(40);
+      if (!graph.hasEdge(from, to)) {
+        graph.addEdge(from, to, 1 + random.nextInt(3));
+      }
+    }
+    Dsm<String> sparseDsm = new Dsm<String>(graph);
+    for (int i = 0; i < 100; i++) {
+      sparseDsm.permute(random.nextInt(40), random.nextInt(40));
+    }
+
+    for (int x = 0; x < 40; x++) {
+      int outgoing = 0;
+      int incoming = 0;
+      for (int y = 0; y < 40; y++) {
+        Edge edge = graph.getEdge(sparseDsm.getVertex(x), sparseDsm.getVertex(y));
+        assertSame(edge, sparseDsm.getCell(x, y).getEdge());
+        outgoing += edge != null ? 1 : 0;
+        incoming += graph.hasEdge(sparseDsm.getVertex(y), sparseDsm.getVertex(x)) ? 1 : 0;
+      }
+      assertEquals(outgoing, sparseDsm.getNumberOfOutgoingEdges(x, 0, 39));
+      assertEquals(incoming, sparseDsm.getNumberOfIncomingEdges(x, 0, 39));
+    }
+  }
 }
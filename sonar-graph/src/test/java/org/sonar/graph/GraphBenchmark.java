@@ -0,0 +1,277 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.graph;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the sparse {@link Dsm} and the {@link CycleDetector} restricted to strongly connected components with
+ * copies of their previous implementations, a dense matrix of cells and a search on the whole graph. Graphs are
+ * generated : clusters of {@link #CLUSTER_SIZE} vertices with cycles inside each cluster, and acyclic dependencies
+ * between clusters. The previous search enumerates the paths between clusters, so graphs are kept small. It's not
+ * executed by unit tests. Run it with the main method from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GraphBenchmark {
+
+  static final int CLUSTER_SIZE = 10;
+  static final int DEPENDENCIES_PER_VERTEX = 3;
+
+  @Param({"100", "200"})
+  int vertices;
+
+  DirectedGraph<String, StringEdge> graph;
+  Set<Edge> feedbackEdges;
+
+  @Setup
+  public void setUp() {
+    graph = DirectedGraph.createStringDirectedGraph();
+    feedbackEdges = new HashSet<Edge>();
+    Random random = new Random(0);
+    for (int index = 0; index < vertices; index++) {
+      graph.addVertex(vertex(index));
+    }
+    for (int cluster = 0; cluster < vertices / CLUSTER_SIZE; cluster++) {
+      int first = cluster * CLUSTER_SIZE;
+      int last = first + CLUSTER_SIZE - 1;
+      for (int index = first; index < last; index++) {
+        graph.addEdge(vertex(index), vertex(index + 1));
+      }
+      // a ring and a shorter cycle through the middle of the cluster
+      graph.addEdge(vertex(last), vertex(first));
+      graph.addEdge(vertex(first + CLUSTER_SIZE / 2), vertex(first));
+      feedbackEdges.add(graph.getEdge(vertex(last), vertex(first)));
+      feedbackEdges.add(graph.getEdge(vertex(first + CLUSTER_SIZE / 2), vertex(first)));
+
+      int nextCluster = last + 1;
+      if (nextCluster < vertices) {
+        for (int index = first; index <= last; index++) {
+          for (int dependency = 0; dependency < DEPENDENCIES_PER_VERTEX; dependency++) {
+            int to = nextCluster + random.nextInt(vertices - nextCluster);
+            if (!graph.hasEdge(vertex(index), vertex(to))) {
+              graph.addEdge(vertex(index), vertex(to));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private static String vertex(int index) {
+    return "v" + index;
+  }
+
+  @Benchmark
+  public int dsm() {
+    Dsm<String> dsm = new Dsm<String>(graph, feedbackEdges);
+    int edges = 0;
+    int dimension = dsm.getDimension();
+    for (int index = 0; index < dimension; index++) {
+      edges += dsm.getNumberOfIncomingEdges(index, 0, dimension - 1);
+      dsm.permute(index, dimension - 1 - index);
+    }
+    return edges;
+  }
+
+  @Benchmark
+  public int previousDsm() {
+    PreviousDsm<String> dsm = new PreviousDsm<String>(graph, graph.getVertices(), feedbackEdges);
+    int edges = 0;
+    int dimension = dsm.getDimension();
+    for (int index = 0; index < dimension; index++) {
+      edges += dsm.getNumberOfIncomingEdges(index, 0, dimension - 1);
+      dsm.permute(index, dimension - 1 - index);
+    }
+    return edges;
+  }
+
+  @Benchmark
+  public Set<Cycle> cycles() {
+    return new CycleDetector<String>(graph).detectCycles();
+  }
+
+  @Benchmark
+  public Set<Cycle> previousCycles() {
+    return new PreviousCycleDetector<String>(graph).detectCycles();
+  }
+
+  @Benchmark
+  public Set<Cycle> cyclesWithMaxSearchDepth() {
+    return new CycleDetector<String>(graph).detectCyclesWithMaxSearchDepth(CLUSTER_SIZE);
+  }
+
+  @Benchmark
+  public Set<Cycle> previousCyclesWithMaxSearchDepth() {
+    return new PreviousCycleDetector<String>(graph).detectCyclesWithMaxSearchDepth(CLUSTER_SIZE);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+      .include(GraphBenchmark.class.getSimpleName())
+      .warmupIterations(5)
+      .measurementIterations(10)
+      .forks(1)
+      .build()).run();
+  }
+
+  /**
+   * Previous implementation of {@link Dsm} : a dense matrix of cells, where a permutation moves a row and a column
+   */
+  static class PreviousDsm<V> {
+    private final V[] vertices;
+    private final DsmCell[][] cells;
+    private final int dimension;
+
+    PreviousDsm(DirectedGraphAccessor<V, ? extends Edge<V>> graph, Collection<V> vertices, Set<Edge> feedbackEdges) {
+      this.dimension = vertices.size();
+      this.vertices = (V[]) vertices.toArray();
+      this.cells = new DsmCell[dimension][dimension];
+      for (int x = 0; x < dimension; x++) {
+        for (int y = 0; y < dimension; y++) {
+          Edge<V> edge = graph.getEdge(this.vertices[x], this.vertices[y]);
+          cells[x][y] = new DsmCell(edge, edge != null && feedbackEdges.contains(edge));
+        }
+      }
+    }
+
+    int getDimension() {
+      return dimension;
+    }
+
+    void permute(int fromIndex, int toIndex) {
+      if (fromIndex != toIndex) {
+        V vertex = vertices[fromIndex];
+        vertices[fromIndex] = vertices[toIndex];
+        vertices[toIndex] = vertex;
+        for (int y = 0; y < dimension; y++) {
+          swap(fromIndex, y, toIndex, y);
+        }
+        for (int x = 0; x < dimension; x++) {
+          swap(x, fromIndex, x, toIndex);
+        }
+      }
+    }
+
+    private void swap(int fromX, int fromY, int toX, int toY) {
+      DsmCell cell = cells[toX][toY];
+      cells[toX][toY] = cells[fromX][fromY];
+      cells[fromX][fromY] = cell;
+    }
+
+    int getNumberOfIncomingEdges(int y, int from, int to) {
+      int incomingEdges = 0;
+      for (int x = from; x <= to; x++) {
+        DsmCell cell = cells[x][y];
+        if (cell.getWeight() != 0 && !cell.isFeedbackEdge()) {
+          incomingEdges++;
+        }
+      }
+      return incomingEdges;
+    }
+  }
+
+  /**
+   * Previous implementation of {@link CycleDetector} : a search from each vertex of the graph, on lists and sets
+   * of vertices
+   */
+  static class PreviousCycleDetector<V> {
+    private final DirectedGraphAccessor<V, ? extends Edge> graph;
+    private final Set<V> vertices;
+    private final Set<V> analyzedVertices = new HashSet<V>();
+    private final Set<Cycle> cycles = new HashSet<Cycle>();
+    private int maxSearchDepth = -1;
+    private boolean maxSearchDepthActivated = false;
+
+    PreviousCycleDetector(DirectedGraphAccessor<V, ? extends Edge> graph) {
+      this.graph = graph;
+      this.vertices = new HashSet<V>(graph.getVertices());
+    }
+
+    Set<Cycle> detectCycles() {
+      run();
+      return cycles;
+    }
+
+    Set<Cycle> detectCyclesWithMaxSearchDepth(int maxSearchDepth) {
+      if (maxSearchDepth > 1) {
+        maxSearchDepthActivated = true;
+        this.maxSearchDepth = maxSearchDepth;
+      }
+      run();
+      return cycles;
+    }
+
+    private void run() {
+      for (V vertex : vertices) {
+        if (maxSearchDepthActivated || !analyzedVertices.contains(vertex)) {
+          Set<V> tmpAnalyzedVertices = new HashSet<V>();
+          searchCycles(vertex, new ArrayList<V>(), tmpAnalyzedVertices);
+          analyzedVertices.addAll(tmpAnalyzedVertices);
+        }
+      }
+    }
+
+    private void searchCycles(V fromVertex, List<V> path, Set<V> tmpAnalyzedVertices) {
+      path.add(fromVertex);
+      tmpAnalyzedVertices.add(fromVertex);
+      for (Edge<V> edge : graph.getOutgoingEdges(fromVertex)) {
+        V toVertex = edge.getTo();
+        if (vertices.contains(toVertex) && (maxSearchDepthActivated || !analyzedVertices.contains(toVertex))) {
+          if (path.contains(toVertex)) {
+            path.add(toVertex);
+            cycles.add(toCycle(path.subList(path.indexOf(toVertex), path.size())));
+            path.remove(path.size() - 1);
+          } else if (!maxSearchDepthActivated || path.size() < maxSearchDepth) {
+            searchCycles(toVertex, path, tmpAnalyzedVertices);
+          }
+        }
+      }
+      path.remove(path.size() - 1);
+    }
+
+    private Cycle toCycle(List<V> path) {
+      List<Edge> edges = new ArrayList<Edge>();
+      for (int index = 1; index < path.size(); index++) {
+        edges.add(graph.getEdge(path.get(index - 1), path.get(index)));
+      }
+      return new Cycle(edges);
+    }
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.graph;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class IndexedGraphTest {
+
+  @Test
+  public void index_edges_of_vertices() {
+    DirectedGraph<String, StringEdge> graph = DirectedGraph.createStringDirectedGraph();
+    graph.addEdge("A", "B").addEdge("B", "C").addEdge("A", "C").addEdge("C", "D");
+
+    // D is not indexed
+    IndexedGraph<String> indexedGraph = new IndexedGraph<String>(graph, Arrays.asList("A", "B", "C"));
+
+    assertThat(indexedGraph.size()).isEqualTo(3);
+    assertThat(indexedGraph.index("C")).isEqualTo(2);
+    assertThat(indexedGraph.index("D")).isNull();
+    assertThat(indexedGraph.edgeCount()).isEqualTo(3);
+    assertThat(indexedGraph.lastEdge(0) - indexedGraph.firstEdge(0)).isEqualTo(2);
+    assertThat(indexedGraph.lastEdge(2) - indexedGraph.firstEdge(2)).isEqualTo(0);
+
+    int[][] incoming = indexedGraph.incoming();
+    // C has incoming edges from A and B
+    assertThat(incoming[0][3] - incoming[0][2]).isEqualTo(2);
+    assertThat(incoming[1][incoming[0][2]]).isEqualTo(0);
+    assertThat(incoming[1][incoming[0][2] + 1]).isEqualTo(1);
+  }
+
+  @Test
+  public void strongly_connected_components() {
+    DirectedGraph<String, StringEdge> graph = DirectedGraph.createStringDirectedGraph();
+    graph.addEdge("A", "B").addEdge("B", "C").addEdge("C", "A");
+    graph.addEdge("C", "D");
+    graph.addEdge("D", "E").addEdge("E", "D");
+    graph.addEdge("E", "F");
+
+    IndexedGraph<String> indexedGraph = new IndexedGraph<String>(graph, Arrays.asList("A", "B", "C", "D", "E", "F"));
+    int[] components = indexedGraph.stronglyConnectedComponents(Collections.<Edge>emptySet());
+
+    assertThat(components[0]).isEqualTo(components[1]).isEqualTo(components[2]);
+    assertThat(components[3]).isEqualTo(components[4]);
+    assertThat(components[3]).isNotEqualTo(components[0]);
+    assertThat(components[5]).isNotEqualTo(components[3]).isNotEqualTo(components[0]);
+  }
+
+  @Test
+  public void excluded_edges_split_components() {
+    DirectedGraph<String, StringEdge> graph = DirectedGraph.createStringDirectedGraph();
+    graph.addEdge("A", "B").addEdge("B", "A");
+
+    IndexedGraph<String> indexedGraph = new IndexedGraph<String>(graph, Arrays.asList("A", "B"));
+    int[] components = indexedGraph.stronglyConnectedComponents(Collections.<Edge>singleton(graph.getEdge("B", "A")));
+
+    assertThat(components[0]).isNotEqualTo(components[1]);
+  }
+}
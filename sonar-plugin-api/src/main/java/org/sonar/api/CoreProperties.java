@@ -549,4 +549,12 @@ public interface CoreProperties {
    * @since 5.0
    */
   String SCM_PROVIDER_KEY = "sonar.scm.provider";
+
+  /**
+   * When true, the dependency matrices of directories and modules are not stored as measures during analysis.
+   * The server computes them from the persisted dependencies when they are requested.
+   *
+   * @since 5.0
+   */
+  String DESIGN_LAZY_DSM_KEY = "sonar.design.lazyDsm";
 }
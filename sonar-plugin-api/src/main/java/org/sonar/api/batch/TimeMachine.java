@@ -46,4 +46,15 @@ public interface TimeMachine extends BatchComponent {
    */
   List<Object[]> getMeasuresFields(TimeMachineQuery query);
 
+  /**
+   * Past measures of the resource of the query (a project or a module) and of its descendants of the given scopes,
+   * loaded with a single request. Return the same fields as {@link #getMeasuresFields(TimeMachineQuery)}, prefixed by
+   * the resource id : [resource id (Integer), date (java.util.Date), metric (org.sonar.api.measures.Metric), value (Double)].
+   * <p/>
+   * <p>This method is recommended instead of calling getMeasuresFields() on each resource of a module.</p>
+   *
+   * @since 5.0
+   */
+  List<Object[]> getModuleMeasuresFields(TimeMachineQuery query, String... scopes);
+
 }
@@ -66,4 +66,11 @@ public interface SensorDescriptor {
    */
   SensorDescriptor createIssuesForRuleRepositories(String... repositoryKeys);
 
+  /**
+   * Declares that the {@link Sensor} can be executed concurrently with other sensors, ie that it does not
+   * share any mutable state without synchronization. Sensors that are not thread-safe are executed one after
+   * the other. Order defined by {@link #dependsOn(Metric...)} and {@link #provides(Metric...)} is always respected.
+   */
+  SensorDescriptor threadSafe();
+
 }
@@ -35,6 +35,7 @@ public class DefaultSensorDescriptor implements SensorDescriptor {
   private String[] languages = new String[0];
   private InputFile.Type[] types = new InputFile.Type[0];
   private String[] ruleRepositories = new String[0];
+  private boolean threadSafe = false;
 
   public String name() {
     return name;
@@ -60,6 +61,10 @@ public class DefaultSensorDescriptor implements SensorDescriptor {
     return Arrays.asList(ruleRepositories);
   }
 
+  public boolean isThreadSafe() {
+    return threadSafe;
+  }
+
   @Override
   public DefaultSensorDescriptor name(String name) {
     this.name = name;
@@ -96,4 +101,10 @@ public class DefaultSensorDescriptor implements SensorDescriptor {
     return this;
   }
 
+  @Override
+  public DefaultSensorDescriptor threadSafe() {
+    this.threadSafe = true;
+    return this;
+  }
+
 }
@@ -29,6 +29,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.SortedMap;
 
 /**
@@ -120,7 +121,7 @@ public final class CoverageMeasuresBuilder {
     if (getLinesToCover() > 0) {
       measures.add(new Measure(CoreMetrics.LINES_TO_COVER, (double) getLinesToCover()));
       measures.add(new Measure(CoreMetrics.UNCOVERED_LINES, (double) (getLinesToCover() - getCoveredLines())));
-      measures.add(new Measure(CoreMetrics.COVERAGE_LINE_HITS_DATA).setData(KeyValueFormat.format(hitsByLine)).setPersistenceMode(PersistenceMode.DATABASE));
+      measures.add(new Measure(CoreMetrics.COVERAGE_LINE_HITS_DATA).setData(format(hitsByLine)).setPersistenceMode(PersistenceMode.DATABASE));
     }
     if (getConditions() > 0) {
       measures.add(new Measure(CoreMetrics.CONDITIONS_TO_COVER, (double) getConditions()));
@@ -133,16 +134,24 @@ public final class CoverageMeasuresBuilder {
 
   private Measure createCoveredConditionsByLine() {
     return new Measure(CoreMetrics.COVERED_CONDITIONS_BY_LINE)
-      .setData(KeyValueFormat.format(coveredConditionsByLine))
+      .setData(format(coveredConditionsByLine))
       .setPersistenceMode(PersistenceMode.DATABASE);
   }
 
   private Measure createConditionsByLine() {
     return new Measure(CoreMetrics.CONDITIONS_BY_LINE)
-      .setData(KeyValueFormat.format(conditionsByLine))
+      .setData(format(conditionsByLine))
       .setPersistenceMode(PersistenceMode.DATABASE);
   }
 
+  private static String format(SortedMap<Integer, Integer> valuesByLine) {
+    StringBuilder sb = new StringBuilder(valuesByLine.size() * 8);
+    for (Map.Entry<Integer, Integer> entry : valuesByLine.entrySet()) {
+      KeyValueFormat.appendPair(sb, entry.getKey(), entry.getValue());
+    }
+    return sb.toString();
+  }
+
   public static CoverageMeasuresBuilder create() {
     return new CoverageMeasuresBuilder();
   }
@@ -107,6 +107,17 @@ public abstract class Request {
   @CheckForNull
   public abstract String param(String key);
 
+  /**
+   * Returns the value of the HTTP header, or {@code null} if the header is not set or
+   * if headers are not supported by the implementation.
+   *
+   * @since 5.0
+   */
+  @CheckForNull
+  public String header(String name) {
+    return null;
+  }
+
   /**
    * @deprecated to be dropped in 4.4. Default values are declared in ws metadata
    */
@@ -49,6 +49,7 @@ import java.net.Proxy;
 import java.net.ProxySelector;
 import java.net.URI;
 import java.nio.charset.Charset;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.zip.GZIPInputStream;
@@ -146,6 +147,7 @@ public class HttpDownloader extends UriReader.SchemeProcessor implements BatchCo
   public static class BaseHttpDownloader {
 
     private static final String GET = "GET";
+    private static final Map<String, String> NO_HEADERS = Collections.emptyMap();
     private static final String HTTP_PROXY_USER = "http.proxyUser";
     private static final String HTTP_PROXY_PASSWORD = "http.proxyPassword";
 
@@ -212,7 +214,7 @@ public class HttpDownloader extends UriReader.SchemeProcessor implements BatchCo
     }
 
     public InputSupplier<InputStream> newInputSupplier(URI uri) {
-      return new HttpInputSupplier(uri, GET, userAgent, null, null, TIMEOUT_MILLISECONDS);
+      return new HttpInputSupplier(uri, GET, userAgent, null, null, TIMEOUT_MILLISECONDS, NO_HEADERS);
     }
 
     public InputSupplier<InputStream> newInputSupplier(URI uri, @Nullable Integer readTimeoutMillis) {
@@ -221,9 +223,9 @@ public class HttpDownloader extends UriReader.SchemeProcessor implements BatchCo
 
     public InputSupplier<InputStream> newInputSupplier(URI uri, String requestMethod, @Nullable Integer readTimeoutMillis) {
       if (readTimeoutMillis != null) {
-        return new HttpInputSupplier(uri, requestMethod, userAgent, null, null, readTimeoutMillis);
+        return new HttpInputSupplier(uri, requestMethod, userAgent, null, null, readTimeoutMillis, NO_HEADERS);
       }
-      return new HttpInputSupplier(uri, requestMethod, userAgent, null, null, TIMEOUT_MILLISECONDS);
+      return new HttpInputSupplier(uri, requestMethod, userAgent, null, null, TIMEOUT_MILLISECONDS, NO_HEADERS);
     }
 
     public InputSupplier<InputStream> newInputSupplier(URI uri, String login, String password) {
@@ -234,7 +236,7 @@ public class HttpDownloader extends UriReader.SchemeProcessor implements BatchCo
      * @since 5.0
      */
     public InputSupplier<InputStream> newInputSupplier(URI uri, String requestMethod, String login, String password) {
-      return new HttpInputSupplier(uri, requestMethod, userAgent, login, password, TIMEOUT_MILLISECONDS);
+      return new HttpInputSupplier(uri, requestMethod, userAgent, login, password, TIMEOUT_MILLISECONDS, NO_HEADERS);
     }
 
     public InputSupplier<InputStream> newInputSupplier(URI uri, String login, String password, @Nullable Integer readTimeoutMillis) {
@@ -245,10 +247,19 @@ public class HttpDownloader extends UriReader.SchemeProcessor implements BatchCo
      * @since 5.0
      */
     public InputSupplier<InputStream> newInputSupplier(URI uri, String requestMethod, String login, String password, @Nullable Integer readTimeoutMillis) {
-      if (readTimeoutMillis != null) {
-        return new HttpInputSupplier(uri, requestMethod, userAgent, login, password, readTimeoutMillis);
-      }
-      return new HttpInputSupplier(uri, requestMethod, userAgent, login, password, TIMEOUT_MILLISECONDS);
+      return newInputSupplier(uri, requestMethod, login, password, readTimeoutMillis, NO_HEADERS);
+    }
+
+    /**
+     * Request with additional HTTP headers, for example "If-None-Match". The response code 304 (not modified)
+     * is raised as a {@link HttpException}.
+     *
+     * @since 5.0
+     */
+    public InputSupplier<InputStream> newInputSupplier(URI uri, String requestMethod, @Nullable String login, @Nullable String password,
+      @Nullable Integer readTimeoutMillis, Map<String, String> requestHeaders) {
+      int timeout = readTimeoutMillis != null ? readTimeoutMillis : TIMEOUT_MILLISECONDS;
+      return new HttpInputSupplier(uri, requestMethod, userAgent, login, password, timeout, requestHeaders);
     }
 
     private static class HttpInputSupplier implements InputSupplier<InputStream> {
@@ -258,14 +269,17 @@ public class HttpDownloader extends UriReader.SchemeProcessor implements BatchCo
       private final String userAgent;
       private final int readTimeoutMillis;
       private final String requestMethod;
+      private final Map<String, String> requestHeaders;
 
-      HttpInputSupplier(URI uri, String requestMethod, String userAgent, String login, String password, int readTimeoutMillis) {
+      HttpInputSupplier(URI uri, String requestMethod, String userAgent, @Nullable String login, @Nullable String password, int readTimeoutMillis,
+        Map<String, String> requestHeaders) {
         this.uri = uri;
         this.requestMethod = requestMethod;
         this.userAgent = userAgent;
         this.login = login;
         this.password = password;
         this.readTimeoutMillis = readTimeoutMillis;
+        this.requestHeaders = requestHeaders;
       }
 
       @Override
@@ -287,6 +301,9 @@ public class HttpDownloader extends UriReader.SchemeProcessor implements BatchCo
         connection.setUseCaches(true);
         connection.setInstanceFollowRedirects(true);
         connection.setRequestProperty("User-Agent", userAgent);
+        for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+          connection.setRequestProperty(header.getKey(), header.getValue());
+        }
 
         // establish connection, get response headers
         connection.connect();
@@ -295,6 +312,9 @@ public class HttpDownloader extends UriReader.SchemeProcessor implements BatchCo
         String encoding = connection.getContentEncoding();
 
         int responseCode = connection.getResponseCode();
+        if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+          throw new HttpException(uri, responseCode);
+        }
         if (responseCode >= 400) {
           InputStream errorResponse = null;
           try {
@@ -0,0 +1,165 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.utils;
+
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Pairs of int keys and long values, without boxing. It's the primitive counterpart of the maps
+ * returned by {@link KeyValueFormat#parseIntInt(String)} or {@link KeyValueFormat#parseIntDateTime(String)},
+ * keys being generally line numbers.
+ * <p/>
+ * Pairs are kept in insertion order. As with {@link java.util.LinkedHashMap}, adding an existing key
+ * replaces its value but does not change its position. Lookups are binary searches as long as keys are added
+ * in ascending order, which is the case of the data generated by SonarQube.
+ * <p/>
+ * Not thread-safe.
+ *
+ * @since 5.0
+ */
+public final class IntKeyValues {
+
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private int[] keys;
+  private long[] values;
+  private int size = 0;
+  private boolean ascending = true;
+
+  public IntKeyValues() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public IntKeyValues(int initialCapacity) {
+    int capacity = Math.max(initialCapacity, 1);
+    keys = new int[capacity];
+    values = new long[capacity];
+  }
+
+  public IntKeyValues put(int key, long value) {
+    if (size > 0 && (!ascending || key <= keys[size - 1])) {
+      int index = indexOf(key);
+      if (index >= 0) {
+        values[index] = value;
+        return this;
+      }
+      ascending = false;
+    }
+    if (size == keys.length) {
+      int capacity = size + (size >> 1) + 1;
+      keys = Arrays.copyOf(keys, capacity);
+      values = Arrays.copyOf(values, capacity);
+    }
+    keys[size] = key;
+    values[size] = value;
+    size++;
+    return this;
+  }
+
+  public IntKeyValues clear() {
+    size = 0;
+    ascending = true;
+    return this;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public int keyAt(int index) {
+    checkIndex(index);
+    return keys[index];
+  }
+
+  public long valueAt(int index) {
+    checkIndex(index);
+    return values[index];
+  }
+
+  public int intValueAt(int index) {
+    return (int) valueAt(index);
+  }
+
+  /**
+   * @return the index of the key, or -1 if the key does not exist
+   */
+  public int indexOf(int key) {
+    if (ascending) {
+      int index = Arrays.binarySearch(keys, 0, size, key);
+      return index >= 0 ? index : -1;
+    }
+    for (int index = 0; index < size; index++) {
+      if (keys[index] == key) {
+        return index;
+      }
+    }
+    return -1;
+  }
+
+  public boolean containsKey(int key) {
+    return indexOf(key) >= 0;
+  }
+
+  public long get(int key, long defaultValue) {
+    int index = indexOf(key);
+    return index >= 0 ? values[index] : defaultValue;
+  }
+
+  public int getInt(int key, int defaultValue) {
+    int index = indexOf(key);
+    return index >= 0 ? (int) values[index] : defaultValue;
+  }
+
+  /**
+   * Boxed copy, in the format of {@link KeyValueFormat#parseIntInt(String)}
+   */
+  public Map<Integer, Integer> toIntMap() {
+    Map<Integer, Integer> map = Maps.newLinkedHashMap();
+    for (int index = 0; index < size; index++) {
+      map.put(keys[index], (int) values[index]);
+    }
+    return map;
+  }
+
+  /**
+   * Boxed copy, in the format of {@link KeyValueFormat#parseIntDateTime(String)}. Values must be dates in milliseconds.
+   */
+  public Map<Integer, Date> toDateMap() {
+    Map<Integer, Date> map = Maps.newLinkedHashMap();
+    for (int index = 0; index < size; index++) {
+      map.put(keys[index], new Date(values[index]));
+    }
+    return map;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+    }
+  }
+}
@@ -47,6 +47,10 @@ public final class KeyValueFormat {
   public static final String PAIR_SEPARATOR = ";";
   public static final String FIELD_SEPARATOR = "=";
 
+  private static final char PAIR_SEPARATOR_CHAR = ';';
+  private static final char FIELD_SEPARATOR_CHAR = '=';
+  private static final long BLANK_FIELD = Long.MIN_VALUE;
+
   private KeyValueFormat() {
     // only static methods
   }
@@ -281,6 +285,123 @@ public final class KeyValueFormat {
     return parse(data, newIntegerConverter(), newDateTimeConverter());
   }
 
+  /**
+   * Same as {@link #parseIntInt(String)} but parses the string in a single pass without boxing keys and values.
+   * Pairs with blank key or blank value are ignored.
+   *
+   * @since 5.0
+   */
+  public static IntKeyValues parseIntIntValues(@Nullable String data) {
+    return parseIntValues(data, null);
+  }
+
+  /**
+   * Same as {@link #parseIntDate(String)} but values are the dates in milliseconds. The same dates are parsed only once.
+   * Pairs with blank key or blank value are ignored.
+   *
+   * @since 5.0
+   */
+  public static IntKeyValues parseIntDateValues(@Nullable String data) {
+    return parseIntValues(data, newDateConverter());
+  }
+
+  /**
+   * Same as {@link #parseIntDateTime(String)} but values are the dates in milliseconds. The same dates are parsed only once.
+   * Pairs with blank key or blank value are ignored.
+   *
+   * @since 5.0
+   */
+  public static IntKeyValues parseIntDateTimeValues(@Nullable String data) {
+    return parseIntValues(data, newDateTimeConverter());
+  }
+
+  private static IntKeyValues parseIntValues(@Nullable String data, @Nullable DateConverter dateConverter) {
+    IntKeyValues result = new IntKeyValues();
+    if (data == null) {
+      return result;
+    }
+    Map<String, Long> parsedDates = Maps.newHashMap();
+    int lastDateStart = -1;
+    int lastDateLength = -1;
+    long lastDate = 0L;
+    int length = data.length();
+    int pairStart = 0;
+    while (pairStart < length) {
+      int pairEnd = data.indexOf(PAIR_SEPARATOR_CHAR, pairStart);
+      if (pairEnd < 0) {
+        pairEnd = length;
+      }
+      if (pairEnd > pairStart) {
+        int fieldSeparator = data.indexOf(FIELD_SEPARATOR_CHAR, pairStart);
+        if (fieldSeparator < 0 || fieldSeparator > pairEnd) {
+          throw new IllegalArgumentException("Not a key/value pair: " + data.substring(pairStart, pairEnd));
+        }
+        long key = parseIntField(data, pairStart, fieldSeparator);
+        int valueStart = fieldSeparator + 1;
+        int valueLength = pairEnd - valueStart;
+        if (key != BLANK_FIELD) {
+          if (dateConverter == null) {
+            long value = parseIntField(data, valueStart, pairEnd);
+            if (value != BLANK_FIELD) {
+              result.put((int) key, value);
+            }
+          } else if (valueLength == lastDateLength && data.regionMatches(valueStart, data, lastDateStart, valueLength)) {
+            // consecutive lines often have the same date
+            result.put((int) key, lastDate);
+          } else {
+            String value = data.substring(valueStart, pairEnd);
+            Long date = parsedDates.get(value);
+            if (date == null && !StringUtils.isBlank(value)) {
+              date = dateConverter.parse(value).getTime();
+              parsedDates.put(value, date);
+            }
+            if (date != null) {
+              result.put((int) key, date);
+              lastDateStart = valueStart;
+              lastDateLength = valueLength;
+              lastDate = date;
+            }
+          }
+        }
+      }
+      pairStart = pairEnd + 1;
+    }
+    return result;
+  }
+
+  /**
+   * Parses the field as {@link IntegerConverter} does, without creating a substring in the common case
+   * of a number with less than 10 digits.
+   *
+   * @return the int value, or {@link #BLANK_FIELD} if blank
+   */
+  private static long parseIntField(String data, int start, int end) {
+    int length = end - start;
+    if (length > 0 && length < 10) {
+      int index = start;
+      boolean negative = data.charAt(index) == '-';
+      if (negative) {
+        index++;
+      }
+      if (index < end) {
+        int value = 0;
+        while (index < end) {
+          char c = data.charAt(index);
+          if (c < '0' || c > '9') {
+            break;
+          }
+          value = value * 10 + (c - '0');
+          index++;
+        }
+        if (index == end) {
+          return negative ? -value : value;
+        }
+      }
+    }
+    String field = data.substring(start, end);
+    return StringUtils.isBlank(field) ? BLANK_FIELD : NumberUtils.toInt(field);
+  }
+
   /**
    * Value of pairs is the occurrences of the same single key. A multiset is sometimes called a bag.
    * For example parsing "foo=2;bar=1" creates a multiset with 3 elements : foo, foo and bar.
@@ -442,6 +563,48 @@ public final class KeyValueFormat {
     return formatEntries(multiset.entrySet(), newToStringConverter());
   }
 
+  /**
+   * Same as {@link #format(java.util.Map)} for int values, without boxing.
+   *
+   * @since 5.0
+   */
+  public static String format(IntKeyValues values) {
+    StringBuilder sb = new StringBuilder(values.size() * 8);
+    for (int index = 0; index < values.size(); index++) {
+      appendPair(sb, values.keyAt(index), values.valueAt(index));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Appends a pair to the builder, preceded by the pair separator if the builder is not empty. The builder
+   * can be reused after being emptied with {@link StringBuilder#setLength(int)}.
+   *
+   * @since 5.0
+   */
+  public static StringBuilder appendPair(StringBuilder sb, int key, long value) {
+    if (sb.length() > 0) {
+      sb.append(PAIR_SEPARATOR_CHAR);
+    }
+    return sb.append(key).append(FIELD_SEPARATOR_CHAR).append(value);
+  }
+
+  /**
+   * Same as {@link #appendPair(StringBuilder, int, long)} for string values. Null values are formatted
+   * as empty fields, as in {@link #formatIntString(java.util.Map)}.
+   *
+   * @since 5.0
+   */
+  public static StringBuilder appendPair(StringBuilder sb, int key, @Nullable String value) {
+    if (sb.length() > 0) {
+      sb.append(PAIR_SEPARATOR_CHAR);
+    }
+    sb.append(key).append(FIELD_SEPARATOR_CHAR);
+    if (value != null) {
+      sb.append(value);
+    }
+    return sb;
+  }
 
   /**
    * @since 1.11
@@ -36,13 +36,20 @@ public class DefaultSensorDescriptorTest {
       .dependsOn(CoreMetrics.NCLOC)
       .provides(CoreMetrics.BLOCKER_VIOLATIONS)
       .workOnLanguages("java", "php")
-      .workOnFileTypes(InputFile.Type.MAIN);
+      .workOnFileTypes(InputFile.Type.MAIN)
+      .threadSafe();
 
     assertThat(descriptor.name()).isEqualTo("Foo");
     assertThat(descriptor.dependsOn()).containsOnly(CoreMetrics.NCLOC);
     assertThat(descriptor.provides()).containsOnly(CoreMetrics.BLOCKER_VIOLATIONS);
     assertThat(descriptor.languages()).containsOnly("java", "php");
     assertThat(descriptor.types()).containsOnly(InputFile.Type.MAIN);
+    assertThat(descriptor.isThreadSafe()).isTrue();
+  }
+
+  @Test
+  public void not_thread_safe_by_default() {
+    assertThat(new DefaultSensorDescriptor().isThreadSafe()).isFalse();
   }
 
 }
@@ -0,0 +1,65 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.utils;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class IntKeyValuesTest {
+
+  @Test
+  public void keep_insertion_order() {
+    IntKeyValues values = new IntKeyValues(1).put(3, 30).put(1, 10).put(2, 20);
+
+    assertThat(values.size()).isEqualTo(3);
+    assertThat(values.keyAt(0)).isEqualTo(3);
+    assertThat(values.keyAt(2)).isEqualTo(2);
+    assertThat(values.get(1, -1)).isEqualTo(10);
+    assertThat(values.getInt(2, -1)).isEqualTo(20);
+    assertThat(values.getInt(4, -1)).isEqualTo(-1);
+  }
+
+  @Test
+  public void replace_value_of_existing_key() {
+    IntKeyValues values = new IntKeyValues().put(1, 10).put(2, 20).put(1, 11);
+    assertThat(values.size()).isEqualTo(2);
+    assertThat(values.keyAt(0)).isEqualTo(1);
+    assertThat(values.valueAt(0)).isEqualTo(11);
+
+    // keys not ascending
+    values = new IntKeyValues().put(3, 30).put(1, 10).put(3, 31);
+    assertThat(values.size()).isEqualTo(2);
+    assertThat(values.getInt(3, -1)).isEqualTo(31);
+  }
+
+  @Test
+  public void clear() {
+    IntKeyValues values = new IntKeyValues().put(2, 20).put(1, 10);
+    values.clear();
+    assertThat(values.isEmpty()).isTrue();
+    assertThat(values.containsKey(1)).isFalse();
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void fail_if_index_out_of_bounds() {
+    new IntKeyValues().put(1, 10).keyAt(1);
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the boxed and the primitive parsing/formatting of the data measures by line (coverage hits, conditions
+ * and SCM dates). It's not executed by unit tests. Run it with the main method from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class KeyValueFormatBenchmark {
+
+  @Param({"100", "10000"})
+  int lines;
+
+  String hits;
+  String dateTimes;
+  Map<Integer, Integer> hitsMap;
+  IntKeyValues hitsValues;
+
+  @Setup
+  public void setUp() {
+    hitsMap = new TreeMap<Integer, Integer>();
+    hitsValues = new IntKeyValues(lines);
+    Map<Integer, Date> dates = new TreeMap<Integer, Date>();
+    for (int line = 1; line <= lines; line++) {
+      hitsMap.put(line, line % 7);
+      hitsValues.put(line, line % 7);
+      // commits of a file are shared by blocks of lines
+      dates.put(line, new Date(1400000000000L + (line / 20) * 86400000L));
+    }
+    hits = KeyValueFormat.format(hitsMap);
+    dateTimes = KeyValueFormat.formatIntDateTime(dates);
+  }
+
+  @Benchmark
+  public Map<Integer, Integer> parseIntInt() {
+    return KeyValueFormat.parseIntInt(hits);
+  }
+
+  @Benchmark
+  public IntKeyValues parseIntIntValues() {
+    return KeyValueFormat.parseIntIntValues(hits);
+  }
+
+  @Benchmark
+  public Map<Integer, Date> parseIntDateTime() {
+    return KeyValueFormat.parseIntDateTime(dateTimes);
+  }
+
+  @Benchmark
+  public IntKeyValues parseIntDateTimeValues() {
+    return KeyValueFormat.parseIntDateTimeValues(dateTimes);
+  }
+
+  @Benchmark
+  public String formatMap() {
+    return KeyValueFormat.format(hitsMap);
+  }
+
+  @Benchmark
+  public String formatIntKeyValues() {
+    return KeyValueFormat.format(hitsValues);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+      .include(KeyValueFormatBenchmark.class.getSimpleName())
+      .warmupIterations(5)
+      .measurementIterations(10)
+      .forks(1)
+      .build()).run();
+  }
+}
@@ -152,4 +152,51 @@ public class KeyValueFormatTest {
     // first one is foo
     assertThat(multiset.iterator().next()).isEqualTo("foo");
   }
+
+  @Test
+  public void shouldParseIntIntValuesAsParseIntInt() {
+    String data = "1=2;3=0;;-4=-12;5=999999999;6=1234567890;7=abc;8=";
+    IntKeyValues values = KeyValueFormat.parseIntIntValues(data);
+
+    Map<Integer, Integer> expected = KeyValueFormat.parseIntInt(data);
+    expected.remove(8);
+    assertThat(values.toIntMap()).isEqualTo(expected);
+    assertThat(values.size()).isEqualTo(6);
+    assertThat(values.getInt(7, -1)).isEqualTo(0);
+    assertThat(values.getInt(8, -1)).isEqualTo(-1);
+    assertThat(KeyValueFormat.parseIntIntValues(null).isEmpty()).isTrue();
+  }
+
+  @Test
+  public void shouldParseIntDateValuesAsParseIntDate() {
+    String data = "1=2013-03-13T16:22:31+0100;2=2013-03-13T16:22:31+0100;3=2014-01-01T16:22:31+0100;4=";
+    IntKeyValues values = KeyValueFormat.parseIntDateTimeValues(data);
+
+    Map<Integer, Date> expected = KeyValueFormat.parseIntDateTime(data);
+    expected.remove(4);
+    assertThat(values.toDateMap()).isEqualTo(expected);
+
+    assertThat(KeyValueFormat.parseIntDateValues("1=2013-03-13").toDateMap()).isEqualTo(KeyValueFormat.parseIntDate("1=2013-03-13"));
+  }
+
+  @Test
+  public void shouldFormatIntValuesAsFormat() {
+    Map<Integer, Integer> map = Maps.newTreeMap();
+    map.put(1, 3);
+    map.put(5, 0);
+    map.put(12, -1);
+    IntKeyValues values = new IntKeyValues().put(1, 3).put(5, 0).put(12, -1);
+
+    assertThat(KeyValueFormat.format(values)).isEqualTo(KeyValueFormat.format(map));
+    assertThat(KeyValueFormat.format(new IntKeyValues())).isEqualTo("");
+  }
+
+  @Test
+  public void shouldAppendPairs() {
+    StringBuilder sb = new StringBuilder();
+    KeyValueFormat.appendPair(sb, 1, 10L);
+    KeyValueFormat.appendPair(sb, 2, "foo");
+    KeyValueFormat.appendPair(sb, 3, (String) null);
+    assertThat(sb.toString()).isEqualTo("1=10;2=foo;3=");
+  }
 }